@@ -2,7 +2,12 @@ module org.example.project {
     requires javafx.controls;
     requires javafx.fxml;
     requires java.sql;
+    requires org.xerial.sqlitejdbc;
+    requires java.net.http;
     requires org.json;
+    requires java.management;
+    requires jdk.jfr;
+    requires jdk.httpserver;
 
     // Export our package to javafx modules
     exports org.example.project;
@@ -0,0 +1,579 @@
+package org.example.project;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Flags unusual expenses as they are added. Running mean and variance (Welford) and a P²
+ * estimate of the 95th percentile are kept per category and currency, so an amount far above
+ * its norm is caught with O(1) work. Recent (category, amount) pairs are remembered with their
+ * dates, so the same charge twice within the duplicate window is caught without scanning the
+ * table. State is snapshotted to disk and only expenses added since the snapshot are replayed
+ * on restart.
+ */
+public class AnomalyDetector implements ExpenseListener {
+
+    public enum Kind {
+        OUTLIER, DUPLICATE
+    }
+
+    public record Anomaly(Kind kind, ExpenseRecord expense, String reason) {
+
+        public String toDisplayString() {
+            return String.format("%s: %s %.2f USD on %s - %s",
+                    kind == Kind.DUPLICATE ? "Possible duplicate" : "Unusual amount",
+                    expense.categoryName(), expense.amount(), expense.transactionDate(), reason);
+        }
+    }
+
+    public interface AnomalyListener {
+        void anomalyDetected(Anomaly anomaly);
+    }
+
+    private static final int SNAPSHOT_MAGIC = 0x414E4F4D; // "ANOM"
+    private static final int SNAPSHOT_VERSION = 2;
+
+    // Observations needed in a category and currency before outliers are reported
+    private static final int MIN_SAMPLES = 10;
+    private static final double Z_THRESHOLD = 3.5;
+
+    // Bound on remembered (category, amount) pairs for duplicate detection
+    private static final int MAX_RECENT_KEYS = 50_000;
+
+    /**
+     * Welford running mean and variance plus a 95th percentile estimate
+     */
+    private static final class Stats {
+        long count;
+        double mean;
+        double m2;
+        final P2Quantile p95 = new P2Quantile(0.95);
+
+        void add(double x) {
+            count++;
+            double delta = x - mean;
+            mean += delta / count;
+            m2 += delta * (x - mean);
+            p95.add(x);
+        }
+
+        /**
+         * Undo add(x); the percentile sketch cannot forget, so it keeps the sample
+         */
+        void remove(double x) {
+            if (count <= 1) {
+                count = 0;
+                mean = 0;
+                m2 = 0;
+                return;
+            }
+            double previousMean = (count * mean - x) / (count - 1);
+            m2 = Math.max(0, m2 - (x - previousMean) * (x - mean));
+            mean = previousMean;
+            count--;
+        }
+
+        double stddev() {
+            return count > 1 ? Math.sqrt(m2 / (count - 1)) : 0;
+        }
+    }
+
+    /**
+     * P² single-quantile estimator (Jain and Chlamtac): five markers, constant memory and time
+     */
+    private static final class P2Quantile {
+        final double p;
+        long count;
+        final double[] heights = new double[5];
+        final double[] positions = new double[5];
+        final double[] desired = new double[5];
+        final double[] increments;
+
+        P2Quantile(double p) {
+            this.p = p;
+            this.increments = new double[]{0, p / 2, p, (1 + p) / 2, 1};
+        }
+
+        void add(double x) {
+            if (count < 5) {
+                heights[(int) count++] = x;
+                if (count == 5) {
+                    Arrays.sort(heights);
+                    for (int i = 0; i < 5; i++) {
+                        positions[i] = i;
+                    }
+                    desired[0] = 0;
+                    desired[1] = 2 * p;
+                    desired[2] = 4 * p;
+                    desired[3] = 2 + 2 * p;
+                    desired[4] = 4;
+                }
+                return;
+            }
+            count++;
+
+            int k;
+            if (x < heights[0]) {
+                heights[0] = x;
+                k = 0;
+            } else if (x < heights[1]) {
+                k = 0;
+            } else if (x < heights[2]) {
+                k = 1;
+            } else if (x < heights[3]) {
+                k = 2;
+            } else if (x <= heights[4]) {
+                k = 3;
+            } else {
+                heights[4] = x;
+                k = 3;
+            }
+            for (int i = k + 1; i < 5; i++) {
+                positions[i]++;
+            }
+            for (int i = 0; i < 5; i++) {
+                desired[i] += increments[i];
+            }
+
+            for (int i = 1; i <= 3; i++) {
+                double d = desired[i] - positions[i];
+                if ((d >= 1 && positions[i + 1] - positions[i] > 1)
+                        || (d <= -1 && positions[i - 1] - positions[i] < -1)) {
+                    int step = d > 0 ? 1 : -1;
+                    double candidate = parabolic(i, step);
+                    if (heights[i - 1] < candidate && candidate < heights[i + 1]) {
+                        heights[i] = candidate;
+                    } else {
+                        heights[i] += step * (heights[i + step] - heights[i]) / (positions[i + step] - positions[i]);
+                    }
+                    positions[i] += step;
+                }
+            }
+        }
+
+        private double parabolic(int i, int d) {
+            double left = positions[i] - positions[i - 1];
+            double right = positions[i + 1] - positions[i];
+            return heights[i] + d / (left + right)
+                    * ((left + d) * (heights[i + 1] - heights[i]) / right
+                    + (right - d) * (heights[i] - heights[i - 1]) / left);
+        }
+
+        double value() {
+            if (count == 0) {
+                return Double.NaN;
+            }
+            if (count < 5) {
+                double[] sorted = Arrays.copyOf(heights, (int) count);
+                Arrays.sort(sorted);
+                return sorted[(int) Math.min(count - 1, Math.round(p * (count - 1)))];
+            }
+            return heights[2];
+        }
+    }
+
+    private record StatsKey(String category, String currency) {
+    }
+
+    private record DuplicateKey(String category, long cents) {
+    }
+
+    /**
+     * Transaction days and ids of the latest expenses sharing a DuplicateKey
+     */
+    private static final class RecentExpenses {
+        // Repeating amounts such as rent keep only their most recent dates
+        static final int CAPACITY = 16;
+
+        int size;
+        int[] days = new int[2];
+        int[] ids = new int[2];
+
+        void add(int day, int id) {
+            if (size == CAPACITY) {
+                int oldest = 0;
+                for (int i = 1; i < size; i++) {
+                    if (days[i] < days[oldest]) {
+                        oldest = i;
+                    }
+                }
+                if (days[oldest] < day) {
+                    days[oldest] = day;
+                    ids[oldest] = id;
+                }
+                return;
+            }
+            if (size == days.length) {
+                days = Arrays.copyOf(days, size * 2);
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            days[size] = day;
+            ids[size++] = id;
+        }
+
+        void remove(int id) {
+            for (int i = 0; i < size; i++) {
+                if (ids[i] == id) {
+                    size--;
+                    days[i] = days[size];
+                    ids[i] = ids[size];
+                    return;
+                }
+            }
+        }
+    }
+
+    private final int duplicateWindowDays;
+    private final List<AnomalyListener> listeners = new CopyOnWriteArrayList<>();
+
+    private Map<StatsKey, Stats> stats = new HashMap<>();
+    private LinkedHashMap<DuplicateKey, RecentExpenses> recent = new LinkedHashMap<>(1024, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<DuplicateKey, RecentExpenses> eldest) {
+            return size() > MAX_RECENT_KEYS;
+        }
+    };
+
+    // Expenses reflected in the state, used to check a snapshot against the table
+    private long expenseCount;
+    private int maxExpenseId;
+    // Sum of DatabaseManager.expenseChecksumTerm over the same expenses
+    private long checksum;
+    // Rows up to this id were read by load(); listener events for them are not applied again
+    private int loadedThroughId;
+    // Held for a whole load, so two never interleave; the state itself is guarded by this
+    private final Object loadLock = new Object();
+    // Listener events that arrive while load() reads; null when no load is running
+    private List<ExpenseListener.Event> pending;
+    private volatile boolean ready;
+
+    /**
+     * @param duplicateWindowDays Same category and amount within this many days counts as a duplicate
+     */
+    public AnomalyDetector(int duplicateWindowDays) {
+        this.duplicateWindowDays = duplicateWindowDays;
+    }
+
+    public void addAnomalyListener(AnomalyListener listener) {
+        listeners.add(listener);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Restore from the snapshot and replay newer expenses, or rebuild from the table when the
+     * snapshot is missing, unreadable or does not match the database. The state is built apart
+     * from this detector, so expenses can be added meanwhile; their events are queued and
+     * applied once the new state is in place.
+     */
+    public void load(DatabaseManager dbManager, Path snapshot) throws SQLException {
+        synchronized (loadLock) {
+            try (Metrics.Span span = Metrics.span("anomaly.load")) {
+                synchronized (this) {
+                    pending = new ArrayList<>();
+                }
+                List<Anomaly> anomalies = new ArrayList<>();
+                try {
+                    while (!loadOnce(dbManager, snapshot, anomalies)) {
+                        Metrics.increment("anomaly.load.retries");
+                    }
+                } finally {
+                    synchronized (this) {
+                        pending = null;
+                    }
+                }
+                notifyAnomalies(anomalies);
+            }
+            ready = true;
+        }
+    }
+
+    /**
+     * Build the state into a new detector, then install it and apply the queued events. Returns
+     * false, leaving the state as it was, when a queued delete cannot be placed before or after
+     * the rows were read.
+     */
+    private boolean loadOnce(DatabaseManager dbManager, Path snapshot, List<Anomaly> anomalies) throws SQLException {
+        AnomalyDetector loaded = new AnomalyDetector(duplicateWindowDays);
+        DatabaseManager.ExpenseStats tableStats = dbManager.getExpenseStats();
+        // Rows past the table's max id are left to the listener
+        Consumer<ExpenseRecord> observeLoaded = expense -> {
+            if (expense.id() <= tableStats.maxId()) {
+                loaded.observe(expense, false);
+            }
+        };
+        boolean restored = false;
+        if (Files.exists(snapshot)) {
+            try {
+                loaded.readSnapshot(snapshot);
+                if (loaded.maxExpenseId <= tableStats.maxId()) {
+                    dbManager.forEachExpenseAfter(loaded.maxExpenseId, observeLoaded);
+                    // A matching count alone would accept a snapshot that missed deletes
+                    // made up for by as many inserts
+                    restored = loaded.expenseCount == tableStats.count()
+                            && loaded.checksum == dbManager.getExpenseChecksum(tableStats.maxId());
+                }
+            } catch (IOException | RuntimeException e) {
+                Metrics.failure("anomaly.snapshot.read", e);
+            }
+        }
+        if (!restored) {
+            loaded.clear();
+            dbManager.forEachExpense(observeLoaded);
+        }
+
+        synchronized (this) {
+            // The table was read with several queries, so a delete of a row up to its max id may
+            // or may not be in the state; only a fresh read can tell
+            for (ExpenseListener.Event event : pending) {
+                if (event.deleted() && event.expenses().stream().anyMatch(e -> e.id() <= tableStats.maxId())) {
+                    pending.clear();
+                    return false;
+                }
+            }
+            if (restored) {
+                Metrics.increment("anomaly.snapshot.restored");
+            }
+            stats = loaded.stats;
+            recent = loaded.recent;
+            expenseCount = loaded.expenseCount;
+            maxExpenseId = loaded.maxExpenseId;
+            checksum = loaded.checksum;
+            loadedThroughId = tableStats.maxId();
+            // Expenses added during the load are new entries, so they are checked as usual
+            for (ExpenseListener.Event event : pending) {
+                if (event.deleted()) {
+                    applyDeleted(event.expenses());
+                } else {
+                    anomalies.addAll(applyAdded(event.expenses(), true));
+                }
+            }
+            pending = null;
+            return true;
+        }
+    }
+
+    /**
+     * Write the current state to disk, replacing the previous snapshot atomically
+     */
+    public synchronized void save(Path snapshot) throws IOException {
+        if (!ready) {
+            return;
+        }
+        try (Metrics.Span span = Metrics.span("anomaly.save")) {
+            Path temp = snapshot.resolveSibling(snapshot.getFileName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeInt(SNAPSHOT_VERSION);
+                out.writeLong(expenseCount);
+                out.writeInt(maxExpenseId);
+                out.writeLong(checksum);
+
+                out.writeInt(stats.size());
+                for (Map.Entry<StatsKey, Stats> entry : stats.entrySet()) {
+                    Stats s = entry.getValue();
+                    out.writeUTF(entry.getKey().category());
+                    out.writeUTF(entry.getKey().currency());
+                    out.writeLong(s.count);
+                    out.writeDouble(s.mean);
+                    out.writeDouble(s.m2);
+                    out.writeLong(s.p95.count);
+                    for (int i = 0; i < 5; i++) {
+                        out.writeDouble(s.p95.heights[i]);
+                        out.writeDouble(s.p95.positions[i]);
+                        out.writeDouble(s.p95.desired[i]);
+                    }
+                }
+
+                out.writeInt(recent.size());
+                for (Map.Entry<DuplicateKey, RecentExpenses> entry : recent.entrySet()) {
+                    RecentExpenses r = entry.getValue();
+                    out.writeUTF(entry.getKey().category());
+                    out.writeLong(entry.getKey().cents());
+                    out.writeInt(r.size);
+                    for (int i = 0; i < r.size; i++) {
+                        out.writeInt(r.days[i]);
+                        out.writeInt(r.ids[i]);
+                    }
+                }
+            }
+            Files.move(temp, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    @Override
+    public void expensesAdded(List<ExpenseRecord> expenses) {
+        List<Anomaly> anomalies;
+        synchronized (this) {
+            if (pending != null) {
+                pending.add(new ExpenseListener.Event(false, expenses));
+                return;
+            }
+            anomalies = applyAdded(expenses, true);
+        }
+        notifyAnomalies(anomalies);
+    }
+
+    @Override
+    public synchronized void expensesDeleted(List<ExpenseRecord> expenses) {
+        if (pending != null) {
+            pending.add(new ExpenseListener.Event(true, expenses));
+            return;
+        }
+        applyDeleted(expenses);
+    }
+
+    /**
+     * Notify outside the lock, so listeners can read the detector freely
+     */
+    private void notifyAnomalies(List<Anomaly> anomalies) {
+        for (Anomaly anomaly : anomalies) {
+            Metrics.increment("anomaly." + anomaly.kind().name().toLowerCase());
+            for (AnomalyListener listener : listeners) {
+                listener.anomalyDetected(anomaly);
+            }
+        }
+    }
+
+    private List<Anomaly> applyAdded(List<ExpenseRecord> expenses, boolean detect) {
+        List<Anomaly> anomalies = new ArrayList<>();
+        for (ExpenseRecord expense : expenses) {
+            if (expense.id() > loadedThroughId) {
+                anomalies.addAll(observe(expense, detect));
+            }
+        }
+        return anomalies;
+    }
+
+    private void applyDeleted(List<ExpenseRecord> expenses) {
+        for (ExpenseRecord expense : expenses) {
+            Stats s = stats.get(new StatsKey(expense.categoryName(), expense.currency()));
+            if (s != null) {
+                s.remove(expense.amount());
+            }
+            RecentExpenses r = recent.get(new DuplicateKey(expense.categoryName(), cents(expense.amount())));
+            if (r != null) {
+                r.remove(expense.id());
+            }
+            expenseCount--;
+            checksum -= DatabaseManager.expenseChecksumTerm(expense.id(), expense.amount());
+        }
+    }
+
+    /**
+     * Check an expense against the state, then add it
+     * @param detect False while loading, when the rows are history rather than new entries
+     */
+    private List<Anomaly> observe(ExpenseRecord expense, boolean detect) {
+        List<Anomaly> anomalies = List.of();
+        LocalDate date = expense.transactionLocalDate();
+        int day = date != null ? (int) date.toEpochDay() : Integer.MIN_VALUE;
+
+        DuplicateKey duplicateKey = new DuplicateKey(expense.categoryName(), cents(expense.amount()));
+        RecentExpenses similar = recent.computeIfAbsent(duplicateKey, k -> new RecentExpenses());
+        StatsKey statsKey = new StatsKey(expense.categoryName(), expense.currency());
+        Stats s = stats.computeIfAbsent(statsKey, k -> new Stats());
+
+        if (detect) {
+            anomalies = new ArrayList<>(2);
+            if (day != Integer.MIN_VALUE) {
+                for (int i = 0; i < similar.size; i++) {
+                    if (Math.abs(similar.days[i] - day) <= duplicateWindowDays) {
+                        anomalies.add(new Anomaly(Kind.DUPLICATE, expense, String.format(
+                                "same category and amount as expense %d on %s",
+                                similar.ids[i], LocalDate.ofEpochDay(similar.days[i]))));
+                        break;
+                    }
+                }
+            }
+            if (s.count >= MIN_SAMPLES) {
+                // Floor the deviation so near-constant categories do not flag tiny differences
+                double deviation = Math.max(s.stddev(), 0.01 * Math.abs(s.mean));
+                double z = deviation > 0 ? (expense.amount() - s.mean) / deviation : 0;
+                double p95 = s.p95.value();
+                if (z > Z_THRESHOLD && expense.amount() > p95) {
+                    anomalies.add(new Anomaly(Kind.OUTLIER, expense, String.format(
+                            "%.1f standard deviations above the usual %.2f (95th percentile %.2f)", z, s.mean, p95)));
+                }
+            }
+        }
+
+        if (day != Integer.MIN_VALUE) {
+            similar.add(day, expense.id());
+        }
+        s.add(expense.amount());
+        expenseCount++;
+        maxExpenseId = Math.max(maxExpenseId, expense.id());
+        checksum += DatabaseManager.expenseChecksumTerm(expense.id(), expense.amount());
+        return anomalies;
+    }
+
+    private void readSnapshot(Path snapshot) throws IOException {
+        clear();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshot)))) {
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION) {
+                throw new IOException("Unrecognized anomaly snapshot: " + snapshot);
+            }
+            expenseCount = in.readLong();
+            maxExpenseId = in.readInt();
+            checksum = in.readLong();
+
+            int statsCount = in.readInt();
+            for (int e = 0; e < statsCount; e++) {
+                StatsKey key = new StatsKey(in.readUTF(), in.readUTF());
+                Stats s = new Stats();
+                s.count = in.readLong();
+                s.mean = in.readDouble();
+                s.m2 = in.readDouble();
+                s.p95.count = in.readLong();
+                for (int i = 0; i < 5; i++) {
+                    s.p95.heights[i] = in.readDouble();
+                    s.p95.positions[i] = in.readDouble();
+                    s.p95.desired[i] = in.readDouble();
+                }
+                stats.put(key, s);
+            }
+
+            int recentCount = in.readInt();
+            for (int e = 0; e < recentCount; e++) {
+                DuplicateKey key = new DuplicateKey(in.readUTF(), in.readLong());
+                RecentExpenses r = new RecentExpenses();
+                int size = in.readInt();
+                for (int i = 0; i < size; i++) {
+                    r.add(in.readInt(), in.readInt());
+                }
+                recent.put(key, r);
+            }
+        }
+    }
+
+    private void clear() {
+        stats.clear();
+        recent.clear();
+        expenseCount = 0;
+        maxExpenseId = 0;
+        checksum = 0;
+    }
+
+    private static long cents(double amount) {
+        return Math.round(amount * 100);
+    }
+}
@@ -0,0 +1,536 @@
+package org.example.project;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compressed, rotated snapshots of one ledger's database plus a journal of the expense inserts
+ * and deletes committed since, for point-in-time recovery. Snapshots are copied with SQLite's
+ * online backup API from a pinned WAL read snapshot, so the app keeps writing while one is
+ * taken. A restore unpacks the newest snapshot completed before the requested instant into a
+ * separate file, checks it with integrity_check, replays the journal up to that instant and
+ * checks it again.
+ * Only expenses are journaled; budgets, recurring rules and categories without expenses come
+ * back as they were in the snapshot.
+ * Several processes may open the same ledger, so every journal append and rotation holds an
+ * exclusive lock on the journal file, and rotation rewrites the file in place rather than
+ * replacing it, which would leave other processes appending to the unlinked old file.
+ */
+public class BackupManager implements ExpenseListener {
+
+    public static final int DEFAULT_KEEP = 10;
+
+    // Pages copied per backup step (256 KiB at SQLite's default page size) and the pause after
+    // each, which keeps a large copy from saturating the disk
+    private static final int PAGES_PER_STEP = 64;
+    private static final Duration STEP_PAUSE = Duration.ofMillis(5);
+
+    // How often the periodic task looks for an overdue backup
+    private static final Duration SCHEDULE_CHECK = Duration.ofMinutes(1);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // Snapshot files are named after when the copy started and completed, in UTC
+    private static final DateTimeFormatter FILE_TIME =
+            DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss.SSS'Z'").withZone(ZoneOffset.UTC);
+    private static final Pattern SNAPSHOT_NAME = Pattern.compile("snapshot-([0-9T.Z]+)-([0-9T.Z]+)\\.db\\.gz");
+    private static final String JOURNAL_FILE = "journal.jsonl";
+
+    /**
+     * A stored snapshot: it holds every commit made before completedAt, and possibly some
+     * made after startedAt, which is why replay starts from startedAt
+     */
+    public record Snapshot(Path file, Instant startedAt, Instant completedAt, long compressedBytes) {
+    }
+
+    public record BackupResult(Snapshot snapshot, int pages, long databaseBytes, long nanos) {
+
+        /**
+         * Uncompressed database megabytes copied and compressed per second
+         */
+        public double megabytesPerSecond() {
+            return databaseBytes / 1e6 / (nanos / 1e9);
+        }
+    }
+
+    public record RestoreResult(Snapshot snapshot, int replayedEntries, Path file) {
+    }
+
+    private final DatabaseManager dbManager;
+    private final Path directory;
+    private final int keep;
+    private final Clock clock;
+
+    // Held while taking, rotating or restoring snapshots
+    private final Object backupLock = new Object();
+
+    // Guards the journal channel within this process; a FileLock cannot be taken twice by one JVM.
+    // Entry times are taken under the file lock, so entries are close to time order, though
+    // clocks of different processes may disagree slightly.
+    private final Object journalLock = new Object();
+    private FileChannel journal;
+    // Set once the backup directory exists. Any process may create it when it starts a snapshot,
+    // so until then every append checks again; before it there is nothing to replay onto.
+    private boolean journaling;
+
+    private ScheduledExecutorService executor;
+
+    public BackupManager(DatabaseManager dbManager, Path directory) {
+        this(dbManager, directory, DEFAULT_KEEP, Clock.systemUTC());
+    }
+
+    /**
+     * @param keep Number of snapshots kept; older ones and their journal entries are deleted
+     */
+    public BackupManager(DatabaseManager dbManager, Path directory, int keep, Clock clock) {
+        this.dbManager = dbManager;
+        this.directory = directory;
+        this.keep = keep;
+        this.clock = clock;
+    }
+
+    @Override
+    public void expensesAdded(List<ExpenseRecord> expenses) {
+        JSONArray rows = new JSONArray();
+        for (ExpenseRecord expense : expenses) {
+            rows.put(toJson(expense));
+        }
+        appendJournal(new JSONObject().put("op", "add").put("expenses", rows));
+    }
+
+    @Override
+    public void expensesDeleted(List<ExpenseRecord> expenses) {
+        JSONArray ids = new JSONArray();
+        for (ExpenseRecord expense : expenses) {
+            ids.put(expense.id());
+        }
+        appendJournal(new JSONObject().put("op", "delete").put("ids", ids));
+    }
+
+    /**
+     * Take a snapshot now, then delete the oldest ones beyond the number kept
+     */
+    public BackupResult backup() throws IOException, SQLException {
+        synchronized (backupLock) {
+            try (Metrics.Span span = Metrics.span("backup.snapshot")) {
+                Files.createDirectories(directory);
+                // Journal from before the copy starts, so nothing committed during it is missed
+                synchronized (journalLock) {
+                    journaling = true;
+                }
+
+                Instant startedAt = clock.instant();
+                long started = System.nanoTime();
+                Path copy = Files.createTempFile(directory, "snapshot-", ".db.tmp");
+                Path compressed = null;
+                try {
+                    int pages = dbManager.backupTo(copy, PAGES_PER_STEP, STEP_PAUSE);
+                    Instant completedAt = clock.instant();
+                    long databaseBytes = Files.size(copy);
+
+                    Path file = directory.resolve("snapshot-" + FILE_TIME.format(startedAt) + "-"
+                            + FILE_TIME.format(completedAt) + ".db.gz");
+                    compressed = directory.resolve(file.getFileName() + ".tmp");
+                    try (InputStream in = Files.newInputStream(copy);
+                         OutputStream out = new GZIPOutputStream(Files.newOutputStream(compressed), BUFFER_SIZE)) {
+                        in.transferTo(out);
+                    }
+                    Files.move(compressed, file, StandardCopyOption.ATOMIC_MOVE);
+
+                    long nanos = System.nanoTime() - started;
+                    Metrics.add("backup.bytes", databaseBytes);
+                    Snapshot snapshot = new Snapshot(file, startedAt, completedAt, Files.size(file));
+                    rotate();
+                    return new BackupResult(snapshot, pages, databaseBytes, nanos);
+                } catch (IOException | SQLException e) {
+                    span.fail(e);
+                    throw e;
+                } finally {
+                    Files.deleteIfExists(copy);
+                    if (compressed != null) {
+                        Files.deleteIfExists(compressed);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Stored snapshots, oldest first
+     */
+    public List<Snapshot> list() throws IOException {
+        List<Snapshot> snapshots = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return snapshots;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "snapshot-*.db.gz")) {
+            for (Path file : files) {
+                Matcher matcher = SNAPSHOT_NAME.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    try {
+                        snapshots.add(new Snapshot(file, FILE_TIME.parse(matcher.group(1), Instant::from),
+                                FILE_TIME.parse(matcher.group(2), Instant::from), Files.size(file)));
+                    } catch (DateTimeParseException e) {
+                        // Not one of ours
+                    }
+                }
+            }
+        }
+        snapshots.sort(Comparator.comparing(Snapshot::startedAt));
+        return snapshots;
+    }
+
+    /**
+     * Rebuild the database as it was at an instant into target, replacing the file if it exists.
+     * The live database is not touched; to roll it back, stop everything using it and restore
+     * over its file.
+     * @throws IOException if no snapshot completed before the instant, or the result fails integrity_check
+     */
+    public RestoreResult restore(Instant pointInTime, Path target) throws IOException, SQLException {
+        synchronized (backupLock) {
+            try (Metrics.Span span = Metrics.span("backup.restore")) {
+                Snapshot snapshot = null;
+                for (Snapshot candidate : list()) {
+                    if (!candidate.completedAt().isAfter(pointInTime)) {
+                        snapshot = candidate;
+                    }
+                }
+                if (snapshot == null) {
+                    throw new IOException("No snapshot in " + directory + " completed before " + pointInTime);
+                }
+
+                Path restoring = target.resolveSibling(target.getFileName() + ".restoring");
+                Files.deleteIfExists(restoring);
+                try {
+                    try (InputStream in = new GZIPInputStream(Files.newInputStream(snapshot.file()), BUFFER_SIZE)) {
+                        Files.copy(in, restoring);
+                    }
+
+                    int replayed;
+                    DatabaseManager restored = new DatabaseManager(restoring);
+                    try {
+                        verify(restored, "Snapshot " + snapshot.file().getFileName());
+                        replayed = replayJournal(restored, snapshot.startedAt(), pointInTime);
+                        verify(restored, "Restored database");
+                    } finally {
+                        restored.close();
+                    }
+
+                    Files.move(restoring, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    return new RestoreResult(snapshot, replayed, target);
+                } catch (IOException | SQLException e) {
+                    span.fail(e);
+                    throw e;
+                } finally {
+                    Files.deleteIfExists(restoring);
+                }
+            }
+        }
+    }
+
+    /**
+     * Back up whenever the newest snapshot is older than the interval, checking once a minute
+     */
+    public synchronized void startPeriodicBackups(Duration interval) {
+        if (executor != null) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "backup");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(() -> {
+            try {
+                List<Snapshot> snapshots = list();
+                if (snapshots.isEmpty() || !snapshots.getLast().completedAt().plus(interval).isAfter(clock.instant())) {
+                    backup();
+                }
+            } catch (IOException | SQLException | RuntimeException e) {
+                Metrics.failure("backup.periodic", e);
+                e.printStackTrace();
+            }
+        }, SCHEDULE_CHECK.toMillis(), SCHEDULE_CHECK.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop periodic backups and close the journal
+     */
+    public void close() {
+        synchronized (this) {
+            if (executor != null) {
+                executor.shutdownNow();
+                executor = null;
+            }
+        }
+        synchronized (journalLock) {
+            closeJournal();
+        }
+    }
+
+    private void appendJournal(JSONObject entry) {
+        synchronized (journalLock) {
+            try {
+                if (!journaling) {
+                    if (!Files.isDirectory(directory)) {
+                        return;
+                    }
+                    journaling = true;
+                }
+                FileChannel channel = openJournal();
+                try (FileLock lock = channel.lock()) {
+                    byte[] line = (entry.put("at", clock.instant().toString()) + "\n").getBytes(StandardCharsets.UTF_8);
+                    // Whole entry in one locked write at the current end, so other processes'
+                    // entries never land inside it
+                    ByteBuffer buffer = ByteBuffer.wrap(line);
+                    long position = channel.size();
+                    while (buffer.hasRemaining()) {
+                        position += channel.write(buffer, position);
+                    }
+                }
+            } catch (IOException e) {
+                Metrics.failure("backup.journal", e);
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * The journal file, opened once per process for positional reads and writes
+     */
+    private FileChannel openJournal() throws IOException {
+        if (journal == null) {
+            journal = FileChannel.open(directory.resolve(JOURNAL_FILE), StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+        return journal;
+    }
+
+    private void closeJournal() {
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                Metrics.failure("backup.journal", e);
+            }
+            journal = null;
+        }
+    }
+
+    /**
+     * Delete snapshots beyond the number kept, and journal entries older than the oldest left
+     */
+    private void rotate() throws IOException {
+        List<Snapshot> snapshots = list();
+        if (snapshots.size() <= keep) {
+            return;
+        }
+        for (Snapshot snapshot : snapshots.subList(0, snapshots.size() - keep)) {
+            Files.deleteIfExists(snapshot.file());
+        }
+        Instant oldestKept = snapshots.get(snapshots.size() - keep).startedAt();
+
+        synchronized (journalLock) {
+            if (journal == null && !Files.exists(directory.resolve(JOURNAL_FILE))) {
+                return;
+            }
+            FileChannel channel = openJournal();
+            try (FileLock lock = channel.lock()) {
+                // Kept lines are copied back byte for byte over the ones already read, so the write
+                // position never passes the read position; a crash part way leaves at worst one cut
+                // line, which parseEntry skips, and duplicates, which replay harmlessly
+                ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+                ByteArrayOutputStream line = new ByteArrayOutputStream();
+                long read = 0;
+                long written = 0;
+                int count;
+                while ((count = channel.read(buffer.clear(), read)) > 0) {
+                    read += count;
+                    for (int i = 0; i < count; i++) {
+                        byte b = buffer.get(i);
+                        line.write(b);
+                        if (b == '\n') {
+                            written = keepEntry(channel, line, written, oldestKept);
+                        }
+                    }
+                }
+                // An unterminated last line was cut short by a crash and is dropped
+                channel.truncate(written);
+                channel.force(false);
+            }
+        }
+    }
+
+    /**
+     * Write one journal line back at the given position if it is not older than oldestKept
+     * @return The position after what was written
+     */
+    private static long keepEntry(FileChannel channel, ByteArrayOutputStream line, long position,
+                                  Instant oldestKept) throws IOException {
+        byte[] bytes = line.toByteArray();
+        line.reset();
+        JSONObject entry = parseEntry(new String(bytes, StandardCharsets.UTF_8));
+        if (entry == null || Instant.parse(entry.getString("at")).isBefore(oldestKept)) {
+            return position;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+        return position;
+    }
+
+    /**
+     * Apply journal entries stamped within [from, to]. Entries the snapshot already holds
+     * replay harmlessly: adds replace the row by id, and deletes of missing ids do nothing.
+     * @return Number of entries applied
+     */
+    private int replayJournal(DatabaseManager target, Instant from, Instant to) throws IOException, SQLException {
+        Path copy = copyJournal();
+        if (copy == null) {
+            return 0;
+        }
+        int replayed = 0;
+        try (BufferedReader in = Files.newBufferedReader(copy, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                JSONObject entry = parseEntry(line);
+                if (entry == null) {
+                    continue;
+                }
+                // Entries from different processes are not strictly in time order, so read them all
+                Instant at = Instant.parse(entry.getString("at"));
+                if (at.isBefore(from) || at.isAfter(to)) {
+                    continue;
+                }
+                if (entry.getString("op").equals("add")) {
+                    JSONArray rows = entry.getJSONArray("expenses");
+                    List<ExpenseRecord> records = new ArrayList<>(rows.length());
+                    for (int i = 0; i < rows.length(); i++) {
+                        records.add(fromJson(rows.getJSONObject(i)));
+                    }
+                    target.putExpenseRecords(records);
+                } else {
+                    JSONArray ids = entry.getJSONArray("ids");
+                    List<Integer> expenseIds = new ArrayList<>(ids.length());
+                    for (int i = 0; i < ids.length(); i++) {
+                        expenseIds.add(ids.getInt(i));
+                    }
+                    target.deleteExpenseRecords(expenseIds);
+                }
+                replayed++;
+            }
+        } finally {
+            Files.deleteIfExists(copy);
+        }
+        return replayed;
+    }
+
+    /**
+     * Copy the journal under a shared lock, so replay neither sees half-written entries nor
+     * holds up appends while it applies them
+     * @return The copy, or null when there is no journal
+     */
+    private Path copyJournal() throws IOException {
+        synchronized (journalLock) {
+            if (journal == null && !Files.exists(directory.resolve(JOURNAL_FILE))) {
+                return null;
+            }
+            FileChannel channel = openJournal();
+            Path copy = Files.createTempFile(directory, "journal-", ".jsonl.tmp");
+            try (FileLock lock = channel.lock(0, Long.MAX_VALUE, true);
+                 FileChannel out = FileChannel.open(copy, StandardOpenOption.WRITE)) {
+                long size = channel.size();
+                for (long position = 0; position < size; ) {
+                    position += channel.transferTo(position, size - position, out);
+                }
+            } catch (IOException e) {
+                Files.deleteIfExists(copy);
+                throw e;
+            }
+            return copy;
+        }
+    }
+
+    /**
+     * A journal line, or null for a blank line or one cut short by a crash mid-write
+     */
+    private static JSONObject parseEntry(String line) {
+        if (line.isBlank()) {
+            return null;
+        }
+        try {
+            JSONObject entry = new JSONObject(line);
+            return entry.has("at") ? entry : null;
+        } catch (JSONException e) {
+            Metrics.increment("backup.journal.skipped");
+            return null;
+        }
+    }
+
+    private static void verify(DatabaseManager database, String what) throws IOException {
+        List<String> problems;
+        try {
+            problems = database.checkIntegrity();
+        } catch (SQLException e) {
+            // A badly damaged file fails the check itself rather than reporting problems
+            throw new IOException(what + " failed integrity_check: " + e.getMessage(), e);
+        }
+        if (!problems.isEmpty()) {
+            throw new IOException(what + " failed integrity_check: " + String.join("; ", problems));
+        }
+    }
+
+    private static JSONObject toJson(ExpenseRecord expense) {
+        return new JSONObject()
+                .put("id", expense.id())
+                .put("category", expense.categoryName())
+                .put("amount", expense.amount())
+                .putOpt("originalAmount", expense.originalAmount())
+                .put("transactionDate", expense.transactionDate())
+                .put("expenseDate", expense.expenseDate())
+                .put("currency", expense.currency())
+                .putOpt("payee", expense.payee())
+                .putOpt("description", expense.description());
+    }
+
+    private static ExpenseRecord fromJson(JSONObject row) {
+        return new ExpenseRecord(row.getInt("id"), 0, row.getString("category"), row.getDouble("amount"),
+                row.getString("transactionDate"), row.getString("expenseDate"), row.getString("currency"),
+                row.optString("payee", null), row.optString("description", null),
+                row.has("originalAmount") ? row.getDouble("originalAmount") : null);
+    }
+}
@@ -0,0 +1,348 @@
+package org.example.project;
+
+import java.sql.SQLException;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Tracks spend-to-date against every budget for the current period. Totals are loaded once
+ * with one grouped query per period type, then kept current through the database's expense
+ * listener, so each added or deleted expense is a constant-time counter update and threshold
+ * alerts are raised the moment a budget is crossed, without re-querying sums.
+ */
+public class BudgetTracker implements ExpenseListener {
+
+    public enum AlertLevel {
+        OK, WARNING, EXCEEDED
+    }
+
+    /**
+     * Raised when spending moves a budget into a higher alert level
+     */
+    public record BudgetAlert(Model.Budget budget, AlertLevel level, double spent) {
+
+        public String toDisplayString() {
+            return String.format("%s budget for %s is %s: $%.2f of $%.2f (%.0f%%)",
+                    budget.getPeriod(), budget.getCategory().getName(),
+                    level == AlertLevel.EXCEEDED ? "exceeded" : "nearly used",
+                    spent, budget.getBudgetLimit(), 100 * spent / budget.getBudgetLimit());
+        }
+    }
+
+    /**
+     * Snapshot of one budget for the current period
+     */
+    public record BudgetStatus(Model.Budget budget, double spent, LocalDate periodStart, LocalDate periodEnd) {
+
+        public double remaining() {
+            return budget.getBudgetLimit() - spent;
+        }
+
+        public AlertLevel level() {
+            return levelFor(budget, spent);
+        }
+
+        public String toDisplayString() {
+            return String.format("%s (%s): $%.2f / $%.2f (%.0f%%)%s",
+                    budget.getCategory().getName(), budget.getPeriod(), spent, budget.getBudgetLimit(),
+                    budget.getBudgetLimit() > 0 ? 100 * spent / budget.getBudgetLimit() : 0,
+                    switch (level()) {
+                        case OK -> "";
+                        case WARNING -> " - WARNING";
+                        case EXCEEDED -> " - OVER BUDGET";
+                    });
+        }
+    }
+
+    public interface BudgetAlertListener {
+        void budgetAlert(BudgetAlert alert);
+    }
+
+    /**
+     * Mutable counter for one budget; the period window is kept as ISO date strings so
+     * membership is a plain string comparison against the stored transaction date
+     */
+    private static final class BudgetState {
+        final Model.Budget budget;
+        LocalDate periodStart;
+        LocalDate periodEnd;
+        String startKey;
+        String endKey;
+        double spent;
+
+        BudgetState(Model.Budget budget) {
+            this.budget = budget;
+        }
+
+        void setWindow(LocalDate today) {
+            periodStart = budget.getPeriod().startOf(today);
+            periodEnd = budget.getPeriod().endOf(today);
+            startKey = periodStart.toString();
+            endKey = periodEnd.toString();
+        }
+
+        boolean covers(String transactionDate) {
+            return transactionDate != null
+                    && transactionDate.compareTo(startKey) >= 0
+                    && transactionDate.compareTo(endKey) < 0;
+        }
+    }
+
+    private final Clock clock;
+    private final List<BudgetAlertListener> alertListeners = new CopyOnWriteArrayList<>();
+    // Held for a whole load, so two never interleave; the state itself is guarded by this
+    private final Object loadLock = new Object();
+
+    // Budgets per category name; a category has at most one budget per period type
+    private Map<String, List<BudgetState>> statesByCategory = new HashMap<>();
+    private DatabaseManager dbManager;
+    private LocalDate nextRollover = LocalDate.MAX;
+    // Highest expense id counted by load(); the listener may still deliver rows up to it
+    private int loadedThroughId;
+    // Listener events that arrive while load() reads the database; null when no load is running
+    private List<ExpenseListener.Event> pending;
+
+    public BudgetTracker() {
+        this(Clock.systemDefaultZone());
+    }
+
+    public BudgetTracker(Clock clock) {
+        this.clock = clock;
+    }
+
+    public void addAlertListener(BudgetAlertListener listener) {
+        alertListeners.add(listener);
+    }
+
+    /**
+     * Load every budget and its spend-to-date for the current period. The sums are read without
+     * holding the tracker, so expenses can be added meanwhile; their events are queued and
+     * applied once the new counters are in place.
+     */
+    public void load(DatabaseManager dbManager) throws SQLException {
+        synchronized (loadLock) {
+            try (Metrics.Span span = Metrics.span("budget.load")) {
+                synchronized (this) {
+                    this.dbManager = dbManager;
+                    pending = new ArrayList<>();
+                }
+                List<BudgetAlert> alerts = new ArrayList<>();
+                try {
+                    while (!loadOnce(dbManager, alerts)) {
+                        Metrics.increment("budget.load.retries");
+                    }
+                } finally {
+                    synchronized (this) {
+                        pending = null;
+                    }
+                }
+                notifyAlerts(alerts);
+            }
+        }
+    }
+
+    /**
+     * Read the budgets and sums, then install them and apply the queued events. Returns false,
+     * leaving the counters as they were, when a queued delete cannot be placed before or after
+     * the sums were read.
+     */
+    private boolean loadOnce(DatabaseManager dbManager, List<BudgetAlert> alerts) throws SQLException {
+        LocalDate today = LocalDate.now(clock);
+        Map<String, List<BudgetState>> states = new HashMap<>();
+        List<Model.BudgetPeriod> periods = new ArrayList<>();
+        List<DatabaseManager.DateRange> ranges = new ArrayList<>();
+        LocalDate rollover = LocalDate.MAX;
+        for (Model.Budget budget : dbManager.getBudgets()) {
+            BudgetState state = new BudgetState(budget);
+            state.setWindow(today);
+            states.computeIfAbsent(budget.getCategory().getName(), k -> new ArrayList<>(1)).add(state);
+            if (state.periodEnd.isBefore(rollover)) {
+                rollover = state.periodEnd;
+            }
+            // One grouped query per period type in use, not one per budget
+            if (!periods.contains(budget.getPeriod())) {
+                periods.add(budget.getPeriod());
+                ranges.add(new DatabaseManager.DateRange(state.startKey, state.endKey));
+            }
+        }
+
+        // The highest id is read with the sums, so they count exactly the expenses up to it
+        DatabaseManager.RangeSpending spending = dbManager.readSpendingByCategory(ranges);
+        for (List<BudgetState> categoryStates : states.values()) {
+            for (BudgetState state : categoryStates) {
+                Map<String, Double> periodSpending = spending.spending().get(periods.indexOf(state.budget.getPeriod()));
+                state.spent = periodSpending.getOrDefault(state.budget.getCategory().getName(), 0.0);
+            }
+        }
+
+        synchronized (this) {
+            // A delete of a row up to the id may have been committed before the sums were read,
+            // or after; only a fresh read can tell
+            for (ExpenseListener.Event event : pending) {
+                if (event.deleted() && affects(states, event.expenses(), spending.maxId())) {
+                    pending.clear();
+                    return false;
+                }
+            }
+            statesByCategory = states;
+            nextRollover = rollover;
+            loadedThroughId = spending.maxId();
+            for (ExpenseListener.Event event : pending) {
+                if (event.deleted()) {
+                    applyDeleted(event.expenses());
+                } else {
+                    applyAdded(event.expenses(), alerts);
+                }
+            }
+            pending = null;
+            return true;
+        }
+    }
+
+    private static boolean affects(Map<String, List<BudgetState>> states, List<ExpenseRecord> expenses, int throughId) {
+        for (ExpenseRecord expense : expenses) {
+            List<BudgetState> categoryStates = expense.id() <= throughId ? states.get(expense.categoryName()) : null;
+            if (categoryStates == null) {
+                continue;
+            }
+            for (BudgetState state : categoryStates) {
+                if (state.covers(expense.transactionDate())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Current status of every budget, ordered as loaded (by category, then period)
+     */
+    public List<BudgetStatus> getStatuses() {
+        rollOverIfNeeded();
+        List<BudgetStatus> statuses = new ArrayList<>();
+        synchronized (this) {
+            for (List<BudgetState> states : statesByCategory.values()) {
+                for (BudgetState state : states) {
+                    statuses.add(new BudgetStatus(state.budget, state.spent, state.periodStart, state.periodEnd));
+                }
+            }
+        }
+        statuses.sort((a, b) -> {
+            int byName = a.budget().getCategory().getName().compareTo(b.budget().getCategory().getName());
+            return byName != 0 ? byName : a.budget().getPeriod().compareTo(b.budget().getPeriod());
+        });
+        return statuses;
+    }
+
+    @Override
+    public void expensesAdded(List<ExpenseRecord> expenses) {
+        rollOverIfNeeded();
+        List<BudgetAlert> alerts = new ArrayList<>();
+        synchronized (this) {
+            if (pending != null) {
+                pending.add(new ExpenseListener.Event(false, expenses));
+                return;
+            }
+            applyAdded(expenses, alerts);
+        }
+        notifyAlerts(alerts);
+    }
+
+    @Override
+    public void expensesDeleted(List<ExpenseRecord> expenses) {
+        rollOverIfNeeded();
+        synchronized (this) {
+            if (pending != null) {
+                pending.add(new ExpenseListener.Event(true, expenses));
+                return;
+            }
+            applyDeleted(expenses);
+        }
+    }
+
+    private void applyAdded(List<ExpenseRecord> expenses, List<BudgetAlert> alerts) {
+        for (ExpenseRecord expense : expenses) {
+            List<BudgetState> states = statesByCategory.get(expense.categoryName());
+            // Already counted, e.g. an insert that raced with load()
+            if (states == null || expense.id() <= loadedThroughId) {
+                continue;
+            }
+            for (BudgetState state : states) {
+                if (!state.covers(expense.transactionDate())) {
+                    continue;
+                }
+                AlertLevel before = levelFor(state.budget, state.spent);
+                state.spent += expense.amount();
+                AlertLevel after = levelFor(state.budget, state.spent);
+                if (after.compareTo(before) > 0) {
+                    alerts.add(new BudgetAlert(state.budget, after, state.spent));
+                }
+            }
+        }
+    }
+
+    private void applyDeleted(List<ExpenseRecord> expenses) {
+        for (ExpenseRecord expense : expenses) {
+            List<BudgetState> states = statesByCategory.get(expense.categoryName());
+            if (states == null) {
+                continue;
+            }
+            for (BudgetState state : states) {
+                if (state.covers(expense.transactionDate())) {
+                    state.spent -= expense.amount();
+                }
+            }
+        }
+    }
+
+    /**
+     * Notify outside the lock so listeners can read statuses freely
+     */
+    private void notifyAlerts(List<BudgetAlert> alerts) {
+        for (BudgetAlert alert : alerts) {
+            Metrics.increment("budget.alerts." + alert.level().name().toLowerCase());
+            for (BudgetAlertListener listener : alertListeners) {
+                listener.budgetAlert(alert);
+            }
+        }
+    }
+
+    static AlertLevel levelFor(Model.Budget budget, double spent) {
+        if (spent > budget.getBudgetLimit()) {
+            return AlertLevel.EXCEEDED;
+        }
+        if (spent >= budget.getBudgetLimit() * budget.getAlertThreshold()) {
+            return AlertLevel.WARNING;
+        }
+        return AlertLevel.OK;
+    }
+
+    /**
+     * When a period ends, reload so counters start from the new period's stored expenses
+     */
+    private void rollOverIfNeeded() {
+        DatabaseManager manager;
+        synchronized (this) {
+            // A load already running reads the new period
+            if (dbManager == null || pending != null || LocalDate.now(clock).isBefore(nextRollover)) {
+                return;
+            }
+            manager = dbManager;
+        }
+        try {
+            load(manager);
+        } catch (SQLException e) {
+            Metrics.failure("budget.rollover", e);
+            e.printStackTrace();
+            synchronized (this) {
+                // Try again on the next event rather than on every one in a tight loop
+                nextRollover = LocalDate.now(clock).plusDays(1);
+            }
+        }
+    }
+}
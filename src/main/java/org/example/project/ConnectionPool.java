@@ -0,0 +1,148 @@
+package org.example.project;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Bounded pool of connections to one SQLite file. Callers use the connection they borrow as
+ * usual; closing it returns the underlying connection to the pool, rolled back and in
+ * auto-commit mode, instead of closing the file. Reuse is reported as the "db.pool" cache.
+ */
+final class ConnectionPool implements AutoCloseable {
+
+    private static final long BORROW_TIMEOUT_SECONDS = 30;
+
+    private final String url;
+    private final Semaphore permits;
+    private final ConcurrentLinkedQueue<Connection> idle = new ConcurrentLinkedQueue<>();
+    private final Metrics.CacheStats stats = Metrics.cache("db.pool");
+    private volatile boolean closed;
+
+    ConnectionPool(String url, int maxConnections) {
+        this.url = url;
+        this.permits = new Semaphore(maxConnections, true);
+    }
+
+    /**
+     * Borrow a connection, waiting while all of them are in use
+     */
+    Connection borrow() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool for " + url + " is closed");
+        }
+        try {
+            if (!permits.tryAcquire(BORROW_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                throw new SQLException("Timed out waiting for a connection to " + url);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted waiting for a connection to " + url, e);
+        }
+
+        try {
+            Connection connection;
+            while ((connection = idle.poll()) != null && connection.isClosed()) {
+                // Drop connections closed underneath us
+            }
+            if (connection != null) {
+                stats.hit();
+            } else {
+                stats.miss();
+                connection = DriverManager.getConnection(url);
+            }
+            return wrap(connection);
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Close idle connections now and borrowed ones as they are returned
+     */
+    @Override
+    public void close() {
+        closed = true;
+        Connection connection;
+        while ((connection = idle.poll()) != null) {
+            closeQuietly(connection);
+        }
+    }
+
+    private void release(Connection connection) {
+        try {
+            if (closed || connection.isClosed()) {
+                closeQuietly(connection);
+                return;
+            }
+            if (!connection.getAutoCommit()) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+            idle.offer(connection);
+        } catch (SQLException e) {
+            Metrics.failure("db.pool.release", e);
+            closeQuietly(connection);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Proxy that returns the connection on close() and refuses use afterwards
+     */
+    private Connection wrap(Connection connection) {
+        AtomicBoolean returned = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "close" -> {
+                            if (returned.compareAndSet(false, true)) {
+                                release(connection);
+                            }
+                            return null;
+                        }
+                        case "isClosed" -> {
+                            return returned.get() || connection.isClosed();
+                        }
+                        case "equals" -> {
+                            return proxy == args[0];
+                        }
+                        case "hashCode" -> {
+                            return System.identityHashCode(proxy);
+                        }
+                        case "toString" -> {
+                            return "Pooled " + connection;
+                        }
+                        case "unwrap", "isWrapperFor" -> {
+                            // Fall through to the real connection
+                        }
+                        default -> {
+                            if (returned.get()) {
+                                throw new SQLException("Connection has been returned to the pool");
+                            }
+                        }
+                    }
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+
+    private static void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            Metrics.failure("db.pool.close", e);
+        }
+    }
+}
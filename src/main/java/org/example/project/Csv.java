@@ -0,0 +1,109 @@
+package org.example.project;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Minimal RFC 4180 CSV: fields are quoted only when they contain a comma, quote or line break,
+ * and quoted fields may span lines. Reading and writing both stream one record at a time.
+ */
+final class Csv {
+
+    private Csv() {
+    }
+
+    /**
+     * Append one record and a line break
+     */
+    static void writeRecord(Appendable out, List<String> fields) throws IOException {
+        for (int i = 0; i < fields.size(); i++) {
+            if (i > 0) {
+                out.append(',');
+            }
+            String field = fields.get(i);
+            if (field == null) {
+                continue;
+            }
+            if (field.indexOf(',') >= 0 || field.indexOf('"') >= 0 || field.indexOf('\n') >= 0
+                    || field.indexOf('\r') >= 0) {
+                out.append('"').append(field.replace("\"", "\"\"")).append('"');
+            } else {
+                out.append(field);
+            }
+        }
+        out.append('\n');
+    }
+
+    /**
+     * Reads records one at a time from a (buffered) reader
+     */
+    static final class RecordReader {
+        private final Reader in;
+        private int lookahead = -2;
+
+        RecordReader(Reader in) {
+            this.in = in;
+        }
+
+        /**
+         * The next record's fields, or null at the end of input
+         */
+        List<String> next() throws IOException {
+            int c = read();
+            if (c == -1) {
+                return null;
+            }
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            while (true) {
+                if (quoted) {
+                    if (c == -1) {
+                        throw new IOException("Unterminated quoted field");
+                    }
+                    if (c == '"') {
+                        int following = read();
+                        if (following == '"') {
+                            field.append('"');
+                        } else {
+                            quoted = false;
+                            c = following;
+                            continue;
+                        }
+                    } else {
+                        field.append((char) c);
+                    }
+                } else if (c == '"' && field.isEmpty()) {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else if (c == '\n' || c == -1) {
+                    break;
+                } else if (c == '\r') {
+                    int following = read();
+                    if (following != '\n') {
+                        lookahead = following;
+                    }
+                    break;
+                } else {
+                    field.append((char) c);
+                }
+                c = read();
+            }
+            fields.add(field.toString());
+            return fields;
+        }
+
+        private int read() throws IOException {
+            if (lookahead != -2) {
+                int c = lookahead;
+                lookahead = -2;
+                return c;
+            }
+            return in.read();
+        }
+    }
+}
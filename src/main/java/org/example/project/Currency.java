@@ -0,0 +1,97 @@
+package org.example.project;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Registry of the currencies the application supports, mapping ISO codes to small
+ * integer ids so rates and amounts can live in dense primitive arrays
+ */
+public final class Currency {
+
+    public static final int USD = 0;
+    public static final int EUR = 1;
+    public static final int GBP = 2;
+    public static final int JPY = 3;
+    public static final int AUD = 4;
+    public static final int RON = 5;
+
+    // Base currency that amounts are stored in and rate payloads are requested for
+    public static final int BASE = USD;
+
+    private static final String[] CODES = {"USD", "EUR", "GBP", "JPY", "AUD", "RON"};
+    private static final List<String> CODE_LIST = Collections.unmodifiableList(Arrays.asList(CODES));
+
+    // Id lookup indexed by the packed A-Z value of a three-letter code, -1 when unsupported
+    private static final byte[] ID_BY_PACKED_CODE = new byte[26 * 26 * 26];
+
+    static {
+        Arrays.fill(ID_BY_PACKED_CODE, (byte) -1);
+        for (int id = 0; id < CODES.length; id++) {
+            ID_BY_PACKED_CODE[pack(CODES[id])] = (byte) id;
+        }
+    }
+
+    private Currency() {
+    }
+
+    /**
+     * Number of supported currencies; ids run from 0 to count() - 1
+     */
+    public static int count() {
+        return CODES.length;
+    }
+
+    /**
+     * Get the ISO code for a currency id
+     */
+    public static String code(int id) {
+        return CODES[id];
+    }
+
+    /**
+     * Get the id for an ISO code, or -1 if the currency is not supported
+     */
+    public static int idOf(String code) {
+        int packed = code == null ? -1 : pack(code);
+        return packed < 0 ? -1 : ID_BY_PACKED_CODE[packed];
+    }
+
+    /**
+     * Get the id for an ISO code, failing if the currency is not supported
+     */
+    public static int requireId(String code) {
+        int id = idOf(code);
+        if (id < 0) {
+            throw new IllegalArgumentException("Unsupported currency: " + code);
+        }
+        return id;
+    }
+
+    public static boolean isSupported(String code) {
+        return idOf(code) >= 0;
+    }
+
+    /**
+     * All supported codes in id order, base currency first
+     */
+    public static List<String> codes() {
+        return CODE_LIST;
+    }
+
+    private static int pack(String code) {
+        if (code.length() != 3) {
+            return -1;
+        }
+        int packed = 0;
+        for (int i = 0; i < 3; i++) {
+            char c = code.charAt(i);
+            if (c < 'A' || c > 'Z') {
+                return -1;
+            }
+            packed = packed * 26 + (c - 'A');
+        }
+        return packed;
+    }
+}
@@ -8,6 +8,8 @@ public class CurrencyPredictionData {
     private String currency;
     private String currentRate;
     private String predictedRate;
+    private String lowerRate;
+    private String upperRate;
     private String changePercentage;
     private String recommendation;
 
@@ -15,11 +17,13 @@ public class CurrencyPredictionData {
     public CurrencyPredictionData() {
     }
 
-    public CurrencyPredictionData(String currency, String currentRate, String predictedRate,
-                                  String changePercentage, String recommendation) {
+    public CurrencyPredictionData(String currency, String currentRate, String predictedRate, String lowerRate,
+                                  String upperRate, String changePercentage, String recommendation) {
         this.currency = currency;
         this.currentRate = currentRate;
         this.predictedRate = predictedRate;
+        this.lowerRate = lowerRate;
+        this.upperRate = upperRate;
         this.changePercentage = changePercentage;
         this.recommendation = recommendation;
     }
@@ -49,6 +53,22 @@ public class CurrencyPredictionData {
         this.predictedRate = predictedRate;
     }
 
+    public String getLowerRate() {
+        return lowerRate;
+    }
+
+    public void setLowerRate(String lowerRate) {
+        this.lowerRate = lowerRate;
+    }
+
+    public String getUpperRate() {
+        return upperRate;
+    }
+
+    public void setUpperRate(String upperRate) {
+        this.upperRate = upperRate;
+    }
+
     public String getChangePercentage() {
         return changePercentage;
     }
@@ -1,11 +1,5 @@
 package org.example.project;
 
-import org.json.JSONObject;
-
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URL;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
@@ -19,10 +13,34 @@ public class CurrencyPredictor {
     private static final String HISTORICAL_API_URL = "https://open.er-api.com/v6/latest/";
 
     // Currencies we'll support predictions for
-    private static final String[] SUPPORTED_CURRENCIES = {"EUR", "GBP", "JPY", "AUD", "RON"};
+    private static final String[] SUPPORTED_CURRENCIES = Currency.codes().stream()
+            .filter(code -> Currency.idOf(code) != Currency.BASE)
+            .toArray(String[]::new);
 
     // Base currency (USD)
-    private static final String BASE_CURRENCY = "USD";
+    private static final String BASE_CURRENCY = Currency.code(Currency.BASE);
+
+    private static final int FORECAST_DAYS = 7;
+
+    // Share of simulated outcomes inside the prediction band
+    public static final double INTERVAL_LEVEL = 0.9;
+    private static final int SIMULATED_PATHS = 20_000;
+
+    /**
+     * Point prediction and prediction interval for one future day
+     */
+    public record PredictionBand(LocalDate date, double predicted, double lower, double upper) {
+    }
+
+    private final RatePathSimulator simulator;
+
+    public CurrencyPredictor() {
+        this(new RatePathSimulator(RatePathSimulator.Method.BOOTSTRAP, SIMULATED_PATHS));
+    }
+
+    public CurrencyPredictor(RatePathSimulator simulator) {
+        this.simulator = simulator;
+    }
 
     /**
      * Get historical exchange rates for the past 30 days
@@ -30,111 +48,176 @@ public class CurrencyPredictor {
      * @return Map of date to exchange rate
      */
     public Map<LocalDate, Double> getHistoricalRates(String currency) throws Exception {
-        Map<LocalDate, Double> historicalRates = new LinkedHashMap<>();
-
-        // Since we can't get 30 days of data from a free API in one call,
-        // we'll simulate historical data by adding small random variations to the current rate
+        try (Metrics.Span span = Metrics.span("forecast.getHistoricalRates")) {
+            Map<LocalDate, Double> historicalRates = new LinkedHashMap<>();
+
+            // Since we can't get 30 days of data from a free API in one call,
+            // we'll simulate historical data by adding small random variations to the current rate
+
+            // First, get the current exchange rate
+            String apiUrl = HISTORICAL_API_URL + BASE_CURRENCY;
+
+            // The parser validates the document and fails if "rates" is missing
+            RateTable rates;
+            try (Metrics.Span httpSpan = Metrics.span("http.open-er-api.latest")) {
+                try {
+                    rates = RateClient.shared().fetchBlocking(apiUrl);
+                } catch (Exception e) {
+                    httpSpan.fail(e);
+                    throw e;
+                }
+            }
 
-        // First, get the current exchange rate
-        String apiUrl = HISTORICAL_API_URL + BASE_CURRENCY;
+            // Check if the currency exists in the response
+            if (!rates.contains(currency)) {
+                throw new Exception("Currency '" + currency + "' not found in API response");
+            }
 
-        URL url = new URL(apiUrl);
-        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-        connection.setRequestMethod("GET");
+            double currentRate = rates.get(currency);
 
-        BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream()));
-        StringBuilder response = new StringBuilder();
-        String line;
+            // Generate synthetic historical data
+            // We'll use a random walk with a slight trend to simulate exchange rate movements
+            Random random = new Random(currency.hashCode()); // Seed with currency name for consistency
+            double rate = currentRate;
 
-        while ((line = reader.readLine()) != null) {
-            response.append(line);
-        }
-        reader.close();
+            // Start with today and work backwards
+            LocalDate today = LocalDate.now();
 
-        JSONObject jsonResponse = new JSONObject(response.toString());
+            // Generate some trend biases to make predictions more interesting
+            // This will make some currencies trend up and others down
+            double trendBias = (random.nextDouble() - 0.5) * 0.001; // Small daily bias
 
-        // Check if the API call was successful
-        if (!jsonResponse.has("rates")) {
-            throw new Exception("API response format unexpected. Response: " + jsonResponse.toString());
-        }
+            for (int i = 0; i < 30; i++) {
+                LocalDate date = today.minusDays(i);
 
-        JSONObject rates = jsonResponse.getJSONObject("rates");
+                // Add the current rate to our historical data
+                historicalRates.put(date, rate);
 
-        // Check if the currency exists in the response
-        if (!rates.has(currency)) {
-            throw new Exception("Currency '" + currency + "' not found in API response");
-        }
+                // Update the rate for the "previous" day with a small random change
+                // We're going backwards in time, so we're actually generating older rates
+                double change = (random.nextDouble() - 0.5) * 0.005 + trendBias; // Random daily fluctuation +/- trend
+                rate = rate * (1 + change);
+            }
 
-        double currentRate = rates.getDouble(currency);
+            // Sort the map by date (oldest first)
+            Map<LocalDate, Double> sortedRates = new LinkedHashMap<>();
+            historicalRates.entrySet().stream()
+                    .sorted(Map.Entry.comparingByKey())
+                    .forEachOrdered(entry -> sortedRates.put(entry.getKey(), entry.getValue()));
 
-        // Generate synthetic historical data
-        // We'll use a random walk with a slight trend to simulate exchange rate movements
-        Random random = new Random(currency.hashCode()); // Seed with currency name for consistency
-        double rate = currentRate;
+            return sortedRates;
+        }
+    }
 
-        // Start with today and work backwards
-        LocalDate today = LocalDate.now();
+    /**
+     * Predict exchange rates for the next 7 days using linear regression
+     * @param currency The currency to predict rates for
+     * @return Map of future date to predicted exchange rate
+     */
+    public Map<LocalDate, Double> predictFutureRates(String currency) throws Exception {
+        try (Metrics.Span span = Metrics.span("forecast.linearRegression")) {
+            // Get historical data
+            Map<LocalDate, Double> historicalRates = getHistoricalRates(currency);
+
+            // Convert to arrays for linear regression
+            double[] x = new double[historicalRates.size()];
+            double[] y = new double[historicalRates.size()];
+
+            int i = 0;
+            for (Map.Entry<LocalDate, Double> entry : historicalRates.entrySet()) {
+                x[i] = i;
+                y[i] = entry.getValue();
+                i++;
+            }
 
-        // Generate some trend biases to make predictions more interesting
-        // This will make some currencies trend up and others down
-        double trendBias = (random.nextDouble() - 0.5) * 0.001; // Small daily bias
+            // Perform simple linear regression
+            SimpleLinearRegression regression = new SimpleLinearRegression(x, y);
+            regression.calculate();
 
-        for (int i = 0; i < 30; i++) {
-            LocalDate date = today.minusDays(i);
+            // Predict rates for the next 7 days
+            Map<LocalDate, Double> predictions = new LinkedHashMap<>();
+            LocalDate lastDate = historicalRates.keySet().stream().max(LocalDate::compareTo).orElse(LocalDate.now());
 
-            // Add the current rate to our historical data
-            historicalRates.put(date, rate);
+            for (int day = 1; day <= FORECAST_DAYS; day++) {
+                LocalDate futureDate = lastDate.plusDays(day);
+                double prediction = regression.predict(x.length - 1 + day);
+                predictions.put(futureDate, prediction);
+            }
 
-            // Update the rate for the "previous" day with a small random change
-            // We're going backwards in time, so we're actually generating older rates
-            double change = (random.nextDouble() - 0.5) * 0.005 + trendBias; // Random daily fluctuation +/- trend
-            rate = rate * (1 + change);
+            return predictions;
         }
-
-        // Sort the map by date (oldest first)
-        Map<LocalDate, Double> sortedRates = new LinkedHashMap<>();
-        historicalRates.entrySet().stream()
-                .sorted(Map.Entry.comparingByKey())
-                .forEachOrdered(entry -> sortedRates.put(entry.getKey(), entry.getValue()));
-
-        return sortedRates;
     }
 
     /**
-     * Predict exchange rates for the next 7 days using linear regression
+     * Predict exchange rates for the next 7 days with a prediction interval around each
      * @param currency The currency to predict rates for
-     * @return Map of future date to predicted exchange rate
+     * @return Bands for the future dates, earliest first
      */
-    public Map<LocalDate, Double> predictFutureRates(String currency) throws Exception {
-        // Get historical data
-        Map<LocalDate, Double> historicalRates = getHistoricalRates(currency);
-
-        // Convert to arrays for linear regression
-        double[] x = new double[historicalRates.size()];
-        double[] y = new double[historicalRates.size()];
+    public List<PredictionBand> predictRateBands(String currency) throws Exception {
+        return predictRateBands(currency, getHistoricalRates(currency));
+    }
 
-        int i = 0;
-        for (Map.Entry<LocalDate, Double> entry : historicalRates.entrySet()) {
-            x[i] = i;
-            y[i] = entry.getValue();
-            i++;
+    /**
+     * Bands from history the caller has already fetched
+     */
+    private List<PredictionBand> predictRateBands(String currency, Map<LocalDate, Double> historicalRates) {
+        try (Metrics.Span span = Metrics.span("forecast.intervals")) {
+            double[] x = new double[historicalRates.size()];
+            double[] y = new double[historicalRates.size()];
+            int i = 0;
+            for (double rate : historicalRates.values()) {
+                x[i] = i;
+                y[i] = rate;
+                i++;
+            }
+            SimpleLinearRegression regression = new SimpleLinearRegression(x, y);
+            regression.calculate();
+
+            // Seeded with the currency like the history, so the bands are stable between calls
+            RatePathSimulator.Intervals intervals = simulator.simulate(y, FORECAST_DAYS, INTERVAL_LEVEL,
+                    currency.hashCode());
+            LocalDate lastDate = historicalRates.keySet().stream().max(LocalDate::compareTo).orElse(LocalDate.now());
+            List<PredictionBand> bands = new ArrayList<>(FORECAST_DAYS);
+            for (int day = 1; day <= FORECAST_DAYS; day++) {
+                bands.add(new PredictionBand(lastDate.plusDays(day), regression.predict(x.length - 1 + day),
+                        intervals.lower()[day - 1], intervals.upper()[day - 1]));
+            }
+            return bands;
         }
+    }
 
-        // Perform simple linear regression
-        SimpleLinearRegression regression = new SimpleLinearRegression(x, y);
-        regression.calculate();
+    /**
+     * Direction a band points, with its short recommendation text
+     */
+    private enum Outlook {
+        STRENGTHEN("USD likely to strengthen"),
+        WEAKEN("USD likely to weaken"),
+        STABLE("Stable");
 
-        // Predict rates for the next 7 days
-        Map<LocalDate, Double> predictions = new LinkedHashMap<>();
-        LocalDate lastDate = historicalRates.keySet().stream().max(LocalDate::compareTo).orElse(LocalDate.now());
+        private final String text;
 
-        for (int day = 1; day <= 7; day++) {
-            LocalDate futureDate = lastDate.plusDays(day);
-            double prediction = regression.predict(x.length - 1 + day);
-            predictions.put(futureDate, prediction);
+        Outlook(String text) {
+            this.text = text;
         }
+    }
+
+    /**
+     * A move is only called when the whole band lies on one side of the current rate
+     */
+    private static Outlook outlook(double currentRate, PredictionBand band) {
+        if (band.lower() > currentRate) {
+            return Outlook.STRENGTHEN;
+        } else if (band.upper() < currentRate) {
+            return Outlook.WEAKEN;
+        }
+        return Outlook.STABLE;
+    }
 
-        return predictions;
+    /**
+     * Short recommendation for a band
+     */
+    public static String recommendation(double currentRate, PredictionBand band) {
+        return outlook(currentRate, band).text;
     }
 
     /**
@@ -171,68 +254,23 @@ public class CurrencyPredictor {
         Map<String, String> recommendations = new HashMap<>();
 
         for (String currency : SUPPORTED_CURRENCIES) {
-            double changePercentage = getPredictedChangePercentage(currency);
-
-            // Create a recommendation message based on the predicted change
-            String recommendation;
-            if (Math.abs(changePercentage) < 0.5) {
-                recommendation = "Stable - No significant change expected";
-            } else if (changePercentage > 0) {
-                recommendation = String.format("USD likely to strengthen against %s (%.2f%% change)",
-                        currency, changePercentage);
-            } else {
-                recommendation = String.format("USD likely to weaken against %s (%.2f%% change)",
-                        currency, Math.abs(changePercentage));
-            }
+            Map<LocalDate, Double> historicalRates = getHistoricalRates(currency);
+            double currentRate = historicalRates.values().stream().reduce((first, second) -> second).orElse(1.0);
+            List<PredictionBand> bands = predictRateBands(currency, historicalRates);
+            PredictionBand band = bands.get(bands.size() - 1);
+            double changePercentage = ((band.predicted() - currentRate) / currentRate) * 100;
+
+            // The short recommendation, followed by the band or the size of the move
+            Outlook outlook = outlook(currentRate, band);
+            String recommendation = outlook == Outlook.STABLE
+                    ? String.format("%s - %.0f%% range %.4f to %.4f includes today's rate",
+                            outlook.text, INTERVAL_LEVEL * 100, band.lower(), band.upper())
+                    : String.format("%s against %s (%.2f%% change)",
+                            outlook.text, currency, Math.abs(changePercentage));
 
             recommendations.put(currency, recommendation);
         }
 
         return recommendations;
     }
-
-    /**
-     * Simple linear regression implementation
-     */
-    private static class SimpleLinearRegression {
-        private final double[] x;
-        private final double[] y;
-        private double a; // intercept
-        private double b; // slope
-
-        public SimpleLinearRegression(double[] x, double[] y) {
-            this.x = x;
-            this.y = y;
-        }
-
-        public void calculate() {
-            int n = x.length;
-
-            // Calculate means
-            double meanX = Arrays.stream(x).average().orElse(0);
-            double meanY = Arrays.stream(y).average().orElse(0);
-
-            // Calculate slope (b)
-            double numerator = 0;
-            double denominator = 0;
-
-            for (int i = 0; i < n; i++) {
-                numerator += (x[i] - meanX) * (y[i] - meanY);
-                denominator += Math.pow(x[i] - meanX, 2);
-            }
-
-            if (denominator != 0) {
-                b = numerator / denominator;
-            } else {
-                b = 0;
-            }
-
-            // Calculate intercept (a)
-            a = meanY - b * meanX;
-        }
-
-        public double predict(double x) {
-            return a + b * x;
-        }
-    }
 }
\ No newline at end of file
@@ -0,0 +1,149 @@
+package org.example.project;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps a ledger's file compact and its planner statistics current. Once no expense has been
+ * written for a while, free pages left by deletes are handed back to the file system a few
+ * hundred at a time with incremental_vacuum, stopping as soon as a write comes in. PRAGMA
+ * optimize runs hourly and a full ANALYZE daily. All work runs on a single background thread.
+ */
+public class DatabaseMaintenance implements ExpenseListener {
+
+    private static final Duration TICK = Duration.ofSeconds(10);
+
+    // Time without writes before the database counts as idle
+    private static final Duration IDLE_AFTER = Duration.ofSeconds(30);
+
+    // 1 MiB per step at the default page size; a step holds the write lock only briefly
+    private static final int PAGES_PER_STEP = 256;
+    private static final int MAX_STEPS_PER_TICK = 16;
+
+    private static final Duration OPTIMIZE_INTERVAL = Duration.ofHours(1);
+    private static final Duration ANALYZE_INTERVAL = Duration.ofDays(1);
+
+    // Repetitions of the probe queries; the fastest run is reported
+    private static final int PROBE_RUNS = 7;
+
+    /**
+     * Storage layout and probe query time before and after a full reclaim
+     */
+    public record Report(DatabaseManager.StorageStats before, DatabaseManager.StorageStats after,
+                         long queryNanosBefore, long queryNanosAfter) {
+    }
+
+    private final DatabaseManager dbManager;
+    private volatile long lastWriteNanos = System.nanoTime();
+
+    // Only touched on the maintenance thread; the first idle tick runs both
+    private long lastOptimizeNanos = System.nanoTime() - OPTIMIZE_INTERVAL.toNanos();
+    private long lastAnalyzeNanos = System.nanoTime() - ANALYZE_INTERVAL.toNanos();
+
+    private ScheduledExecutorService executor;
+
+    public DatabaseMaintenance(DatabaseManager dbManager) {
+        this.dbManager = dbManager;
+    }
+
+    @Override
+    public void expensesAdded(List<ExpenseRecord> expenses) {
+        lastWriteNanos = System.nanoTime();
+    }
+
+    @Override
+    public void expensesDeleted(List<ExpenseRecord> expenses) {
+        lastWriteNanos = System.nanoTime();
+    }
+
+    public synchronized void start() {
+        if (executor != null) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "db-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::runTick, TICK.toMillis(), TICK.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    /**
+     * Release every free page, refresh the statistics and measure the probe queries around it
+     * @param full Rebuild the file with VACUUM, which also defragments, instead of only
+     *             releasing free pages
+     */
+    public Report reclaimNow(boolean full) throws SQLException {
+        DatabaseManager.StorageStats before = dbManager.getStorageStats();
+        long queryNanosBefore = timeProbeQueries();
+        if (full) {
+            dbManager.vacuum();
+        } else {
+            while (dbManager.incrementalVacuum(PAGES_PER_STEP) > 0) {
+                // Keep stepping until the free list is empty
+            }
+        }
+        dbManager.checkpoint();
+        dbManager.analyze();
+        return new Report(before, dbManager.getStorageStats(), queryNanosBefore, timeProbeQueries());
+    }
+
+    private void runTick() {
+        // Never let an exception escape, or the executor would cancel every later run
+        try {
+            long writeSeen = lastWriteNanos;
+            if (System.nanoTime() - writeSeen < IDLE_AFTER.toNanos()) {
+                return;
+            }
+            long released = 0;
+            for (int step = 0; step < MAX_STEPS_PER_TICK && lastWriteNanos == writeSeen; step++) {
+                long stepReleased = dbManager.incrementalVacuum(PAGES_PER_STEP);
+                if (stepReleased == 0) {
+                    break;
+                }
+                released += stepReleased;
+            }
+            if (released > 0) {
+                dbManager.checkpoint();
+            }
+
+            long now = System.nanoTime();
+            if (now - lastAnalyzeNanos >= ANALYZE_INTERVAL.toNanos()) {
+                dbManager.analyze();
+                lastAnalyzeNanos = now;
+                lastOptimizeNanos = now;
+            } else if (now - lastOptimizeNanos >= OPTIMIZE_INTERVAL.toNanos()) {
+                dbManager.optimize();
+                lastOptimizeNanos = now;
+            }
+        } catch (SQLException | RuntimeException e) {
+            Metrics.failure("db.maintenance", e);
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Fastest of a few runs of a full-table aggregate and the all-time report query
+     */
+    private long timeProbeQueries() throws SQLException {
+        long best = Long.MAX_VALUE;
+        for (int run = 0; run < PROBE_RUNS; run++) {
+            long start = System.nanoTime();
+            dbManager.getTotalExpenses();
+            dbManager.getSpendingByCategory("0001-01-01", "9999-12-31");
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+}
@@ -1,27 +1,257 @@
 package org.example.project;
 
+import org.sqlite.SQLiteConnection;
+import org.sqlite.core.DB;
+
+import java.nio.file.Path;
 import java.sql.*;
+import java.time.Duration;
+import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
 /**
  * Consolidated database management class for the expense management application
  */
 public class DatabaseManager {
 
-    private final String dbUrl = "jdbc:sqlite:expenses.db";
+    // Database file used when no ledger is given
+    public static final Path DEFAULT_DATABASE = Path.of("expenses.db");
+
+    // Connections kept open per database file
+    private static final int POOL_SIZE = 4;
+
+    private final String dbUrl;
+    private final ConnectionPool pool;
+
+    // First statement of a migration that has to run outside a transaction, such as VACUUM;
+    // its statements must be safe to repeat if the app stops halfway
+    private static final String NO_TRANSACTION = "-- no transaction";
+
+    /**
+     * Schema migrations applied in order on top of the base tables; the number of applied
+     * migrations is tracked in PRAGMA user_version. Only ever append to this list.
+     */
+    private static final String[][] MIGRATIONS = {
+            // 1: compact currency id next to the ISO code
+            {
+                    "ALTER TABLE expenses ADD COLUMN currency_id INTEGER;",
+                    "UPDATE expenses SET currency_id = " + currencyIdCaseExpression("currency") + ";"
+            },
+            // 2: optional free-text fields for search
+            {
+                    "ALTER TABLE expenses ADD COLUMN payee TEXT;",
+                    "ALTER TABLE expenses ADD COLUMN description TEXT;"
+            },
+            // 3: per-category, per-period budgets
+            {
+                    """
+                    CREATE TABLE IF NOT EXISTS budgets (
+                        id INTEGER PRIMARY KEY AUTOINCREMENT,
+                        category_id INTEGER NOT NULL,
+                        period TEXT NOT NULL,
+                        budget_limit REAL NOT NULL,
+                        alert_threshold REAL NOT NULL DEFAULT 0.8,
+                        UNIQUE (category_id, period),
+                        FOREIGN KEY (category_id) REFERENCES categories (id)
+                    );
+                    """
+            },
+            // 4: recurring expense rules; generated rows point back at their rule, and the unique
+            // index makes generating the same occurrence twice a no-op
+            {
+                    """
+                    CREATE TABLE IF NOT EXISTS recurring_expenses (
+                        id INTEGER PRIMARY KEY AUTOINCREMENT,
+                        category_id INTEGER NOT NULL,
+                        amount REAL NOT NULL,
+                        currency TEXT NOT NULL,
+                        payee TEXT,
+                        description TEXT,
+                        frequency TEXT NOT NULL,
+                        interval_count INTEGER NOT NULL DEFAULT 1,
+                        cron TEXT,
+                        start_date TEXT NOT NULL,
+                        end_date TEXT,
+                        next_date TEXT,
+                        FOREIGN KEY (category_id) REFERENCES categories (id)
+                    );
+                    """,
+                    "CREATE INDEX IF NOT EXISTS idx_recurring_next_date ON recurring_expenses (next_date);",
+                    "ALTER TABLE expenses ADD COLUMN recurrence_id INTEGER;",
+                    """
+                    CREATE UNIQUE INDEX IF NOT EXISTS idx_expenses_recurrence
+                    ON expenses (recurrence_id, transaction_date);
+                    """
+            },
+            // 5: per-category, per-month amount and payee sketches, plus the expense watermark
+            // they were last written at
+            {
+                    """
+                    CREATE TABLE IF NOT EXISTS expense_sketches (
+                        category_id INTEGER NOT NULL,
+                        month TEXT NOT NULL,
+                        expense_count INTEGER NOT NULL,
+                        amount_digest BLOB NOT NULL,
+                        payee_sketch BLOB NOT NULL,
+                        PRIMARY KEY (category_id, month),
+                        FOREIGN KEY (category_id) REFERENCES categories (id)
+                    );
+                    """,
+                    """
+                    CREATE TABLE IF NOT EXISTS expense_sketch_state (
+                        id INTEGER PRIMARY KEY CHECK (id = 1),
+                        expense_count INTEGER NOT NULL,
+                        max_expense_id INTEGER NOT NULL
+                    );
+                    """
+            },
+            // 6: let free pages be handed back to the file system in steps; switching an
+            // existing file over takes one full VACUUM
+            {
+                    NO_TRANSACTION,
+                    "PRAGMA auto_vacuum = INCREMENTAL;",
+                    "VACUUM;"
+            },
+            // 7: daily exchange rate history, units of currency per USD
+            {
+                    """
+                    CREATE TABLE IF NOT EXISTS exchange_rates (
+                        currency_id INTEGER NOT NULL,
+                        rate_date TEXT NOT NULL,
+                        rate REAL NOT NULL,
+                        PRIMARY KEY (currency_id, rate_date)
+                    ) WITHOUT ROWID;
+                    """
+            },
+            // 8: the amount as entered, before conversion to USD; only USD rows can be backfilled
+            {
+                    "ALTER TABLE expenses ADD COLUMN original_amount REAL;",
+                    "UPDATE expenses SET original_amount = amount WHERE currency_id = " + Currency.BASE + ";"
+            },
+            // 9: checksum of the expenses the stored sketches reflect; null until they are next written
+            {
+                    "ALTER TABLE expense_sketch_state ADD COLUMN checksum INTEGER;"
+            }
+    };
+
+    // Most occurrences generated per rule in one pass; later passes continue the catch-up
+    private static final int MAX_OCCURRENCES_PER_RULE = 1000;
+
+    // Values bound per IN (...) list in batch lookups
+    private static final int MAX_IN_PARAMETERS = 500;
+
+    // Times a backup step retries while another connection holds the write lock
+    private static final int BACKUP_BUSY_RETRIES = 1000;
+    private static final int BACKUP_BUSY_SLEEP_MILLIS = 10;
+
+    // Columns read into an ExpenseRecord, for queries joining expenses e with categories c
+    private static final String EXPENSE_RECORD_COLUMNS = """
+            e.id, e.category_id, c.name AS category, e.amount, e.transaction_date, e.expense_date,
+            e.currency, e.payee, e.description, e.original_amount
+            """;
+
+    // Columns read into a RecurringExpense, for queries joining recurring_expenses r with categories c
+    private static final String RECURRING_EXPENSE_COLUMNS = """
+            r.id, r.category_id, c.name AS category, r.amount, r.currency, r.payee, r.description,
+            r.frequency, r.interval_count, r.cron, r.start_date, r.end_date, r.next_date
+            """;
+
+    // Notified after expense rows are committed or removed
+    private final List<ExpenseListener> expenseListeners = new CopyOnWriteArrayList<>();
+
+    // Set once the schema has been created and migrated; until then every connect() waits for it
+    private volatile boolean initialized;
 
     public DatabaseManager() {
-        initializeDatabase();
+        this(DEFAULT_DATABASE);
+    }
+
+    /**
+     * Creating the manager does no I/O; the driver is loaded and the schema created on
+     * first use, or earlier through initialize() on a background thread
+     * @param databaseFile SQLite file, created on first use if missing
+     */
+    public DatabaseManager(Path databaseFile) {
+        this.dbUrl = "jdbc:sqlite:" + databaseFile;
+        this.pool = new ConnectionPool(dbUrl, POOL_SIZE);
+    }
+
+    /**
+     * Load the SQLite driver and create or migrate the schema, if not done yet. After a failure
+     * the manager stays uninitialized, so the next call or connection tries again.
+     */
+    public void initialize() throws SQLException {
+        if (!initialized) {
+            synchronized (this) {
+                if (!initialized) {
+                    initializeDatabase();
+                    initialized = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Close the pooled connections; the manager cannot be used afterwards
+     */
+    public void close() {
+        pool.close();
+    }
+
+    private Connection connect() throws SQLException {
+        initialize();
+        return pool.borrow();
+    }
+
+    private interface TransactionRead<T> {
+        T read(Connection connection) throws SQLException;
+    }
+
+    /**
+     * Run reads in one transaction, so all of them see the snapshot the first one fixes
+     */
+    private <T> T readInTransaction(String spanName, TransactionRead<T> read) throws SQLException {
+        try (Metrics.Span span = Metrics.span(spanName)) {
+            Connection connection = connect();
+            try {
+                connection.setAutoCommit(false);
+                T result = read.read(connection);
+                connection.commit();
+                return result;
+            } catch (SQLException e) {
+                span.fail(e);
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+                connection.close();
+            }
+        }
     }
 
     /**
      * Initialize the database with necessary tables if they don't exist
      */
-    private void initializeDatabase() {
-        try (Connection connection = DriverManager.getConnection(dbUrl);
+    private void initializeDatabase() throws SQLException {
+        try (Metrics.Span span = Metrics.span("db.initializeDatabase");
+             Connection connection = pool.borrow();
              Statement statement = connection.createStatement()) {
 
+            // Write-ahead logging: readers, including a running backup, never block writers
+            statement.execute("PRAGMA journal_mode = WAL;");
+
             // Create categories table
             String createCategoriesTable = """
                     CREATE TABLE IF NOT EXISTS categories (
@@ -45,8 +275,235 @@ public class DatabaseManager {
                     """;
             statement.execute(createExpensesTable);
 
+            applyMigrations(statement);
+
         } catch (SQLException e) {
-            e.printStackTrace();
+            Metrics.failure("db.initializeDatabase", e);
+            throw e;
+        }
+    }
+
+    /**
+     * Apply every migration newer than the database's user_version, one transaction each. Other
+     * processes may open the same file at the same time, so each step takes the write lock
+     * first and checks the version again before applying anything.
+     */
+    private void applyMigrations(Statement statement) throws SQLException {
+        for (int version = userVersion(statement); version < MIGRATIONS.length; version = userVersion(statement)) {
+            String[] migration = MIGRATIONS[version];
+            boolean outsideTransaction = migration[0].equals(NO_TRANSACTION);
+            if (outsideTransaction) {
+                // Safe to repeat if another process has run it meanwhile
+                for (int i = 1; i < migration.length; i++) {
+                    statement.execute(migration[i]);
+                }
+            }
+
+            statement.execute("BEGIN IMMEDIATE;");
+            try {
+                if (userVersion(statement) == version) {
+                    if (!outsideTransaction) {
+                        for (String sql : migration) {
+                            statement.execute(sql);
+                        }
+                    }
+                    statement.execute("PRAGMA user_version = " + (version + 1) + ";");
+                }
+                statement.execute("COMMIT;");
+            } catch (SQLException e) {
+                statement.execute("ROLLBACK;");
+                throw e;
+            }
+        }
+    }
+
+    private static int userVersion(Statement statement) throws SQLException {
+        try (ResultSet resultSet = statement.executeQuery("PRAGMA user_version;")) {
+            return resultSet.next() ? resultSet.getInt(1) : 0;
+        }
+    }
+
+    /**
+     * SQL CASE expression mapping an ISO code column to the Currency registry id
+     */
+    private static String currencyIdCaseExpression(String column) {
+        StringBuilder sql = new StringBuilder("CASE ").append(column);
+        for (int id = 0; id < Currency.count(); id++) {
+            sql.append(" WHEN '").append(Currency.code(id)).append("' THEN ").append(id);
+        }
+        return sql.append(" END").toString();
+    }
+
+    /**
+     * Register a listener for committed expense inserts and deletes
+     */
+    public void addExpenseListener(ExpenseListener listener) {
+        expenseListeners.add(listener);
+    }
+
+    public void removeExpenseListener(ExpenseListener listener) {
+        expenseListeners.remove(listener);
+    }
+
+    private void fireExpensesAdded(List<ExpenseRecord> expenses) {
+        for (ExpenseListener listener : expenseListeners) {
+            try {
+                listener.expensesAdded(expenses);
+            } catch (RuntimeException e) {
+                Metrics.failure("db.expenseListener", e);
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void fireExpensesDeleted(List<ExpenseRecord> expenses) {
+        if (expenses.isEmpty()) {
+            return;
+        }
+        for (ExpenseListener listener : expenseListeners) {
+            try {
+                listener.expensesDeleted(expenses);
+            } catch (RuntimeException e) {
+                Metrics.failure("db.expenseListener", e);
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private static ExpenseRecord readExpenseRecord(ResultSet resultSet) throws SQLException {
+        double originalAmount = resultSet.getDouble("original_amount");
+        Double original = resultSet.wasNull() ? null : originalAmount;
+        return new ExpenseRecord(
+                resultSet.getInt("id"),
+                resultSet.getInt("category_id"),
+                resultSet.getString("category"),
+                resultSet.getDouble("amount"),
+                resultSet.getString("transaction_date"),
+                resultSet.getString("expense_date"),
+                resultSet.getString("currency"),
+                resultSet.getString("payee"),
+                resultSet.getString("description"),
+                original
+        );
+    }
+
+    /**
+     * Stream every expense row to the consumer in id order without holding them all in memory
+     */
+    public void forEachExpense(Consumer<ExpenseRecord> consumer) throws SQLException {
+        forEachExpenseAfter(0, consumer);
+    }
+
+    /**
+     * Stream expenses with an id greater than the given one, in id order
+     */
+    public void forEachExpenseAfter(int afterId, Consumer<ExpenseRecord> consumer) throws SQLException {
+        String query = "SELECT " + EXPENSE_RECORD_COLUMNS + """
+                FROM expenses e
+                JOIN categories c ON e.category_id = c.id
+                WHERE e.id > ?
+                ORDER BY e.id;
+                """;
+
+        try (Metrics.Span span = Metrics.span("db.forEachExpense");
+             Connection connection = connect();
+             PreparedStatement statement = connection.prepareStatement(query)) {
+
+            statement.setInt(1, afterId);
+            statement.setFetchSize(1000);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    consumer.accept(readExpenseRecord(resultSet));
+                }
+            }
+        }
+    }
+
+    /**
+     * One expense row, or null if there is no expense with this id
+     */
+    public ExpenseRecord getExpenseRecord(int expenseId) throws SQLException {
+        List<ExpenseRecord> found = new ArrayList<>(1);
+        forEachExpenseById(List.of(expenseId), found::add);
+        return found.isEmpty() ? null : found.get(0);
+    }
+
+    /**
+     * One page of expenses, newest first, keyed by id so deep pages cost the same as the first
+     * @param categoryName Category to list, or null for every category
+     * @param beforeId Only rows with a smaller id; 0 starts from the newest row
+     */
+    public List<ExpenseRecord> getExpensePage(String categoryName, int beforeId, int limit) throws SQLException {
+        String query = "SELECT " + EXPENSE_RECORD_COLUMNS + """
+                FROM expenses e
+                JOIN categories c ON e.category_id = c.id
+                WHERE e.id < ? AND (? IS NULL OR c.name = ?)
+                ORDER BY e.id DESC
+                LIMIT ?;
+                """;
+
+        List<ExpenseRecord> page = new ArrayList<>(limit);
+        try (Metrics.Span span = Metrics.span("db.getExpensePage");
+             Connection connection = connect();
+             PreparedStatement statement = connection.prepareStatement(query)) {
+
+            statement.setInt(1, beforeId > 0 ? beforeId : Integer.MAX_VALUE);
+            statement.setString(2, categoryName);
+            statement.setString(3, categoryName);
+            statement.setInt(4, limit);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    page.add(readExpenseRecord(resultSet));
+                }
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Stream the expenses with the given ids, a bounded number of ids per query
+     */
+    public void forEachExpenseById(Collection<Integer> ids, Consumer<ExpenseRecord> consumer) throws SQLException {
+        forEachExpenseIn("e.id", new ArrayList<>(ids), "e.id", consumer);
+    }
+
+    /**
+     * Stream the expenses of the given categories, grouped by category and oldest first
+     */
+    public void forEachExpenseInCategories(Collection<String> categoryNames,
+                                           Consumer<ExpenseRecord> consumer) throws SQLException {
+        forEachExpenseIn("c.name", new ArrayList<>(categoryNames), "c.name, e.transaction_date, e.id", consumer);
+    }
+
+    private void forEachExpenseIn(String column, List<?> values, String orderBy,
+                                  Consumer<ExpenseRecord> consumer) throws SQLException {
+        if (values.isEmpty()) {
+            return;
+        }
+        try (Metrics.Span span = Metrics.span("db.forEachExpenseIn");
+             Connection connection = connect()) {
+
+            // Stay well under SQLite's bound-parameter limit
+            for (int from = 0; from < values.size(); from += MAX_IN_PARAMETERS) {
+                List<?> chunk = values.subList(from, Math.min(values.size(), from + MAX_IN_PARAMETERS));
+                String query = "SELECT " + EXPENSE_RECORD_COLUMNS + """
+                        FROM expenses e
+                        JOIN categories c ON e.category_id = c.id
+                        WHERE %s IN (%s)
+                        ORDER BY %s;
+                        """.formatted(column, String.join(", ", Collections.nCopies(chunk.size(), "?")), orderBy);
+                try (PreparedStatement statement = connection.prepareStatement(query)) {
+                    for (int i = 0; i < chunk.size(); i++) {
+                        statement.setObject(i + 1, chunk.get(i));
+                    }
+                    statement.setFetchSize(1000);
+                    try (ResultSet resultSet = statement.executeQuery()) {
+                        while (resultSet.next()) {
+                            consumer.accept(readExpenseRecord(resultSet));
+                        }
+                    }
+                }
+            }
         }
     }
 
@@ -55,7 +512,8 @@ public class DatabaseManager {
      */
     public List<String> getCategories() throws SQLException {
         List<String> categories = new ArrayList<>();
-        try (Connection connection = DriverManager.getConnection(dbUrl);
+        try (Metrics.Span span = Metrics.span("db.getCategories");
+             Connection connection = connect();
              Statement statement = connection.createStatement();
              ResultSet resultSet = statement.executeQuery("SELECT name FROM categories ORDER BY name")) {
 
@@ -66,6 +524,20 @@ public class DatabaseManager {
         return categories;
     }
 
+    /**
+     * Check whether a category exists, reading the table rather than any cached list
+     */
+    public boolean categoryExists(String categoryName) throws SQLException {
+        try (Metrics.Span span = Metrics.span("db.categoryExists");
+             Connection connection = connect();
+             PreparedStatement preparedStatement = connection.prepareStatement("SELECT 1 FROM categories WHERE name = ?")) {
+            preparedStatement.setString(1, categoryName);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                return resultSet.next();
+            }
+        }
+    }
+
     /**
      * Get expenses for a specific category
      */
@@ -79,7 +551,8 @@ public class DatabaseManager {
                 ORDER BY e.id;
                 """;
 
-        try (Connection connection = DriverManager.getConnection(dbUrl);
+        try (Metrics.Span span = Metrics.span("db.getExpensesByCategory");
+             Connection connection = connect();
              PreparedStatement preparedStatement = connection.prepareStatement(query)) {
 
             preparedStatement.setString(1, categoryName);
@@ -112,7 +585,8 @@ public class DatabaseManager {
                 ORDER BY e.id;
                 """;
 
-        try (Connection connection = DriverManager.getConnection(dbUrl);
+        try (Metrics.Span span = Metrics.span("db.getAllExpenses");
+             Connection connection = connect();
              Statement statement = connection.createStatement();
              ResultSet resultSet = statement.executeQuery(query)) {
 
@@ -138,7 +612,8 @@ public class DatabaseManager {
     public void addCategory(String categoryName) throws SQLException {
         String insertCategory = "INSERT INTO categories (name) VALUES (?);";
 
-        try (Connection connection = DriverManager.getConnection(dbUrl);
+        try (Metrics.Span span = Metrics.span("db.addCategory");
+             Connection connection = connect();
              PreparedStatement preparedStatement = connection.prepareStatement(insertCategory)) {
             preparedStatement.setString(1, categoryName);
             preparedStatement.executeUpdate();
@@ -152,9 +627,11 @@ public class DatabaseManager {
      * @return True if successful, false if category has expenses and deleteExpenses is false
      */
     public boolean deleteCategory(String categoryName, boolean deleteExpenses) throws SQLException {
+        Metrics.Span span = Metrics.span("db.deleteCategory");
         Connection connection = null;
+        List<ExpenseRecord> deletedExpenses = new ArrayList<>();
         try {
-            connection = DriverManager.getConnection(dbUrl);
+            connection = connect();
             connection.setAutoCommit(false); // Start transaction
 
             // Check if category has expenses
@@ -174,6 +651,21 @@ public class DatabaseManager {
                     }
                 }
             } else {
+                // Remember the rows so listeners can be told about them after the commit
+                String selectExpensesQuery = "SELECT " + EXPENSE_RECORD_COLUMNS + """
+                    FROM expenses e
+                    JOIN categories c ON e.category_id = c.id
+                    WHERE c.name = ?;
+                    """;
+                try (PreparedStatement selectStatement = connection.prepareStatement(selectExpensesQuery)) {
+                    selectStatement.setString(1, categoryName);
+                    try (ResultSet resultSet = selectStatement.executeQuery()) {
+                        while (resultSet.next()) {
+                            deletedExpenses.add(readExpenseRecord(resultSet));
+                        }
+                    }
+                }
+
                 // Delete all expenses for this category first
                 String deleteExpensesQuery = """
                     DELETE FROM expenses 
@@ -185,6 +677,16 @@ public class DatabaseManager {
                 }
             }
 
+            // Budgets and recurring rules belong to the category and go with it
+            for (String table : List.of("budgets", "recurring_expenses", "expense_sketches")) {
+                String deleteOwnedQuery = "DELETE FROM " + table
+                        + " WHERE category_id = (SELECT id FROM categories WHERE name = ?);";
+                try (PreparedStatement deleteOwnedStmt = connection.prepareStatement(deleteOwnedQuery)) {
+                    deleteOwnedStmt.setString(1, categoryName);
+                    deleteOwnedStmt.executeUpdate();
+                }
+            }
+
             // Now delete the category
             String deleteCategoryQuery = "DELETE FROM categories WHERE name = ?;";
             try (PreparedStatement deleteStatement = connection.prepareStatement(deleteCategoryQuery)) {
@@ -193,6 +695,7 @@ public class DatabaseManager {
 
                 if (rowsAffected > 0) {
                     connection.commit();
+                    fireExpensesDeleted(deletedExpenses);
                     return true;
                 } else {
                     connection.rollback();
@@ -200,10 +703,12 @@ public class DatabaseManager {
                 }
             }
         } catch (SQLException e) {
+            span.fail(e);
             if (connection != null) {
                 try {
                     connection.rollback();
                 } catch (SQLException ex) {
+                    Metrics.failure("db.deleteCategory.rollback", ex);
                     ex.printStackTrace();
                 }
             }
@@ -214,9 +719,11 @@ public class DatabaseManager {
                     connection.setAutoCommit(true);
                     connection.close();
                 } catch (SQLException e) {
+                    Metrics.failure("db.deleteCategory.close", e);
                     e.printStackTrace();
                 }
             }
+            span.close();
         }
     }
 
@@ -224,15 +731,42 @@ public class DatabaseManager {
      * Delete an expense by its ID
      */
     public boolean deleteExpense(int expenseId) throws SQLException {
+        String selectQuery = "SELECT " + EXPENSE_RECORD_COLUMNS + """
+                FROM expenses e
+                JOIN categories c ON e.category_id = c.id
+                WHERE e.id = ?;
+                """;
         String deleteQuery = "DELETE FROM expenses WHERE id = ?;";
 
-        try (Connection connection = DriverManager.getConnection(dbUrl);
+        try (Metrics.Span span = Metrics.span("db.deleteExpense");
+             Connection connection = connect();
+             PreparedStatement selectStatement = connection.prepareStatement(selectQuery);
              PreparedStatement statement = connection.prepareStatement(deleteQuery)) {
 
-            statement.setInt(1, expenseId);
-            int rowsAffected = statement.executeUpdate();
+            connection.setAutoCommit(false); // Read the row and delete it atomically
+            try {
+                ExpenseRecord deleted = null;
+                selectStatement.setInt(1, expenseId);
+                try (ResultSet resultSet = selectStatement.executeQuery()) {
+                    if (resultSet.next()) {
+                        deleted = readExpenseRecord(resultSet);
+                    }
+                }
+
+                statement.setInt(1, expenseId);
+                int rowsAffected = statement.executeUpdate();
+                connection.commit();
 
-            return rowsAffected > 0;
+                if (rowsAffected > 0 && deleted != null) {
+                    fireExpensesDeleted(List.of(deleted));
+                }
+                return rowsAffected > 0;
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
         }
     }
 
@@ -240,90 +774,1456 @@ public class DatabaseManager {
      * Add a new expense to the database, converting to USD if necessary
      */
     public void addExpense(String categoryName, double amount, String transactionDate, String expenseDate, String currency) throws SQLException, Exception {
-        if (!categoryExists(categoryName)) {
-            throw new SQLException("Category does not exist.");
+        try (Metrics.Span span = Metrics.span("db.addExpense")) {
+            addExpenses(List.of(new ExpenseEntry(categoryName, amount, transactionDate, expenseDate, currency)));
         }
+    }
 
-        // Convert the amount to USD using the ApiManager
-        double convertedAmount = amount;
-        if (!currency.equals("USD")) {
-            double conversionRate = ApiManager.getConversionRate(currency, "USD");
-            convertedAmount = amount * conversionRate;
+    /**
+     * Add several expenses in one transaction: categories are validated with a single query,
+     * every amount is converted with the same rate snapshot and the rows go in as one batch
+     * @return Generated expense ids, in the order of the entries
+     */
+    public int[] addExpenses(List<ExpenseEntry> entries) throws SQLException, Exception {
+        if (entries.isEmpty()) {
+            return new int[0];
         }
 
-        String insertExpense = """
-            INSERT INTO expenses (category_id, amount, transaction_date, expense_date, currency)
-            VALUES (
-                (SELECT id FROM categories WHERE name = ?),
-                ?, ?, ?, ?
-            );
-            """;
+        try (Metrics.Span span = Metrics.span("db.addExpenses")) {
+            // Convert every amount to USD up front so no HTTP call happens inside the transaction
+            Conversion conversion = convertToBase(entries);
+            double[] convertedAmounts = conversion.amounts();
 
-        try (Connection connection = DriverManager.getConnection(dbUrl);
-             PreparedStatement preparedStatement = connection.prepareStatement(insertExpense)) {
+            String insertExpense = """
+                INSERT INTO expenses (category_id, amount, transaction_date, expense_date, currency, currency_id,
+                                      payee, description, original_amount)
+                VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?);
+                """;
 
-            preparedStatement.setString(1, categoryName);
-            preparedStatement.setDouble(2, convertedAmount); // Store converted USD amount
-            preparedStatement.setString(3, transactionDate);
-            preparedStatement.setString(4, expenseDate);
-            preparedStatement.setString(5, currency);
-            preparedStatement.executeUpdate();
+            Connection connection = connect();
+            try {
+                connection.setAutoCommit(false); // Start transaction
+
+                Map<String, Integer> categoryIds = findCategoryIds(connection, entries);
+                for (ExpenseEntry entry : entries) {
+                    if (!categoryIds.containsKey(entry.categoryName())) {
+                        throw new SQLException("Category does not exist: " + entry.categoryName());
+                    }
+                }
+
+                try (PreparedStatement preparedStatement = connection.prepareStatement(insertExpense);
+                     Statement statement = connection.createStatement()) {
+                    for (int i = 0; i < entries.size(); i++) {
+                        ExpenseEntry entry = entries.get(i);
+                        preparedStatement.setInt(1, categoryIds.get(entry.categoryName()));
+                        preparedStatement.setDouble(2, convertedAmounts[i]); // Store converted USD amount
+                        preparedStatement.setString(3, entry.transactionDate());
+                        preparedStatement.setString(4, entry.expenseDate());
+                        preparedStatement.setString(5, entry.currency());
+
+                        int currencyId = Currency.idOf(entry.currency());
+                        if (currencyId >= 0) {
+                            preparedStatement.setInt(6, currencyId);
+                        } else {
+                            preparedStatement.setNull(6, Types.INTEGER);
+                        }
+                        preparedStatement.setString(7, blankToNull(entry.payee()));
+                        preparedStatement.setString(8, blankToNull(entry.description()));
+                        preparedStatement.setDouble(9, entry.amount());
+                        preparedStatement.addBatch();
+                    }
+                    preparedStatement.executeBatch();
+                    saveRates(connection, conversion.rates());
+
+                    // We hold the write lock for the whole transaction, so AUTOINCREMENT
+                    // hands out consecutive ids ending at the last inserted row
+                    int lastId;
+                    try (ResultSet resultSet = statement.executeQuery("SELECT last_insert_rowid();")) {
+                        resultSet.next();
+                        lastId = resultSet.getInt(1);
+                    }
+
+                    connection.commit();
+
+                    int[] ids = new int[entries.size()];
+                    List<ExpenseRecord> added = new ArrayList<>(ids.length);
+                    for (int i = 0; i < ids.length; i++) {
+                        ids[i] = lastId - ids.length + 1 + i;
+                        ExpenseEntry entry = entries.get(i);
+                        added.add(new ExpenseRecord(ids[i], categoryIds.get(entry.categoryName()), entry.categoryName(),
+                                convertedAmounts[i], entry.transactionDate(), entry.expenseDate(), entry.currency(),
+                                blankToNull(entry.payee()), blankToNull(entry.description()), entry.amount()));
+                    }
+                    fireExpensesAdded(added);
+                    return ids;
+                }
+            } catch (SQLException e) {
+                span.fail(e);
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+                connection.close();
+            }
         }
     }
 
+    private static RecurringExpense readRecurringExpense(ResultSet resultSet) throws SQLException {
+        String endDate = resultSet.getString("end_date");
+        String nextDate = resultSet.getString("next_date");
+        return new RecurringExpense(
+                resultSet.getInt("id"),
+                resultSet.getInt("category_id"),
+                resultSet.getString("category"),
+                resultSet.getDouble("amount"),
+                resultSet.getString("currency"),
+                resultSet.getString("payee"),
+                resultSet.getString("description"),
+                RecurrenceRule.of(RecurrenceRule.Frequency.valueOf(resultSet.getString("frequency")),
+                        resultSet.getInt("interval_count"), resultSet.getString("cron")),
+                LocalDate.parse(resultSet.getString("start_date")),
+                endDate != null ? LocalDate.parse(endDate) : null,
+                nextDate != null ? LocalDate.parse(nextDate) : null
+        );
+    }
+
+    private static String blankToNull(String text) {
+        return text == null || text.isBlank() ? null : text.trim();
+    }
+
     /**
-     * Check if a category exists in the database
+     * Amounts converted to USD and the rate snapshot used, null if no registry currency needed one
      */
-    private boolean categoryExists(String categoryName) throws SQLException {
-        String query = "SELECT 1 FROM categories WHERE name = ?;";
-        try (Connection connection = DriverManager.getConnection(dbUrl);
-             PreparedStatement preparedStatement = connection.prepareStatement(query)) {
+    private record Conversion(double[] amounts, RateMatrix rates) {
+    }
 
-            preparedStatement.setString(1, categoryName);
-            try (ResultSet resultSet = preparedStatement.executeQuery()) {
-                return resultSet.next();
+    /**
+     * Convert the entries' amounts to USD using one rate snapshot for the whole batch; entries
+     * that already carry their USD amount keep it
+     */
+    private Conversion convertToBase(List<ExpenseEntry> entries) throws Exception {
+        double[] converted = new double[entries.size()];
+        RateMatrix rates = null;
+        Map<String, Double> fallbackRates = new HashMap<>();
+
+        for (int i = 0; i < converted.length; i++) {
+            ExpenseEntry entry = entries.get(i);
+            int currencyId = Currency.idOf(entry.currency());
+            if (entry.amountUsd() != null) {
+                converted[i] = entry.amountUsd();
+            } else if (currencyId == Currency.BASE) {
+                converted[i] = entry.amount();
+            } else if (currencyId >= 0) {
+                if (rates == null) {
+                    rates = ApiManager.getRateMatrix();
+                }
+                converted[i] = rates.convert(entry.amount(), currencyId, Currency.BASE);
+            } else {
+                // Currencies outside the registry are looked up once per batch
+                Double rate = fallbackRates.get(entry.currency());
+                if (rate == null) {
+                    rate = ApiManager.getConversionRate(entry.currency(), Currency.code(Currency.BASE));
+                    fallbackRates.put(entry.currency(), rate);
+                }
+                converted[i] = entry.amount() * rate;
             }
         }
+        return new Conversion(converted, rates);
     }
 
     /**
-     * Get total expense amount by category
+     * Record the snapshot an insert converted with as today's rates, so the rate history grows
+     * with use and reports can later convert at the rate of the expense date
      */
-    public double getTotalExpensesByCategory(String categoryName) throws SQLException {
-        String query = """
-                SELECT SUM(amount) as total
-                FROM expenses e
-                JOIN categories c ON e.category_id = c.id
-                WHERE c.name = ?;
-                """;
+    private static void saveRates(Connection connection, RateMatrix rates) throws SQLException {
+        if (rates == null) {
+            return;
+        }
+        String insertRate = "INSERT OR REPLACE INTO exchange_rates (currency_id, rate_date, rate) VALUES (?, ?, ?);";
+        String today = LocalDate.now().toString();
+        try (PreparedStatement preparedStatement = connection.prepareStatement(insertRate)) {
+            for (int id = 0; id < Currency.count(); id++) {
+                if (id == Currency.BASE) {
+                    continue;
+                }
+                preparedStatement.setInt(1, id);
+                preparedStatement.setString(2, today);
+                preparedStatement.setDouble(3, rates.rate(Currency.BASE, id));
+                preparedStatement.addBatch();
+            }
+            preparedStatement.executeBatch();
+        }
+    }
 
-        try (Connection connection = DriverManager.getConnection(dbUrl);
-             PreparedStatement preparedStatement = connection.prepareStatement(query)) {
+    /**
+     * Look up the ids of all categories named by the entries with one IN query per chunk
+     */
+    private Map<String, Integer> findCategoryIds(Connection connection, List<ExpenseEntry> entries) throws SQLException {
+        List<String> names = new ArrayList<>(new LinkedHashSet<>(entries.stream().map(ExpenseEntry::categoryName).toList()));
+        Map<String, Integer> categoryIds = new HashMap<>();
 
-            preparedStatement.setString(1, categoryName);
-            try (ResultSet resultSet = preparedStatement.executeQuery()) {
-                if (resultSet.next()) {
-                    return resultSet.getDouble("total");
+        // Stay well below SQLite's bound-parameter limit
+        int chunkSize = 500;
+        for (int from = 0; from < names.size(); from += chunkSize) {
+            List<String> chunk = names.subList(from, Math.min(names.size(), from + chunkSize));
+            String query = "SELECT id, name FROM categories WHERE name IN ("
+                    + String.join(", ", Collections.nCopies(chunk.size(), "?")) + ");";
+
+            try (PreparedStatement preparedStatement = connection.prepareStatement(query)) {
+                for (int i = 0; i < chunk.size(); i++) {
+                    preparedStatement.setString(i + 1, chunk.get(i));
+                }
+                try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                    while (resultSet.next()) {
+                        categoryIds.put(resultSet.getString("name"), resultSet.getInt("id"));
+                    }
                 }
-                return 0.0;
             }
         }
+        return categoryIds;
     }
 
     /**
-     * Get total expenses
+     * Number of expense rows and the highest expense id, used to check snapshots against the table
      */
-    public double getTotalExpenses() throws SQLException {
-        String query = "SELECT SUM(amount) as total FROM expenses;";
+    public record ExpenseStats(long count, int maxId) {
+    }
 
-        try (Connection connection = DriverManager.getConnection(dbUrl);
-             Statement statement = connection.createStatement();
-             ResultSet resultSet = statement.executeQuery(query)) {
+    public ExpenseStats getExpenseStats() throws SQLException {
+        try (Metrics.Span span = Metrics.span("db.getExpenseStats");
+             Connection connection = connect()) {
+            return getExpenseStats(connection);
+        }
+    }
 
-            if (resultSet.next()) {
-                return resultSet.getDouble("total");
-            }
-            return 0.0;
+    private static ExpenseStats getExpenseStats(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT COUNT(*), COALESCE(MAX(id), 0) FROM expenses;")) {
+            resultSet.next();
+            return new ExpenseStats(resultSet.getLong(1), resultSet.getInt(2));
+        }
+    }
+
+    /**
+     * Order-independent checksum of (id, amount) over the expenses with an id up to throughId:
+     * the sum of {@link #expenseChecksumTerm} per row, which callers keep current by adding the
+     * term of each inserted row and subtracting that of each deleted one
+     */
+    public long getExpenseChecksum(int throughId) throws SQLException {
+        // Terms are below 2^31, so the sum cannot overflow SQLite's 64-bit SUM
+        String query = """
+                SELECT COALESCE(SUM((id * 1000003 + CAST(ROUND(amount * 100) AS INTEGER)) % 2147483647), 0)
+                FROM expenses
+                WHERE id <= ?;
+                """;
+
+        try (Metrics.Span span = Metrics.span("db.getExpenseChecksum");
+             Connection connection = connect();
+             PreparedStatement statement = connection.prepareStatement(query)) {
+
+            statement.setInt(1, throughId);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                resultSet.next();
+                return resultSet.getLong(1);
+            }
+        }
+    }
+
+    /**
+     * One row's share of {@link #getExpenseChecksum}, computed exactly as the query does
+     */
+    public static long expenseChecksumTerm(int id, double amount) {
+        // SQLite's ROUND adds 0.5 away from zero and truncates, and so does CAST
+        double cents = amount * 100;
+        long rounded = (long) (cents + (cents < 0 ? -0.5 : 0.5));
+        return (id * 1000003L + rounded) % 2147483647;
+    }
+
+    /**
+     * Serialized sketches for one category and month ("yyyy-MM")
+     */
+    public record SketchRow(int categoryId, String categoryName, String month, long expenseCount,
+                            byte[] amountDigest, byte[] payeeSketch) {
+    }
+
+    public void forEachSketch(Consumer<SketchRow> consumer) throws SQLException {
+        String query = """
+                SELECT s.category_id, c.name AS category, s.month, s.expense_count, s.amount_digest, s.payee_sketch
+                FROM expense_sketches s
+                JOIN categories c ON s.category_id = c.id;
+                """;
+
+        try (Metrics.Span span = Metrics.span("db.forEachSketch");
+             Connection connection = connect();
+             Statement statement = connection.createStatement()) {
+
+            statement.setFetchSize(1000);
+            try (ResultSet resultSet = statement.executeQuery(query)) {
+                while (resultSet.next()) {
+                    consumer.accept(new SketchRow(resultSet.getInt("category_id"), resultSet.getString("category"),
+                            resultSet.getString("month"), resultSet.getLong("expense_count"),
+                            resultSet.getBytes("amount_digest"), resultSet.getBytes("payee_sketch")));
+                }
+            }
+        }
+    }
+
+    /**
+     * Expenses the stored sketches reflect: their number, highest id and
+     * {@link #getExpenseChecksum} through that id
+     */
+    public record SketchState(long count, int maxId, long checksum) {
+    }
+
+    /**
+     * Watermark of the stored sketches, or null if they were never written with a checksum
+     */
+    public SketchState getSketchState() throws SQLException {
+        try (Metrics.Span span = Metrics.span("db.getSketchState");
+             Connection connection = connect();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(
+                     "SELECT expense_count, max_expense_id, checksum FROM expense_sketch_state WHERE id = 1;")) {
+
+            if (!resultSet.next()) {
+                return null;
+            }
+            SketchState state = new SketchState(resultSet.getLong(1), resultSet.getInt(2), resultSet.getLong(3));
+            return resultSet.wasNull() ? null : state;
+        }
+    }
+
+    /**
+     * Write changed sketches and the watermark they reflect in one transaction
+     * @param replaceAll True to drop every stored sketch first, after a full rebuild
+     */
+    public void saveSketches(List<SketchRow> rows, SketchState state, boolean replaceAll) throws SQLException {
+        String upsertSketch = """
+                INSERT INTO expense_sketches (category_id, month, expense_count, amount_digest, payee_sketch)
+                VALUES (?, ?, ?, ?, ?)
+                ON CONFLICT (category_id, month) DO UPDATE SET
+                    expense_count = excluded.expense_count,
+                    amount_digest = excluded.amount_digest,
+                    payee_sketch = excluded.payee_sketch;
+                """;
+        String deleteSketch = "DELETE FROM expense_sketches WHERE category_id = ? AND month = ?;";
+        String upsertState = """
+                INSERT INTO expense_sketch_state (id, expense_count, max_expense_id, checksum) VALUES (1, ?, ?, ?)
+                ON CONFLICT (id) DO UPDATE SET
+                    expense_count = excluded.expense_count,
+                    max_expense_id = excluded.max_expense_id,
+                    checksum = excluded.checksum;
+                """;
+
+        try (Metrics.Span span = Metrics.span("db.saveSketches")) {
+            Connection connection = connect();
+            try {
+                connection.setAutoCommit(false); // Start transaction
+
+                try (PreparedStatement upsertStatement = connection.prepareStatement(upsertSketch);
+                     PreparedStatement deleteStatement = connection.prepareStatement(deleteSketch);
+                     PreparedStatement stateStatement = connection.prepareStatement(upsertState);
+                     Statement statement = connection.createStatement()) {
+
+                    if (replaceAll) {
+                        statement.executeUpdate("DELETE FROM expense_sketches;");
+                    }
+                    for (SketchRow row : rows) {
+                        if (row.expenseCount() == 0) {
+                            deleteStatement.setInt(1, row.categoryId());
+                            deleteStatement.setString(2, row.month());
+                            deleteStatement.addBatch();
+                        } else {
+                            upsertStatement.setInt(1, row.categoryId());
+                            upsertStatement.setString(2, row.month());
+                            upsertStatement.setLong(3, row.expenseCount());
+                            upsertStatement.setBytes(4, row.amountDigest());
+                            upsertStatement.setBytes(5, row.payeeSketch());
+                            upsertStatement.addBatch();
+                        }
+                    }
+                    upsertStatement.executeBatch();
+                    deleteStatement.executeBatch();
+
+                    stateStatement.setLong(1, state.count());
+                    stateStatement.setInt(2, state.maxId());
+                    stateStatement.setLong(3, state.checksum());
+                    stateStatement.executeUpdate();
+                }
+                connection.commit();
+            } catch (SQLException e) {
+                span.fail(e);
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+                connection.close();
+            }
+        }
+    }
+
+    /**
+     * Stream one category's expenses with a transaction date in [fromDate, toDate)
+     */
+    public void forEachExpenseBetween(int categoryId, String fromDate, String toDate,
+                                      Consumer<ExpenseRecord> consumer) throws SQLException {
+        String query = "SELECT " + EXPENSE_RECORD_COLUMNS + """
+                FROM expenses e
+                JOIN categories c ON e.category_id = c.id
+                WHERE e.category_id = ? AND e.transaction_date >= ? AND e.transaction_date < ?;
+                """;
+
+        try (Metrics.Span span = Metrics.span("db.forEachExpenseBetween");
+             Connection connection = connect();
+             PreparedStatement statement = connection.prepareStatement(query)) {
+
+            statement.setInt(1, categoryId);
+            statement.setString(2, fromDate);
+            statement.setString(3, toDate);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    consumer.accept(readExpenseRecord(resultSet));
+                }
+            }
+        }
+    }
+
+    /**
+     * USD total of one category's expenses on one transaction date
+     */
+    public record DailyTotal(String categoryName, String transactionDate, double total) {
+    }
+
+    /**
+     * Stream per-category, per-day totals, aggregated by the database so only one row
+     * per category and day crosses into Java. The totals are read in one transaction with the
+     * highest expense id, which is returned: they hold exactly the expenses up to it.
+     */
+    public int readDailyTotals(Consumer<DailyTotal> consumer) throws SQLException {
+        // CROSS JOIN keeps expenses as the single outer scan; with ANALYZE statistics the planner
+        // would otherwise loop over categories and rescan expenses once per category
+        String query = """
+                SELECT c.name AS category, e.transaction_date, SUM(e.amount) AS total
+                FROM expenses e
+                CROSS JOIN categories c ON e.category_id = c.id
+                GROUP BY e.category_id, e.transaction_date;
+                """;
+
+        return readInTransaction("db.readDailyTotals", connection -> {
+            int maxId = getExpenseStats(connection).maxId();
+            try (Statement statement = connection.createStatement()) {
+                statement.setFetchSize(1000);
+                try (ResultSet resultSet = statement.executeQuery(query)) {
+                    while (resultSet.next()) {
+                        consumer.accept(new DailyTotal(resultSet.getString("category"),
+                                resultSet.getString("transaction_date"), resultSet.getDouble("total")));
+                    }
+                }
+            }
+            return maxId;
+        });
+    }
+
+    /**
+     * Add a recurring expense rule; its first occurrence is generated on the next scheduler pass
+     * @return The id of the new rule
+     */
+    public int addRecurringExpense(String categoryName, double amount, String currency, String payee,
+                                   String description, RecurrenceRule rule, LocalDate startDate,
+                                   LocalDate endDate) throws SQLException {
+        LocalDate nextDate = rule.firstOccurrence(startDate);
+        if (nextDate != null && endDate != null && nextDate.isAfter(endDate)) {
+            nextDate = null;
+        }
+
+        String insertRule = """
+                INSERT INTO recurring_expenses (category_id, amount, currency, payee, description, frequency,
+                                                interval_count, cron, start_date, end_date, next_date)
+                SELECT id, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?
+                FROM categories WHERE name = ?;
+                """;
+
+        try (Metrics.Span span = Metrics.span("db.addRecurringExpense");
+             Connection connection = connect();
+             PreparedStatement preparedStatement = connection.prepareStatement(insertRule);
+             Statement statement = connection.createStatement()) {
+
+            preparedStatement.setDouble(1, amount);
+            preparedStatement.setString(2, currency);
+            preparedStatement.setString(3, blankToNull(payee));
+            preparedStatement.setString(4, blankToNull(description));
+            preparedStatement.setString(5, rule.getFrequency().name());
+            preparedStatement.setInt(6, rule.getInterval());
+            preparedStatement.setString(7, rule.getCronExpression());
+            preparedStatement.setString(8, startDate.toString());
+            preparedStatement.setString(9, endDate != null ? endDate.toString() : null);
+            preparedStatement.setString(10, nextDate != null ? nextDate.toString() : null);
+            preparedStatement.setString(11, categoryName);
+
+            if (preparedStatement.executeUpdate() == 0) {
+                throw new SQLException("Category does not exist: " + categoryName);
+            }
+            try (ResultSet resultSet = statement.executeQuery("SELECT last_insert_rowid();")) {
+                resultSet.next();
+                return resultSet.getInt(1);
+            }
+        }
+    }
+
+    /**
+     * Get all recurring expense rules, ordered by id
+     */
+    public List<RecurringExpense> getRecurringExpenses() throws SQLException {
+        List<RecurringExpense> rules = new ArrayList<>();
+        String query = "SELECT " + RECURRING_EXPENSE_COLUMNS + """
+                FROM recurring_expenses r
+                JOIN categories c ON r.category_id = c.id
+                ORDER BY r.id;
+                """;
+
+        try (Metrics.Span span = Metrics.span("db.getRecurringExpenses");
+             Connection connection = connect();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(query)) {
+
+            while (resultSet.next()) {
+                rules.add(readRecurringExpense(resultSet));
+            }
+        }
+        return rules;
+    }
+
+    /**
+     * Delete a recurring expense rule; expenses it already generated are kept
+     */
+    public boolean deleteRecurringExpense(int ruleId) throws SQLException {
+        try (Metrics.Span span = Metrics.span("db.deleteRecurringExpense");
+             Connection connection = connect();
+             PreparedStatement preparedStatement = connection.prepareStatement(
+                     "DELETE FROM recurring_expenses WHERE id = ?;")) {
+
+            preparedStatement.setInt(1, ruleId);
+            return preparedStatement.executeUpdate() > 0;
+        }
+    }
+
+    /**
+     * Generate every occurrence of every rule that is due on or before the given day, including
+     * catch-up for days the application was not running. Each pass reads the due rules with one
+     * indexed query and writes all their occurrences in one transaction. Occurrences that already
+     * exist are skipped by the unique (recurrence_id, transaction_date) index, so running this
+     * twice, or from two places at once, never duplicates an expense.
+     * @return The number of expenses inserted
+     */
+    public int generateRecurringExpenses(LocalDate today) throws SQLException, Exception {
+        try (Metrics.Span span = Metrics.span("db.generateRecurringExpenses")) {
+            int inserted = 0;
+            boolean more = true;
+            // Rules capped at MAX_OCCURRENCES_PER_RULE are still due and get another pass
+            while (more) {
+                List<RecurringExpense> dueRules = getDueRecurringExpenses(today);
+                if (dueRules.isEmpty()) {
+                    break;
+                }
+
+                List<ExpenseEntry> entries = new ArrayList<>();
+                List<Integer> entryRuleIds = new ArrayList<>();
+                LocalDate[] nextDates = new LocalDate[dueRules.size()];
+                more = false;
+
+                for (int r = 0; r < dueRules.size(); r++) {
+                    RecurringExpense rule = dueRules.get(r);
+                    LocalDate date = rule.nextDate();
+                    int count = 0;
+                    while (date != null && !date.isAfter(today)
+                            && (rule.endDate() == null || !date.isAfter(rule.endDate()))
+                            && count < MAX_OCCURRENCES_PER_RULE) {
+                        String day = date.toString();
+                        entries.add(new ExpenseEntry(rule.categoryName(), rule.amount(), day, day, rule.currency(),
+                                rule.payee(), rule.description()));
+                        entryRuleIds.add(rule.id());
+                        date = rule.rule().nextOccurrence(rule.startDate(), date);
+                        count++;
+                    }
+                    if (date != null && rule.endDate() != null && date.isAfter(rule.endDate())) {
+                        date = null; // Series finished
+                    }
+                    nextDates[r] = date;
+                    more |= date != null && !date.isAfter(today);
+                }
+
+                inserted += insertRecurringOccurrences(dueRules, nextDates, entries, entryRuleIds);
+            }
+            Metrics.add("recurring.generated", inserted);
+            return inserted;
+        }
+    }
+
+    private List<RecurringExpense> getDueRecurringExpenses(LocalDate today) throws SQLException {
+        List<RecurringExpense> rules = new ArrayList<>();
+        String query = "SELECT " + RECURRING_EXPENSE_COLUMNS + """
+                FROM recurring_expenses r
+                JOIN categories c ON r.category_id = c.id
+                WHERE r.next_date IS NOT NULL AND r.next_date <= ?;
+                """;
+
+        try (Connection connection = connect();
+             PreparedStatement preparedStatement = connection.prepareStatement(query)) {
+
+            preparedStatement.setString(1, today.toString());
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                while (resultSet.next()) {
+                    rules.add(readRecurringExpense(resultSet));
+                }
+            }
+        }
+        return rules;
+    }
+
+    /**
+     * Insert generated occurrences and advance each rule's next date in one transaction
+     */
+    private int insertRecurringOccurrences(List<RecurringExpense> rules, LocalDate[] nextDates,
+                                           List<ExpenseEntry> entries, List<Integer> entryRuleIds)
+            throws SQLException, Exception {
+        // Convert every amount to USD up front so no HTTP call happens inside the transaction
+        Conversion conversion = convertToBase(entries);
+        double[] convertedAmounts = conversion.amounts();
+
+        String insertExpense = """
+                INSERT OR IGNORE INTO expenses (category_id, amount, transaction_date, expense_date, currency,
+                                                currency_id, payee, description, recurrence_id, original_amount)
+                VALUES ((SELECT category_id FROM recurring_expenses WHERE id = ?), ?, ?, ?, ?, ?, ?, ?, ?, ?);
+                """;
+        // Only advance from the date we read, in case another pass got there first
+        String advanceRule = "UPDATE recurring_expenses SET next_date = ? WHERE id = ? AND next_date = ?;";
+
+        Connection connection = connect();
+        try {
+            connection.setAutoCommit(false); // Start transaction
+
+            int[] results;
+            int lastId;
+            try (PreparedStatement insertStatement = connection.prepareStatement(insertExpense);
+                 PreparedStatement advanceStatement = connection.prepareStatement(advanceRule);
+                 Statement statement = connection.createStatement()) {
+
+                for (int i = 0; i < entries.size(); i++) {
+                    ExpenseEntry entry = entries.get(i);
+                    int ruleId = entryRuleIds.get(i);
+                    insertStatement.setInt(1, ruleId);
+                    insertStatement.setDouble(2, convertedAmounts[i]);
+                    insertStatement.setString(3, entry.transactionDate());
+                    insertStatement.setString(4, entry.expenseDate());
+                    insertStatement.setString(5, entry.currency());
+                    int currencyId = Currency.idOf(entry.currency());
+                    if (currencyId >= 0) {
+                        insertStatement.setInt(6, currencyId);
+                    } else {
+                        insertStatement.setNull(6, Types.INTEGER);
+                    }
+                    insertStatement.setString(7, entry.payee());
+                    insertStatement.setString(8, entry.description());
+                    insertStatement.setInt(9, ruleId);
+                    insertStatement.setDouble(10, entry.amount());
+                    insertStatement.addBatch();
+                }
+                results = entries.isEmpty() ? new int[0] : insertStatement.executeBatch();
+                saveRates(connection, conversion.rates());
+
+                try (ResultSet resultSet = statement.executeQuery("SELECT last_insert_rowid();")) {
+                    resultSet.next();
+                    lastId = resultSet.getInt(1);
+                }
+
+                for (int r = 0; r < rules.size(); r++) {
+                    advanceStatement.setString(1, nextDates[r] != null ? nextDates[r].toString() : null);
+                    advanceStatement.setInt(2, rules.get(r).id());
+                    advanceStatement.setString(3, rules.get(r).nextDate().toString());
+                    advanceStatement.addBatch();
+                }
+                advanceStatement.executeBatch();
+            }
+
+            connection.commit();
+
+            // Ignored rows do not consume ids, so the inserted ones are consecutive up to lastId
+            int insertedCount = 0;
+            for (int result : results) {
+                if (result > 0) {
+                    insertedCount++;
+                }
+            }
+            Map<Integer, RecurringExpense> rulesById = new HashMap<>();
+            for (RecurringExpense rule : rules) {
+                rulesById.put(rule.id(), rule);
+            }
+            List<ExpenseRecord> added = new ArrayList<>(insertedCount);
+            int nextId = lastId - insertedCount + 1;
+            for (int i = 0; i < results.length; i++) {
+                if (results[i] > 0) {
+                    ExpenseEntry entry = entries.get(i);
+                    added.add(new ExpenseRecord(nextId++, rulesById.get(entryRuleIds.get(i)).categoryId(),
+                            entry.categoryName(), convertedAmounts[i], entry.transactionDate(), entry.expenseDate(),
+                            entry.currency(), entry.payee(), entry.description(), entry.amount()));
+                }
+            }
+            if (!added.isEmpty()) {
+                fireExpensesAdded(added);
+            }
+            return insertedCount;
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(true);
+            connection.close();
+        }
+    }
+
+    /**
+     * Create or replace the budget for a category and period
+     */
+    public void saveBudget(String categoryName, Model.BudgetPeriod period, double limit, double alertThreshold) throws SQLException {
+        String upsertBudget = """
+                INSERT INTO budgets (category_id, period, budget_limit, alert_threshold)
+                VALUES ((SELECT id FROM categories WHERE name = ?), ?, ?, ?)
+                ON CONFLICT (category_id, period)
+                DO UPDATE SET budget_limit = excluded.budget_limit, alert_threshold = excluded.alert_threshold;
+                """;
+
+        try (Metrics.Span span = Metrics.span("db.saveBudget");
+             Connection connection = connect();
+             PreparedStatement preparedStatement = connection.prepareStatement(upsertBudget)) {
+
+            preparedStatement.setString(1, categoryName);
+            preparedStatement.setString(2, period.name());
+            preparedStatement.setDouble(3, limit);
+            preparedStatement.setDouble(4, alertThreshold);
+            preparedStatement.executeUpdate();
+        }
+    }
+
+    /**
+     * Delete the budget for a category and period
+     */
+    public boolean deleteBudget(String categoryName, Model.BudgetPeriod period) throws SQLException {
+        String deleteQuery = """
+                DELETE FROM budgets
+                WHERE category_id = (SELECT id FROM categories WHERE name = ?) AND period = ?;
+                """;
+
+        try (Metrics.Span span = Metrics.span("db.deleteBudget");
+             Connection connection = connect();
+             PreparedStatement preparedStatement = connection.prepareStatement(deleteQuery)) {
+
+            preparedStatement.setString(1, categoryName);
+            preparedStatement.setString(2, period.name());
+            return preparedStatement.executeUpdate() > 0;
+        }
+    }
+
+    /**
+     * Get all budgets, ordered by category name
+     */
+    public List<Model.Budget> getBudgets() throws SQLException {
+        List<Model.Budget> budgets = new ArrayList<>();
+        String query = """
+                SELECT c.name AS category, b.period, b.budget_limit, b.alert_threshold
+                FROM budgets b
+                JOIN categories c ON b.category_id = c.id
+                ORDER BY c.name, b.period;
+                """;
+
+        try (Metrics.Span span = Metrics.span("db.getBudgets");
+             Connection connection = connect();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(query)) {
+
+            while (resultSet.next()) {
+                budgets.add(new Model.Budget(
+                        new Model.Category(resultSet.getString("category")),
+                        Model.BudgetPeriod.valueOf(resultSet.getString("period")),
+                        resultSet.getDouble("budget_limit"),
+                        resultSet.getDouble("alert_threshold")
+                ));
+            }
+        }
+        return budgets;
+    }
+
+    /**
+     * Get USD spending per category for transaction dates in [from, to)
+     */
+    public Map<String, Double> getSpendingByCategory(String fromDate, String toDate) throws SQLException {
+        try (Metrics.Span span = Metrics.span("db.getSpendingByCategory");
+             Connection connection = connect()) {
+            return getSpendingByCategory(connection, fromDate, toDate);
+        }
+    }
+
+    /**
+     * Transaction dates in [fromDate, toDate)
+     */
+    public record DateRange(String fromDate, String toDate) {
+    }
+
+    /**
+     * USD spending per category for each date range, in order, and the highest expense id
+     */
+    public record RangeSpending(int maxId, List<Map<String, Double>> spending) {
+    }
+
+    /**
+     * Spending per category for several date ranges, read in one transaction with the highest
+     * expense id, so the sums hold exactly the expenses up to that id
+     */
+    public RangeSpending readSpendingByCategory(List<DateRange> ranges) throws SQLException {
+        return readInTransaction("db.readSpendingByCategory", connection -> {
+            int maxId = getExpenseStats(connection).maxId();
+            List<Map<String, Double>> spending = new ArrayList<>(ranges.size());
+            for (DateRange range : ranges) {
+                spending.add(getSpendingByCategory(connection, range.fromDate(), range.toDate()));
+            }
+            return new RangeSpending(maxId, spending);
+        });
+    }
+
+    private static Map<String, Double> getSpendingByCategory(Connection connection, String fromDate, String toDate)
+            throws SQLException {
+        Map<String, Double> spending = new HashMap<>();
+        // Outer scan of expenses, as in readDailyTotals
+        String query = """
+                SELECT c.name AS category, SUM(e.amount) AS total
+                FROM expenses e
+                CROSS JOIN categories c ON e.category_id = c.id
+                WHERE e.transaction_date >= ? AND e.transaction_date < ?
+                GROUP BY c.name;
+                """;
+
+        try (PreparedStatement preparedStatement = connection.prepareStatement(query)) {
+            preparedStatement.setString(1, fromDate);
+            preparedStatement.setString(2, toDate);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                while (resultSet.next()) {
+                    spending.put(resultSet.getString("category"), resultSet.getDouble("total"));
+                }
+            }
+        }
+        return spending;
+    }
+
+    /**
+     * Number of expenses and USD total of one category in a period
+     */
+    public record CategoryTotal(String categoryName, long count, double total) {
+    }
+
+    /**
+     * A statement's data for transaction dates in [from, to): the count and USD total per
+     * category, sorted by category, then every expense grouped the same way and oldest first
+     * within a category. Both are read in one transaction, so the items add up to the totals
+     * even while expenses are being added or deleted.
+     */
+    public void readPeriod(String fromDate, String toDate, Consumer<List<CategoryTotal>> totalsConsumer,
+                           Consumer<ExpenseRecord> expenseConsumer) throws SQLException {
+        try (Metrics.Span span = Metrics.span("db.readPeriod")) {
+            Connection connection = connect();
+            try {
+                // The first read fixes the snapshot the rest of the transaction sees
+                connection.setAutoCommit(false);
+                totalsConsumer.accept(getCategoryTotals(connection, fromDate, toDate));
+                forEachExpenseInPeriod(connection, fromDate, toDate, expenseConsumer);
+                connection.commit();
+            } catch (SQLException e) {
+                span.fail(e);
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+                connection.close();
+            }
+        }
+    }
+
+    private static List<CategoryTotal> getCategoryTotals(Connection connection, String fromDate, String toDate)
+            throws SQLException {
+        List<CategoryTotal> totals = new ArrayList<>();
+        String query = """
+                SELECT c.name AS category, COUNT(*) AS expense_count, SUM(e.amount) AS total
+                FROM expenses e
+                CROSS JOIN categories c ON e.category_id = c.id
+                WHERE e.transaction_date >= ? AND e.transaction_date < ?
+                GROUP BY c.name
+                ORDER BY c.name;
+                """;
+
+        try (PreparedStatement preparedStatement = connection.prepareStatement(query)) {
+            preparedStatement.setString(1, fromDate);
+            preparedStatement.setString(2, toDate);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                while (resultSet.next()) {
+                    totals.add(new CategoryTotal(resultSet.getString("category"),
+                            resultSet.getLong("expense_count"), resultSet.getDouble("total")));
+                }
+            }
+        }
+        return totals;
+    }
+
+    private static void forEachExpenseInPeriod(Connection connection, String fromDate, String toDate,
+                                               Consumer<ExpenseRecord> consumer) throws SQLException {
+        String query = "SELECT " + EXPENSE_RECORD_COLUMNS + """
+                FROM expenses e
+                JOIN categories c ON e.category_id = c.id
+                WHERE e.transaction_date >= ? AND e.transaction_date < ?
+                ORDER BY c.name, e.transaction_date, e.id;
+                """;
+
+        try (PreparedStatement statement = connection.prepareStatement(query)) {
+            statement.setString(1, fromDate);
+            statement.setString(2, toDate);
+            statement.setFetchSize(1000);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    consumer.accept(readExpenseRecord(resultSet));
+                }
+            }
+        }
+    }
+
+    /**
+     * Spending of a period summed per category, source currency and expense date, column by
+     * column, for converting a whole report at once. The source is the amount as entered, or the
+     * stored USD amount for rows without one or in a currency outside the registry.
+     * @param categoryIndexes Index into categoryNames per group
+     * @param currencyIds Registry id of the source currency
+     * @param expenseDays Epoch day of the expense date, Integer.MIN_VALUE if it is not a valid date
+     * @param sourceAmounts Sum of the source amounts
+     * @param usdAmounts Sum of the stored USD amounts
+     */
+    public record AmountColumns(List<String> categoryNames, int[] categoryIndexes, int[] currencyIds,
+                                int[] expenseDays, double[] sourceAmounts, double[] usdAmounts) {
+
+        public int size() {
+            return usdAmounts.length;
+        }
+    }
+
+    /**
+     * Amount columns of every expense with a transaction date in [from, to)
+     */
+    public AmountColumns getAmountColumns(String fromDate, String toDate) throws SQLException {
+        // Summing in SQL keeps the rows crossing JDBC to one per day, category and currency;
+        // julianday() is NULL for invalid dates
+        String knownOriginal = "e.original_amount IS NOT NULL AND e.currency_id IS NOT NULL";
+        String query = """
+                SELECT c.name AS category,
+                       CASE WHEN %1$s THEN e.currency_id ELSE %2$d END AS source_id,
+                       CAST(julianday(e.expense_date) - 2440587.5 AS INTEGER) AS expense_day,
+                       SUM(CASE WHEN %1$s THEN e.original_amount ELSE e.amount END) AS source_total,
+                       SUM(e.amount) AS usd_total
+                FROM expenses e
+                CROSS JOIN categories c ON e.category_id = c.id
+                WHERE e.transaction_date >= ? AND e.transaction_date < ?
+                GROUP BY c.name, source_id, expense_day
+                ORDER BY c.name, source_id, expense_day;
+                """.formatted(knownOriginal, Currency.BASE);
+
+        try (Metrics.Span span = Metrics.span("db.getAmountColumns");
+             Connection connection = connect();
+             PreparedStatement preparedStatement = connection.prepareStatement(query)) {
+
+            preparedStatement.setString(1, fromDate);
+            preparedStatement.setString(2, toDate);
+            List<String> categoryNames = new ArrayList<>();
+            int size = 0;
+            int[] categoryIndexes = new int[1024];
+            int[] currencyIds = new int[1024];
+            int[] expenseDays = new int[1024];
+            double[] sourceAmounts = new double[1024];
+            double[] usdAmounts = new double[1024];
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                while (resultSet.next()) {
+                    if (size == usdAmounts.length) {
+                        int capacity = size * 2;
+                        categoryIndexes = Arrays.copyOf(categoryIndexes, capacity);
+                        currencyIds = Arrays.copyOf(currencyIds, capacity);
+                        expenseDays = Arrays.copyOf(expenseDays, capacity);
+                        sourceAmounts = Arrays.copyOf(sourceAmounts, capacity);
+                        usdAmounts = Arrays.copyOf(usdAmounts, capacity);
+                    }
+                    // Groups arrive ordered by category name
+                    String category = resultSet.getString(1);
+                    if (categoryNames.isEmpty() || !categoryNames.get(categoryNames.size() - 1).equals(category)) {
+                        categoryNames.add(category);
+                    }
+                    categoryIndexes[size] = categoryNames.size() - 1;
+                    currencyIds[size] = resultSet.getInt(2);
+                    int expenseDay = resultSet.getInt(3);
+                    expenseDays[size] = resultSet.wasNull() ? Integer.MIN_VALUE : expenseDay;
+                    sourceAmounts[size] = resultSet.getDouble(4);
+                    usdAmounts[size] = resultSet.getDouble(5);
+                    size++;
+                }
+            }
+            return new AmountColumns(categoryNames, Arrays.copyOf(categoryIndexes, size),
+                    Arrays.copyOf(currencyIds, size), Arrays.copyOf(expenseDays, size),
+                    Arrays.copyOf(sourceAmounts, size), Arrays.copyOf(usdAmounts, size));
+        }
+    }
+
+    /**
+     * Expense for one category whose transactions are read from the database on first use
+     */
+    public Model.Expense getExpense(String categoryName, double budgetLimit, LocalDate expenseDate) {
+        return new Model.Expense(new Model.Category(categoryName),
+                columns -> loadTransactions(categoryName, columns), budgetLimit, expenseDate);
+    }
+
+    /**
+     * Append one category's transactions (USD amounts) to the columns, oldest first
+     */
+    public void loadTransactions(String categoryName, Model.TransactionColumns into) throws SQLException {
+        String query = """
+                SELECT e.transaction_date, e.amount
+                FROM expenses e
+                JOIN categories c ON e.category_id = c.id
+                WHERE c.name = ?
+                ORDER BY e.transaction_date, e.id;
+                """;
+
+        try (Metrics.Span span = Metrics.span("db.loadTransactions");
+             Connection connection = connect();
+             PreparedStatement preparedStatement = connection.prepareStatement(query)) {
+
+            preparedStatement.setString(1, categoryName);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                while (resultSet.next()) {
+                    into.add(resultSet.getString(1), resultSet.getDouble(2));
+                }
+            }
+        }
+    }
+
+    /**
+     * Get total expense amount by category
+     */
+    public double getTotalExpensesByCategory(String categoryName) throws SQLException {
+        String query = """
+                SELECT SUM(amount) as total
+                FROM expenses e
+                JOIN categories c ON e.category_id = c.id
+                WHERE c.name = ?;
+                """;
+
+        try (Metrics.Span span = Metrics.span("db.getTotalExpensesByCategory");
+             Connection connection = connect();
+             PreparedStatement preparedStatement = connection.prepareStatement(query)) {
+
+            preparedStatement.setString(1, categoryName);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                if (resultSet.next()) {
+                    return resultSet.getDouble("total");
+                }
+                return 0.0;
+            }
+        }
+    }
+
+    /**
+     * Get total expenses
+     */
+    public double getTotalExpenses() throws SQLException {
+        String query = "SELECT SUM(amount) as total FROM expenses;";
+
+        try (Metrics.Span span = Metrics.span("db.getTotalExpenses");
+             Connection connection = connect();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(query)) {
+
+            if (resultSet.next()) {
+                return resultSet.getDouble("total");
+            }
+            return 0.0;
+        }
+    }
+
+    /**
+     * One day's exchange rate, in units of the currency per USD
+     */
+    public record RatePoint(String currency, LocalDate date, double rate) {
+    }
+
+    /**
+     * Stored daily rates for a currency, oldest first
+     */
+    public Map<LocalDate, Double> getRateHistory(String currency) throws SQLException {
+        String query = "SELECT rate_date, rate FROM exchange_rates WHERE currency_id = ? ORDER BY rate_date;";
+
+        try (Metrics.Span span = Metrics.span("db.getRateHistory");
+             Connection connection = connect();
+             PreparedStatement preparedStatement = connection.prepareStatement(query)) {
+
+            preparedStatement.setInt(1, Currency.requireId(currency));
+            Map<LocalDate, Double> rates = new LinkedHashMap<>();
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                while (resultSet.next()) {
+                    rates.put(LocalDate.parse(resultSet.getString(1)), resultSet.getDouble(2));
+                }
+            }
+            return rates;
+        }
+    }
+
+    /**
+     * Fill an empty database with generated data as fast as SQLite allows: journaling and
+     * fsync are off for the duration, ids are written as given, categories get ids 1..n in
+     * list order and listeners are not notified. Only for fresh files; if the load fails the
+     * file must be deleted.
+     * @param expenseChunks Expense rows in id order, a chunk per transaction
+     */
+    public void bulkLoad(List<String> categoryNames, Iterator<List<ExpenseRecord>> expenseChunks,
+                         List<RatePoint> rates) throws SQLException {
+        String insertCategory = "INSERT INTO categories (id, name) VALUES (?, ?);";
+        String insertExpense = """
+                INSERT INTO expenses (id, category_id, amount, transaction_date, expense_date, currency, currency_id,
+                                      payee, description, original_amount)
+                VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?);
+                """;
+        String insertRate = "INSERT OR REPLACE INTO exchange_rates (currency_id, rate_date, rate) VALUES (?, ?, ?);";
+
+        try (Metrics.Span span = Metrics.span("db.bulkLoad");
+             Connection connection = connect();
+             Statement statement = connection.createStatement()) {
+
+            statement.execute("PRAGMA journal_mode = OFF;");
+            statement.execute("PRAGMA synchronous = OFF;");
+            statement.execute("PRAGMA cache_size = -262144;"); // 256 MiB
+            try {
+                connection.setAutoCommit(false);
+                try (PreparedStatement preparedStatement = connection.prepareStatement(insertCategory)) {
+                    for (int i = 0; i < categoryNames.size(); i++) {
+                        preparedStatement.setInt(1, i + 1);
+                        preparedStatement.setString(2, categoryNames.get(i));
+                        preparedStatement.addBatch();
+                    }
+                    preparedStatement.executeBatch();
+                }
+                try (PreparedStatement preparedStatement = connection.prepareStatement(insertRate)) {
+                    for (RatePoint rate : rates) {
+                        preparedStatement.setInt(1, Currency.requireId(rate.currency()));
+                        preparedStatement.setString(2, rate.date().toString());
+                        preparedStatement.setDouble(3, rate.rate());
+                        preparedStatement.addBatch();
+                    }
+                    preparedStatement.executeBatch();
+                }
+                connection.commit();
+
+                try (PreparedStatement preparedStatement = connection.prepareStatement(insertExpense)) {
+                    while (expenseChunks.hasNext()) {
+                        for (ExpenseRecord record : expenseChunks.next()) {
+                            preparedStatement.setInt(1, record.id());
+                            preparedStatement.setInt(2, record.categoryId());
+                            preparedStatement.setDouble(3, record.amount());
+                            preparedStatement.setString(4, record.transactionDate());
+                            preparedStatement.setString(5, record.expenseDate());
+                            preparedStatement.setString(6, record.currency());
+                            preparedStatement.setInt(7, Currency.requireId(record.currency()));
+                            preparedStatement.setString(8, record.payee());
+                            preparedStatement.setString(9, record.description());
+                            preparedStatement.setObject(10, record.originalAmount());
+                            preparedStatement.addBatch();
+                        }
+                        preparedStatement.executeBatch();
+                        connection.commit();
+                    }
+                }
+            } catch (SQLException | RuntimeException e) {
+                span.fail(e);
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+                // Back to the settings every other connection uses
+                statement.execute("PRAGMA cache_size = -2000;");
+                statement.execute("PRAGMA synchronous = FULL;");
+                statement.execute("PRAGMA journal_mode = WAL;");
+            }
+            statement.execute("ANALYZE;");
+        }
+    }
+
+    /**
+     * Page-level layout of the database file. Fragmentation is the share of b-tree pages not
+     * stored right after the page read before them, so 0 means every table and index can be
+     * scanned sequentially.
+     */
+    public record StorageStats(int pageSize, long pageCount, long freePages, String autoVacuum,
+                               double fragmentation) {
+
+        public long fileBytes() {
+            return pageSize * pageCount;
+        }
+
+        public double freeFraction() {
+            return pageCount == 0 ? 0 : (double) freePages / pageCount;
+        }
+    }
+
+    public StorageStats getStorageStats() throws SQLException {
+        try (Metrics.Span span = Metrics.span("db.getStorageStats");
+             Connection connection = connect();
+             Statement statement = connection.createStatement()) {
+
+            int pageSize = (int) queryLong(statement, "PRAGMA page_size;");
+            long pageCount = queryLong(statement, "PRAGMA page_count;");
+            long freePages = queryLong(statement, "PRAGMA freelist_count;");
+            String autoVacuum = switch ((int) queryLong(statement, "PRAGMA auto_vacuum;")) {
+                case 1 -> "FULL";
+                case 2 -> "INCREMENTAL";
+                default -> "NONE";
+            };
+
+            // dbstat lists each b-tree's pages in traversal order
+            long pages = 0;
+            long outOfOrder = 0;
+            String lastName = null;
+            long lastPage = 0;
+            try (ResultSet resultSet = statement.executeQuery(
+                    "SELECT name, pageno FROM dbstat WHERE pagetype != 'overflow' ORDER BY name, path;")) {
+                while (resultSet.next()) {
+                    String name = resultSet.getString(1);
+                    long page = resultSet.getLong(2);
+                    if (name.equals(lastName) && page != lastPage + 1) {
+                        outOfOrder++;
+                    }
+                    pages++;
+                    lastName = name;
+                    lastPage = page;
+                }
+            }
+            return new StorageStats(pageSize, pageCount, freePages, autoVacuum,
+                    pages == 0 ? 0 : (double) outOfOrder / pages);
+        }
+    }
+
+    private static long queryLong(Statement statement, String sql) throws SQLException {
+        try (ResultSet resultSet = statement.executeQuery(sql)) {
+            return resultSet.next() ? resultSet.getLong(1) : 0;
+        }
+    }
+
+    /**
+     * Hand up to maxPages free pages back to the file system. Only has an effect once the
+     * file is in auto_vacuum=INCREMENTAL mode.
+     * @return Number of pages released
+     */
+    public long incrementalVacuum(int maxPages) throws SQLException {
+        try (Metrics.Span span = Metrics.span("db.incrementalVacuum");
+             Connection connection = connect();
+             Statement statement = connection.createStatement()) {
+
+            long before = queryLong(statement, "PRAGMA freelist_count;");
+            if (before == 0) {
+                return 0;
+            }
+            // Each step of this pragma frees one page; execute() would stop after the first
+            statement.executeUpdate("PRAGMA incremental_vacuum(" + maxPages + ");");
+            long released = before - queryLong(statement, "PRAGMA freelist_count;");
+            Metrics.add("db.vacuum.pages", released);
+            return released;
+        }
+    }
+
+    /**
+     * Rebuild the whole file, which releases every free page and defragments every table.
+     * Takes the write lock for the duration, so callers run it only on request.
+     */
+    public void vacuum() throws SQLException {
+        runMaintenanceStatement("db.vacuum", "VACUUM;");
+    }
+
+    /**
+     * Refresh the query planner's statistics for every table and index
+     */
+    public void analyze() throws SQLException {
+        runMaintenanceStatement("db.analyze", "ANALYZE;");
+    }
+
+    /**
+     * Let SQLite re-analyze whatever its statistics say has changed; cheap when nothing has
+     */
+    public void optimize() throws SQLException {
+        runMaintenanceStatement("db.optimize", "PRAGMA optimize;");
+    }
+
+    /**
+     * Copy the write-ahead log into the database file and truncate it; moving pages around
+     * during a vacuum otherwise leaves a log larger than the space it released
+     */
+    public void checkpoint() throws SQLException {
+        runMaintenanceStatement("db.checkpoint", "PRAGMA wal_checkpoint(TRUNCATE);");
+    }
+
+    private void runMaintenanceStatement(String metricName, String sql) throws SQLException {
+        try (Metrics.Span span = Metrics.span(metricName);
+             Connection connection = connect();
+             Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    /**
+     * Copy the live database into a file with SQLite's online backup API. The copy reads from
+     * one pinned snapshot, so under WAL writers carry on and their commits never restart it;
+     * it runs a few pages per step and sleeps between steps to leave I/O for everyone else.
+     * Step times are recorded as "db.backup.step".
+     * @return Number of pages copied
+     */
+    public int backupTo(Path file, int pagesPerStep, Duration pause) throws SQLException {
+        try (Metrics.Span span = Metrics.span("db.backup");
+             Connection connection = connect()) {
+            int[] pageCount = new int[1];
+            long[] stepStarted = {System.nanoTime()};
+            DB.ProgressObserver observer = (remaining, total) -> {
+                Metrics.recordNanos("db.backup.step", System.nanoTime() - stepStarted[0]);
+                pageCount[0] = total;
+                if (remaining > 0 && !pause.isZero() && !Thread.currentThread().isInterrupted()) {
+                    try {
+                        Thread.sleep(pause);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                stepStarted[0] = System.nanoTime();
+            };
+
+            int result;
+            connection.setAutoCommit(false);
+            try (Statement statement = connection.createStatement()) {
+                // Open the read transaction every step then shares
+                statement.executeQuery("SELECT COUNT(*) FROM sqlite_master;").close();
+                DB db = connection.unwrap(SQLiteConnection.class).getDatabase();
+                result = db.backup("main", file.toString(), observer,
+                        BACKUP_BUSY_SLEEP_MILLIS, BACKUP_BUSY_RETRIES, pagesPerStep);
+            } finally {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+            if (result != 0) {
+                SQLException e = new SQLException("Backup to " + file + " failed with SQLite result code " + result);
+                span.fail(e);
+                throw e;
+            }
+            return pageCount[0];
+        }
+    }
+
+    /**
+     * Run PRAGMA integrity_check
+     * @return The problems found, empty when the database is intact
+     */
+    public List<String> checkIntegrity() throws SQLException {
+        try (Metrics.Span span = Metrics.span("db.checkIntegrity");
+             Connection connection = connect();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("PRAGMA integrity_check;")) {
+
+            List<String> problems = new ArrayList<>();
+            while (resultSet.next()) {
+                String message = resultSet.getString(1);
+                if (!"ok".equals(message)) {
+                    problems.add(message);
+                }
+            }
+            return problems;
+        }
+    }
+
+    /**
+     * Write expense rows exactly as given, ids included, replacing rows with the same id and
+     * creating missing categories. Used when replaying a backup journal, so listeners are not
+     * notified and amounts are stored as-is (already in USD).
+     */
+    public void putExpenseRecords(List<ExpenseRecord> records) throws SQLException {
+        String insertCategory = "INSERT OR IGNORE INTO categories (name) VALUES (?);";
+        String insertExpense = """
+                INSERT OR REPLACE INTO expenses (id, category_id, amount, transaction_date, expense_date, currency,
+                                                 currency_id, payee, description, original_amount)
+                VALUES (?, (SELECT id FROM categories WHERE name = ?), ?, ?, ?, ?, ?, ?, ?, ?);
+                """;
+
+        try (Metrics.Span span = Metrics.span("db.putExpenseRecords");
+             Connection connection = connect();
+             PreparedStatement categoryStatement = connection.prepareStatement(insertCategory);
+             PreparedStatement expenseStatement = connection.prepareStatement(insertExpense)) {
+
+            connection.setAutoCommit(false);
+            try {
+                Set<String> categoryNames = new LinkedHashSet<>();
+                for (ExpenseRecord record : records) {
+                    categoryNames.add(record.categoryName());
+                }
+                for (String categoryName : categoryNames) {
+                    categoryStatement.setString(1, categoryName);
+                    categoryStatement.executeUpdate();
+                }
+                for (ExpenseRecord record : records) {
+                    expenseStatement.setInt(1, record.id());
+                    expenseStatement.setString(2, record.categoryName());
+                    expenseStatement.setDouble(3, record.amount());
+                    expenseStatement.setString(4, record.transactionDate());
+                    expenseStatement.setString(5, record.expenseDate());
+                    expenseStatement.setString(6, record.currency());
+                    int currencyId = Currency.idOf(record.currency());
+                    if (currencyId >= 0) {
+                        expenseStatement.setInt(7, currencyId);
+                    } else {
+                        expenseStatement.setNull(7, Types.INTEGER);
+                    }
+                    expenseStatement.setString(8, record.payee());
+                    expenseStatement.setString(9, record.description());
+                    expenseStatement.setObject(10, record.originalAmount());
+                    expenseStatement.addBatch();
+                }
+                expenseStatement.executeBatch();
+                connection.commit();
+            } catch (SQLException e) {
+                span.fail(e);
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        }
+    }
+
+    /**
+     * Delete expenses by id, ignoring ids that do not exist. Like putExpenseRecords, this is
+     * for journal replay and does not notify listeners.
+     */
+    public void deleteExpenseRecords(Collection<Integer> ids) throws SQLException {
+        try (Metrics.Span span = Metrics.span("db.deleteExpenseRecords");
+             Connection connection = connect();
+             PreparedStatement statement = connection.prepareStatement("DELETE FROM expenses WHERE id = ?;")) {
+
+            connection.setAutoCommit(false);
+            try {
+                for (int id : ids) {
+                    statement.setInt(1, id);
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+                connection.commit();
+            } catch (SQLException e) {
+                span.fail(e);
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
         }
     }
-}
\ No newline at end of file
+}
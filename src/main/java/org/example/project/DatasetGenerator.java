@@ -0,0 +1,380 @@
+package org.example.project;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.Month;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Reproducible synthetic ledgers for load and scale tests. The same seed always produces the
+ * same categories, expenses and rate histories, whatever the thread count: rows are generated
+ * in fixed-size chunks, each with its own SplittableRandom split off the seed in chunk order,
+ * and chunks are written in order while later ones are generated in parallel.
+ * <ul>
+ *     <li>Category popularity follows a Zipf law; each category has a log-normal amount
+ *     distribution and its own pool of payees, also Zipf-distributed</li>
+ *     <li>Volume grows over the period, weekends and December are busier, and expense dates
+ *     trail transaction dates by a few days</li>
+ *     <li>Most expenses are in USD; rates are a mean-reverting daily random walk per currency, and
+ *     the original amount of a foreign expense is its USD amount at the expense date's rate</li>
+ * </ul>
+ * Output is a new SQLite file loaded with bulk settings, or a directory with expenses.csv
+ * (in ExpenseCli's export format) and rates.csv:
+ *
+ * <pre>
+ * DatasetGenerator --out=big.db --expenses=10000000 --categories=40 --years=8 --seed=42
+ * DatasetGenerator --out=dataset --format=csv --expenses=100000
+ * </pre>
+ */
+public class DatasetGenerator {
+
+    // Rows per chunk; also the rows per transaction when writing SQLite
+    private static final int CHUNK_SIZE = 50_000;
+
+    private static final List<String> CATEGORY_NAMES = List.of(
+            "Groceries", "Rent", "Utilities", "Transport", "Dining", "Travel", "Healthcare", "Insurance",
+            "Entertainment", "Education", "Clothing", "Electronics", "Gifts", "Subscriptions", "Fuel",
+            "Maintenance", "Office", "Pets", "Sports", "Charity");
+
+    private static final double CATEGORY_ZIPF_EXPONENT = 1.1;
+    private static final double PAYEE_ZIPF_EXPONENT = 1.3;
+
+    // Share of expenses per currency, in Currency id order (USD first)
+    private static final double[] CURRENCY_WEIGHTS = {0.80, 0.08, 0.04, 0.03, 0.02, 0.03};
+
+    // Starting rate per USD and daily volatility, in Currency id order
+    private static final double[] BASE_RATES = {1.0, 0.92, 0.79, 150.0, 1.52, 4.60};
+    private static final double[] DAILY_VOLATILITY = {0.0, 0.004, 0.0045, 0.005, 0.006, 0.0035};
+
+    // Daily pull of a rate back towards its base, so multi-year walks stay plausible
+    private static final double RATE_MEAN_REVERSION = 0.002;
+
+    private static final double WEEKEND_WEIGHT = 1.3;
+    private static final double DECEMBER_WEIGHT = 1.4;
+    private static final double DESCRIPTION_SHARE = 0.25;
+
+    /**
+     * Per-category amount distribution and payee popularity
+     */
+    private record CategoryProfile(String name, double medianAmount, double sigma, double[] payeeCumulative) {
+    }
+
+    private final long rateSeed;
+    private final long chunkSeed;
+    private final int expenseCount;
+    private final LocalDate startDate;
+    private final int days;
+    private final int threads;
+    private final List<CategoryProfile> categories;
+    private final double[] categoryCumulative;
+    private final double[] currencyCumulative = cumulative(CURRENCY_WEIGHTS);
+
+    // Units per USD by currency id and day of the period
+    private final double[][] ratesPerUsd;
+
+    /**
+     * @param startDate First transaction date; the period runs for the given number of years
+     */
+    public DatasetGenerator(long seed, int categoryCount, int expenseCount, LocalDate startDate, int years,
+                            int threads) {
+        if (categoryCount < 1 || expenseCount < 0 || years < 1 || threads < 1) {
+            throw new IllegalArgumentException("Need at least one category, year and thread");
+        }
+        this.expenseCount = expenseCount;
+        this.startDate = startDate;
+        this.days = (int) ChronoUnit.DAYS.between(startDate, startDate.plusYears(years));
+        this.threads = threads;
+
+        // Profiles, rates and expenses each get their own stream, so changing the expense count
+        // or period leaves the others as they were
+        SplittableRandom random = new SplittableRandom(seed);
+        SplittableRandom profileRandom = random.split();
+        this.rateSeed = random.nextLong();
+        this.chunkSeed = random.nextLong();
+        this.categories = new ArrayList<>(categoryCount);
+        for (int i = 0; i < categoryCount; i++) {
+            String name = i < CATEGORY_NAMES.size() ? CATEGORY_NAMES.get(i) : "Category " + (i + 1);
+            double medianAmount = Math.exp(profileRandom.nextDouble(Math.log(5), Math.log(400)));
+            double sigma = profileRandom.nextDouble(0.4, 1.0);
+            int payees = profileRandom.nextInt(5, 200);
+            categories.add(new CategoryProfile(name, medianAmount, sigma, zipfCumulative(payees, PAYEE_ZIPF_EXPONENT)));
+        }
+        this.categoryCumulative = zipfCumulative(categoryCount, CATEGORY_ZIPF_EXPONENT);
+        this.ratesPerUsd = generateRates();
+    }
+
+    public static void main(String[] args) throws Exception {
+        long seed = 42;
+        int categoryCount = 20;
+        int expenseCount = 1_000_000;
+        int years = 5;
+        // A fixed default start keeps the output independent of when it is generated
+        LocalDate start = LocalDate.of(2020, 1, 1);
+        int threads = Runtime.getRuntime().availableProcessors();
+        String format = "sqlite";
+        Path out = null;
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            String value = equals < 0 ? "" : arg.substring(equals + 1);
+            switch (equals < 0 ? arg : arg.substring(0, equals)) {
+                case "--seed" -> seed = Long.parseLong(value);
+                case "--categories" -> categoryCount = Integer.parseInt(value);
+                case "--expenses" -> expenseCount = Integer.parseInt(value.replace("_", ""));
+                case "--years" -> years = Integer.parseInt(value);
+                case "--start" -> start = LocalDate.parse(value);
+                case "--threads" -> threads = Integer.parseInt(value);
+                case "--format" -> format = value;
+                case "--out" -> out = Path.of(value);
+                default -> throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+        if (out == null) {
+            throw new IllegalArgumentException("--out=file.db or --out=directory is required");
+        }
+
+        DatasetGenerator generator = new DatasetGenerator(seed, categoryCount, expenseCount, start, years, threads);
+        long started = System.nanoTime();
+        switch (format) {
+            case "sqlite" -> generator.writeSqlite(out);
+            case "csv" -> generator.writeCsv(out);
+            default -> throw new IllegalArgumentException("Unknown format: " + format);
+        }
+        double seconds = (System.nanoTime() - started) / 1e9;
+        System.out.printf("%d expenses in %d categories to %s in %.1f s (%.0f rows/s)%n",
+                expenseCount, categoryCount, out, seconds, expenseCount / seconds);
+    }
+
+    /**
+     * Create a new SQLite ledger with the full schema and load the dataset into it
+     * @throws IOException if the file already exists
+     */
+    public void writeSqlite(Path file) throws IOException, SQLException {
+        if (Files.exists(file)) {
+            throw new IOException(file + " already exists");
+        }
+        DatabaseManager dbManager = new DatabaseManager(file);
+        try (ExecutorService executor = newExecutor()) {
+            List<String> names = categories.stream().map(CategoryProfile::name).toList();
+            dbManager.bulkLoad(names, chunks(executor), rateHistory());
+        } finally {
+            dbManager.close();
+        }
+    }
+
+    /**
+     * Write expenses.csv and rates.csv into a directory, creating it if needed
+     */
+    public void writeCsv(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        try (ExecutorService executor = newExecutor();
+             Writer out = Files.newBufferedWriter(directory.resolve("expenses.csv"), StandardCharsets.UTF_8)) {
+            Csv.writeRecord(out, List.of("id", "category", "amountUsd", "currency", "transactionDate",
+                    "expenseDate", "payee", "description", "originalAmount"));
+            Iterator<List<ExpenseRecord>> chunks = chunks(executor);
+            while (chunks.hasNext()) {
+                for (ExpenseRecord record : chunks.next()) {
+                    Csv.writeRecord(out, Arrays.asList(String.valueOf(record.id()), record.categoryName(),
+                            String.valueOf(record.amount()), record.currency(), record.transactionDate(),
+                            record.expenseDate(), record.payee(), record.description(),
+                            String.valueOf(record.originalAmount())));
+                }
+            }
+        }
+        try (BufferedWriter out = Files.newBufferedWriter(directory.resolve("rates.csv"), StandardCharsets.UTF_8)) {
+            Csv.writeRecord(out, List.of("currency", "date", "ratePerUsd"));
+            for (DatabaseManager.RatePoint rate : rateHistory()) {
+                Csv.writeRecord(out, List.of(rate.currency(), rate.date().toString(), String.valueOf(rate.rate())));
+            }
+        }
+    }
+
+    /**
+     * Daily rates for every non-base currency over the whole period
+     */
+    public List<DatabaseManager.RatePoint> rateHistory() {
+        List<DatabaseManager.RatePoint> rates = new ArrayList<>((Currency.count() - 1) * days);
+        for (int currency = 0; currency < Currency.count(); currency++) {
+            if (currency == Currency.BASE) {
+                continue;
+            }
+            for (int day = 0; day < days; day++) {
+                rates.add(new DatabaseManager.RatePoint(Currency.code(currency), startDate.plusDays(day),
+                        ratesPerUsd[currency][day]));
+            }
+        }
+        return rates;
+    }
+
+    private double[][] generateRates() {
+        SplittableRandom rateRandom = new SplittableRandom(rateSeed);
+        double[][] rates = new double[Currency.count()][days];
+        for (int currency = 0; currency < Currency.count(); currency++) {
+            SplittableRandom random = rateRandom.split();
+            if (currency == Currency.BASE) {
+                Arrays.fill(rates[currency], 1.0);
+                continue;
+            }
+            double logBase = Math.log(BASE_RATES[currency]);
+            double logRate = logBase;
+            for (int day = 0; day < days; day++) {
+                rates[currency][day] = Math.round(Math.exp(logRate) * 1e6) / 1e6;
+                logRate += RATE_MEAN_REVERSION * (logBase - logRate)
+                        + DAILY_VOLATILITY[currency] * random.nextGaussian();
+            }
+        }
+        return rates;
+    }
+
+    /**
+     * Chunks in id order. A few chunks ahead of the consumer are generated on the executor;
+     * every chunk's random stream is split off before any is submitted, so scheduling order
+     * cannot change the output.
+     */
+    private Iterator<List<ExpenseRecord>> chunks(ExecutorService executor) {
+        int chunkCount = (expenseCount + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        SplittableRandom chunkRandom = new SplittableRandom(chunkSeed);
+        List<SplittableRandom> randoms = new ArrayList<>(chunkCount);
+        for (int i = 0; i < chunkCount; i++) {
+            randoms.add(chunkRandom.split());
+        }
+
+        Deque<Future<List<ExpenseRecord>>> pending = new ArrayDeque<>();
+        return new Iterator<>() {
+            private int submitted;
+
+            @Override
+            public boolean hasNext() {
+                return !pending.isEmpty() || submitted < chunkCount;
+            }
+
+            @Override
+            public List<ExpenseRecord> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                while (submitted < chunkCount && pending.size() < threads * 2) {
+                    int chunk = submitted++;
+                    pending.add(executor.submit(() -> generateChunk(chunk, randoms.get(chunk))));
+                }
+                try {
+                    return pending.remove().get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while generating", e);
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("Generating a chunk failed", e.getCause());
+                }
+            }
+        };
+    }
+
+    private List<ExpenseRecord> generateChunk(int chunk, SplittableRandom random) {
+        int firstId = chunk * CHUNK_SIZE + 1;
+        int count = Math.min(CHUNK_SIZE, expenseCount - chunk * CHUNK_SIZE);
+        List<ExpenseRecord> records = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int categoryIndex = pick(categoryCumulative, random.nextDouble());
+            CategoryProfile category = categories.get(categoryIndex);
+
+            LocalDate transactionDate = pickDate(random);
+            // Expenses are usually booked on the day, sometimes a few days later
+            int delay = 0;
+            while (delay < 10 && random.nextDouble() < 0.4) {
+                delay++;
+            }
+
+            double amount = category.medianAmount() * Math.exp(category.sigma() * random.nextGaussian());
+            int currencyId = pick(currencyCumulative, random.nextDouble());
+            int payee = pick(category.payeeCumulative(), random.nextDouble()) + 1;
+            String description = random.nextDouble() < DESCRIPTION_SHARE
+                    ? "Invoice " + random.nextInt(100_000, 1_000_000) : null;
+
+            double usdAmount = Math.max(0.01, Math.round(amount * 100) / 100.0);
+            LocalDate expenseDate = transactionDate.plusDays(delay);
+            // Expense dates can run a few days past the rate history; those use its last day
+            int rateDay = (int) Math.min(ChronoUnit.DAYS.between(startDate, expenseDate), days - 1);
+            double originalAmount = Math.round(usdAmount * ratesPerUsd[currencyId][rateDay] * 100) / 100.0;
+
+            records.add(new ExpenseRecord(firstId + i, categoryIndex + 1, category.name(), usdAmount,
+                    transactionDate.toString(), expenseDate.toString(), Currency.code(currencyId),
+                    category.name() + " payee " + payee, description, originalAmount));
+        }
+        return records;
+    }
+
+    /**
+     * A transaction date: density rises linearly over the period, and weekends and December
+     * are weighted up by rejection sampling
+     */
+    private LocalDate pickDate(SplittableRandom random) {
+        double maxWeight = WEEKEND_WEIGHT * DECEMBER_WEIGHT;
+        while (true) {
+            LocalDate date = startDate.plusDays((long) (days * Math.sqrt(random.nextDouble())));
+            double weight = 1;
+            if (date.getDayOfWeek() == DayOfWeek.SATURDAY || date.getDayOfWeek() == DayOfWeek.SUNDAY) {
+                weight *= WEEKEND_WEIGHT;
+            }
+            if (date.getMonth() == Month.DECEMBER) {
+                weight *= DECEMBER_WEIGHT;
+            }
+            if (random.nextDouble() * maxWeight < weight) {
+                return date;
+            }
+        }
+    }
+
+    /**
+     * Index whose cumulative weight range contains u; weights need not be normalized
+     */
+    private static int pick(double[] cumulative, double u) {
+        double target = u * cumulative[cumulative.length - 1];
+        int index = Arrays.binarySearch(cumulative, target);
+        index = index >= 0 ? index + 1 : -index - 1;
+        return Math.min(index, cumulative.length - 1);
+    }
+
+    private static double[] zipfCumulative(int n, double exponent) {
+        double[] weights = new double[n];
+        for (int rank = 1; rank <= n; rank++) {
+            weights[rank - 1] = 1 / Math.pow(rank, exponent);
+        }
+        return cumulative(weights);
+    }
+
+    private static double[] cumulative(double[] weights) {
+        double[] cumulative = new double[weights.length];
+        double sum = 0;
+        for (int i = 0; i < weights.length; i++) {
+            sum += weights[i];
+            cumulative[i] = sum;
+        }
+        return cumulative;
+    }
+
+    private ExecutorService newExecutor() {
+        return Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "dataset-generator");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
@@ -0,0 +1,294 @@
+package org.example.project;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Spending of a period that can be shown in any currency. Amounts are read once, summed per
+ * category, source currency and expense date, together with the stored rate history and one
+ * current rate snapshot; switching the display currency or rate basis then only reruns a
+ * multiply over those columns and never queries the database again. Expenses convert from the
+ * amount as entered where it was kept, so a bad rate at insert time does not carry into the
+ * report, and from the stored USD amount otherwise.
+ * Offline, current rates come from the newest stored rate of each currency. A currency with no
+ * rate at all cannot be shown, and its rows count at their stored USD amount, so a ledger can
+ * always be shown in USD.
+ */
+public class DisplayCurrencyReport {
+
+    /**
+     * Which rate a row is converted at
+     */
+    public enum RateBasis {
+        CURRENT("Today's rates"),
+        EXPENSE_DATE("Rate on expense date");
+
+        private final String label;
+
+        RateBasis(String label) {
+            this.label = label;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    private final List<String> categoryNames;
+    private final int[] categoryIndexes;
+
+    // Per group, what CURRENT converts from, and the stored USD amount for when there is no
+    // current rate for the source currency
+    private final double[] sourceAmounts;
+    private final int[] sourceIds;
+    private final double[] usdAmounts;
+
+    // Per group, USD at the expense date's rate, and the group's column in the day rates; groups
+    // without a valid date point at the extra last column, which holds the current rate
+    private final double[] usdAtExpenseDate;
+    private final int[] rateDays;
+
+    // Units per USD by currency id and day from the first expense date, carried forward over days
+    // without a stored rate; NaN before a currency's first stored rate
+    private final double[][] dayRates;
+
+    private final RateMatrix currentRates;
+
+    // Per-category totals by basis and currency
+    private final Map<String, double[]> totals = new HashMap<>();
+    private double[] scratch = new double[0];
+
+    DisplayCurrencyReport(DatabaseManager.AmountColumns columns, Map<Integer, Map<LocalDate, Double>> rateHistories,
+                          RateMatrix currentRates) {
+        this.categoryNames = columns.categoryNames();
+        this.categoryIndexes = columns.categoryIndexes();
+        this.currentRates = currentRates;
+        int size = columns.size();
+
+        int firstDay = Integer.MAX_VALUE;
+        int lastDay = Integer.MIN_VALUE;
+        for (int day : columns.expenseDays()) {
+            if (day != Integer.MIN_VALUE) {
+                firstDay = Math.min(firstDay, day);
+                lastDay = Math.max(lastDay, day);
+            }
+        }
+        int dayCount = firstDay <= lastDay ? lastDay - firstDay + 1 : 0;
+        dayRates = new double[Currency.count()][dayCount + 1];
+        for (int id = 0; id < Currency.count(); id++) {
+            fillDayRates(dayRates[id], id, rateHistories.get(id), firstDay);
+        }
+
+        sourceAmounts = columns.sourceAmounts();
+        sourceIds = columns.currencyIds();
+        usdAmounts = columns.usdAmounts();
+        int[] expenseDays = columns.expenseDays();
+        usdAtExpenseDate = new double[size];
+        rateDays = new int[size];
+        for (int i = 0; i < size; i++) {
+            rateDays[i] = expenseDays[i] == Integer.MIN_VALUE ? dayCount : expenseDays[i] - firstDay;
+            double rate = rateDays[i] < dayCount ? dayRates[sourceIds[i]][rateDays[i]] : Double.NaN;
+            // Without a stored rate for the day, keep the conversion made at insert time
+            usdAtExpenseDate[i] = Double.isNaN(rate) ? usdAmounts[i] : sourceAmounts[i] / rate;
+        }
+    }
+
+    /**
+     * Read the rows with transaction dates in [from, to) and the rates to convert them with.
+     * Current rates come from the rate service, or the newest stored rates when it is unreachable,
+     * in which case only currencies with a stored rate can be shown.
+     */
+    public static DisplayCurrencyReport load(DatabaseManager dbManager, String fromDate, String toDate)
+            throws Exception {
+        try (Metrics.Span span = Metrics.span("report.displayCurrency.load")) {
+            DatabaseManager.AmountColumns columns = dbManager.getAmountColumns(fromDate, toDate);
+            Map<Integer, Map<LocalDate, Double>> rateHistories = new HashMap<>();
+            for (int id = 0; id < Currency.count(); id++) {
+                if (id != Currency.BASE) {
+                    rateHistories.put(id, dbManager.getRateHistory(Currency.code(id)));
+                }
+            }
+
+            RateMatrix currentRates;
+            try {
+                currentRates = ApiManager.getRateMatrix();
+            } catch (Exception e) {
+                Metrics.failure("report.displayCurrency.rates", e);
+                currentRates = newestStoredRates(rateHistories);
+            }
+            return new DisplayCurrencyReport(columns, rateHistories, currentRates);
+        }
+    }
+
+    /**
+     * A rate matrix from the last stored rate of each currency; currencies without one get NaN,
+     * and with none stored at all only USD converts, at 1
+     */
+    private static RateMatrix newestStoredRates(Map<Integer, Map<LocalDate, Double>> rateHistories) {
+        double[] perUsd = new double[Currency.count()];
+        LocalDate newest = null;
+        for (int id = 0; id < Currency.count(); id++) {
+            if (id == Currency.BASE) {
+                perUsd[id] = 1.0;
+                continue;
+            }
+            Map<LocalDate, Double> history = rateHistories.get(id);
+            if (history == null || history.isEmpty()) {
+                perUsd[id] = Double.NaN;
+                continue;
+            }
+            // Histories are oldest first
+            for (Map.Entry<LocalDate, Double> entry : history.entrySet()) {
+                perUsd[id] = entry.getValue();
+                if (newest == null || entry.getKey().isAfter(newest)) {
+                    newest = entry.getKey();
+                }
+            }
+        }
+        return RateMatrix.fromBaseRates(perUsd, newest == null ? null : newest.atStartOfDay(ZoneOffset.UTC).toInstant());
+    }
+
+    /**
+     * Fill one currency's day rates from its history, carrying each rate forward to later days,
+     * and put today's rate in the extra last slot
+     */
+    private void fillDayRates(double[] rates, int currencyId, Map<LocalDate, Double> history, int firstDay) {
+        int dayCount = rates.length - 1;
+        rates[dayCount] = currentRates.rate(Currency.BASE, currencyId);
+        if (currencyId == Currency.BASE) {
+            Arrays.fill(rates, 0, dayCount, 1.0);
+            return;
+        }
+        Arrays.fill(rates, 0, dayCount, Double.NaN);
+        if (history == null || dayCount == 0) {
+            return;
+        }
+        double carried = Double.NaN;
+        int filled = 0;
+        for (Map.Entry<LocalDate, Double> entry : history.entrySet()) {
+            int day = (int) entry.getKey().toEpochDay() - firstDay;
+            if (day >= dayCount) {
+                break;
+            }
+            if (day >= 0) {
+                Arrays.fill(rates, filled, day, carried);
+                filled = day;
+            }
+            carried = entry.getValue();
+        }
+        Arrays.fill(rates, filled, dayCount, carried);
+    }
+
+    /**
+     * Number of category, currency and expense date groups
+     */
+    public int size() {
+        return categoryIndexes.length;
+    }
+
+    /**
+     * When the current rates were fetched, or the date of the newest stored rate they came from;
+     * null when offline with no stored rates
+     */
+    public Instant getRatesFetchedAt() {
+        return currentRates.getFetchedAt();
+    }
+
+    /**
+     * Whether there is a current rate to show totals in this currency
+     */
+    public boolean isAvailable(String displayCurrency) {
+        return !Double.isNaN(currentRates.rate(Currency.BASE, Currency.requireId(displayCurrency)));
+    }
+
+    /**
+     * Codes of the currencies totals can be shown in; always includes USD
+     */
+    public List<String> availableCurrencies() {
+        List<String> codes = new ArrayList<>();
+        for (String code : Currency.codes()) {
+            if (isAvailable(code)) {
+                codes.add(code);
+            }
+        }
+        return codes;
+    }
+
+    /**
+     * Spending per category in the display currency, sorted by category name
+     */
+    public Map<String, Double> totalsByCategory(String displayCurrency, RateBasis basis) {
+        double[] categoryTotals = categoryTotals(displayCurrency, basis);
+        Map<String, Double> byCategory = new TreeMap<>();
+        for (int c = 0; c < categoryTotals.length; c++) {
+            byCategory.put(categoryNames.get(c), categoryTotals[c]);
+        }
+        return byCategory;
+    }
+
+    /**
+     * Spending over all categories in the display currency
+     */
+    public double total(String displayCurrency, RateBasis basis) {
+        double total = 0;
+        for (double categoryTotal : categoryTotals(displayCurrency, basis)) {
+            total += categoryTotal;
+        }
+        return total;
+    }
+
+    private synchronized double[] categoryTotals(String displayCurrency, RateBasis basis) {
+        int to = Currency.requireId(displayCurrency);
+        if (!isAvailable(displayCurrency)) {
+            throw new IllegalArgumentException("No exchange rate for " + displayCurrency);
+        }
+        String key = basis + "/" + displayCurrency;
+        double[] cached = totals.get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        try (Metrics.Span span = Metrics.span("report.displayCurrency.convert")) {
+            int size = size();
+            if (scratch.length < size) {
+                scratch = new double[size];
+            }
+            if (basis == RateBasis.CURRENT) {
+                currentRates.convertAll(sourceAmounts, sourceIds, to, scratch);
+                double usdRate = currentRates.rate(Currency.BASE, to);
+                for (int i = 0; i < size; i++) {
+                    if (Double.isNaN(scratch[i])) {
+                        scratch[i] = usdAmounts[i] * usdRate;
+                    }
+                }
+            } else {
+                // Gather the target currency's day rates once, as convertAll does with its column
+                double[] toRates = dayRates[to].clone();
+                double current = toRates[toRates.length - 1];
+                for (int day = 0; day < toRates.length; day++) {
+                    if (Double.isNaN(toRates[day])) {
+                        toRates[day] = current;
+                    }
+                }
+                for (int i = 0; i < size; i++) {
+                    scratch[i] = usdAtExpenseDate[i] * toRates[rateDays[i]];
+                }
+            }
+
+            double[] categoryTotals = new double[categoryNames.size()];
+            for (int i = 0; i < size; i++) {
+                categoryTotals[categoryIndexes[i]] += scratch[i];
+            }
+            totals.put(key, categoryTotals);
+            return categoryTotals;
+        }
+    }
+}
@@ -0,0 +1,458 @@
+package org.example.project;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.sqlite.SQLiteErrorCode;
+import org.sqlite.SQLiteException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Headless JSON API over a ledger's DatabaseManager and the CurrencyPredictor, served by the
+ * JDK's built-in HTTP server with one virtual thread per request. GET responses carry a strong
+ * ETag over the body and answer a matching If-None-Match with 304. Every request is timed as
+ * "http.&lt;METHOD&gt; &lt;route&gt;" and counted by status in Metrics.
+ *
+ * <pre>
+ * GET    /api/categories
+ * POST   /api/categories                 {"name": ...}
+ * DELETE /api/categories/{name}?deleteExpenses=true
+ * GET    /api/expenses?category=&amp;before=&amp;limit=
+ * GET    /api/expenses/{id}
+ * POST   /api/expenses                   {"category", "amount", "currency", "transactionDate", ...}
+ * DELETE /api/expenses/{id}
+ * GET    /api/reports/summary?from=&amp;to=
+ * GET    /api/predictions
+ * GET    /api/predictions/{currency}
+ * GET    /api/metrics
+ * </pre>
+ */
+public class ExpenseApiServer {
+
+    private static final int DEFAULT_PORT = 8080;
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 500;
+    private static final int MAX_BODY_BYTES = 64 * 1024;
+
+    /**
+     * Request failure mapped to an HTTP status and a JSON error body
+     */
+    private static final class ApiException extends Exception {
+        private static final long serialVersionUID = 1L;
+        final int status;
+
+        ApiException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private record Response(int status, String contentType, String body) {
+
+        static Response json(int status, Object json) {
+            return new Response(status, "application/json", json.toString());
+        }
+    }
+
+    private final DatabaseManager dbManager;
+    private final CurrencyPredictor predictor;
+    private HttpServer server;
+    private ExecutorService executor;
+
+    public ExpenseApiServer(DatabaseManager dbManager, CurrencyPredictor predictor) {
+        this.dbManager = dbManager;
+        this.predictor = predictor;
+    }
+
+    public synchronized void start(InetSocketAddress address) throws IOException {
+        if (server != null) {
+            return;
+        }
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        server = HttpServer.create(address, 0);
+        server.createContext("/api/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    public synchronized void stop() {
+        if (server != null) {
+            server.stop(1);
+            executor.shutdownNow();
+            server = null;
+            executor = null;
+        }
+    }
+
+    public synchronized int port() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Run the server until the process is killed: --port=8080 --host=127.0.0.1 --ledger=name
+     */
+    public static void main(String[] args) throws IOException, SQLException {
+        int port = DEFAULT_PORT;
+        String host = "127.0.0.1";
+        String ledger = Ledgers.DEFAULT;
+        for (String arg : args) {
+            if (arg.startsWith("--port=")) {
+                port = Integer.parseInt(arg.substring("--port=".length()));
+            } else if (arg.startsWith("--host=")) {
+                host = arg.substring("--host=".length());
+            } else if (arg.startsWith("--ledger=")) {
+                ledger = arg.substring("--ledger=".length());
+            }
+        }
+
+        Ledgers ledgers = new Ledgers();
+        DatabaseManager dbManager = ledgers.open(ledger);
+        dbManager.initialize();
+        ExpenseApiServer apiServer = new ExpenseApiServer(dbManager, new CurrencyPredictor());
+        apiServer.start(new InetSocketAddress(host, port));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            apiServer.stop();
+            ledgers.close();
+        }));
+        System.out.printf("Serving ledger %s on http://%s:%d/api/%n", ledger, host, apiServer.port());
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        String[] path = exchange.getRequestURI().getRawPath().substring("/api/".length()).split("/");
+        for (int i = 0; i < path.length; i++) {
+            path[i] = URLDecoder.decode(path[i], StandardCharsets.UTF_8);
+        }
+        String route = method + " /api/" + routeTemplate(path);
+
+        Response response;
+        try (Metrics.Span span = Metrics.span("http." + route)) {
+            try {
+                response = dispatch(method, path, queryParameters(exchange), exchange);
+            } catch (ApiException e) {
+                response = error(e.status, e.getMessage());
+            } catch (JSONException | IllegalArgumentException | DateTimeParseException e) {
+                response = error(400, e.getMessage());
+            } catch (Exception e) {
+                // The details go to the log, not to the client
+                span.fail(e);
+                System.err.println(route + " failed");
+                e.printStackTrace();
+                response = error(500, "Internal server error");
+            }
+            send(exchange, method, response);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private Response dispatch(String method, String[] path, Map<String, String> query, HttpExchange exchange)
+            throws Exception {
+        String resource = path[0];
+        String id = path.length > 1 ? path[1] : null;
+        if (path.length > 2) {
+            throw new ApiException(404, "No such resource");
+        }
+
+        switch (resource) {
+            case "categories" -> {
+                if (id == null && method.equals("GET")) {
+                    return Response.json(200, new JSONArray(dbManager.getCategories()));
+                }
+                if (id == null && method.equals("POST")) {
+                    String name = readJson(exchange).getString("name").trim();
+                    if (name.isEmpty()) {
+                        throw new ApiException(400, "Category name cannot be empty");
+                    }
+                    if (dbManager.categoryExists(name)) {
+                        throw new ApiException(409, "Category already exists: " + name);
+                    }
+                    try {
+                        dbManager.addCategory(name);
+                    } catch (SQLiteException e) {
+                        // Another writer to the ledger added it after the check above
+                        if (e.getResultCode() == SQLiteErrorCode.SQLITE_CONSTRAINT_UNIQUE) {
+                            throw new ApiException(409, "Category already exists: " + name);
+                        }
+                        throw e;
+                    }
+                    return Response.json(201, new JSONObject().put("name", name));
+                }
+                if (id != null && method.equals("DELETE")) {
+                    requireCategory(id);
+                    boolean deleteExpenses = Boolean.parseBoolean(query.get("deleteExpenses"));
+                    if (!dbManager.deleteCategory(id, deleteExpenses)) {
+                        // Another writer may have removed it since the check above
+                        requireCategory(id);
+                        throw new ApiException(409, "Category has expenses; pass deleteExpenses=true");
+                    }
+                    return Response.json(200, new JSONObject().put("deleted", id));
+                }
+            }
+            case "expenses" -> {
+                if (id == null && method.equals("GET")) {
+                    return listExpenses(query);
+                }
+                if (id == null && method.equals("POST")) {
+                    return addExpense(readJson(exchange));
+                }
+                if (id != null && method.equals("GET")) {
+                    ExpenseRecord expense = dbManager.getExpenseRecord(parseId(id));
+                    if (expense == null) {
+                        throw new ApiException(404, "No expense with id " + id);
+                    }
+                    return Response.json(200, toJson(expense));
+                }
+                if (id != null && method.equals("DELETE")) {
+                    if (!dbManager.deleteExpense(parseId(id))) {
+                        throw new ApiException(404, "No expense with id " + id);
+                    }
+                    return Response.json(200, new JSONObject().put("deleted", parseId(id)));
+                }
+            }
+            case "reports" -> {
+                if ("summary".equals(id) && method.equals("GET")) {
+                    return summary(query);
+                }
+            }
+            case "predictions" -> {
+                if (id == null && method.equals("GET")) {
+                    return Response.json(200, new JSONArray(predictor.getSupportedCurrencies()));
+                }
+                if (method.equals("GET")) {
+                    return prediction(id.toUpperCase());
+                }
+            }
+            case "metrics" -> {
+                if (id == null && method.equals("GET")) {
+                    return new Response(200, "text/plain; charset=utf-8", Metrics.dump());
+                }
+            }
+            default -> throw new ApiException(404, "No such resource: " + resource);
+        }
+        throw new ApiException(405, method + " is not supported here");
+    }
+
+    private Response listExpenses(Map<String, String> query) throws Exception {
+        String category = query.get("category");
+        if (category != null) {
+            requireCategory(category);
+        }
+        int limit = Math.min(MAX_PAGE_SIZE, parseInt(query.getOrDefault("limit", String.valueOf(DEFAULT_PAGE_SIZE))));
+        if (limit < 1) {
+            throw new ApiException(400, "limit must be positive");
+        }
+        int before = parseInt(query.getOrDefault("before", "0"));
+
+        // Ask for one extra row to know whether there is a next page
+        List<ExpenseRecord> page = dbManager.getExpensePage(category, before, limit + 1);
+        JSONArray items = new JSONArray();
+        for (int i = 0; i < Math.min(limit, page.size()); i++) {
+            items.put(toJson(page.get(i)));
+        }
+        JSONObject body = new JSONObject().put("items", items);
+        if (page.size() > limit) {
+            body.put("next", page.get(limit - 1).id());
+        }
+        return Response.json(200, body);
+    }
+
+    private Response addExpense(JSONObject json) throws Exception {
+        String category = json.getString("category");
+        requireCategory(category);
+        double amount = json.getDouble("amount");
+        if (!(amount > 0)) {
+            throw new ApiException(400, "amount must be positive");
+        }
+        String currency = json.optString("currency", Currency.code(Currency.BASE)).toUpperCase();
+        String transactionDate = LocalDate.parse(
+                json.optString("transactionDate", LocalDate.now().toString())).toString();
+        String expenseDate = LocalDate.parse(json.optString("expenseDate", transactionDate)).toString();
+        ExpenseEntry entry = new ExpenseEntry(category, amount, transactionDate, expenseDate, currency,
+                json.optString("payee", null), json.optString("description", null));
+
+        int id = dbManager.addExpenses(List.of(entry))[0];
+        ExpenseRecord saved = dbManager.getExpenseRecord(id);
+        return Response.json(201, saved != null ? toJson(saved) : new JSONObject().put("id", id));
+    }
+
+    private Response summary(Map<String, String> query) throws SQLException {
+        String from = query.containsKey("from") ? LocalDate.parse(query.get("from")).toString() : "0000-01-01";
+        String to = query.containsKey("to") ? LocalDate.parse(query.get("to")).toString() : "9999-12-31";
+        Map<String, Double> spending = dbManager.getSpendingByCategory(from, to);
+        double total = 0;
+        JSONObject byCategory = new JSONObject();
+        for (Map.Entry<String, Double> entry : spending.entrySet()) {
+            byCategory.put(entry.getKey(), entry.getValue());
+            total += entry.getValue();
+        }
+        return Response.json(200, new JSONObject()
+                .put("from", from)
+                .put("to", to)
+                .put("total", total)
+                .put("byCategory", byCategory));
+    }
+
+    private Response prediction(String currency) throws Exception {
+        if (!predictor.getSupportedCurrencies().contains(currency)) {
+            throw new ApiException(404, "No predictions for " + currency);
+        }
+        JSONObject rates = new JSONObject();
+        JSONObject intervals = new JSONObject();
+        for (CurrencyPredictor.PredictionBand band : predictor.predictRateBands(currency)) {
+            rates.put(band.date().toString(), band.predicted());
+            intervals.put(band.date().toString(),
+                    new JSONObject().put("lower", band.lower()).put("upper", band.upper()));
+        }
+        return Response.json(200, new JSONObject()
+                .put("currency", currency)
+                .put("predictedRates", rates)
+                .put("intervals", intervals)
+                .put("intervalLevel", CurrencyPredictor.INTERVAL_LEVEL)
+                .put("changePercentage", predictor.getPredictedChangePercentage(currency)));
+    }
+
+    /**
+     * Categories are also created and deleted by the GUI and CLI, so existence is read from the ledger
+     */
+    private void requireCategory(String name) throws Exception {
+        if (!dbManager.categoryExists(name)) {
+            throw new ApiException(404, "No such category: " + name);
+        }
+    }
+
+    private static JSONObject toJson(ExpenseRecord expense) {
+        return new JSONObject()
+                .put("id", expense.id())
+                .put("category", expense.categoryName())
+                .put("amountUsd", expense.amount())
+                .putOpt("originalAmount", expense.originalAmount())
+                .put("currency", expense.currency())
+                .put("transactionDate", expense.transactionDate())
+                .put("expenseDate", expense.expenseDate())
+                .putOpt("payee", expense.payee())
+                .putOpt("description", expense.description());
+    }
+
+    private static Response error(int status, String message) {
+        Metrics.increment("http.errors");
+        return Response.json(status, new JSONObject().put("error", message == null ? "Unknown error" : message));
+    }
+
+    /**
+     * Write the response; successful GETs get an ETag and a matching If-None-Match gets 304
+     */
+    private static void send(HttpExchange exchange, String method, Response response) throws IOException {
+        byte[] body = response.body().getBytes(StandardCharsets.UTF_8);
+        int status = response.status();
+        if (method.equals("GET") && status == 200) {
+            String etag = etagOf(body);
+            exchange.getResponseHeaders().set("ETag", etag);
+            exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+            String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+            if (ifNoneMatch != null && (ifNoneMatch.equals(etag) || ifNoneMatch.equals("*"))) {
+                status = 304;
+                body = new byte[0];
+            }
+        }
+        Metrics.increment("http.status." + status);
+
+        exchange.getResponseHeaders().set("Content-Type", response.contentType());
+        if (status == 304) {
+            exchange.sendResponseHeaders(304, -1);
+            return;
+        }
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * Quoted 64-bit FNV-1a hash of the body
+     */
+    private static String etagOf(byte[] body) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : body) {
+            hash ^= b & 0xFF;
+            hash *= 0x100000001b3L;
+        }
+        return "\"" + Long.toHexString(hash) + "\"";
+    }
+
+    private static JSONObject readJson(HttpExchange exchange) throws IOException, ApiException {
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] body = in.readNBytes(MAX_BODY_BYTES + 1);
+            if (body.length > MAX_BODY_BYTES) {
+                throw new ApiException(413, "Request body is too large");
+            }
+            return new JSONObject(new String(body, StandardCharsets.UTF_8));
+        }
+    }
+
+    private static Map<String, String> queryParameters(HttpExchange exchange) {
+        Map<String, String> parameters = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null || query.isEmpty()) {
+            return parameters;
+        }
+        for (String pair : query.split("&")) {
+            int equals = pair.indexOf('=');
+            String key = equals < 0 ? pair : pair.substring(0, equals);
+            String value = equals < 0 ? "" : pair.substring(equals + 1);
+            parameters.put(URLDecoder.decode(key, StandardCharsets.UTF_8),
+                    URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return parameters;
+    }
+
+    /**
+     * Path with ids and names replaced by placeholders, so metrics stay per route rather than per URL
+     */
+    private static String routeTemplate(String[] path) {
+        String placeholder = switch (path[0]) {
+            case "categories" -> "{name}";
+            case "expenses" -> "{id}";
+            case "predictions" -> "{currency}";
+            case "reports" -> path.length > 1 && path[1].equals("summary") ? "summary" : "{unknown}";
+            case "metrics" -> "{unknown}";
+            default -> null;
+        };
+        if (placeholder == null) {
+            return "{unknown}";
+        }
+        return path.length < 2 ? path[0] : path[0] + "/" + placeholder;
+    }
+
+    private static int parseId(String id) throws ApiException {
+        try {
+            return Integer.parseInt(id);
+        } catch (NumberFormatException e) {
+            throw new ApiException(404, "No expense with id " + id);
+        }
+    }
+
+    private static int parseInt(String value) throws ApiException {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new ApiException(400, "Not a number: " + value);
+        }
+    }
+}
@@ -0,0 +1,485 @@
+package org.example.project;
+
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+/**
+ * Command-line entry point for scheduled jobs: reports, HTML/PDF statements, CSV/JSON export, CSV
+ * import, backups and currency predictions against a ledger, without starting JavaFX. Nothing here touches a
+ * javafx class, so it runs on a plain class path with only sqlite-jdbc and org.json:
+ *
+ * <pre>
+ * java -cp project.jar:sqlite-jdbc.jar:json.jar org.example.project.ExpenseCli report --from=2025-01-01
+ * </pre>
+ *
+ * Results stream to stdout or --out=file. --stats prints startup time and peak RSS to stderr.
+ */
+public class ExpenseCli {
+
+    private static final String USAGE = """
+            Usage: ExpenseCli [--ledger=name] [--stats] <command> [options]
+              categories
+              report   [--from=yyyy-MM-dd] [--to=yyyy-MM-dd] [--format=text|csv|json] [--out=file]
+              statement --out=file [--from=yyyy-MM-dd] [--to=yyyy-MM-dd] [--format=html|pdf]
+              export   [--category=name] [--format=csv|json] [--out=file]
+              import   <file.csv>  (header: category,amount|amountUsd[,currency,transactionDate,...])
+              predict  [currency ...] [--format=text|json] [--out=file]
+              backup
+              backups
+              restore  --out=file [--at=instant|local date-time]  (the database as it was then)
+              storage
+              maintain [--full]  (reclaim free pages and refresh statistics)
+            """;
+
+    private static final List<String> EXPORT_COLUMNS = List.of(
+            "id", "category", "amountUsd", "currency", "transactionDate", "expenseDate", "payee", "description",
+            "originalAmount");
+
+    // Rows per insert transaction when importing
+    private static final int IMPORT_BATCH = 1000;
+
+    /**
+     * Thrown for bad arguments; printed with the usage text and exit code 2
+     */
+    private static final class UsageException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        UsageException(String message) {
+            super(message);
+        }
+    }
+
+    private final DatabaseManager dbManager;
+    private final BackupManager backupManager;
+    private final Map<String, String> options;
+    private final List<String> arguments;
+
+    ExpenseCli(DatabaseManager dbManager, BackupManager backupManager, Map<String, String> options,
+               List<String> arguments) {
+        this.dbManager = dbManager;
+        this.backupManager = backupManager;
+        this.options = options;
+        this.arguments = arguments;
+    }
+
+    public static void main(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        List<String> arguments = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--")) {
+                int equals = arg.indexOf('=');
+                options.put(equals < 0 ? arg.substring(2) : arg.substring(2, equals),
+                        equals < 0 ? "" : arg.substring(equals + 1));
+            } else {
+                arguments.add(arg);
+            }
+        }
+
+        int status;
+        Ledgers ledgers = new Ledgers();
+        try {
+            if (arguments.isEmpty()) {
+                throw new UsageException("No command given");
+            }
+            Instant commandStart = Instant.now();
+            String ledger = options.getOrDefault("ledger", Ledgers.DEFAULT);
+            new ExpenseCli(ledgers.open(ledger), ledgers.backups(ledger), options, arguments).run();
+            if (options.containsKey("stats")) {
+                printStats(commandStart);
+            }
+            status = 0;
+        } catch (UsageException e) {
+            System.err.println(e.getMessage());
+            System.err.print(USAGE);
+            status = 2;
+        } catch (Exception e) {
+            System.err.println("Error: " + (e.getMessage() != null ? e.getMessage() : e.toString()));
+            status = 1;
+        } finally {
+            ledgers.close();
+        }
+        System.exit(status);
+    }
+
+    void run() throws Exception {
+        String command = arguments.get(0);
+        switch (command) {
+            case "categories" -> {
+                try (Writer out = output()) {
+                    for (String category : dbManager.getCategories()) {
+                        out.write(category);
+                        out.write('\n');
+                    }
+                }
+            }
+            case "report" -> report();
+            case "statement" -> statement();
+            case "export" -> export();
+            case "import" -> {
+                if (arguments.size() != 2) {
+                    throw new UsageException("import takes one CSV file");
+                }
+                importCsv(Path.of(arguments.get(1)));
+            }
+            case "predict" -> predict();
+            case "backup" -> {
+                BackupManager.BackupResult result = backupManager.backup();
+                System.out.printf("%s: %d pages, %.1f MB in %d ms (%.1f MB/s), %d KB compressed%n",
+                        result.snapshot().file(), result.pages(), result.databaseBytes() / 1e6,
+                        result.nanos() / 1_000_000, result.megabytesPerSecond(),
+                        result.snapshot().compressedBytes() / 1024);
+            }
+            case "backups" -> {
+                for (BackupManager.Snapshot snapshot : backupManager.list()) {
+                    System.out.printf("%s  %s  %d KB%n", snapshot.completedAt(), snapshot.file(),
+                            snapshot.compressedBytes() / 1024);
+                }
+            }
+            case "restore" -> restore();
+            case "storage" -> System.out.print(describe(dbManager.getStorageStats()));
+            case "maintain" -> {
+                DatabaseMaintenance.Report report = new DatabaseMaintenance(dbManager)
+                        .reclaimNow(options.containsKey("full"));
+                System.out.print("Before:\n" + describe(report.before()));
+                System.out.printf("  probe queries: %.1f ms%n", report.queryNanosBefore() / 1e6);
+                System.out.print("After:\n" + describe(report.after()));
+                System.out.printf("  probe queries: %.1f ms%n", report.queryNanosAfter() / 1e6);
+            }
+            default -> throw new UsageException("Unknown command: " + command);
+        }
+    }
+
+    /**
+     * Spending per category for transaction dates in [from, to)
+     */
+    private void report() throws Exception {
+        String from = LocalDate.parse(options.getOrDefault("from", "0001-01-01")).toString();
+        String to = LocalDate.parse(options.getOrDefault("to", "9999-12-31")).toString();
+        Map<String, Double> spending = new TreeMap<>(dbManager.getSpendingByCategory(from, to));
+        double total = 0;
+        for (double spent : spending.values()) {
+            total += spent;
+        }
+
+        try (Writer out = output()) {
+            switch (format("text")) {
+                case "csv" -> {
+                    Csv.writeRecord(out, List.of("category", "totalUsd"));
+                    for (Map.Entry<String, Double> entry : spending.entrySet()) {
+                        Csv.writeRecord(out, List.of(entry.getKey(), String.format("%.2f", entry.getValue())));
+                    }
+                }
+                case "json" -> {
+                    out.write(new JSONObject()
+                            .put("from", from)
+                            .put("to", to)
+                            .put("total", total)
+                            .put("byCategory", spending)
+                            .toString());
+                    out.write('\n');
+                }
+                case "text" -> {
+                    out.write(String.format("Spending from %s to %s%n", from, to));
+                    for (Map.Entry<String, Double> entry : spending.entrySet()) {
+                        double percentage = total > 0 ? entry.getValue() / total * 100 : 0;
+                        out.write(String.format("%-30s %12.2f  %5.1f%%%n",
+                                entry.getKey(), entry.getValue(), percentage));
+                    }
+                    out.write(String.format("%-30s %12.2f%n", "Total (USD)", total));
+                }
+                default -> throw new UsageException("report formats are text, csv and json");
+            }
+        }
+    }
+
+    /**
+     * Itemized statement for transaction dates in [from, to), rendered page by page to --out
+     */
+    private void statement() throws Exception {
+        String file = options.get("out");
+        if (file == null) {
+            throw new UsageException("statement needs --out=file");
+        }
+        ReportRenderer.Format format;
+        try {
+            format = ReportRenderer.Format.valueOf(format("pdf").toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new UsageException("statement formats are html and pdf");
+        }
+        String from = LocalDate.parse(options.getOrDefault("from", "0001-01-01")).toString();
+        String to = LocalDate.parse(options.getOrDefault("to", "9999-12-31")).toString();
+
+        ReportRenderer.Result result = new ReportRenderer(dbManager).render(from, to, format,
+                Files.newOutputStream(Path.of(file)), null);
+        System.out.printf("%s: %d pages, %d expenses, %d KB in %d ms (%.0f pages/s)%n", file, result.pages(),
+                result.expenses(), result.bytes() / 1024, result.nanos() / 1_000_000, result.pagesPerSecond());
+    }
+
+    /**
+     * Stream every expense, or one category's, without holding them in memory
+     */
+    private void export() throws Exception {
+        String format = format("csv");
+        if (!format.equals("csv") && !format.equals("json")) {
+            throw new UsageException("export formats are csv and json");
+        }
+        String category = options.get("category");
+
+        try (Writer out = output()) {
+            boolean[] first = {true};
+            Consumer<ExpenseRecord> write = record -> {
+                try {
+                    writeRecord(out, format, record, first[0]);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                first[0] = false;
+            };
+
+            if (format.equals("csv")) {
+                Csv.writeRecord(out, EXPORT_COLUMNS);
+            }
+            try {
+                if (category != null) {
+                    dbManager.forEachExpenseInCategories(List.of(category), write);
+                } else {
+                    dbManager.forEachExpense(write);
+                }
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            if (format.equals("json")) {
+                out.write(first[0] ? "[]\n" : "\n]\n");
+            }
+        }
+    }
+
+    private static void writeRecord(Writer out, String format, ExpenseRecord record, boolean first)
+            throws IOException {
+        if (format.equals("csv")) {
+            Csv.writeRecord(out, List.of(String.valueOf(record.id()), record.categoryName(),
+                    String.valueOf(record.amount()), record.currency(), record.transactionDate(),
+                    record.expenseDate(), nullToEmpty(record.payee()), nullToEmpty(record.description()),
+                    record.originalAmount() == null ? "" : String.valueOf(record.originalAmount())));
+        } else {
+            out.write(first ? "[\n" : ",\n");
+            out.write(new JSONObject()
+                    .put("id", record.id())
+                    .put("category", record.categoryName())
+                    .put("amountUsd", record.amount())
+                    .putOpt("originalAmount", record.originalAmount())
+                    .put("currency", record.currency())
+                    .put("transactionDate", record.transactionDate())
+                    .put("expenseDate", record.expenseDate())
+                    .putOpt("payee", record.payee())
+                    .putOpt("description", record.description())
+                    .toString());
+        }
+    }
+
+    /**
+     * Insert the rows of a CSV file with a header line, in batches of one transaction each
+     */
+    private void importCsv(Path file) throws Exception {
+        int imported = 0;
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            Csv.RecordReader reader = new Csv.RecordReader(in);
+            List<String> header = reader.next();
+            if (header == null || !header.contains("category")
+                    || !header.contains("amount") && !header.contains("amountUsd")) {
+                throw new UsageException("The CSV header must name at least the category and amount columns");
+            }
+
+            List<ExpenseEntry> batch = new ArrayList<>(IMPORT_BATCH);
+            int line = 1;
+            List<String> fields;
+            while ((fields = reader.next()) != null) {
+                line++;
+                if (fields.size() == 1 && fields.get(0).isBlank()) {
+                    continue;
+                }
+                try {
+                    batch.add(toEntry(header, fields));
+                } catch (RuntimeException e) {
+                    throw new IOException("Line " + line + ": " + e.getMessage(), e);
+                }
+                if (batch.size() == IMPORT_BATCH) {
+                    imported += dbManager.addExpenses(batch).length;
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                imported += dbManager.addExpenses(batch).length;
+            }
+        }
+        System.out.println("Imported " + imported + " expense(s).");
+    }
+
+    private static ExpenseEntry toEntry(List<String> header, List<String> fields) {
+        Map<String, String> row = new HashMap<>();
+        for (int i = 0; i < header.size() && i < fields.size(); i++) {
+            if (!fields.get(i).isEmpty()) {
+                row.put(header.get(i), fields.get(i));
+            }
+        }
+        String category = row.get("category");
+        if (category == null) {
+            throw new IllegalArgumentException("missing category");
+        }
+        // An exported file carries amountUsd, already converted at the time, and the original
+        // amount and currency when they are known; those rows keep all three as exported
+        String currency = Currency.code(Currency.BASE);
+        double amount;
+        Double amountUsd = null;
+        if (row.containsKey("amount")) {
+            amount = Double.parseDouble(row.get("amount"));
+            currency = row.getOrDefault("currency", currency).toUpperCase();
+        } else if (row.containsKey("originalAmount") && row.containsKey("currency")) {
+            amount = Double.parseDouble(row.get("originalAmount"));
+            currency = row.get("currency").toUpperCase();
+            amountUsd = Double.parseDouble(row.getOrDefault("amountUsd", ""));
+        } else {
+            amount = Double.parseDouble(row.getOrDefault("amountUsd", ""));
+        }
+        String transactionDate = LocalDate.parse(
+                row.getOrDefault("transactionDate", LocalDate.now().toString())).toString();
+        String expenseDate = LocalDate.parse(row.getOrDefault("expenseDate", transactionDate)).toString();
+        return new ExpenseEntry(category, amount, transactionDate, expenseDate, currency,
+                row.get("payee"), row.get("description"), amountUsd);
+    }
+
+    /**
+     * Rebuild the ledger as of --at (default now) into --out
+     */
+    private void restore() throws Exception {
+        String target = options.get("out");
+        if (target == null || target.isEmpty()) {
+            throw new UsageException("restore needs --out=file; stop the app first to restore over its database");
+        }
+        Instant pointInTime = Instant.now();
+        String at = options.get("at");
+        if (at != null) {
+            try {
+                pointInTime = Instant.parse(at);
+            } catch (DateTimeParseException e) {
+                try {
+                    pointInTime = LocalDateTime.parse(at).atZone(ZoneId.systemDefault()).toInstant();
+                } catch (DateTimeParseException notLocal) {
+                    throw new UsageException("--at must be an instant or a local date-time: " + at);
+                }
+            }
+        }
+        BackupManager.RestoreResult result = backupManager.restore(pointInTime, Path.of(target));
+        System.out.printf("Restored %s from %s plus %d journal entries; integrity_check ok%n",
+                result.file(), result.snapshot().file().getFileName(), result.replayedEntries());
+    }
+
+    private static String describe(DatabaseManager.StorageStats stats) {
+        return String.format("""
+                          file: %.2f MB (%d pages of %d bytes)
+                          free: %d pages (%.1f%%), auto_vacuum=%s
+                          fragmentation: %.1f%% of b-tree pages out of order
+                        """, stats.fileBytes() / 1e6, stats.pageCount(), stats.pageSize(),
+                stats.freePages(), stats.freeFraction() * 100, stats.autoVacuum(), stats.fragmentation() * 100);
+    }
+
+    private void predict() throws Exception {
+        CurrencyPredictor predictor = new CurrencyPredictor();
+        List<String> currencies = arguments.size() > 1
+                ? arguments.subList(1, arguments.size()).stream().map(String::toUpperCase).toList()
+                : predictor.getSupportedCurrencies();
+        boolean json = format("text").equals("json");
+
+        try (Writer out = output()) {
+            for (String currency : currencies) {
+                if (!predictor.getSupportedCurrencies().contains(currency)) {
+                    throw new UsageException("No predictions for " + currency);
+                }
+                List<CurrencyPredictor.PredictionBand> bands = predictor.predictRateBands(currency);
+                double change = predictor.getPredictedChangePercentage(currency);
+                if (json) {
+                    JSONObject predicted = new JSONObject();
+                    JSONObject intervals = new JSONObject();
+                    for (CurrencyPredictor.PredictionBand band : bands) {
+                        predicted.put(band.date().toString(), band.predicted());
+                        intervals.put(band.date().toString(),
+                                new JSONObject().put("lower", band.lower()).put("upper", band.upper()));
+                    }
+                    out.write(new JSONObject().put("currency", currency).put("predictedRates", predicted)
+                            .put("intervals", intervals).put("intervalLevel", CurrencyPredictor.INTERVAL_LEVEL)
+                            .put("changePercentage", change).toString());
+                } else {
+                    CurrencyPredictor.PredictionBand last = bands.get(bands.size() - 1);
+                    out.write(String.format("%s: %.4f on %s (%+.2f%%), %.0f%% range %.4f to %.4f", currency,
+                            last.predicted(), last.date(), change, CurrencyPredictor.INTERVAL_LEVEL * 100,
+                            last.lower(), last.upper()));
+                }
+                out.write('\n');
+            }
+        }
+    }
+
+    private String format(String defaultFormat) {
+        return options.getOrDefault("format", defaultFormat);
+    }
+
+    /**
+     * Buffered writer to --out, or to stdout (left open) when no file is given
+     */
+    private Writer output() throws IOException {
+        String file = options.get("out");
+        if (file != null) {
+            return Files.newBufferedWriter(Path.of(file), StandardCharsets.UTF_8);
+        }
+        return new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16) {
+            @Override
+            public void close() throws IOException {
+                flush();
+            }
+        };
+    }
+
+    /**
+     * Time from process start to the command and to now, and peak resident memory, on stderr
+     */
+    private static void printStats(Instant commandStart) {
+        Instant now = Instant.now();
+        ProcessHandle.current().info().startInstant().ifPresent(started -> System.err.printf(
+                "startup: %d ms, total: %d ms%n",
+                Duration.between(started, commandStart).toMillis(), Duration.between(started, now).toMillis()));
+        try {
+            for (String line : Files.readAllLines(Path.of("/proc/self/status"))) {
+                if (line.startsWith("VmHWM:")) {
+                    System.err.println("peak RSS: " + line.substring("VmHWM:".length()).trim());
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("peak RSS: not available on this platform");
+        }
+    }
+
+    private static String nullToEmpty(String value) {
+        return value == null ? "" : value;
+    }
+}
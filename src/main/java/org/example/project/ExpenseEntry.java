@@ -0,0 +1,31 @@
+package org.example.project;
+
+/**
+ * One expense to be inserted, as entered by the user (amount in its original currency).
+ * Payee and description are optional and may be null. amountUsd is null unless the USD amount
+ * is already known, as for rows read back from an export; otherwise the amount is converted at
+ * the current rate.
+ */
+public record ExpenseEntry(String categoryName, double amount, String transactionDate, String expenseDate,
+                           String currency, String payee, String description, Double amountUsd) {
+
+    public ExpenseEntry(String categoryName, double amount, String transactionDate, String expenseDate,
+                        String currency) {
+        this(categoryName, amount, transactionDate, expenseDate, currency, null, null);
+    }
+
+    public ExpenseEntry(String categoryName, double amount, String transactionDate, String expenseDate,
+                        String currency, String payee, String description) {
+        this(categoryName, amount, transactionDate, expenseDate, currency, payee, description, null);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(String.format("%s: %.2f %s, Transaction Date: %s, Expense Date: %s",
+                categoryName, amount, currency, transactionDate, expenseDate));
+        if (payee != null && !payee.isEmpty()) {
+            sb.append(", Payee: ").append(payee);
+        }
+        return sb.toString();
+    }
+}
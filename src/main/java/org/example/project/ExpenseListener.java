@@ -0,0 +1,20 @@
+package org.example.project;
+
+import java.util.List;
+
+/**
+ * Receives expense rows after they have been committed to or removed from the database,
+ * so in-memory structures can stay current without re-querying
+ */
+public interface ExpenseListener {
+
+    void expensesAdded(List<ExpenseRecord> expenses);
+
+    void expensesDeleted(List<ExpenseRecord> expenses);
+
+    /**
+     * One notification, queued by a listener while it reloads and applied once the load is in place
+     */
+    record Event(boolean deleted, List<ExpenseRecord> expenses) {
+    }
+}
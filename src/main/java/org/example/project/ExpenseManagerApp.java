@@ -4,6 +4,7 @@ import javafx.application.Application;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.layout.VBox;
+import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 import javafx.application.Platform;
 import javafx.collections.FXCollections;
@@ -14,9 +15,23 @@ import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.concurrent.Task;
 import javafx.scene.control.cell.PropertyValueFactory;
-
+import javafx.scene.chart.BarChart;
+import javafx.scene.chart.CategoryAxis;
+import javafx.scene.chart.LineChart;
+import javafx.scene.chart.NumberAxis;
+import javafx.scene.chart.XYChart;
+import javafx.scene.layout.StackPane;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -29,7 +44,57 @@ import java.util.regex.Pattern;
  */
 public class ExpenseManagerApp extends Application {
 
-    private final DatabaseManager dbManager = new DatabaseManager();
+    // Periodic metrics snapshot written next to the database
+    private static final Path METRICS_FILE = Path.of("metrics.log");
+
+
+    private static final String ALL_CATEGORIES = "All categories";
+
+    // Launch argument that closes the app right after the first frame, for startup measurements
+    private static final String EXIT_AFTER_FIRST_FRAME = "--exit-after-first-frame";
+
+    // System property naming the ledger to open; main() also accepts --ledger=<name>
+    static final String LEDGER_PROPERTY = "expense.ledger";
+
+    // Age at which the ledger's newest backup is considered stale
+    private static final Duration BACKUP_INTERVAL = Duration.ofHours(6);
+
+    // One SQLite file per ledger; this window works on one of them
+    private final Ledgers ledgers = new Ledgers();
+    private final String ledgerName = System.getProperty(LEDGER_PROPERTY, Ledgers.DEFAULT);
+    private final DatabaseManager dbManager = ledgers.open(ledgerName);
+
+    // Anomaly detector state, so restarts only replay expenses added since the last run
+    private final Path anomalySnapshotFile = Path.of(Ledgers.DEFAULT.equals(ledgerName)
+            ? "anomaly-detector.bin" : "anomaly-detector-" + ledgerName + ".bin");
+
+    // In-memory search index, kept current through the database's expense listener
+    private final ExpenseSearchIndex searchIndex = new ExpenseSearchIndex();
+
+    // Spend-to-date per budget, updated on every add and delete
+    private final BudgetTracker budgetTracker = new BudgetTracker();
+
+    // Daily spend per category for the reports charts
+    private final SpendingHistory spendingHistory = new SpendingHistory();
+
+    // Per-category spending forecasts trained from the history above
+    private final SpendingForecaster spendingForecaster = new SpendingForecaster(spendingHistory);
+
+    // Flags outliers and likely duplicates as expenses are added
+    private final AnomalyDetector anomalyDetector = new AnomalyDetector(1);
+
+    // Category and expense entities, cached so repeated reads skip the database
+    private final ExpenseRepository expenseRepository = new ExpenseRepository(dbManager, 200_000);
+
+    // Monthly percentile and distinct-payee sketches for the distribution report
+    private final ExpenseSketches expenseSketches = new ExpenseSketches();
+
+    // Idle-time space reclamation and statistics refresh for this window's ledger
+    private final DatabaseMaintenance databaseMaintenance = new DatabaseMaintenance(dbManager);
+
+    // Generates due recurring expenses at startup and every hour after that
+    private final RecurringExpenseScheduler recurringScheduler =
+            new RecurringExpenseScheduler(dbManager, Duration.ofHours(1));
 
     // Main scene
     private Scene mainScene;
@@ -41,23 +106,177 @@ public class ExpenseManagerApp extends Application {
     // Expense management components
     private ComboBox<String> categoryComboBox;
     private TextField amountInput;
+    private TextField payeeInput;
+    private TextField descriptionInput;
     private DatePicker transactionDatePicker;
     private DatePicker expenseDatePicker;
     private ComboBox<String> currencyComboBox;
     private ListView<String> expenseListView;
     private Label statusMessage;
 
+    // Split transaction rows waiting to be saved together
+    private final List<ExpenseEntry> pendingExpenses = new ArrayList<>();
+    private ListView<String> pendingExpenseListView;
+
+    // Recurring expense components
+    private ListView<String> recurringListView;
+
+    // Search components
+    private TextField searchInput;
+    private TextField minAmountInput;
+    private TextField maxAmountInput;
+    private DatePicker searchFromDatePicker;
+    private DatePicker searchToDatePicker;
+    private ComboBox<String> searchCurrencyComboBox;
+    private ComboBox<String> searchCategoryComboBox;
+
     @Override
     public void start(Stage primaryStage) {
-        primaryStage.setTitle("Expense Manager");
+        primaryStage.setTitle(Ledgers.DEFAULT.equals(ledgerName)
+                ? "Expense Manager" : "Expense Manager - " + ledgerName);
+
+        // Load the driver and create the schema while the window is being built
+        loadInBackground("db-init", "db.initialize", dbManager::initialize);
+
+        dbManager.addExpenseListener(expenseRepository);
+        dbManager.addExpenseListener(searchIndex);
+        dbManager.addExpenseListener(budgetTracker);
+        budgetTracker.addAlertListener(alert -> Platform.runLater(() -> showAlert(
+                alert.level() == BudgetTracker.AlertLevel.EXCEEDED ? Alert.AlertType.ERROR : Alert.AlertType.WARNING,
+                "Budget Alert", alert.toDisplayString())));
+        dbManager.addExpenseListener(spendingHistory);
+        dbManager.addExpenseListener(spendingForecaster);
+        dbManager.addExpenseListener(anomalyDetector);
+        anomalyDetector.addAnomalyListener(anomaly -> Platform.runLater(() -> showAlert(
+                Alert.AlertType.WARNING, "Unusual Expense", anomaly.toDisplayString())));
+        dbManager.addExpenseListener(expenseSketches);
+        dbManager.addExpenseListener(databaseMaintenance);
 
         // Create the main scene
         createMainScene(primaryStage);
 
+        // Everything else starts once the first frame is up, so it does not compete with it
+        // No parameters when a harness starts the app without launch()
+        boolean exitAfterFirstFrame = getParameters() != null
+                && getParameters().getRaw().contains(EXIT_AFTER_FIRST_FRAME);
+        onFirstPulse(mainScene, () -> {
+            recordTimeToFirstFrame(exitAfterFirstFrame);
+            startBackgroundWork();
+            if (exitAfterFirstFrame) {
+                Platform.runLater(Platform::exit);
+            }
+        });
+
         primaryStage.setScene(mainScene);
         primaryStage.show();
     }
 
+    /**
+     * Start metrics export, the in-memory loads, maintenance, backups, rate warm-up and the recurring
+     * expense scheduler
+     */
+    private void startBackgroundWork() {
+        // Expose metrics over JMX and dump them to a local file once a minute
+        Metrics.registerMBean();
+        Metrics.startPeriodicDump(METRICS_FILE, Duration.ofMinutes(1));
+
+        // Each load waits for the schema if db-init has not finished yet; listeners keep them current
+        loadInBackground("search-index-load", "search.load", () -> searchIndex.load(dbManager));
+        loadInBackground("budget-load", "budget.load", () -> budgetTracker.load(dbManager));
+        loadInBackground("anomaly-load", "anomaly.load", () -> anomalyDetector.load(dbManager, anomalySnapshotFile));
+        loadInBackground("history-load", "history.load", () -> spendingHistory.load(dbManager));
+
+        // Sketches restore from the database and are written back every few minutes
+        loadInBackground("sketch-load", "sketches.load", () -> {
+            expenseSketches.load(dbManager);
+            expenseSketches.startPeriodicFlush(dbManager, Duration.ofMinutes(5));
+        });
+
+        // Reclaim space freed by deletes and refresh planner statistics while the app is idle
+        databaseMaintenance.start();
+
+        // Snapshot the ledger whenever the newest backup is more than a few hours old
+        ledgers.backups(ledgerName).startPeriodicBackups(BACKUP_INTERVAL);
+
+        // Fetch exchange rates now rather than on the first expense in a foreign currency
+        loadInBackground("rate-warmup", "rates.warmup", ApiManager::getRateMatrix);
+
+        // Catch up on recurring expenses missed while the app was closed
+        recurringScheduler.setOnGenerated(count -> Platform.runLater(() -> {
+            if (statusMessage != null) {
+                setStatusMessage(count + " recurring expense(s) added.", "success");
+            }
+        }));
+        recurringScheduler.start();
+    }
+
+    /**
+     * Run the action once, after the scene's first layout pulse
+     */
+    private static void onFirstPulse(Scene scene, Runnable action) {
+        Runnable[] listener = new Runnable[1];
+        listener[0] = () -> {
+            scene.removePostLayoutPulseListener(listener[0]);
+            // Let this pulse finish rendering before the action runs
+            Platform.runLater(action);
+        };
+        scene.addPostLayoutPulseListener(listener[0]);
+    }
+
+    /**
+     * Record the time from JVM process start to the first rendered frame
+     * @param print Also print it, for startup measurements that exit after the first frame
+     */
+    private static void recordTimeToFirstFrame(boolean print) {
+        ProcessHandle.current().info().startInstant().ifPresent(started -> {
+            long nanos = Duration.between(started, Instant.now()).toNanos();
+            Metrics.recordNanos("startup.firstFrame", nanos);
+            if (print) {
+                System.out.printf("Time to first frame: %d ms%n", nanos / 1_000_000);
+            }
+        });
+    }
+
+    @Override
+    public void stop() {
+        recurringScheduler.stop();
+        databaseMaintenance.stop();
+        try {
+            anomalyDetector.save(anomalySnapshotFile);
+        } catch (IOException e) {
+            Metrics.failure("anomaly.save", e);
+            e.printStackTrace();
+        }
+        try {
+            expenseSketches.stopPeriodicFlush(dbManager);
+        } catch (SQLException e) {
+            Metrics.failure("sketches.flush", e);
+            e.printStackTrace();
+        }
+        Metrics.stopPeriodicDump(METRICS_FILE);
+        ledgers.close();
+    }
+
+    private interface BackgroundLoad {
+        void run() throws Exception;
+    }
+
+    /**
+     * Run a load on its own daemon thread, counting and printing any failure
+     */
+    private void loadInBackground(String threadName, String metricName, BackgroundLoad load) {
+        Thread thread = new Thread(() -> {
+            try {
+                load.run();
+            } catch (Exception e) {
+                Metrics.failure(metricName, e);
+                e.printStackTrace();
+            }
+        }, threadName);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
     /**
      * Create the main scene with buttons to navigate to other scenes
      */
@@ -77,6 +296,10 @@ public class ExpenseManagerApp extends Application {
         manageExpensesButton.setMaxWidth(Double.MAX_VALUE);
         manageExpensesButton.setOnAction(e -> showExpenseManagementScene(stage));
 
+        Button recurringExpensesButton = new Button("Recurring Expenses");
+        recurringExpensesButton.setMaxWidth(Double.MAX_VALUE);
+        recurringExpensesButton.setOnAction(e -> showRecurringExpenseScene(stage));
+
         Button viewReportsButton = new Button("View Reports");
         viewReportsButton.setMaxWidth(Double.MAX_VALUE);
         viewReportsButton.setOnAction(e -> showReportsScene(stage));
@@ -90,11 +313,12 @@ public class ExpenseManagerApp extends Application {
                 titleLabel,
                 manageCategoriesButton,
                 manageExpensesButton,
+                recurringExpensesButton,
                 viewReportsButton,
                 currencyPredictionsButton
         );
 
-        mainScene = new Scene(mainLayout, 400, 350);
+        mainScene = new Scene(mainLayout, 400, 400);
     }
 
     /**
@@ -176,6 +400,14 @@ public class ExpenseManagerApp extends Application {
         amountInput.setPromptText("Amount");
         amountInput.setMaxWidth(Double.MAX_VALUE);
 
+        payeeInput = new TextField();
+        payeeInput.setPromptText("Payee (optional)");
+        payeeInput.setMaxWidth(Double.MAX_VALUE);
+
+        descriptionInput = new TextField();
+        descriptionInput.setPromptText("Description (optional)");
+        descriptionInput.setMaxWidth(Double.MAX_VALUE);
+
         transactionDatePicker = new DatePicker();
         transactionDatePicker.setPromptText("Transaction Date");
         transactionDatePicker.setMaxWidth(Double.MAX_VALUE);
@@ -186,7 +418,7 @@ public class ExpenseManagerApp extends Application {
 
         currencyComboBox = new ComboBox<>();
         currencyComboBox.setPromptText("Select Currency");
-        currencyComboBox.getItems().addAll("USD", "EUR", "GBP", "JPY", "AUD", "RON");
+        currencyComboBox.getItems().addAll(Currency.codes());
         currencyComboBox.setMaxWidth(Double.MAX_VALUE);
 
         Label infoLabel = new Label("All expenses are converted to and stored in USD.");
@@ -198,6 +430,31 @@ public class ExpenseManagerApp extends Application {
         addButton.setMaxWidth(Double.MAX_VALUE);
         addButton.setOnAction(e -> addExpense());
 
+        // Split transactions: collect several rows, then save them in one batch
+        HBox splitButtonBox = new HBox(10);
+        splitButtonBox.setAlignment(Pos.CENTER);
+
+        Button addRowButton = new Button("Add as Split Row");
+        addRowButton.setPrefWidth(150);
+        addRowButton.setOnAction(e -> addPendingExpense());
+
+        Button saveRowsButton = new Button("Save Split Rows");
+        saveRowsButton.setPrefWidth(150);
+        saveRowsButton.setOnAction(e -> savePendingExpenses());
+
+        Button clearRowsButton = new Button("Clear Rows");
+        clearRowsButton.setPrefWidth(100);
+        clearRowsButton.setOnAction(e -> {
+            pendingExpenses.clear();
+            pendingExpenseListView.getItems().clear();
+        });
+
+        splitButtonBox.getChildren().addAll(addRowButton, saveRowsButton, clearRowsButton);
+
+        pendingExpenseListView = new ListView<>();
+        pendingExpenseListView.setPrefHeight(80);
+        pendingExpenseListView.getItems().setAll(pendingExpenses.stream().map(ExpenseEntry::toString).toList());
+
         HBox buttonBox = new HBox(10);
         buttonBox.setAlignment(Pos.CENTER);
 
@@ -227,6 +484,8 @@ public class ExpenseManagerApp extends Application {
 
         expenseListView.setContextMenu(contextMenu);
 
+        TitledPane searchPane = createSearchPane();
+
         Button backButton = new Button("Back to Main Menu");
         backButton.setMaxWidth(Double.MAX_VALUE);
         backButton.setOnAction(e -> stage.setScene(mainScene));
@@ -235,14 +494,19 @@ public class ExpenseManagerApp extends Application {
                 titleLabel,
                 categoryComboBox,
                 amountInput,
+                payeeInput,
+                descriptionInput,
                 transactionDatePicker,
                 expenseDatePicker,
                 currencyComboBox,
                 infoLabel,
                 statusMessage,
                 addButton,
+                splitButtonBox,
+                pendingExpenseListView,
                 buttonBox,
                 viewByCategoryButton,
+                searchPane,
                 expenseListView,
                 backButton
         );
@@ -250,10 +514,213 @@ public class ExpenseManagerApp extends Application {
         // Load categories into combo box
         loadCategoriesIntoComboBox();
 
-        Scene scene = new Scene(layout, 500, 700);
+        ScrollPane scrollPane = new ScrollPane(layout);
+        scrollPane.setFitToWidth(true);
+
+        Scene scene = new Scene(scrollPane, 520, 820);
+        stage.setScene(scene);
+    }
+
+    /**
+     * Create the collapsible search panel for the expense scene
+     */
+    private TitledPane createSearchPane() {
+        searchInput = new TextField();
+        searchInput.setPromptText("Search payee, description or category");
+        searchInput.setOnAction(e -> searchExpenses());
+
+        minAmountInput = new TextField();
+        minAmountInput.setPromptText("Min USD");
+        maxAmountInput = new TextField();
+        maxAmountInput.setPromptText("Max USD");
+        HBox amountBox = new HBox(10, minAmountInput, maxAmountInput);
+
+        searchFromDatePicker = new DatePicker();
+        searchFromDatePicker.setPromptText("From");
+        searchToDatePicker = new DatePicker();
+        searchToDatePicker.setPromptText("To");
+        HBox dateBox = new HBox(10, searchFromDatePicker, searchToDatePicker);
+
+        searchCurrencyComboBox = new ComboBox<>();
+        searchCurrencyComboBox.getItems().add("Any currency");
+        searchCurrencyComboBox.getItems().addAll(Currency.codes());
+        searchCurrencyComboBox.setValue("Any currency");
+
+        searchCategoryComboBox = new ComboBox<>();
+        searchCategoryComboBox.getItems().add("Any category");
+        searchCategoryComboBox.setValue("Any category");
+        try {
+            searchCategoryComboBox.getItems().addAll(expenseRepository.getCategoryNames());
+        } catch (SQLException e) {
+            setStatusMessage("Unable to load categories: " + e.getMessage(), "error");
+        }
+        HBox filterBox = new HBox(10, searchCurrencyComboBox, searchCategoryComboBox);
+
+        Button searchButton = new Button("Search");
+        searchButton.setMaxWidth(Double.MAX_VALUE);
+        searchButton.setOnAction(e -> searchExpenses());
+
+        VBox searchBox = new VBox(10, searchInput, amountBox, dateBox, filterBox, searchButton);
+        TitledPane searchPane = new TitledPane("Search Expenses", searchBox);
+        searchPane.setExpanded(false);
+        return searchPane;
+    }
+
+    /**
+     * Create and show the recurring expense scene
+     */
+    private void showRecurringExpenseScene(Stage stage) {
+        VBox layout = new VBox(10);
+        layout.setPadding(new Insets(20));
+
+        Label titleLabel = new Label("Recurring Expenses");
+        titleLabel.setStyle("-fx-font-size: 20; -fx-font-weight: bold;");
+
+        ComboBox<String> recurringCategoryComboBox = new ComboBox<>();
+        recurringCategoryComboBox.setPromptText("Select Category");
+        recurringCategoryComboBox.setMaxWidth(Double.MAX_VALUE);
+        try {
+            recurringCategoryComboBox.setItems(FXCollections.observableArrayList(expenseRepository.getCategoryNames()));
+        } catch (SQLException e) {
+            showAlert(Alert.AlertType.ERROR, "Error", "Unable to load categories: " + e.getMessage());
+        }
+
+        TextField recurringAmountInput = new TextField();
+        recurringAmountInput.setPromptText("Amount");
+
+        ComboBox<String> recurringCurrencyComboBox = new ComboBox<>(FXCollections.observableArrayList(Currency.codes()));
+        recurringCurrencyComboBox.setValue(Currency.code(Currency.BASE));
+
+        TextField recurringPayeeInput = new TextField();
+        recurringPayeeInput.setPromptText("Payee (optional)");
+
+        ComboBox<RecurrenceRule.Frequency> frequencyComboBox =
+                new ComboBox<>(FXCollections.observableArrayList(RecurrenceRule.Frequency.values()));
+        frequencyComboBox.setValue(RecurrenceRule.Frequency.MONTHLY);
+
+        TextField intervalInput = new TextField("1");
+        intervalInput.setPromptText("Every n");
+        intervalInput.setPrefWidth(60);
+
+        TextField cronInput = new TextField();
+        cronInput.setPromptText("Cron: day-of-month month day-of-week, e.g. L * *");
+        cronInput.disableProperty().bind(frequencyComboBox.valueProperty().isNotEqualTo(RecurrenceRule.Frequency.CRON));
+        intervalInput.disableProperty().bind(frequencyComboBox.valueProperty().isEqualTo(RecurrenceRule.Frequency.CRON));
+
+        DatePicker startDatePicker = new DatePicker(LocalDate.now());
+        startDatePicker.setPromptText("Start Date");
+        DatePicker endDatePicker = new DatePicker();
+        endDatePicker.setPromptText("End Date (optional)");
+
+        HBox amountBox = new HBox(5, recurringAmountInput, recurringCurrencyComboBox);
+        HBox ruleBox = new HBox(5, frequencyComboBox, new Label("Every:"), intervalInput);
+        ruleBox.setAlignment(Pos.CENTER_LEFT);
+        HBox dateBox = new HBox(5, startDatePicker, endDatePicker);
+
+        Button addButton = new Button("Add Recurring Expense");
+        addButton.setOnAction(e -> {
+            String category = recurringCategoryComboBox.getValue();
+            if (category == null) {
+                showAlert(Alert.AlertType.ERROR, "Error", "Please select a category.");
+                return;
+            }
+            try {
+                double amount = Double.parseDouble(recurringAmountInput.getText().trim());
+                RecurrenceRule.Frequency frequency = frequencyComboBox.getValue();
+                RecurrenceRule rule = frequency == RecurrenceRule.Frequency.CRON
+                        ? RecurrenceRule.cron(cronInput.getText())
+                        : RecurrenceRule.of(frequency, Integer.parseInt(intervalInput.getText().trim()), null);
+                if (startDatePicker.getValue() == null) {
+                    showAlert(Alert.AlertType.ERROR, "Error", "Please select a start date.");
+                    return;
+                }
+
+                dbManager.addRecurringExpense(category, amount, recurringCurrencyComboBox.getValue(),
+                        recurringPayeeInput.getText(), null, rule, startDatePicker.getValue(), endDatePicker.getValue());
+                recurringScheduler.runNow();
+                loadRecurringExpenses();
+                recurringAmountInput.clear();
+                recurringPayeeInput.clear();
+            } catch (NumberFormatException ex) {
+                showAlert(Alert.AlertType.ERROR, "Error", "Please enter a valid amount and interval.");
+            } catch (IllegalArgumentException ex) {
+                showAlert(Alert.AlertType.ERROR, "Error", ex.getMessage());
+            } catch (SQLException ex) {
+                showAlert(Alert.AlertType.ERROR, "Error", "Unable to add recurring expense: " + ex.getMessage());
+            }
+        });
+
+        Button deleteButton = new Button("Delete Selected");
+        deleteButton.setOnAction(e -> deleteSelectedRecurringExpense());
+
+        HBox buttonBox = new HBox(10, addButton, deleteButton);
+
+        recurringListView = new ListView<>();
+        recurringListView.setPrefHeight(200);
+
+        Button backButton = new Button("Back to Main Menu");
+        backButton.setMaxWidth(Double.MAX_VALUE);
+        backButton.setOnAction(e -> stage.setScene(mainScene));
+
+        layout.getChildren().addAll(
+                titleLabel,
+                recurringCategoryComboBox,
+                amountBox,
+                recurringPayeeInput,
+                ruleBox,
+                cronInput,
+                dateBox,
+                buttonBox,
+                recurringListView,
+                backButton
+        );
+
+        loadRecurringExpenses();
+
+        Scene scene = new Scene(layout, 500, 600);
         stage.setScene(scene);
     }
 
+    /**
+     * Load recurring expense rules into the list view
+     */
+    private void loadRecurringExpenses() {
+        try {
+            ObservableList<String> items = FXCollections.observableArrayList();
+            for (RecurringExpense rule : dbManager.getRecurringExpenses()) {
+                items.add(rule.toDisplayString());
+            }
+            if (items.isEmpty()) {
+                items.add("No recurring expenses.");
+            }
+            recurringListView.setItems(items);
+        } catch (SQLException e) {
+            showAlert(Alert.AlertType.ERROR, "Error", "Unable to load recurring expenses: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Delete the selected recurring expense rule, keeping the expenses it already generated
+     */
+    private void deleteSelectedRecurringExpense() {
+        String selected = recurringListView.getSelectionModel().getSelectedItem();
+        Matcher matcher = selected == null ? null : Pattern.compile("\\[ID (\\d+)\\]").matcher(selected);
+        if (matcher == null || !matcher.find()) {
+            showAlert(Alert.AlertType.WARNING, "Warning", "Please select a recurring expense to delete.");
+            return;
+        }
+
+        try {
+            if (dbManager.deleteRecurringExpense(Integer.parseInt(matcher.group(1)))) {
+                loadRecurringExpenses();
+            } else {
+                showAlert(Alert.AlertType.WARNING, "Warning", "Recurring expense was already deleted.");
+            }
+        } catch (SQLException e) {
+            showAlert(Alert.AlertType.ERROR, "Error", "Error deleting recurring expense: " + e.getMessage());
+        }
+    }
+
     /**
      * Create and show the reports scene
      */
@@ -283,36 +750,194 @@ public class ExpenseManagerApp extends Application {
         ListView<String> categoryBreakdownList = new ListView<>();
         categoryBreakdownList.setPrefHeight(200);
 
-        // Load total expenses
+        // Totals are converted from the loaded rows, so switching currency does not query again
+        ComboBox<String> displayCurrencyComboBox = new ComboBox<>(FXCollections.observableArrayList(Currency.codes()));
+        displayCurrencyComboBox.setValue(Currency.code(Currency.BASE));
+        ComboBox<DisplayCurrencyReport.RateBasis> rateBasisComboBox =
+                new ComboBox<>(FXCollections.observableArrayList(DisplayCurrencyReport.RateBasis.values()));
+        rateBasisComboBox.setValue(DisplayCurrencyReport.RateBasis.CURRENT);
+        HBox displayCurrencyBox = new HBox(5, new Label("Show in:"), displayCurrencyComboBox, rateBasisComboBox);
+        displayCurrencyBox.setAlignment(Pos.CENTER_LEFT);
+
+        showTotalsReport(totalExpensesLabel, categoryBreakdownList, displayCurrencyComboBox, rateBasisComboBox);
+
+        // Itemized statement written to a file in the background, page by page
+        Label statementLabel = new Label("Statement:");
+        statementLabel.setStyle("-fx-font-weight: bold;");
+
+        DatePicker statementFromPicker = new DatePicker(LocalDate.now().withDayOfMonth(1));
+        DatePicker statementToPicker = new DatePicker(LocalDate.now());
+        statementFromPicker.setPrefWidth(120);
+        statementToPicker.setPrefWidth(120);
+
+        ComboBox<ReportRenderer.Format> statementFormatComboBox =
+                new ComboBox<>(FXCollections.observableArrayList(ReportRenderer.Format.values()));
+        statementFormatComboBox.setValue(ReportRenderer.Format.PDF);
+
+        ProgressBar statementProgressBar = new ProgressBar(0);
+        statementProgressBar.setVisible(false);
+        Label statementStatusLabel = new Label();
+
+        Button saveStatementButton = new Button("Save Statement...");
+        saveStatementButton.setOnAction(e -> saveStatement(stage, statementFromPicker.getValue(),
+                statementToPicker.getValue(), statementFormatComboBox.getValue(), saveStatementButton,
+                statementProgressBar, statementStatusLabel));
+
+        HBox statementControls = new HBox(5, statementFromPicker, new Label("to"), statementToPicker,
+                statementFormatComboBox, saveStatementButton);
+        statementControls.setAlignment(Pos.CENTER_LEFT);
+        HBox statementProgressBox = new HBox(5, statementProgressBar, statementStatusLabel);
+        statementProgressBox.setAlignment(Pos.CENTER_LEFT);
+
+        // This year's spending across every ledger, aggregated in parallel
+        Label consolidatedLabel = new Label("All Ledgers (this year):");
+        consolidatedLabel.setStyle("-fx-font-weight: bold;");
+
+        ListView<String> consolidatedList = new ListView<>();
+        consolidatedList.setPrefHeight(150);
+        showConsolidatedReport(consolidatedList);
+
+        // Budget status comes straight from the tracker's counters
+        Label budgetsLabel = new Label("Budgets (current period):");
+        budgetsLabel.setStyle("-fx-font-weight: bold;");
+
+        ListView<String> budgetStatusList = new ListView<>();
+        budgetStatusList.setPrefHeight(150);
+        refreshBudgetStatuses(budgetStatusList);
+
+        ComboBox<String> budgetCategoryComboBox = new ComboBox<>();
+        budgetCategoryComboBox.setPromptText("Category");
         try {
-            double totalExpenses = dbManager.getTotalExpenses();
-            totalExpensesLabel.setText(String.format("Total Expenses: $%.2f USD", totalExpenses));
-
-            // Load category breakdown
-            List<String> categories = dbManager.getCategories();
-            ObservableList<String> breakdownItems = FXCollections.observableArrayList();
-
-            for (String category : categories) {
-                double categoryTotal = dbManager.getTotalExpensesByCategory(category);
-                double percentage = totalExpenses > 0 ? (categoryTotal / totalExpenses) * 100 : 0;
-
-                breakdownItems.add(String.format(
-                        "%s: $%.2f (%.1f%%)",
-                        category, categoryTotal, percentage
-                ));
-            }
-
-            categoryBreakdownList.setItems(breakdownItems);
-
+            budgetCategoryComboBox.setItems(FXCollections.observableArrayList(expenseRepository.getCategoryNames()));
         } catch (SQLException e) {
-            totalExpensesLabel.setText("Error loading expenses: " + e.getMessage());
+            budgetsLabel.setText("Error loading categories: " + e.getMessage());
         }
 
+        ComboBox<Model.BudgetPeriod> budgetPeriodComboBox =
+                new ComboBox<>(FXCollections.observableArrayList(Model.BudgetPeriod.values()));
+        budgetPeriodComboBox.setValue(Model.BudgetPeriod.MONTHLY);
+
+        TextField budgetLimitInput = new TextField();
+        budgetLimitInput.setPromptText("Limit (USD)");
+        budgetLimitInput.setPrefWidth(90);
+
+        TextField budgetThresholdInput = new TextField("80");
+        budgetThresholdInput.setPromptText("Alert %");
+        budgetThresholdInput.setPrefWidth(50);
+
+        Button saveBudgetButton = new Button("Save Budget");
+        saveBudgetButton.setOnAction(e -> saveBudget(budgetCategoryComboBox.getValue(),
+                budgetPeriodComboBox.getValue(), budgetLimitInput.getText(), budgetThresholdInput.getText(),
+                budgetStatusList));
+
+        Button deleteBudgetButton = new Button("Delete Budget");
+        deleteBudgetButton.setOnAction(e -> deleteBudget(budgetCategoryComboBox.getValue(),
+                budgetPeriodComboBox.getValue(), budgetStatusList));
+
+        HBox budgetForm = new HBox(5, budgetCategoryComboBox, budgetPeriodComboBox, budgetLimitInput,
+                new Label("Alert %:"), budgetThresholdInput);
+        budgetForm.setAlignment(Pos.CENTER_LEFT);
+        HBox budgetButtons = new HBox(5, saveBudgetButton, deleteBudgetButton);
+
+        // Spending history chart, rolled up from the in-memory daily series
+        Label historyLabel = new Label("Spending History:");
+        historyLabel.setStyle("-fx-font-weight: bold;");
+
+        ComboBox<String> historyCategoryComboBox = new ComboBox<>();
+        historyCategoryComboBox.getItems().add(ALL_CATEGORIES);
+        historyCategoryComboBox.getItems().addAll(spendingHistory.categories());
+        historyCategoryComboBox.setValue(ALL_CATEGORIES);
+
+        ComboBox<SpendingHistory.Granularity> granularityComboBox =
+                new ComboBox<>(FXCollections.observableArrayList(SpendingHistory.Granularity.values()));
+        granularityComboBox.setValue(SpendingHistory.Granularity.MONTH);
+
+        DatePicker historyFromPicker = new DatePicker(LocalDate.now().minusYears(1).withDayOfMonth(1));
+        DatePicker historyToPicker = new DatePicker(LocalDate.now());
+        historyFromPicker.setPrefWidth(120);
+        historyToPicker.setPrefWidth(120);
+
+        StackPane historyChartHolder = new StackPane();
+        historyChartHolder.setPrefHeight(260);
+        Runnable refreshHistory = () -> updateHistoryChart(historyChartHolder, historyCategoryComboBox.getValue(),
+                granularityComboBox.getValue(), historyFromPicker.getValue(), historyToPicker.getValue());
+        historyCategoryComboBox.setOnAction(e -> refreshHistory.run());
+        granularityComboBox.setOnAction(e -> refreshHistory.run());
+        historyFromPicker.setOnAction(e -> refreshHistory.run());
+        historyToPicker.setOnAction(e -> refreshHistory.run());
+        refreshHistory.run();
+
+        HBox historyControls = new HBox(5, historyCategoryComboBox, granularityComboBox,
+                historyFromPicker, new Label("to"), historyToPicker);
+        historyControls.setAlignment(Pos.CENTER_LEFT);
+
+        // Spending forecast per category, trained in the background
+        Label forecastLabel = new Label("Spending Forecast:");
+        forecastLabel.setStyle("-fx-font-weight: bold;");
+
+        ComboBox<SpendingHistory.Granularity> forecastGranularityComboBox = new ComboBox<>(
+                FXCollections.observableArrayList(SpendingHistory.Granularity.WEEK, SpendingHistory.Granularity.MONTH));
+        forecastGranularityComboBox.setValue(SpendingHistory.Granularity.MONTH);
+
+        Spinner<Integer> forecastHorizonSpinner = new Spinner<>(1, 12, 3);
+        forecastHorizonSpinner.setPrefWidth(70);
+
+        ListView<String> forecastList = new ListView<>();
+        forecastList.setPrefHeight(150);
+
+        Button forecastButton = new Button("Forecast");
+        forecastButton.setOnAction(e -> showSpendingForecast(forecastList,
+                forecastGranularityComboBox.getValue(), forecastHorizonSpinner.getValue()));
+        showSpendingForecast(forecastList, forecastGranularityComboBox.getValue(), forecastHorizonSpinner.getValue());
+
+        HBox forecastControls = new HBox(5, forecastGranularityComboBox, new Label("Next:"),
+                forecastHorizonSpinner, forecastButton);
+        forecastControls.setAlignment(Pos.CENTER_LEFT);
+
+        // Amount percentiles and distinct payees, merged from the monthly sketches
+        Label distributionLabel = new Label("Spending Distribution:");
+        distributionLabel.setStyle("-fx-font-weight: bold;");
+
+        ComboBox<String> distributionRangeComboBox = new ComboBox<>(FXCollections.observableArrayList(
+                "This month", "This quarter", "This year", "Last 12 months"));
+        distributionRangeComboBox.setValue("Last 12 months");
+
+        ListView<String> distributionList = new ListView<>();
+        distributionList.setPrefHeight(150);
+        distributionRangeComboBox.setOnAction(e -> showSpendingDistribution(distributionList,
+                distributionRangeComboBox.getValue()));
+        showSpendingDistribution(distributionList, distributionRangeComboBox.getValue());
+
         reportsContent.getChildren().addAll(
                 totalExpensesLabel,
+                displayCurrencyBox,
                 new Separator(),
                 categoryBreakdownLabel,
-                categoryBreakdownList
+                categoryBreakdownList,
+                new Separator(),
+                statementLabel,
+                statementControls,
+                statementProgressBox,
+                new Separator(),
+                consolidatedLabel,
+                consolidatedList,
+                new Separator(),
+                budgetsLabel,
+                budgetStatusList,
+                budgetForm,
+                budgetButtons,
+                new Separator(),
+                historyLabel,
+                historyControls,
+                historyChartHolder,
+                new Separator(),
+                forecastLabel,
+                forecastControls,
+                forecastList,
+                new Separator(),
+                distributionLabel,
+                distributionRangeComboBox,
+                distributionList
         );
 
         // Back button
@@ -325,10 +950,13 @@ public class ExpenseManagerApp extends Application {
         bottomBox.getChildren().add(backButton);
 
         layout.setTop(topBox);
-        layout.setCenter(reportsContent);
+        ScrollPane scrollPane = new ScrollPane(reportsContent);
+        scrollPane.setFitToWidth(true);
+
+        layout.setCenter(scrollPane);
         layout.setBottom(bottomBox);
 
-        Scene scene = new Scene(layout, 500, 500);
+        Scene scene = new Scene(layout, 620, 800);
         stage.setScene(scene);
     }
 
@@ -353,7 +981,8 @@ public class ExpenseManagerApp extends Application {
         Label explanationLabel = new Label(
                 "This screen uses machine learning (linear regression) to predict currency " +
                         "exchange rate trends based on historical data from the past 30 days. " +
-                        "The predictions show the expected exchange rates for the next 7 days."
+                        "The predictions show the expected exchange rates for the next 7 days, " +
+                        "with the range that 90% of bootstrapped outcomes fall in."
         );
         explanationLabel.setWrapText(true);
 
@@ -386,6 +1015,14 @@ public class ExpenseManagerApp extends Application {
         predictedRateCol.setCellValueFactory(new PropertyValueFactory<>("predictedRate"));
         predictedRateCol.setPrefWidth(130);
 
+        TableColumn<CurrencyPredictionData, String> lowerRateCol = new TableColumn<>("Low (90%)");
+        lowerRateCol.setCellValueFactory(new PropertyValueFactory<>("lowerRate"));
+        lowerRateCol.setPrefWidth(90);
+
+        TableColumn<CurrencyPredictionData, String> upperRateCol = new TableColumn<>("High (90%)");
+        upperRateCol.setCellValueFactory(new PropertyValueFactory<>("upperRate"));
+        upperRateCol.setPrefWidth(90);
+
         TableColumn<CurrencyPredictionData, String> changeCol = new TableColumn<>("% Change");
         changeCol.setCellValueFactory(new PropertyValueFactory<>("changePercentage"));
         changeCol.setPrefWidth(100);
@@ -394,7 +1031,8 @@ public class ExpenseManagerApp extends Application {
         recommendationCol.setCellValueFactory(new PropertyValueFactory<>("recommendation"));
         recommendationCol.setPrefWidth(200);
 
-        tableView.getColumns().addAll(currencyCol, currentRateCol, predictedRateCol, changeCol, recommendationCol);
+        tableView.getColumns().addAll(currencyCol, currentRateCol, predictedRateCol, lowerRateCol, upperRateCol,
+                changeCol, recommendationCol);
 
         // Add the main components to the content box
         contentBox.getChildren().addAll(explanationLabel, statusBox, tableView);
@@ -410,36 +1048,28 @@ public class ExpenseManagerApp extends Application {
 
                 for (String currency : currencies) {
                     Map<LocalDate, Double> historicalRates = predictor.getHistoricalRates(currency);
-                    Map<LocalDate, Double> predictions = predictor.predictFutureRates(currency);
+                    List<CurrencyPredictor.PredictionBand> bands = predictor.predictRateBands(currency);
 
                     // Get current rate (last historical value)
                     double currentRate = historicalRates.values().stream()
                             .reduce((first, second) -> second).orElse(1.0);
 
-                    // Get predicted rate in 7 days
-                    double futureRate = predictions.values().stream()
-                            .reduce((first, second) -> second).orElse(currentRate);
+                    // Get predicted rate and its range in 7 days
+                    CurrencyPredictor.PredictionBand band = bands.get(bands.size() - 1);
+                    double futureRate = band.predicted();
 
                     // Calculate percentage change
                     double changePercentage = ((futureRate - currentRate) / currentRate) * 100;
 
-                    // Create recommendation
-                    String recommendation;
-                    if (Math.abs(changePercentage) < 0.5) {
-                        recommendation = "Stable";
-                    } else if (changePercentage > 0) {
-                        recommendation = "USD likely to strengthen";
-                    } else {
-                        recommendation = "USD likely to weaken";
-                    }
-
                     // Create data object
                     CurrencyPredictionData data = new CurrencyPredictionData(
                             currency,
                             String.format("1 USD = %.4f %s", currentRate, currency),
                             String.format("1 USD = %.4f %s", futureRate, currency),
+                            String.format("%.4f", band.lower()),
+                            String.format("%.4f", band.upper()),
                             String.format("%.2f%%", changePercentage),
-                            recommendation
+                            CurrencyPredictor.recommendation(currentRate, band)
                     );
 
                     predictionData.add(data);
@@ -493,7 +1123,7 @@ public class ExpenseManagerApp extends Application {
      */
     private void loadCategories() {
         try {
-            List<String> categories = dbManager.getCategories();
+            List<String> categories = expenseRepository.getCategoryNames();
             categoryListView.getItems().setAll(categories);
         } catch (SQLException e) {
             showAlert(Alert.AlertType.ERROR, "Error", "Unable to load categories: " + e.getMessage());
@@ -505,7 +1135,7 @@ public class ExpenseManagerApp extends Application {
      */
     private void loadCategoriesIntoComboBox() {
         try {
-            List<String> categories = dbManager.getCategories();
+            List<String> categories = expenseRepository.getCategoryNames();
             categoryComboBox.getItems().setAll(categories);
         } catch (SQLException e) {
             showAlert(Alert.AlertType.ERROR, "Error", "Unable to load categories: " + e.getMessage());
@@ -523,7 +1153,7 @@ public class ExpenseManagerApp extends Application {
         }
 
         try {
-            dbManager.addCategory(categoryName);
+            expenseRepository.addCategory(categoryName);
             loadCategories();
             categoryInput.clear();
             showAlert(Alert.AlertType.INFORMATION, "Success", "Category added successfully.");
@@ -563,7 +1193,7 @@ public class ExpenseManagerApp extends Application {
         boolean deleteExpenses = result.get() == buttonTypeYes;
 
         try {
-            boolean success = dbManager.deleteCategory(selectedCategory, deleteExpenses);
+            boolean success = expenseRepository.deleteCategory(selectedCategory, deleteExpenses);
 
             if (success) {
                 loadCategories();
@@ -592,14 +1222,17 @@ public class ExpenseManagerApp extends Application {
 
         try {
             double amount = Double.parseDouble(amountInput.getText());
-            dbManager.addExpense(categoryName, amount, transactionDatePicker.getValue().toString(),
-                    expenseDatePicker.getValue().toString(), currency);
+            dbManager.addExpenses(List.of(new ExpenseEntry(categoryName, amount,
+                    transactionDatePicker.getValue().toString(), expenseDatePicker.getValue().toString(), currency,
+                    payeeInput.getText(), descriptionInput.getText())));
 
             // Show success message
             setStatusMessage("Expense added successfully in USD.", "success");
 
             // Clear the form
             amountInput.clear();
+            payeeInput.clear();
+            descriptionInput.clear();
             transactionDatePicker.setValue(null);
             expenseDatePicker.setValue(null);
             currencyComboBox.setValue(null);
@@ -616,6 +1249,63 @@ public class ExpenseManagerApp extends Application {
         }
     }
 
+    /**
+     * Add the form contents as a split row to be saved later with the other rows
+     */
+    private void addPendingExpense() {
+        String categoryName = categoryComboBox.getValue();
+        String currency = currencyComboBox.getValue();
+
+        if (categoryName == null || amountInput.getText().isEmpty() ||
+                transactionDatePicker.getValue() == null || expenseDatePicker.getValue() == null || currency == null) {
+            setStatusMessage("All fields must be filled out.", "error");
+            return;
+        }
+
+        try {
+            double amount = Double.parseDouble(amountInput.getText());
+            ExpenseEntry entry = new ExpenseEntry(categoryName, amount, transactionDatePicker.getValue().toString(),
+                    expenseDatePicker.getValue().toString(), currency, payeeInput.getText(), descriptionInput.getText());
+            pendingExpenses.add(entry);
+            pendingExpenseListView.getItems().add(entry.toString());
+
+            // Keep dates and currency, since split rows usually share them
+            amountInput.clear();
+            payeeInput.clear();
+            descriptionInput.clear();
+            setStatusMessage(pendingExpenses.size() + " split row(s) ready to save.", "success");
+        } catch (NumberFormatException e) {
+            setStatusMessage("Invalid amount. Please enter a numeric value.", "error");
+        }
+    }
+
+    /**
+     * Save all pending split rows in a single transaction
+     */
+    private void savePendingExpenses() {
+        if (pendingExpenses.isEmpty()) {
+            setStatusMessage("No split rows to save.", "error");
+            return;
+        }
+
+        try {
+            int[] ids = dbManager.addExpenses(pendingExpenses);
+            setStatusMessage(String.format("Saved %d expenses in USD (IDs %d-%d).",
+                    ids.length, ids[0], ids[ids.length - 1]), "success");
+
+            pendingExpenses.clear();
+            pendingExpenseListView.getItems().clear();
+
+            if (categoryComboBox.getValue() != null) {
+                viewExpensesByCategory();
+            } else {
+                viewAllExpenses();
+            }
+        } catch (Exception e) {
+            setStatusMessage("Error saving split rows: " + e.getMessage(), "error");
+        }
+    }
+
     /**
      * Delete the selected expense
      */
@@ -705,6 +1395,362 @@ public class ExpenseManagerApp extends Application {
         }
     }
 
+    /**
+     * Search expenses using the text and filters from the search panel
+     */
+    private void searchExpenses() {
+        if (!searchIndex.isReady()) {
+            setStatusMessage("Search index is still loading, please try again in a moment.", "error");
+            return;
+        }
+
+        ExpenseSearchIndex.Query query = new ExpenseSearchIndex.Query()
+                .text(searchInput.getText())
+                .dateBetween(searchFromDatePicker.getValue(), searchToDatePicker.getValue());
+
+        try {
+            query.amountBetween(parseOptionalAmount(minAmountInput.getText()), parseOptionalAmount(maxAmountInput.getText()));
+        } catch (NumberFormatException e) {
+            setStatusMessage("Invalid amount range. Please enter numeric values.", "error");
+            return;
+        }
+
+        if (!"Any currency".equals(searchCurrencyComboBox.getValue())) {
+            query.currency(searchCurrencyComboBox.getValue());
+        }
+        if (!"Any category".equals(searchCategoryComboBox.getValue())) {
+            query.category(searchCategoryComboBox.getValue());
+        }
+
+        List<ExpenseRecord> results = searchIndex.search(query);
+        if (results.isEmpty()) {
+            expenseListView.getItems().setAll("No expenses found matching the search.");
+        } else {
+            expenseListView.getItems().setAll(results.stream().map(ExpenseRecord::toDisplayString).toList());
+        }
+        setStatusMessage(results.size() + " matching expense(s).", "success");
+    }
+
+    private static Double parseOptionalAmount(String text) {
+        return text == null || text.isBlank() ? null : Double.parseDouble(text.trim());
+    }
+
+    /**
+     * Replace the history chart: a line chart for daily and weekly buckets, bars for months and years
+     */
+    private void updateHistoryChart(StackPane chartHolder, String category, SpendingHistory.Granularity granularity,
+                                    LocalDate from, LocalDate to) {
+        if (granularity == null || from == null || to == null || from.isAfter(to)) {
+            return;
+        }
+        if (!spendingHistory.isReady()) {
+            chartHolder.getChildren().setAll(new Label("Spending history is still loading..."));
+            return;
+        }
+
+        List<SpendingHistory.Bucket> buckets = spendingHistory.series(
+                ALL_CATEGORIES.equals(category) ? null : category, granularity, from, to);
+
+        XYChart.Series<String, Number> series = new XYChart.Series<>();
+        for (SpendingHistory.Bucket bucket : buckets) {
+            String label = switch (granularity) {
+                case DAY, WEEK -> bucket.start().toString();
+                case MONTH -> bucket.start().toString().substring(0, 7);
+                case YEAR -> String.valueOf(bucket.start().getYear());
+            };
+            series.getData().add(new XYChart.Data<>(label, bucket.total()));
+        }
+
+        NumberAxis yAxis = new NumberAxis();
+        yAxis.setLabel("USD");
+        XYChart<String, Number> chart;
+        if (granularity == SpendingHistory.Granularity.DAY || granularity == SpendingHistory.Granularity.WEEK) {
+            LineChart<String, Number> lineChart = new LineChart<>(new CategoryAxis(), yAxis);
+            lineChart.setCreateSymbols(buckets.size() <= 60);
+            chart = lineChart;
+        } else {
+            chart = new BarChart<>(new CategoryAxis(), yAxis);
+        }
+        chart.setAnimated(false);
+        chart.setLegendVisible(false);
+        chart.getData().add(series);
+        chartHolder.getChildren().setAll(chart);
+    }
+
+    /**
+     * Train (if needed) and show per-category spending forecasts without blocking the UI
+     */
+    private void showSpendingForecast(ListView<String> forecastList, SpendingHistory.Granularity granularity,
+                                      int horizon) {
+        if (!spendingHistory.isReady()) {
+            forecastList.setItems(FXCollections.observableArrayList("Spending history is still loading..."));
+            return;
+        }
+        forecastList.setItems(FXCollections.observableArrayList("Forecasting..."));
+
+        Task<List<SpendingForecaster.Forecast>> task = new Task<>() {
+            @Override
+            protected List<SpendingForecaster.Forecast> call() {
+                return spendingForecaster.forecastAll(granularity, horizon);
+            }
+        };
+        task.setOnSucceeded(e -> {
+            ObservableList<String> items = FXCollections.observableArrayList();
+            for (SpendingForecaster.Forecast forecast : task.getValue()) {
+                items.add(forecast.toDisplayString());
+            }
+            if (items.isEmpty()) {
+                items.add("Not enough history to forecast.");
+            }
+            forecastList.setItems(items);
+        });
+        task.setOnFailed(e -> {
+            Metrics.failure("forecast.spending", task.getException());
+            forecastList.setItems(FXCollections.observableArrayList(
+                    "Error forecasting spending: " + task.getException().getMessage()));
+        });
+
+        Thread thread = new Thread(task, "spending-forecast");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Load all-time spending once in the background, then show the total and category breakdown in
+     * the chosen currency and rate basis, re-rendering from the loaded rows when either changes
+     */
+    private void showTotalsReport(Label totalLabel, ListView<String> breakdownList,
+                                  ComboBox<String> currencyComboBox,
+                                  ComboBox<DisplayCurrencyReport.RateBasis> basisComboBox) {
+        Task<DisplayCurrencyReport> task = new Task<>() {
+            @Override
+            protected DisplayCurrencyReport call() throws Exception {
+                return DisplayCurrencyReport.load(dbManager, "0001-01-01", "9999-12-31");
+            }
+        };
+        task.setOnSucceeded(e -> {
+            DisplayCurrencyReport report = task.getValue();
+            // Offline without stored rates some currencies cannot be shown; USD always can
+            List<String> available = report.availableCurrencies();
+            if (!available.contains(currencyComboBox.getValue())) {
+                currencyComboBox.setValue(Currency.code(Currency.BASE));
+            }
+            currencyComboBox.setItems(FXCollections.observableArrayList(available));
+            currencyComboBox.setDisable(available.size() < 2);
+            Runnable render = () -> {
+                String currency = currencyComboBox.getValue();
+                DisplayCurrencyReport.RateBasis basis = basisComboBox.getValue();
+                double total = report.total(currency, basis);
+                totalLabel.setText(String.format("Total Expenses: %.2f %s", total, currency));
+
+                ObservableList<String> items = FXCollections.observableArrayList();
+                report.totalsByCategory(currency, basis).forEach((category, spent) -> items.add(String.format(
+                        "%s: %.2f %s (%.1f%%)", category, spent, currency, total > 0 ? spent / total * 100 : 0)));
+                breakdownList.setItems(items);
+            };
+            currencyComboBox.setOnAction(event -> render.run());
+            basisComboBox.setOnAction(event -> render.run());
+            render.run();
+        });
+        task.setOnFailed(e -> {
+            Metrics.failure("report.displayCurrency", task.getException());
+            totalLabel.setText("Error loading expenses: " + task.getException().getMessage());
+        });
+
+        Thread thread = new Thread(task, "totals-report");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Ask for a file and render the statement for [from, to] into it without blocking the UI
+     */
+    private void saveStatement(Stage stage, LocalDate from, LocalDate to, ReportRenderer.Format format,
+                               Button saveButton, ProgressBar progressBar, Label statusLabel) {
+        if (from == null || to == null || to.isBefore(from)) {
+            showAlert(Alert.AlertType.ERROR, "Error", "Please choose a valid date range");
+            return;
+        }
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setInitialFileName(String.format("statement-%s-%s.%s", from, to, format.extension()));
+        fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter(
+                format.name() + " files", "*." + format.extension()));
+        File file = fileChooser.showSaveDialog(stage);
+        if (file == null) {
+            return;
+        }
+
+        Task<ReportRenderer.Result> task = new Task<>() {
+            @Override
+            protected ReportRenderer.Result call() throws Exception {
+                // The renderer's end date is exclusive
+                return new ReportRenderer(dbManager).render(from.toString(), to.plusDays(1).toString(), format,
+                        Files.newOutputStream(file.toPath()), (done, total, pages) -> {
+                            updateProgress(done, Math.max(1, total));
+                            updateMessage(String.format("%d of %d expenses, %d pages", done, total, pages));
+                        });
+            }
+        };
+        progressBar.progressProperty().bind(task.progressProperty());
+        statusLabel.textProperty().bind(task.messageProperty());
+        progressBar.setVisible(true);
+        saveButton.setDisable(true);
+
+        task.setOnSucceeded(e -> {
+            ReportRenderer.Result result = task.getValue();
+            statusLabel.textProperty().unbind();
+            statusLabel.setText(String.format("Saved %d pages to %s (%.0f pages/s)", result.pages(),
+                    file.getName(), result.pagesPerSecond()));
+            progressBar.setVisible(false);
+            saveButton.setDisable(false);
+        });
+        task.setOnFailed(e -> {
+            Metrics.failure("report.statement", task.getException());
+            statusLabel.textProperty().unbind();
+            statusLabel.setText("Error saving statement: " + task.getException().getMessage());
+            progressBar.setVisible(false);
+            saveButton.setDisable(false);
+        });
+
+        Thread thread = new Thread(task, "statement-render");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Show this year's per-ledger and per-category spending across all ledgers without blocking the UI
+     */
+    private void showConsolidatedReport(ListView<String> consolidatedList) {
+        consolidatedList.setItems(FXCollections.observableArrayList("Loading..."));
+        LocalDate today = LocalDate.now();
+
+        Task<Ledgers.ConsolidatedReport> task = new Task<>() {
+            @Override
+            protected Ledgers.ConsolidatedReport call() throws SQLException {
+                return ledgers.consolidatedReport(today.withDayOfYear(1).toString(), today.plusDays(1).toString());
+            }
+        };
+        task.setOnSucceeded(e -> {
+            Ledgers.ConsolidatedReport report = task.getValue();
+            ObservableList<String> items = FXCollections.observableArrayList();
+            items.add(String.format("Total: $%.2f USD", report.total()));
+            report.spendingByLedger().forEach((ledger, spent) ->
+                    items.add(String.format("Ledger %s: $%.2f", ledger, spent)));
+            report.spendingByCategory().forEach((category, spent) ->
+                    items.add(String.format("%s: $%.2f", category, spent)));
+            consolidatedList.setItems(items);
+        });
+        task.setOnFailed(e -> {
+            Metrics.failure("ledgers.consolidatedReport", task.getException());
+            consolidatedList.setItems(FXCollections.observableArrayList(
+                    "Error loading ledgers: " + task.getException().getMessage()));
+        });
+
+        Thread thread = new Thread(task, "consolidated-report");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Show median, 90th percentile and distinct payees overall and per category for a range of months
+     */
+    private void showSpendingDistribution(ListView<String> distributionList, String range) {
+        if (!expenseSketches.isReady()) {
+            distributionList.setItems(FXCollections.observableArrayList("Spending sketches are still loading..."));
+            return;
+        }
+        YearMonth to = YearMonth.now();
+        YearMonth from = switch (range) {
+            case "This month" -> to;
+            case "This quarter" -> to.minusMonths((to.getMonthValue() - 1) % 3);
+            case "This year" -> to.withMonth(1);
+            default -> to.minusMonths(11);
+        };
+
+        ObservableList<String> items = FXCollections.observableArrayList();
+        try {
+            items.add(expenseSketches.summarize(null, from, to).toDisplayString(ALL_CATEGORIES));
+            for (String category : expenseSketches.categories()) {
+                ExpenseSketches.Summary summary = expenseSketches.summarize(category, from, to);
+                if (summary.count() > 0) {
+                    items.add(summary.toDisplayString(category));
+                }
+            }
+        } catch (SQLException e) {
+            Metrics.failure("sketches.summarize", e);
+            items.setAll("Error loading spending distribution: " + e.getMessage());
+        }
+        distributionList.setItems(items);
+    }
+
+    /**
+     * Show the tracker's current budget statuses
+     */
+    private void refreshBudgetStatuses(ListView<String> budgetStatusList) {
+        ObservableList<String> items = FXCollections.observableArrayList();
+        for (BudgetTracker.BudgetStatus status : budgetTracker.getStatuses()) {
+            items.add(status.toDisplayString());
+        }
+        if (items.isEmpty()) {
+            items.add("No budgets set.");
+        }
+        budgetStatusList.setItems(items);
+    }
+
+    /**
+     * Save a budget and reload the tracker so its counters include the new budget
+     */
+    private void saveBudget(String category, Model.BudgetPeriod period, String limitText, String thresholdText,
+                            ListView<String> budgetStatusList) {
+        if (category == null || period == null) {
+            showAlert(Alert.AlertType.ERROR, "Error", "Please select a category and a period.");
+            return;
+        }
+
+        double limit;
+        double thresholdPercent;
+        try {
+            limit = Double.parseDouble(limitText.trim());
+            thresholdPercent = Double.parseDouble(thresholdText.trim());
+        } catch (NumberFormatException e) {
+            showAlert(Alert.AlertType.ERROR, "Error", "Please enter a valid limit and alert percentage.");
+            return;
+        }
+        if (limit <= 0 || thresholdPercent <= 0 || thresholdPercent > 100) {
+            showAlert(Alert.AlertType.ERROR, "Error", "Limit must be positive and alert percentage between 1 and 100.");
+            return;
+        }
+
+        try {
+            dbManager.saveBudget(category, period, limit, thresholdPercent / 100);
+            budgetTracker.load(dbManager);
+            refreshBudgetStatuses(budgetStatusList);
+        } catch (SQLException e) {
+            showAlert(Alert.AlertType.ERROR, "Error", "Unable to save budget: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Delete a budget and reload the tracker
+     */
+    private void deleteBudget(String category, Model.BudgetPeriod period, ListView<String> budgetStatusList) {
+        if (category == null || period == null) {
+            showAlert(Alert.AlertType.WARNING, "Warning", "Please select a category and a period.");
+            return;
+        }
+
+        try {
+            if (dbManager.deleteBudget(category, period)) {
+                budgetTracker.load(dbManager);
+                refreshBudgetStatuses(budgetStatusList);
+            } else {
+                showAlert(Alert.AlertType.WARNING, "Warning", "No " + period + " budget set for " + category + ".");
+            }
+        } catch (SQLException e) {
+            showAlert(Alert.AlertType.ERROR, "Error", "Unable to delete budget: " + e.getMessage());
+        }
+    }
+
     /**
      * Display a status message
      */
@@ -729,6 +1775,11 @@ public class ExpenseManagerApp extends Application {
      * Main method to launch the application
      */
     public static void main(String[] args) {
+        for (String arg : args) {
+            if (arg.startsWith("--ledger=")) {
+                System.setProperty(LEDGER_PROPERTY, arg.substring("--ledger=".length()));
+            }
+        }
         launch(args);
     }
 }
\ No newline at end of file
@@ -0,0 +1,52 @@
+package org.example.project;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+
+/**
+ * One stored expense row, with the amount already converted to USD
+ * @param originalAmount Amount as entered, in the original currency; null for rows stored before
+ *                       it was kept
+ */
+public record ExpenseRecord(int id, int categoryId, String categoryName, double amount, String transactionDate,
+                            String expenseDate, String currency, String payee, String description,
+                            Double originalAmount) {
+
+    /**
+     * Transaction date as a LocalDate, or null if the stored text is not an ISO date
+     */
+    public LocalDate transactionLocalDate() {
+        return parseDate(transactionDate);
+    }
+
+    /**
+     * Expense date as a LocalDate, or null if the stored text is not an ISO date
+     */
+    public LocalDate expenseLocalDate() {
+        return parseDate(expenseDate);
+    }
+
+    /**
+     * Format the row the same way the expense lists show it
+     */
+    public String toDisplayString() {
+        StringBuilder sb = new StringBuilder(String.format(
+                "[ID %d] Category: %s, Amount: %.2f USD, Transaction Date: %s, Expense Date: %s, Original Currency: %s",
+                id, categoryName, amount, transactionDate, expenseDate, currency));
+        if (payee != null && !payee.isEmpty()) {
+            sb.append(", Payee: ").append(payee);
+        }
+        if (description != null && !description.isEmpty()) {
+            sb.append(", Description: ").append(description);
+        }
+        return sb.toString();
+    }
+
+    private static LocalDate parseDate(String text) {
+        try {
+            return text == null ? null : LocalDate.parse(text);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package org.example.project;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maps categories and expenses rows to the Model types. Each entity is read once and kept in
+ * an identity map, so repeated reads do not touch SQLite; batch lookups fetch every missing
+ * entity in one query instead of one per entity. Expenses and transactions sit in
+ * weight-bounded LRU caches; the expense listener keeps them current. Categories and
+ * transactions cannot be changed and are shared; a mutable Expense is returned as a copy of
+ * the cached columns, so callers cannot change what the next caller reads.
+ */
+public class ExpenseRepository implements ExpenseListener {
+
+    private final DatabaseManager dbManager;
+
+    // All category names in table order, and one Category instance per name; null until read
+    private List<String> categoryNames;
+    private final Map<String, Model.Category> categories = new HashMap<>();
+
+    // Per-category transactions, weighed by transaction count
+    private final LruCache<String, CachedExpense> expenses;
+    // Single expense rows by id
+    private final LruCache<Integer, Model.Transaction> transactions;
+
+    public ExpenseRepository(DatabaseManager dbManager, long maxCachedTransactions) {
+        this.dbManager = dbManager;
+        this.expenses = new LruCache<>("repository.expenses", maxCachedTransactions,
+                expense -> 1 + expense.columns.size());
+        this.transactions = new LruCache<>("repository.transactions", maxCachedTransactions, transaction -> 1);
+    }
+
+    /**
+     * One category's transactions and the highest expense id among them. Rows the listener
+     * delivers with an id up to that one were already read with the columns.
+     */
+    private static final class CachedExpense {
+        final Model.TransactionColumns columns = new Model.TransactionColumns();
+        int loadedThroughId;
+    }
+
+    /**
+     * Category names in the order the database returns them
+     */
+    public synchronized List<String> getCategoryNames() throws SQLException {
+        loadCategories();
+        return List.copyOf(categoryNames);
+    }
+
+    /**
+     * The category with this name, or null if it does not exist
+     */
+    public synchronized Model.Category findCategory(String name) throws SQLException {
+        loadCategories();
+        return categories.get(name);
+    }
+
+    public synchronized void addCategory(String name) throws SQLException {
+        dbManager.addCategory(name);
+        categoryNames = null; // Re-read so the order matches the table
+    }
+
+    public synchronized boolean deleteCategory(String name, boolean deleteExpenses) throws SQLException {
+        boolean deleted = dbManager.deleteCategory(name, deleteExpenses);
+        if (deleted) {
+            categoryNames = null;
+            categories.remove(name);
+            expenses.remove(name);
+        }
+        return deleted;
+    }
+
+    /**
+     * One expense row as a transaction, or null if there is no expense with this id
+     */
+    public synchronized Model.Transaction findTransaction(int expenseId) throws SQLException {
+        return findTransactions(List.of(expenseId)).get(expenseId);
+    }
+
+    /**
+     * Transactions by expense id, in the order of the ids given; missing ids are left out
+     */
+    public synchronized Map<Integer, Model.Transaction> findTransactions(Collection<Integer> expenseIds)
+            throws SQLException {
+        Map<Integer, Model.Transaction> found = new LinkedHashMap<>();
+        List<Integer> missing = new ArrayList<>();
+        for (int id : new LinkedHashSet<>(expenseIds)) {
+            Model.Transaction transaction = transactions.get(id);
+            found.put(id, transaction);
+            if (transaction == null) {
+                missing.add(id);
+            }
+        }
+        dbManager.forEachExpenseById(missing, record -> {
+            Model.Transaction transaction = new Model.Transaction(record.transactionDate(), record.amount());
+            transactions.put(record.id(), transaction);
+            found.put(record.id(), transaction);
+        });
+        found.values().removeIf(transaction -> transaction == null);
+        return found;
+    }
+
+    /**
+     * All of a category's transactions as one Expense, or null if the category does not exist
+     */
+    public synchronized Model.Expense findExpense(String categoryName) throws SQLException {
+        return findExpenses(List.of(categoryName)).get(categoryName);
+    }
+
+    /**
+     * Expenses by category name, in the order of the names given; unknown categories are left out
+     */
+    public synchronized Map<String, Model.Expense> findExpenses(Collection<String> categoryNames)
+            throws SQLException {
+        loadCategories();
+        Map<String, Model.Expense> found = new LinkedHashMap<>();
+        Map<String, CachedExpense> loading = new HashMap<>();
+        for (String name : new LinkedHashSet<>(categoryNames)) {
+            if (!categories.containsKey(name)) {
+                continue;
+            }
+            CachedExpense cached = expenses.get(name);
+            found.put(name, cached == null ? null : copy(name, cached));
+            if (cached == null) {
+                loading.put(name, new CachedExpense());
+            }
+        }
+        dbManager.forEachExpenseInCategories(loading.keySet(), record -> {
+            CachedExpense cached = loading.get(record.categoryName());
+            cached.columns.add(record.transactionDate(), record.amount());
+            cached.loadedThroughId = Math.max(cached.loadedThroughId, record.id());
+        });
+        for (Map.Entry<String, CachedExpense> entry : loading.entrySet()) {
+            expenses.put(entry.getKey(), entry.getValue());
+            found.put(entry.getKey(), copy(entry.getKey(), entry.getValue()));
+        }
+        return found;
+    }
+
+    private Model.Expense copy(String categoryName, CachedExpense cached) {
+        return new Model.Expense(categories.get(categoryName), cached.columns.copy(), 0, null);
+    }
+
+    /**
+     * Forget everything read so far
+     */
+    public synchronized void clear() {
+        categoryNames = null;
+        categories.clear();
+        expenses.clear();
+        transactions.clear();
+    }
+
+    @Override
+    public synchronized void expensesAdded(List<ExpenseRecord> added) {
+        for (ExpenseRecord record : added) {
+            CachedExpense cached = expenses.remove(record.categoryName());
+            if (cached != null) {
+                // Rows up to loadedThroughId were committed before the columns were read
+                if (record.id() > cached.loadedThroughId) {
+                    cached.columns.add(record.transactionDate(), record.amount());
+                    cached.loadedThroughId = record.id();
+                }
+                expenses.put(record.categoryName(), cached);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void expensesDeleted(List<ExpenseRecord> deleted) {
+        for (ExpenseRecord record : deleted) {
+            transactions.remove(record.id());
+            // Columns hold no row ids, so the category is re-read on its next lookup
+            expenses.remove(record.categoryName());
+        }
+    }
+
+    private void loadCategories() throws SQLException {
+        if (categoryNames != null) {
+            return;
+        }
+        List<String> names = dbManager.getCategories();
+        categories.keySet().retainAll(names);
+        for (String name : names) {
+            categories.computeIfAbsent(name, Model.Category::new);
+        }
+        categoryNames = names;
+    }
+}
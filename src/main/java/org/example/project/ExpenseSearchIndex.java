@@ -0,0 +1,946 @@
+package org.example.project;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In-memory search index over expenses. Rows are kept column by column in primitive arrays,
+ * free text (payee, description and category name) goes into an inverted index, and a trigram
+ * index over the vocabulary gives typo-tolerant matching. Combined filters on amount, date,
+ * currency and category are applied while scoring, and only the top results are materialized.
+ */
+public class ExpenseSearchIndex implements ExpenseListener {
+
+    // Minimum trigram similarity for a vocabulary term to count as a fuzzy match
+    private static final double FUZZY_THRESHOLD = 0.35;
+    private static final int NO_DATE = Integer.MIN_VALUE;
+    // A term in more than 1 in COMMON_TERM_SHARE documents is not scanned when rarer terms decide the result
+    private static final int COMMON_TERM_SHARE = 4;
+    // Above this many terms besides the rare ones, documents are not walked newest first across the postings
+    private static final int MAX_LAZY_MATCHES = 32;
+    // The smallest postings are scored before the walk while they add up to 1 in RARE_TERM_SHARE of its budget
+    private static final int RARE_TERM_SHARE = 16;
+    // The newest-first walk gives up after 1 in NEWEST_FIRST_SHARE of the matched postings
+    private static final int NEWEST_FIRST_SHARE = 4;
+    // Slots added since the day order was sorted are scanned by every filter-only query until
+    // there are more than this many, or more than 1 in 64 of all slots
+    private static final int MAX_UNSORTED_SLOTS = 4096;
+
+    // ===================== Columnar row storage =====================
+    private int size;
+    private int[] ids = new int[1024];
+    private int[] categoryIds = new int[1024];
+    private double[] amounts = new double[1024];
+    private double[] originalAmounts = new double[1024]; // NaN when unknown
+    private int[] transactionDays = new int[1024];
+    private String[] transactionDates = new String[1024];
+    private String[] expenseDates = new String[1024];
+    private String[] currencies = new String[1024];
+    private String[] payees = new String[1024];
+    private String[] descriptions = new String[1024];
+    private BitSet deleted = new BitSet();
+    private int[] slotById = new int[1024];
+
+    // Shared instances for repeated values such as dates and currency codes
+    private Map<String, String> stringPool = new HashMap<>();
+    private Map<Integer, String> categoryNames = new HashMap<>();
+    private Map<String, Integer> categoryIdsByName = new HashMap<>();
+
+    // Slots per category, so category-filtered browsing only scans that category
+    private Map<Integer, IntList> categorySlots = new HashMap<>();
+    // Slots 0 to slotsByDay.length - 1, ordered by transaction day and then slot, for queries without text
+    private int[] slotsByDay = new int[0];
+
+    // ===================== Inverted and trigram indexes =====================
+    private Map<String, Integer> termIds = new HashMap<>();
+    private List<String> terms = new ArrayList<>();
+    private List<IntList> postings = new ArrayList<>();
+    private IntList termTrigramCounts = new IntList();
+    private Map<Long, IntList> trigramTerms = new HashMap<>();
+
+    // Per-query scratch space, reused to keep searches allocation-light
+    private float[] scores = new float[1024];
+    private final IntList touched = new IntList();
+    private final BitSet candidates = new BitSet();
+
+    // Held for a whole load, so two never interleave; the index itself is guarded by this
+    private final Object loadLock = new Object();
+    // Listener events that arrive while load() reads the database; null when no load is running
+    private List<ExpenseListener.Event> pending;
+    private volatile boolean ready;
+
+    public ExpenseSearchIndex() {
+        Arrays.fill(slotById, -1);
+    }
+
+    /**
+     * Rebuild the index from every expense in the database. The rows are indexed into a new
+     * index without holding this one, so searches and inserts carry on meanwhile; listener events
+     * are queued and applied once the new index is swapped in.
+     */
+    public void load(DatabaseManager dbManager) throws SQLException {
+        synchronized (loadLock) {
+            try (Metrics.Span span = Metrics.span("search.load")) {
+                synchronized (this) {
+                    pending = new ArrayList<>();
+                }
+                try {
+                    ExpenseSearchIndex loaded = new ExpenseSearchIndex();
+                    dbManager.forEachExpense(loaded::add);
+                    loaded.sortByDay();
+                    synchronized (this) {
+                        takeFrom(loaded);
+                        // Adding a row the scan saw, or deleting one it did not, changes nothing
+                        for (ExpenseListener.Event event : pending) {
+                            for (ExpenseRecord expense : event.expenses()) {
+                                if (event.deleted()) {
+                                    remove(expense);
+                                } else {
+                                    add(expense);
+                                }
+                            }
+                        }
+                    }
+                } finally {
+                    synchronized (this) {
+                        pending = null;
+                    }
+                }
+            }
+            ready = true;
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public synchronized int size() {
+        return size - deleted.cardinality();
+    }
+
+    @Override
+    public synchronized void expensesAdded(List<ExpenseRecord> expenses) {
+        if (pending != null) {
+            pending.add(new ExpenseListener.Event(false, expenses));
+            return;
+        }
+        for (ExpenseRecord expense : expenses) {
+            add(expense);
+        }
+    }
+
+    @Override
+    public synchronized void expensesDeleted(List<ExpenseRecord> expenses) {
+        if (pending != null) {
+            pending.add(new ExpenseListener.Event(true, expenses));
+            return;
+        }
+        for (ExpenseRecord expense : expenses) {
+            remove(expense);
+        }
+    }
+
+    /**
+     * Run a query and return the best matches, highest score first. Without search text,
+     * matches are ordered by transaction date, newest first.
+     */
+    public synchronized List<ExpenseRecord> search(Query query) {
+        try (Metrics.Span span = Metrics.span("search.query")) {
+            int categoryFilter = -1;
+            if (query.category != null) {
+                Integer id = categoryIdsByName.get(query.category);
+                if (id == null) {
+                    return List.of();
+                }
+                categoryFilter = id;
+            }
+
+            TopK top = new TopK(query.limit);
+            List<String> queryTokens = tokenize(query.text);
+
+            // Candidates are offered newest slot first: among equal keys the heap keeps the
+            // highest slots, so once it is full a tie is rejected without a sift
+            if (queryTokens.isEmpty() && categoryFilter >= 0) {
+                IntList slots = categorySlots.get(categoryFilter);
+                for (int i = slots.size - 1; i >= 0; i--) {
+                    int slot = slots.values[i];
+                    if (matchesFilters(slot, query, categoryFilter)) {
+                        top.offer(transactionDays[slot], slot);
+                    }
+                }
+            } else if (queryTokens.isEmpty()) {
+                scanByDay(query, top);
+            } else {
+                List<TermMatch> matches = matchTerms(queryTokens);
+                if (matches.size() == 1) {
+                    // Every hit scores the same, so the newest matching slots win
+                    TermMatch match = matches.getFirst();
+                    IntList slots = postings.get(match.termId());
+                    for (int i = slots.size - 1; i >= 0 && !top.isFull(); i--) {
+                        int slot = slots.values[i];
+                        if (matchesFilters(slot, query, categoryFilter)) {
+                            top.offer(Float.floatToIntBits(match.weight()), slot);
+                        }
+                    }
+                } else if (!scoreNewestFirst(matches, query, categoryFilter, top)
+                        && !scoreRareTerms(matches, query, categoryFilter, top)) {
+                    scoreText(matches);
+                    for (int i = touched.size - 1; i >= 0; i--) {
+                        int slot = touched.values[i];
+                        if (matchesFilters(slot, query, categoryFilter)) {
+                            top.offer(Float.floatToIntBits(scores[slot]), slot);
+                        }
+                        scores[slot] = 0;
+                    }
+                    touched.size = 0;
+                }
+            }
+
+            int[] slots = top.drainDescending();
+            List<ExpenseRecord> results = new ArrayList<>(slots.length);
+            for (int slot : slots) {
+                results.add(recordAt(slot));
+            }
+            return results;
+        }
+    }
+
+    // ===================== Indexing =====================
+
+    /**
+     * Replace this index's rows and indexes with those of one built by load()
+     */
+    private void takeFrom(ExpenseSearchIndex loaded) {
+        size = loaded.size;
+        ids = loaded.ids;
+        categoryIds = loaded.categoryIds;
+        amounts = loaded.amounts;
+        originalAmounts = loaded.originalAmounts;
+        transactionDays = loaded.transactionDays;
+        transactionDates = loaded.transactionDates;
+        expenseDates = loaded.expenseDates;
+        currencies = loaded.currencies;
+        payees = loaded.payees;
+        descriptions = loaded.descriptions;
+        deleted = loaded.deleted;
+        slotById = loaded.slotById;
+        stringPool = loaded.stringPool;
+        categoryNames = loaded.categoryNames;
+        categoryIdsByName = loaded.categoryIdsByName;
+        categorySlots = loaded.categorySlots;
+        slotsByDay = loaded.slotsByDay;
+        termIds = loaded.termIds;
+        terms = loaded.terms;
+        postings = loaded.postings;
+        termTrigramCounts = loaded.termTrigramCounts;
+        trigramTerms = loaded.trigramTerms;
+        scores = loaded.scores;
+    }
+
+    private void add(ExpenseRecord expense) {
+        int id = expense.id();
+        if (id < slotById.length && slotById[id] >= 0) {
+            return; // Already indexed, e.g. an insert that raced with load()
+        }
+        ensureCapacity(size + 1);
+        if (id >= slotById.length) {
+            int oldLength = slotById.length;
+            slotById = Arrays.copyOf(slotById, Math.max(id + 1, oldLength * 2));
+            Arrays.fill(slotById, oldLength, slotById.length, -1);
+        }
+
+        int slot = size++;
+        slotById[id] = slot;
+        ids[slot] = id;
+        categoryIds[slot] = expense.categoryId();
+        amounts[slot] = expense.amount();
+        originalAmounts[slot] = expense.originalAmount() == null ? Double.NaN : expense.originalAmount();
+        LocalDate date = expense.transactionLocalDate();
+        transactionDays[slot] = date == null ? NO_DATE : (int) date.toEpochDay();
+        transactionDates[slot] = pool(expense.transactionDate());
+        expenseDates[slot] = pool(expense.expenseDate());
+        currencies[slot] = pool(expense.currency());
+        payees[slot] = expense.payee();
+        descriptions[slot] = expense.description();
+
+        String categoryName = pool(expense.categoryName());
+        categoryNames.put(expense.categoryId(), categoryName);
+        categoryIdsByName.put(categoryName, expense.categoryId());
+        categorySlots.computeIfAbsent(expense.categoryId(), k -> new IntList()).add(slot);
+
+        Set<String> documentTerms = new HashSet<>();
+        documentTerms.addAll(tokenize(expense.payee()));
+        documentTerms.addAll(tokenize(expense.description()));
+        documentTerms.addAll(tokenize(expense.categoryName()));
+        for (String term : documentTerms) {
+            postings.get(termIdOf(term)).add(slot);
+        }
+    }
+
+    private void remove(ExpenseRecord expense) {
+        int id = expense.id();
+        if (id < slotById.length && slotById[id] >= 0) {
+            deleted.set(slotById[id]);
+            slotById[id] = -1;
+        }
+    }
+
+    private int termIdOf(String term) {
+        Integer existing = termIds.get(term);
+        if (existing != null) {
+            return existing;
+        }
+        int termId = terms.size();
+        termIds.put(term, termId);
+        terms.add(term);
+        postings.add(new IntList());
+        long[] trigrams = trigrams(term);
+        termTrigramCounts.add(trigrams.length);
+        for (long trigram : trigrams) {
+            trigramTerms.computeIfAbsent(trigram, k -> new IntList()).add(termId);
+        }
+        return termId;
+    }
+
+    private String pool(String value) {
+        if (value == null) {
+            return null;
+        }
+        String pooled = stringPool.putIfAbsent(value, value);
+        return pooled == null ? value : pooled;
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= ids.length) {
+            return;
+        }
+        int capacity = Math.max(required, ids.length * 2);
+        ids = Arrays.copyOf(ids, capacity);
+        categoryIds = Arrays.copyOf(categoryIds, capacity);
+        amounts = Arrays.copyOf(amounts, capacity);
+        originalAmounts = Arrays.copyOf(originalAmounts, capacity);
+        transactionDays = Arrays.copyOf(transactionDays, capacity);
+        transactionDates = Arrays.copyOf(transactionDates, capacity);
+        expenseDates = Arrays.copyOf(expenseDates, capacity);
+        currencies = Arrays.copyOf(currencies, capacity);
+        payees = Arrays.copyOf(payees, capacity);
+        descriptions = Arrays.copyOf(descriptions, capacity);
+        scores = Arrays.copyOf(scores, capacity);
+    }
+
+    // ===================== Scoring =====================
+
+    /**
+     * A vocabulary term matching a query token, with its similarity times inverse document frequency
+     */
+    private record TermMatch(int termId, float weight) {
+    }
+
+    /**
+     * Exact and fuzzy vocabulary matches of the query tokens, in the order their weights are summed
+     */
+    private List<TermMatch> matchTerms(List<String> queryTokens) {
+        int documents = Math.max(1, size - deleted.cardinality());
+        int[] overlap = new int[terms.size()];
+        IntList candidateTerms = new IntList();
+        List<TermMatch> matches = new ArrayList<>();
+
+        for (String token : queryTokens) {
+            long[] tokenTrigrams = trigrams(token);
+            for (long trigram : tokenTrigrams) {
+                IntList termList = trigramTerms.get(trigram);
+                if (termList == null) {
+                    continue;
+                }
+                for (int i = 0; i < termList.size; i++) {
+                    int termId = termList.values[i];
+                    if (overlap[termId]++ == 0) {
+                        candidateTerms.add(termId);
+                    }
+                }
+            }
+
+            for (int i = 0; i < candidateTerms.size; i++) {
+                int termId = candidateTerms.values[i];
+                int shared = overlap[termId];
+                overlap[termId] = 0;
+
+                String term = terms.get(termId);
+                double similarity = term.equals(token) ? 1.0
+                        : (double) shared / (tokenTrigrams.length + termTrigramCounts.values[termId] - shared);
+                if (term.startsWith(token)) {
+                    similarity = Math.max(similarity, 0.8);
+                }
+                if (similarity < FUZZY_THRESHOLD) {
+                    continue;
+                }
+                int documentCount = postings.get(termId).size;
+                matches.add(new TermMatch(termId,
+                        (float) (similarity * Math.log(1.0 + (double) documents / documentCount))));
+            }
+            candidateTerms.size = 0;
+        }
+        return matches;
+    }
+
+    /**
+     * Accumulate a score for every document containing a matched term
+     */
+    private void scoreText(List<TermMatch> matches) {
+        for (TermMatch match : matches) {
+            IntList documentSlots = postings.get(match.termId());
+            for (int j = 0; j < documentSlots.size; j++) {
+                int slot = documentSlots.values[j];
+                if (deleted.get(slot)) {
+                    continue;
+                }
+                if (scores[slot] == 0) {
+                    touched.add(slot);
+                }
+                scores[slot] += match.weight();
+            }
+        }
+    }
+
+    /**
+     * Find the top matches without scanning the postings of common terms, those in more than one
+     * in COMMON_TERM_SHARE documents. Candidates are the documents of the other terms, or of the
+     * rarest term if all are common. A document outside the candidates scores at most the summed
+     * weight of the common terms, so the result holds if the heap fills with higher scores.
+     * Returns false, with the heap left empty, otherwise.
+     */
+    private boolean scoreRareTerms(List<TermMatch> matches, Query query, int categoryFilter, TopK top) {
+        int rarest = Integer.MAX_VALUE;
+        for (TermMatch match : matches) {
+            rarest = Math.min(rarest, postings.get(match.termId()).size);
+        }
+        int commonSize = Math.max(Math.max(1, size - deleted.cardinality()) / COMMON_TERM_SHARE, rarest);
+        float commonWeight = 0;
+        for (TermMatch match : matches) {
+            if (postings.get(match.termId()).size > commonSize) {
+                commonWeight += match.weight();
+            }
+        }
+        if (commonWeight == 0) {
+            return false;
+        }
+
+        int candidateCount = 0;
+        for (TermMatch match : matches) {
+            IntList documentSlots = postings.get(match.termId());
+            if (documentSlots.size > commonSize) {
+                continue;
+            }
+            for (int j = 0; j < documentSlots.size; j++) {
+                int slot = documentSlots.values[j];
+                if (!deleted.get(slot) && !candidates.get(slot)) {
+                    candidates.set(slot);
+                    candidateCount++;
+                }
+            }
+        }
+        scoreCandidates(matches, candidateCount, query, categoryFilter, top);
+        candidates.clear();
+
+        // The margin covers rounding in the order a document's common weights are summed
+        if (top.isFull() && Float.intBitsToFloat(top.minKey()) > commonWeight * 1.0001f) {
+            return true;
+        }
+        top.clear();
+        return false;
+    }
+
+    /**
+     * Find the top matches by walking documents newest first, stopping once no older one can enter
+     * the heap. The documents of rare terms are scored first as candidates; the rest lack every
+     * rare term, so none scores above the summed weight of the others. They are walked across the
+     * other postings, one cursor per term. Once the heap's lowest score exceeds the summed weight
+     * of the lightest terms, a document holding only those cannot enter, so they stop driving the
+     * walk and are looked up instead. Gives up, returning false with the heap left empty, after a
+     * step for 1 in NEWEST_FIRST_SHARE of the postings, since scoring them all costs about that.
+     */
+    private boolean scoreNewestFirst(List<TermMatch> matches, Query query, int categoryFilter, TopK top) {
+        int termCount = matches.size();
+        long total = 0;
+        for (TermMatch match : matches) {
+            total += postings.get(match.termId()).size;
+        }
+        long budget = total / NEWEST_FIRST_SHARE;
+
+        // The smallest postings are rare while their documents add up to at most 1 in
+        // RARE_TERM_SHARE of the budget
+        Integer[] bySize = new Integer[termCount];
+        Arrays.setAll(bySize, i -> i);
+        Arrays.sort(bySize, Comparator.comparingInt(i -> postings.get(matches.get(i).termId()).size));
+        boolean[] rare = new boolean[termCount];
+        long rareDocuments = 0;
+        int walkedCount = termCount;
+        for (int i : bySize) {
+            rareDocuments += postings.get(matches.get(i).termId()).size;
+            if (rareDocuments > budget / RARE_TERM_SHARE) {
+                break;
+            }
+            rare[i] = true;
+            walkedCount--;
+        }
+        if (walkedCount > MAX_LAZY_MATCHES) {
+            return false;
+        }
+
+        // Rare documents stay marked as candidates so the walk passes over them
+        int candidateCount = 0;
+        for (int i = 0; i < termCount; i++) {
+            if (!rare[i]) {
+                continue;
+            }
+            IntList documentSlots = postings.get(matches.get(i).termId());
+            for (int j = 0; j < documentSlots.size; j++) {
+                int slot = documentSlots.values[j];
+                if (!deleted.get(slot) && !candidates.get(slot)) {
+                    candidates.set(slot);
+                    candidateCount++;
+                }
+            }
+        }
+        scoreCandidates(matches, candidateCount, query, categoryFilter, top);
+        long steps = rareDocuments + (long) candidateCount * walkedCount;
+
+        // The other terms in match order, each with a cursor walking its posting from the newest
+        // slot down, -1 once done
+        float[] weights = new float[walkedCount];
+        IntList[] documentSlots = new IntList[walkedCount];
+        int[] cursors = new int[walkedCount];
+        // Added in match order, like the scores it bounds
+        float bound = 0;
+        for (int i = 0, w = 0; i < termCount; i++) {
+            if (!rare[i]) {
+                weights[w] = matches.get(i).weight();
+                documentSlots[w] = postings.get(matches.get(i).termId());
+                cursors[w] = documentSlots[w].size - 1;
+                bound += weights[w++];
+            }
+        }
+
+        Integer[] byWeight = new Integer[walkedCount];
+        Arrays.setAll(byWeight, w -> w);
+        Arrays.sort(byWeight, Comparator.comparingDouble(w -> weights[w]));
+        boolean[] lookedUp = new boolean[walkedCount];
+        int lightest = 0;
+        float lookedUpWeight = 0;
+
+        int boundKey = Float.floatToIntBits(bound);
+        while (steps <= budget) {
+            // The margin covers rounding in the order a document's weights are summed
+            while (lightest < walkedCount && top.isFull() && (lookedUpWeight + weights[byWeight[lightest]])
+                    * 1.0001f < Float.intBitsToFloat(top.minKey())) {
+                lookedUpWeight += weights[byWeight[lightest]];
+                lookedUp[byWeight[lightest++]] = true;
+            }
+            int slot = -1;
+            for (int w = 0; w < walkedCount; w++) {
+                if (cursors[w] >= 0 && !lookedUp[w]) {
+                    slot = Math.max(slot, documentSlots[w].values[cursors[w]]);
+                }
+            }
+            // Older documents can at best reach the bound, and a tie goes to the newer slot
+            if (slot < 0 || top.rejects(boundKey, slot)) {
+                break;
+            }
+            // Summed in match order, so the score is the one scoreText would give
+            float score = 0;
+            for (int w = 0; w < walkedCount; w++) {
+                if (cursors[w] < 0) {
+                    continue;
+                }
+                if (lookedUp[w]) {
+                    cursors[w] = documentSlots[w].seekDown(cursors[w], slot);
+                    steps++;
+                    if (cursors[w] >= 0 && documentSlots[w].values[cursors[w]] == slot) {
+                        score += weights[w];
+                    }
+                } else if (documentSlots[w].values[cursors[w]] == slot) {
+                    score += weights[w];
+                    cursors[w]--;
+                    steps++;
+                }
+            }
+            if (!candidates.get(slot) && matchesFilters(slot, query, categoryFilter)) {
+                top.offer(Float.floatToIntBits(score), slot);
+            }
+        }
+        candidates.clear();
+        // The walk only stops early within the budget
+        boolean complete = steps <= budget;
+        if (!complete) {
+            top.clear();
+        }
+        return complete;
+    }
+
+    /**
+     * Score every candidate one matched term at a time: short postings are walked, and long
+     * ones searched for each candidate, newest first, from where the last search ended
+     */
+    private void scoreCandidates(List<TermMatch> matches, int candidateCount, Query query, int categoryFilter,
+                                 TopK top) {
+        // Weights are added in match order, so each score is the one scoreText would give
+        for (TermMatch match : matches) {
+            IntList documentSlots = postings.get(match.termId());
+            if (documentSlots.size < candidateCount * 20L) {
+                for (int j = 0; j < documentSlots.size; j++) {
+                    int slot = documentSlots.values[j];
+                    if (candidates.get(slot)) {
+                        scores[slot] += match.weight();
+                    }
+                }
+            } else {
+                int position = documentSlots.size - 1;
+                for (int slot = candidates.previousSetBit(size - 1); slot >= 0 && position >= 0;
+                     slot = candidates.previousSetBit(slot - 1)) {
+                    position = documentSlots.seekDown(position, slot);
+                    if (position >= 0 && documentSlots.values[position] == slot) {
+                        scores[slot] += match.weight();
+                    }
+                }
+            }
+        }
+        for (int slot = candidates.previousSetBit(size - 1); slot >= 0; slot = candidates.previousSetBit(slot - 1)) {
+            if (matchesFilters(slot, query, categoryFilter)) {
+                top.offer(Float.floatToIntBits(scores[slot]), slot);
+            }
+            scores[slot] = 0;
+        }
+    }
+
+    /**
+     * Offer the matches of a query without text or category, newest first. Slots outside the
+     * day order are all offered, then the day order is walked down from the end of the date
+     * range until the heap turns an entry away, as every later entry has a lower key.
+     */
+    private void scanByDay(Query query, TopK top) {
+        if (size - slotsByDay.length > Math.max(MAX_UNSORTED_SLOTS, size / 64)) {
+            sortByDay();
+        }
+        for (int slot = size - 1; slot >= slotsByDay.length; slot--) {
+            if (matchesFilters(slot, query, -1)) {
+                top.offer(transactionDays[slot], slot);
+            }
+        }
+
+        // First position after the last day within the range
+        int low = 0;
+        int high = slotsByDay.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (transactionDays[slotsByDay[middle]] <= query.toDay) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        for (int i = low - 1; i >= 0; i--) {
+            int slot = slotsByDay[i];
+            int day = transactionDays[slot];
+            if (day < query.fromDay || top.rejects(day, slot)) {
+                return;
+            }
+            if (matchesFilters(slot, query, -1)) {
+                top.offer(day, slot);
+            }
+        }
+    }
+
+    /**
+     * Order every slot by transaction day and then slot, the order TopK ranks filter-only matches in
+     */
+    private void sortByDay() {
+        try (Metrics.Span span = Metrics.span("search.sortByDay")) {
+            long[] keys = new long[size];
+            for (int slot = 0; slot < size; slot++) {
+                keys[slot] = TopK.entry(transactionDays[slot], slot);
+            }
+            Arrays.sort(keys);
+            int[] sorted = new int[size];
+            for (int i = 0; i < size; i++) {
+                sorted[i] = (int) keys[i];
+            }
+            slotsByDay = sorted;
+        }
+    }
+
+    private boolean matchesFilters(int slot, Query query, int categoryFilter) {
+        if (deleted.get(slot)) {
+            return false;
+        }
+        // Columns are only read for the filters a query sets, as candidates are scattered over them
+        if (query.fromDay != NO_DATE || query.toDay != Integer.MAX_VALUE) {
+            int day = transactionDays[slot];
+            if (day == NO_DATE || day < query.fromDay || day > query.toDay) {
+                return false;
+            }
+        }
+        if (query.minAmount != Double.NEGATIVE_INFINITY || query.maxAmount != Double.POSITIVE_INFINITY) {
+            double amount = amounts[slot];
+            if (amount < query.minAmount || amount > query.maxAmount) {
+                return false;
+            }
+        }
+        if (query.currency != null && !query.currency.equals(currencies[slot])) {
+            return false;
+        }
+        return categoryFilter < 0 || categoryIds[slot] == categoryFilter;
+    }
+
+    private ExpenseRecord recordAt(int slot) {
+        return new ExpenseRecord(ids[slot], categoryIds[slot], categoryNames.get(categoryIds[slot]), amounts[slot],
+                transactionDates[slot], expenseDates[slot], currencies[slot], payees[slot], descriptions[slot],
+                Double.isNaN(originalAmounts[slot]) ? null : originalAmounts[slot]);
+    }
+
+    // ===================== Text processing =====================
+
+    /**
+     * Split text into lowercase letter/digit tokens of at least two characters
+     */
+    static List<String> tokenize(String text) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+        List<String> tokens = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                current.append(Character.toLowerCase(c));
+            } else if (!current.isEmpty()) {
+                if (current.length() >= 2) {
+                    tokens.add(current.toString());
+                }
+                current.setLength(0);
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Distinct character trigrams of a term with boundary markers, packed into longs
+     */
+    private static long[] trigrams(String term) {
+        String padded = "\u0001" + term + "\u0002";
+        long[] result = new long[padded.length() - 2];
+        int count = 0;
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            long packed = ((long) padded.charAt(i) << 32) | ((long) padded.charAt(i + 1) << 16) | padded.charAt(i + 2);
+            boolean seen = false;
+            for (int j = 0; j < count && !seen; j++) {
+                seen = result[j] == packed;
+            }
+            if (!seen) {
+                result[count++] = packed;
+            }
+        }
+        return count == result.length ? result : Arrays.copyOf(result, count);
+    }
+
+    // ===================== Query =====================
+
+    /**
+     * Search criteria; every filter is optional
+     */
+    public static class Query {
+        private String text;
+        private double minAmount = Double.NEGATIVE_INFINITY;
+        private double maxAmount = Double.POSITIVE_INFINITY;
+        private int fromDay = NO_DATE;
+        private int toDay = Integer.MAX_VALUE;
+        private String currency;
+        private String category;
+        private int limit = 200;
+
+        public Query text(String text) {
+            this.text = text;
+            return this;
+        }
+
+        /**
+         * Restrict the USD amount; either bound may be null
+         */
+        public Query amountBetween(Double min, Double max) {
+            this.minAmount = min == null ? Double.NEGATIVE_INFINITY : min;
+            this.maxAmount = max == null ? Double.POSITIVE_INFINITY : max;
+            return this;
+        }
+
+        /**
+         * Restrict the transaction date (inclusive); either bound may be null
+         */
+        public Query dateBetween(LocalDate from, LocalDate to) {
+            this.fromDay = from == null ? NO_DATE : (int) from.toEpochDay();
+            this.toDay = to == null ? Integer.MAX_VALUE : (int) to.toEpochDay();
+            return this;
+        }
+
+        public Query currency(String currency) {
+            this.currency = currency;
+            return this;
+        }
+
+        public Query category(String category) {
+            this.category = category;
+            return this;
+        }
+
+        public Query limit(int limit) {
+            this.limit = Math.max(1, limit);
+            return this;
+        }
+    }
+
+    // ===================== Primitive helpers =====================
+
+    private static final class IntList {
+        private int[] values = new int[4];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        /**
+         * Position of the last value at or below the given one, searching down from a position
+         * with galloping steps; -1 if there is none. Only for lists kept in ascending order.
+         */
+        int seekDown(int from, int value) {
+            if (from < 0 || values[from] <= value) {
+                return from;
+            }
+            // values[high] is above the value; values[low] is not, or low is -1
+            int high = from;
+            int step = 1;
+            int low = from - step;
+            while (low >= 0 && values[low] > value) {
+                high = low;
+                step <<= 1;
+                low = from - step;
+            }
+            low = Math.max(low, -1);
+            while (high - low > 1) {
+                int middle = (low + high) >>> 1;
+                if (values[middle] <= value) {
+                    low = middle;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+
+    /**
+     * Bounded min-heap of (sort key, slot) pairs packed into longs, keeping the largest keys
+     */
+    private static final class TopK {
+        private final long[] heap;
+        private int size;
+
+        TopK(int capacity) {
+            heap = new long[capacity];
+        }
+
+        boolean isFull() {
+            return size == heap.length;
+        }
+
+        /**
+         * Sort key of the lowest entry, once there is one
+         */
+        int minKey() {
+            return (int) (heap[0] >> 32);
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        static long entry(int sortKey, int slot) {
+            return ((long) sortKey << 32) | (slot & 0xFFFFFFFFL);
+        }
+
+        /**
+         * Whether offering the pair would leave the heap unchanged
+         */
+        boolean rejects(int sortKey, int slot) {
+            return isFull() && entry(sortKey, slot) <= heap[0];
+        }
+
+        void offer(int sortKey, int slot) {
+            long entry = entry(sortKey, slot);
+            if (size < heap.length) {
+                heap[size] = entry;
+                siftUp(size++);
+            } else if (entry > heap[0]) {
+                heap[0] = entry;
+                siftDown(0);
+            }
+        }
+
+        int[] drainDescending() {
+            long[] sorted = Arrays.copyOf(heap, size);
+            Arrays.sort(sorted);
+            int[] slots = new int[size];
+            for (int i = 0; i < size; i++) {
+                slots[i] = (int) sorted[size - 1 - i];
+            }
+            return slots;
+        }
+
+        private void siftUp(int index) {
+            while (index > 0) {
+                int parent = (index - 1) >>> 1;
+                if (heap[parent] <= heap[index]) {
+                    return;
+                }
+                swap(parent, index);
+                index = parent;
+            }
+        }
+
+        private void siftDown(int index) {
+            while (true) {
+                int smallest = index;
+                int left = index * 2 + 1;
+                int right = left + 1;
+                if (left < size && heap[left] < heap[smallest]) {
+                    smallest = left;
+                }
+                if (right < size && heap[right] < heap[smallest]) {
+                    smallest = right;
+                }
+                if (smallest == index) {
+                    return;
+                }
+                swap(smallest, index);
+                index = smallest;
+            }
+        }
+
+        private void swap(int a, int b) {
+            long tmp = heap[a];
+            heap[a] = heap[b];
+            heap[b] = tmp;
+        }
+    }
+}
@@ -0,0 +1,380 @@
+package org.example.project;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Approximate amount percentiles (t-digest) and distinct payee counts (HyperLogLog) per
+ * category and month. A report over any range of months merges one small sketch per month,
+ * so its cost does not depend on how many expenses there are. Sketches are kept current
+ * through the expense listener and written to SQLite in the background; on start the stored
+ * sketches are loaded and only expenses newer than their watermark are replayed. A sketch cannot
+ * forget a deleted expense, so a delete marks its cell stale and the cell is rebuilt from the
+ * table the next time it is read or flushed.
+ */
+public class ExpenseSketches implements ExpenseListener {
+
+    private static final double COMPRESSION = 100;
+
+    public record Summary(long count, double median, double p90, long distinctPayees) {
+
+        public String toDisplayString(String label) {
+            if (count == 0) {
+                return label + ": no expenses";
+            }
+            return String.format("%s: %d expenses, median $%.2f, p90 $%.2f, ~%d payees",
+                    label, count, median, p90, distinctPayees);
+        }
+    }
+
+    private static final class Cell {
+        final int categoryId;
+        final String month;
+        long count;
+        TDigest amounts = new TDigest(COMPRESSION);
+        HyperLogLog payees = new HyperLogLog();
+        boolean dirty;
+        // A deleted expense cannot be taken out of a sketch; the cell is rebuilt from the table
+        boolean stale;
+
+        Cell(int categoryId, String month) {
+            this.categoryId = categoryId;
+            this.month = month;
+        }
+
+        void add(ExpenseRecord expense) {
+            count++;
+            amounts.add(expense.amount());
+            if (expense.payee() != null && !expense.payee().isBlank()) {
+                payees.add(expense.payee().trim().toLowerCase(Locale.ROOT));
+            }
+        }
+    }
+
+    private Map<Long, Cell> cells = new HashMap<>();
+    private Map<String, Integer> categoryIds = new HashMap<>();
+    private DatabaseManager dbManager;
+    private long expenseCount;
+    private int maxExpenseId;
+    // Sum of DatabaseManager.expenseChecksumTerm over the same expenses
+    private long checksum;
+    // Highest expense id read by load(); the listener may still deliver rows up to it
+    private int loadedThroughId;
+    private boolean rewriteAll;
+    // Held for a whole load, so two never interleave; the sketches themselves are guarded by this
+    private final Object loadLock = new Object();
+    // Listener events that arrive while load() reads; null when no load is running
+    private List<ExpenseListener.Event> pending;
+    private volatile boolean ready;
+    private ScheduledExecutorService flushExecutor;
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Load stored sketches and replay newer expenses, or rebuild everything from the table
+     * when the stored watermark does not match it; then write back what changed. The sketches
+     * are built apart from these, so expenses can be added meanwhile; their events are queued
+     * and applied once the new sketches are in place.
+     */
+    public void load(DatabaseManager dbManager) throws SQLException {
+        synchronized (loadLock) {
+            try (Metrics.Span span = Metrics.span("sketches.load")) {
+                synchronized (this) {
+                    this.dbManager = dbManager;
+                    pending = new ArrayList<>();
+                }
+                try {
+                    while (!loadOnce(dbManager)) {
+                        Metrics.increment("sketches.load.retries");
+                    }
+                } finally {
+                    synchronized (this) {
+                        pending = null;
+                    }
+                }
+            }
+            ready = true;
+            flush(dbManager);
+        }
+    }
+
+    /**
+     * Build the sketches into a new instance, then install them and apply the queued events.
+     * Returns false, leaving the sketches as they were, when a queued delete cannot be placed
+     * before or after the rows were read.
+     */
+    private boolean loadOnce(DatabaseManager dbManager) throws SQLException {
+        ExpenseSketches loaded = new ExpenseSketches();
+        // Rows past the table's max id are left to the listener, so none is added twice
+        DatabaseManager.ExpenseStats table = dbManager.getExpenseStats();
+        Consumer<ExpenseRecord> addLoaded = expense -> {
+            if (expense.id() <= table.maxId()) {
+                loaded.add(expense);
+            }
+        };
+        DatabaseManager.SketchState stored = dbManager.getSketchState();
+        boolean restored = false;
+        if (stored != null && stored.maxId() <= table.maxId()) {
+            dbManager.forEachSketch(row -> {
+                Cell cell = new Cell(row.categoryId(), row.month());
+                cell.count = row.expenseCount();
+                cell.amounts = TDigest.fromBytes(row.amountDigest());
+                cell.payees = HyperLogLog.fromBytes(row.payeeSketch());
+                loaded.cells.put(key(row.categoryId(), YearMonth.parse(row.month())), cell);
+                loaded.categoryIds.put(row.categoryName(), row.categoryId());
+            });
+            loaded.expenseCount = stored.count();
+            loaded.maxExpenseId = stored.maxId();
+            loaded.checksum = stored.checksum();
+            dbManager.forEachExpenseAfter(stored.maxId(), addLoaded);
+            // A matching count alone would accept sketches that missed deletes made up for by
+            // as many inserts, say after a crash before flush() or deletes by another process
+            restored = loaded.expenseCount == table.count()
+                    && loaded.checksum == dbManager.getExpenseChecksum(table.maxId());
+        }
+        if (!restored) {
+            loaded.clear();
+            dbManager.forEachExpense(addLoaded);
+            loaded.rewriteAll = true;
+        }
+
+        synchronized (this) {
+            // The table was read with several queries, so a delete of a row up to its max id may
+            // or may not be in the sketches; only a fresh read can tell
+            for (ExpenseListener.Event event : pending) {
+                if (event.deleted() && event.expenses().stream().anyMatch(e -> e.id() <= table.maxId())) {
+                    pending.clear();
+                    return false;
+                }
+            }
+            if (restored) {
+                Metrics.increment("sketches.restored");
+            }
+            cells = loaded.cells;
+            categoryIds = loaded.categoryIds;
+            expenseCount = loaded.expenseCount;
+            maxExpenseId = loaded.maxExpenseId;
+            checksum = loaded.checksum;
+            rewriteAll = loaded.rewriteAll;
+            loadedThroughId = table.maxId();
+            for (ExpenseListener.Event event : pending) {
+                if (event.deleted()) {
+                    applyDeleted(event.expenses());
+                } else {
+                    applyAdded(event.expenses());
+                }
+            }
+            pending = null;
+            return true;
+        }
+    }
+
+    /**
+     * Rebuild cells affected by deletes and write every changed cell with the new watermark
+     */
+    public synchronized void flush(DatabaseManager dbManager) throws SQLException {
+        if (!ready) {
+            return;
+        }
+        List<DatabaseManager.SketchRow> rows = new ArrayList<>();
+        for (Cell cell : cells.values()) {
+            if (cell.stale) {
+                rebuild(dbManager, cell);
+            }
+            if (cell.dirty || rewriteAll) {
+                rows.add(new DatabaseManager.SketchRow(cell.categoryId, null, cell.month, cell.count,
+                        cell.amounts.toBytes(), cell.payees.toBytes()));
+            }
+        }
+        if (rows.isEmpty() && !rewriteAll) {
+            return;
+        }
+        try (Metrics.Span span = Metrics.span("sketches.flush")) {
+            dbManager.saveSketches(rows, new DatabaseManager.SketchState(expenseCount, maxExpenseId, checksum), rewriteAll);
+        }
+        for (Cell cell : cells.values()) {
+            cell.dirty = false;
+        }
+        cells.values().removeIf(cell -> cell.count == 0);
+        rewriteAll = false;
+    }
+
+    /**
+     * Flush on a background thread at a fixed interval
+     */
+    public synchronized void startPeriodicFlush(DatabaseManager dbManager, Duration interval) {
+        if (flushExecutor != null) {
+            return;
+        }
+        flushExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "sketch-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flushExecutor.scheduleAtFixedRate(() -> {
+            try {
+                flush(dbManager);
+            } catch (SQLException | RuntimeException e) {
+                Metrics.failure("sketches.flush", e);
+                e.printStackTrace();
+            }
+        }, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop the periodic flush and write pending changes one last time
+     */
+    public void stopPeriodicFlush(DatabaseManager dbManager) throws SQLException {
+        synchronized (this) {
+            if (flushExecutor != null) {
+                flushExecutor.shutdownNow();
+                flushExecutor = null;
+            }
+        }
+        flush(dbManager);
+    }
+
+    /**
+     * Names of categories that have had sketched expenses, sorted
+     */
+    public synchronized List<String> categories() {
+        List<String> names = new ArrayList<>(categoryIds.keySet());
+        names.sort(null);
+        return names;
+    }
+
+    /**
+     * Merge the monthly sketches for [from, to], first rebuilding any cell a delete made stale
+     * @param category Category name, or null for all categories
+     */
+    public synchronized Summary summarize(String category, YearMonth from, YearMonth to) throws SQLException {
+        try (Metrics.Span span = Metrics.span("sketches.summarize")) {
+            TDigest amounts = new TDigest(COMPRESSION);
+            HyperLogLog payees = new HyperLogLog();
+            long count = 0;
+
+            List<Integer> ids = new ArrayList<>();
+            if (category == null) {
+                ids.addAll(categoryIds.values());
+            } else if (categoryIds.containsKey(category)) {
+                ids.add(categoryIds.get(category));
+            }
+            for (int categoryId : ids) {
+                for (YearMonth month = from; !month.isAfter(to); month = month.plusMonths(1)) {
+                    Cell cell = cells.get(key(categoryId, month));
+                    if (cell != null && cell.stale) {
+                        rebuild(dbManager, cell);
+                    }
+                    if (cell != null && cell.count > 0) {
+                        amounts.merge(cell.amounts);
+                        payees.merge(cell.payees);
+                        count += cell.count;
+                    }
+                }
+            }
+            return new Summary(count, amounts.quantile(0.5), amounts.quantile(0.9), payees.estimate());
+        }
+    }
+
+    @Override
+    public synchronized void expensesAdded(List<ExpenseRecord> expenses) {
+        if (pending != null) {
+            pending.add(new ExpenseListener.Event(false, expenses));
+        } else {
+            applyAdded(expenses);
+        }
+    }
+
+    @Override
+    public synchronized void expensesDeleted(List<ExpenseRecord> expenses) {
+        if (pending != null) {
+            pending.add(new ExpenseListener.Event(true, expenses));
+        } else {
+            applyDeleted(expenses);
+        }
+    }
+
+    private void applyAdded(List<ExpenseRecord> expenses) {
+        for (ExpenseRecord expense : expenses) {
+            // Already added, e.g. an insert that raced with load()
+            if (expense.id() > loadedThroughId) {
+                add(expense);
+            }
+        }
+    }
+
+    private void applyDeleted(List<ExpenseRecord> expenses) {
+        for (ExpenseRecord expense : expenses) {
+            YearMonth month = monthOf(expense);
+            Cell cell = month == null ? null : cells.get(key(expense.categoryId(), month));
+            if (cell != null) {
+                cell.stale = true;
+                cell.dirty = true;
+            }
+            expenseCount--;
+            checksum -= DatabaseManager.expenseChecksumTerm(expense.id(), expense.amount());
+        }
+    }
+
+    private void add(ExpenseRecord expense) {
+        categoryIds.put(expense.categoryName(), expense.categoryId());
+        expenseCount++;
+        maxExpenseId = Math.max(maxExpenseId, expense.id());
+        checksum += DatabaseManager.expenseChecksumTerm(expense.id(), expense.amount());
+        YearMonth month = monthOf(expense);
+        if (month == null) {
+            return;
+        }
+        Cell cell = cells.computeIfAbsent(key(expense.categoryId(), month),
+                k -> new Cell(expense.categoryId(), month.toString()));
+        cell.add(expense);
+        cell.dirty = true;
+    }
+
+    private void rebuild(DatabaseManager dbManager, Cell cell) throws SQLException {
+        YearMonth month = YearMonth.parse(cell.month);
+        Cell fresh = new Cell(cell.categoryId, cell.month);
+        // Newer rows are still on their way through the listener, which adds them to the cell
+        dbManager.forEachExpenseBetween(cell.categoryId, month.atDay(1).toString(),
+                month.plusMonths(1).atDay(1).toString(), expense -> {
+                    if (expense.id() <= maxExpenseId) {
+                        fresh.add(expense);
+                    }
+                });
+        cell.count = fresh.count;
+        cell.amounts = fresh.amounts;
+        cell.payees = fresh.payees;
+        cell.stale = false;
+        cell.dirty = true;
+    }
+
+    private void clear() {
+        cells.clear();
+        categoryIds.clear();
+        expenseCount = 0;
+        maxExpenseId = 0;
+        checksum = 0;
+    }
+
+    private static YearMonth monthOf(ExpenseRecord expense) {
+        LocalDate date = expense.transactionLocalDate();
+        return date == null ? null : YearMonth.from(date);
+    }
+
+    private static long key(int categoryId, YearMonth month) {
+        return (long) categoryId << 32 | (month.getYear() * 12L + month.getMonthValue() - 1) & 0xFFFFFFFFL;
+    }
+}
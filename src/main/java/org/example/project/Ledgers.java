@@ -0,0 +1,212 @@
+package org.example.project;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
+
+/**
+ * Separate expense ledgers (per team or entity), each in its own SQLite file with its own
+ * DatabaseManager and connection pool, so writes to different ledgers never share a lock.
+ * The default ledger is the original expenses.db; others live in the ledgers directory.
+ * Consolidated reports query every ledger in parallel and merge the per-ledger results.
+ * Each ledger's snapshots and write journal live in its own directory under the backup root.
+ */
+public class Ledgers implements AutoCloseable {
+
+    public static final String DEFAULT = "default";
+
+    private static final Pattern LEDGER_NAME = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+    private static final String LEDGER_SUFFIX = ".db";
+
+    public record ConsolidatedReport(Map<String, Double> spendingByCategory, Map<String, Double> spendingByLedger) {
+
+        public double total() {
+            double total = 0;
+            for (double spent : spendingByLedger.values()) {
+                total += spent;
+            }
+            return total;
+        }
+    }
+
+    private final Path defaultDatabase;
+    private final Path directory;
+    private final Path backupRoot;
+    private final Map<String, DatabaseManager> open = new HashMap<>();
+    private final Map<String, BackupManager> backups = new HashMap<>();
+    private ExecutorService reportExecutor;
+
+    public Ledgers() {
+        this(DatabaseManager.DEFAULT_DATABASE, Path.of("ledgers"), Path.of("backups"));
+    }
+
+    public Ledgers(Path defaultDatabase, Path directory, Path backupRoot) {
+        this.defaultDatabase = defaultDatabase;
+        this.directory = directory;
+        this.backupRoot = backupRoot;
+    }
+
+    /**
+     * The default ledger followed by every ledger file in the directory, sorted by name
+     */
+    public synchronized List<String> list() {
+        List<String> names = new ArrayList<>();
+        if (Files.isDirectory(directory)) {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + LEDGER_SUFFIX)) {
+                for (Path file : files) {
+                    String fileName = file.getFileName().toString();
+                    String name = fileName.substring(0, fileName.length() - LEDGER_SUFFIX.length());
+                    if (LEDGER_NAME.matcher(name).matches() && !name.equals(DEFAULT)) {
+                        names.add(name);
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        for (String name : open.keySet()) {
+            if (!names.contains(name) && !name.equals(DEFAULT)) {
+                names.add(name);
+            }
+        }
+        names.sort(null);
+        names.add(0, DEFAULT);
+        return names;
+    }
+
+    /**
+     * The manager for a ledger, creating the ledger on first use
+     * @throws IllegalArgumentException if the name is not letters, digits, '-' or '_'
+     */
+    public synchronized DatabaseManager open(String name) {
+        DatabaseManager manager = open.get(name);
+        if (manager != null) {
+            return manager;
+        }
+        if (!LEDGER_NAME.matcher(name).matches()) {
+            throw new IllegalArgumentException("Invalid ledger name: " + name);
+        }
+        if (!name.equals(DEFAULT)) {
+            try {
+                Files.createDirectories(directory);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        manager = new DatabaseManager(databaseFile(name));
+        open.put(name, manager);
+
+        // Journal every committed write, whichever front end made it
+        BackupManager backupManager = new BackupManager(manager, backupRoot.resolve(name));
+        manager.addExpenseListener(backupManager);
+        backups.put(name, backupManager);
+        return manager;
+    }
+
+    /**
+     * The SQLite file that holds a ledger, whether or not it exists yet
+     */
+    Path databaseFile(String name) {
+        return name.equals(DEFAULT) ? defaultDatabase : directory.resolve(name + LEDGER_SUFFIX);
+    }
+
+    /**
+     * The backups of a ledger, opening the ledger if needed
+     */
+    public synchronized BackupManager backups(String name) {
+        open(name);
+        return backups.get(name);
+    }
+
+    /**
+     * USD spending per category and per ledger for transaction dates in [from, to), with one
+     * task per ledger running concurrently
+     */
+    public ConsolidatedReport consolidatedReport(String fromDate, String toDate) throws SQLException {
+        try (Metrics.Span span = Metrics.span("ledgers.consolidatedReport")) {
+            List<String> names = list();
+            List<Callable<Map<String, Double>>> tasks = new ArrayList<>(names.size());
+            for (String name : names) {
+                DatabaseManager manager = open(name);
+                tasks.add(() -> manager.getSpendingByCategory(fromDate, toDate));
+            }
+
+            List<Future<Map<String, Double>>> results;
+            try {
+                results = executor().invokeAll(tasks);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while building the consolidated report", e);
+            }
+
+            Map<String, Double> byCategory = new TreeMap<>();
+            Map<String, Double> byLedger = new TreeMap<>();
+            for (int i = 0; i < names.size(); i++) {
+                Map<String, Double> spending;
+                try {
+                    spending = results.get(i).get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new SQLException("Interrupted while building the consolidated report", e);
+                } catch (ExecutionException e) {
+                    span.fail(e.getCause());
+                    if (e.getCause() instanceof SQLException sqlException) {
+                        throw sqlException;
+                    }
+                    throw new SQLException("Ledger " + names.get(i) + " failed: " + e.getCause().getMessage(), e.getCause());
+                }
+                double ledgerTotal = 0;
+                for (Map.Entry<String, Double> entry : spending.entrySet()) {
+                    byCategory.merge(entry.getKey(), entry.getValue(), Double::sum);
+                    ledgerTotal += entry.getValue();
+                }
+                byLedger.put(names.get(i), ledgerTotal);
+            }
+            return new ConsolidatedReport(byCategory, byLedger);
+        }
+    }
+
+    /**
+     * Stop backups and close every open ledger's connections
+     */
+    @Override
+    public synchronized void close() {
+        for (BackupManager backupManager : backups.values()) {
+            backupManager.close();
+        }
+        backups.clear();
+        for (DatabaseManager manager : open.values()) {
+            manager.close();
+        }
+        open.clear();
+        if (reportExecutor != null) {
+            reportExecutor.shutdownNow();
+            reportExecutor = null;
+        }
+    }
+
+    private synchronized ExecutorService executor() {
+        if (reportExecutor == null) {
+            reportExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), r -> {
+                Thread thread = new Thread(r, "ledger-report");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return reportExecutor;
+    }
+}
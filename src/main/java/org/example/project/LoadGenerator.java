@@ -0,0 +1,161 @@
+package org.example.project;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Closed-loop load generator for ExpenseApiServer: a fixed number of virtual-thread clients
+ * issue a read-heavy mix of requests back to back for a fixed time, then print requests per
+ * second and latency percentiles. Clients revalidate with If-None-Match like a browser would.
+ *
+ * <pre>
+ * LoadGenerator --url=http://127.0.0.1:8080 --clients=64 --seconds=30 --writes=5
+ * </pre>
+ */
+public class LoadGenerator {
+
+    private final URI baseUri;
+    private final int clients;
+    private final Duration duration;
+    private final int writePercent;
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(5))
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .build();
+    private final Metrics.LatencyHistogram latencies = new Metrics.LatencyHistogram();
+    private final Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+    private final LongAdder failures = new LongAdder();
+    private final Map<String, String> etags = new ConcurrentHashMap<>();
+
+    public LoadGenerator(URI baseUri, int clients, Duration duration, int writePercent) {
+        this.baseUri = baseUri;
+        this.clients = clients;
+        this.duration = duration;
+        this.writePercent = writePercent;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String url = "http://127.0.0.1:8080";
+        int clients = 32;
+        int seconds = 10;
+        int writes = 5;
+        for (String arg : args) {
+            if (arg.startsWith("--url=")) {
+                url = arg.substring("--url=".length());
+            } else if (arg.startsWith("--clients=")) {
+                clients = Integer.parseInt(arg.substring("--clients=".length()));
+            } else if (arg.startsWith("--seconds=")) {
+                seconds = Integer.parseInt(arg.substring("--seconds=".length()));
+            } else if (arg.startsWith("--writes=")) {
+                writes = Integer.parseInt(arg.substring("--writes=".length()));
+            }
+        }
+        new LoadGenerator(URI.create(url), clients, Duration.ofSeconds(seconds), writes).run();
+    }
+
+    /**
+     * Run the load and print the report
+     */
+    public void run() throws Exception {
+        List<String> categories = new ArrayList<>();
+        HttpResponse<String> response = httpClient.send(
+                HttpRequest.newBuilder(baseUri.resolve("/api/categories")).build(),
+                HttpResponse.BodyHandlers.ofString());
+        new JSONArray(response.body()).forEach(name -> categories.add((String) name));
+        if (categories.isEmpty()) {
+            throw new IllegalStateException("The server has no categories to load-test against");
+        }
+
+        long deadline = System.nanoTime() + duration.toNanos();
+        long started = System.nanoTime();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < clients; i++) {
+                long seed = i;
+                executor.submit(() -> runClient(new SplittableRandom(seed), categories, deadline));
+            }
+        }
+        double elapsedSeconds = (System.nanoTime() - started) / 1e9;
+        System.out.print(report(elapsedSeconds));
+    }
+
+    private void runClient(SplittableRandom random, List<String> categories, long deadline) {
+        while (System.nanoTime() < deadline) {
+            String category = categories.get(random.nextInt(categories.size()));
+            HttpRequest.Builder request;
+            String path;
+            int pick = random.nextInt(100);
+            if (pick < writePercent) {
+                path = "/api/expenses";
+                String body = new JSONObject()
+                        .put("category", category)
+                        .put("amount", 1 + random.nextInt(20_000) / 100.0)
+                        .put("currency", "USD")
+                        .put("payee", "Load test")
+                        .toString();
+                request = HttpRequest.newBuilder(baseUri.resolve(path))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(body));
+            } else {
+                path = switch (pick % 4) {
+                    case 0 -> "/api/categories";
+                    case 1 -> "/api/reports/summary";
+                    default -> "/api/expenses?limit=50&category=" + URLEncoder.encode(category, StandardCharsets.UTF_8);
+                };
+                request = HttpRequest.newBuilder(baseUri.resolve(path)).GET();
+                String etag = etags.get(path);
+                if (etag != null) {
+                    request.header("If-None-Match", etag);
+                }
+            }
+
+            long start = System.nanoTime();
+            try {
+                HttpResponse<String> response = httpClient.send(request.timeout(Duration.ofSeconds(30)).build(),
+                        HttpResponse.BodyHandlers.ofString());
+                latencies.record(System.nanoTime() - start);
+                statuses.computeIfAbsent(response.statusCode(), k -> new LongAdder()).increment();
+                response.headers().firstValue("ETag").ifPresent(etag -> etags.put(path, etag));
+            } catch (Exception e) {
+                latencies.record(System.nanoTime() - start);
+                failures.increment();
+                if (e instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private String report(double elapsedSeconds) {
+        long requests = latencies.count();
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%d clients, %.1f s, %d requests, %.0f req/s%n",
+                clients, elapsedSeconds, requests, requests / elapsedSeconds));
+        sb.append(String.format("latency ms: mean %.2f, p50 %.2f, p90 %.2f, p99 %.2f, max %.2f%n",
+                latencies.meanNanos() / 1e6, latencies.percentileNanos(50) / 1e6, latencies.percentileNanos(90) / 1e6,
+                latencies.percentileNanos(99) / 1e6, latencies.maxNanos() / 1e6));
+        sb.append("status:");
+        new TreeMap<>(statuses).forEach((status, count) -> sb.append(' ').append(status).append('=')
+                .append(count.sum()));
+        sb.append(String.format(", failures=%d%n", failures.sum()));
+        return sb.toString();
+    }
+}
@@ -0,0 +1,76 @@
+package org.example.project;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+
+/**
+ * Access-ordered cache bounded by total weight rather than entry count, so one large entry
+ * (an expense with thousands of transactions) counts for more than one small one. Least
+ * recently used entries are evicted first. Hits and misses are reported to Metrics. Not
+ * thread-safe; callers synchronize.
+ */
+final class LruCache<K, V> {
+
+    private final LinkedHashMap<K, V> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final ToIntFunction<V> weigher;
+    private final long maxWeight;
+    private final Metrics.CacheStats stats;
+    private long weight;
+
+    LruCache(String name, long maxWeight, ToIntFunction<V> weigher) {
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+        this.stats = Metrics.cache(name);
+    }
+
+    V get(K key) {
+        V value = entries.get(key);
+        if (value != null) {
+            stats.hit();
+        } else {
+            stats.miss();
+        }
+        return value;
+    }
+
+    void put(K key, V value) {
+        V previous = entries.put(key, value);
+        if (previous != null) {
+            weight -= weigher.applyAsInt(previous);
+        }
+        weight += weigher.applyAsInt(value);
+        evict();
+    }
+
+    V remove(K key) {
+        V previous = entries.remove(key);
+        if (previous != null) {
+            weight -= weigher.applyAsInt(previous);
+        }
+        return previous;
+    }
+
+    void clear() {
+        entries.clear();
+        weight = 0;
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    long weight() {
+        return weight;
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<K, V>> it = entries.entrySet().iterator();
+        // Keep at least the newest entry even if it alone exceeds the bound
+        while (weight > maxWeight && entries.size() > 1 && it.hasNext()) {
+            weight -= weigher.applyAsInt(it.next().getValue());
+            it.remove();
+        }
+    }
+}
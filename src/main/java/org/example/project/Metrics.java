@@ -0,0 +1,413 @@
+package org.example.project;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lightweight metrics registry for database, HTTP and forecasting calls.
+ * Counters and latency histograms are lock-free, exposed over JMX, dumped periodically
+ * to a local file and mirrored as JFR events so recordings show our spans.
+ */
+public final class Metrics {
+
+    private static final Map<String, LongAdder> COUNTERS = new ConcurrentHashMap<>();
+    private static final Map<String, LatencyHistogram> HISTOGRAMS = new ConcurrentHashMap<>();
+    private static final Map<String, CacheStats> CACHES = new ConcurrentHashMap<>();
+
+    private static ScheduledExecutorService dumpExecutor;
+    private static boolean jmxRegistered;
+
+    private Metrics() {
+    }
+
+    /**
+     * Start a timed span; closing it records the latency and commits a JFR event
+     * @param name Span name, e.g. "db.getCategories" or "http.getConversionRate"
+     */
+    public static Span span(String name) {
+        return new Span(name);
+    }
+
+    /**
+     * Increment a named counter by one
+     */
+    public static void increment(String name) {
+        COUNTERS.computeIfAbsent(name, k -> new LongAdder()).increment();
+    }
+
+    /**
+     * Add to a named counter
+     */
+    public static void add(String name, long delta) {
+        COUNTERS.computeIfAbsent(name, k -> new LongAdder()).add(delta);
+    }
+
+    /**
+     * Count a failure for the given operation (replaces bare printStackTrace calls)
+     */
+    public static void failure(String name, Throwable error) {
+        increment(name + ".failures");
+        increment(name + ".failures." + error.getClass().getSimpleName());
+    }
+
+    /**
+     * Record a latency sample in nanoseconds directly
+     */
+    public static void recordNanos(String name, long nanos) {
+        HISTOGRAMS.computeIfAbsent(name, k -> new LatencyHistogram()).record(nanos);
+    }
+
+    /**
+     * Get (or create) hit/miss statistics for a named cache
+     */
+    public static CacheStats cache(String name) {
+        return CACHES.computeIfAbsent(name, k -> new CacheStats());
+    }
+
+    public static long counterValue(String name) {
+        LongAdder adder = COUNTERS.get(name);
+        return adder == null ? 0 : adder.sum();
+    }
+
+    public static LatencyHistogram histogram(String name) {
+        return HISTOGRAMS.get(name);
+    }
+
+    /**
+     * Reset every counter, histogram and cache statistic
+     */
+    public static void reset() {
+        COUNTERS.values().forEach(LongAdder::reset);
+        HISTOGRAMS.values().forEach(LatencyHistogram::reset);
+        CACHES.values().forEach(CacheStats::reset);
+    }
+
+    /**
+     * Render a human-readable snapshot of all metrics
+     */
+    public static String dump() {
+        StringWriter out = new StringWriter();
+        PrintWriter writer = new PrintWriter(out);
+        writer.println("# Metrics snapshot " + LocalDateTime.now());
+
+        writer.println("## Latencies (ms)");
+        writer.printf("%-40s %10s %10s %10s %10s %10s %10s%n", "name", "count", "mean", "p50", "p90", "p99", "max");
+        new TreeMap<>(HISTOGRAMS).forEach((name, h) -> writer.printf("%-40s %10d %10.3f %10.3f %10.3f %10.3f %10.3f%n",
+                name, h.count(), h.meanNanos() / 1e6, h.percentileNanos(50) / 1e6,
+                h.percentileNanos(90) / 1e6, h.percentileNanos(99) / 1e6, h.maxNanos() / 1e6));
+
+        writer.println("## Counters");
+        new TreeMap<>(COUNTERS).forEach((name, c) -> writer.printf("%-40s %10d%n", name, c.sum()));
+
+        writer.println("## Caches");
+        new TreeMap<>(CACHES).forEach((name, c) -> writer.printf("%-40s hits=%d misses=%d ratio=%.3f%n",
+                name, c.hits(), c.misses(), c.hitRatio()));
+
+        writer.flush();
+        return out.toString();
+    }
+
+    /**
+     * Register the metrics MXBean under org.example.project:type=Metrics
+     */
+    public static synchronized void registerMBean() {
+        if (jmxRegistered) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer()
+                    .registerMBean(new MetricsBean(), new ObjectName("org.example.project:type=Metrics"));
+            jmxRegistered = true;
+        } catch (Exception e) {
+            failure("metrics.jmx", e);
+        }
+    }
+
+    /**
+     * Periodically write the metrics snapshot to a local file (replaced atomically on each dump)
+     */
+    public static synchronized void startPeriodicDump(Path file, Duration interval) {
+        if (dumpExecutor != null) {
+            return;
+        }
+        dumpExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "metrics-dump");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long millis = interval.toMillis();
+        dumpExecutor.scheduleAtFixedRate(() -> writeDump(file), millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop the periodic dump, writing one final snapshot
+     */
+    public static synchronized void stopPeriodicDump(Path file) {
+        if (dumpExecutor == null) {
+            return;
+        }
+        dumpExecutor.shutdownNow();
+        dumpExecutor = null;
+        writeDump(file);
+    }
+
+    private static void writeDump(Path file) {
+        try {
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            Files.writeString(tmp, dump(), StandardCharsets.UTF_8);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            failure("metrics.dump", e);
+        }
+    }
+
+    // ===================== Span =====================
+    public static final class Span implements AutoCloseable {
+        private final String name;
+        private final long start;
+        private final SpanEvent event;
+        private boolean failed;
+
+        private Span(String name) {
+            this.name = name;
+            this.event = new SpanEvent();
+            this.event.begin();
+            this.start = System.nanoTime();
+        }
+
+        /**
+         * Mark this span as failed and count the failure against its name
+         */
+        public void fail(Throwable error) {
+            if (!failed) {
+                failed = true;
+                failure(name, error);
+            }
+        }
+
+        @Override
+        public void close() {
+            recordNanos(name, System.nanoTime() - start);
+            increment(name + ".calls");
+            event.end();
+            if (event.shouldCommit()) {
+                event.name = name;
+                event.failed = failed;
+                event.commit();
+            }
+        }
+    }
+
+    @Name("org.example.project.Span")
+    @Label("Expense Manager Span")
+    @Category("Expense Manager")
+    @Description("Timed database, HTTP or forecasting call")
+    static final class SpanEvent extends Event {
+        @Label("Name")
+        String name;
+
+        @Label("Failed")
+        boolean failed;
+    }
+
+    // ===================== Latency Histogram =====================
+
+    /**
+     * HDR-style log-linear histogram: each power of two is split into 16 linear sub-buckets,
+     * which keeps relative error under ~6% with a fixed 1 KB footprint and no locking
+     */
+    public static final class LatencyHistogram {
+        private static final int SUB_BUCKET_BITS = 4;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+        private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        public void record(long nanos) {
+            long value = Math.max(0, nanos);
+            buckets.incrementAndGet(indexFor(value));
+            count.increment();
+            sum.add(value);
+            max.accumulate(value);
+        }
+
+        public long count() {
+            return count.sum();
+        }
+
+        public double meanNanos() {
+            long n = count.sum();
+            return n == 0 ? 0 : (double) sum.sum() / n;
+        }
+
+        public long maxNanos() {
+            return max.get();
+        }
+
+        /**
+         * Estimate the given percentile (0-100) from the bucket counts
+         */
+        public long percentileNanos(double percentile) {
+            long total = 0;
+            long[] snapshot = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) {
+                snapshot[i] = buckets.get(i);
+                total += snapshot[i];
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(percentile / 100.0 * total);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += snapshot[i];
+                if (seen >= Math.max(1, rank)) {
+                    return Math.min(upperBoundOf(i), max.get());
+                }
+            }
+            return max.get();
+        }
+
+        void reset() {
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets.set(i, 0);
+            }
+            count.reset();
+            sum.reset();
+            max.reset();
+        }
+
+        private static int indexFor(long value) {
+            if (value < SUB_BUCKETS) {
+                return (int) value;
+            }
+            int magnitude = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS + 1;
+            int subBucket = (int) (value >>> (magnitude - 1)) & (SUB_BUCKETS - 1);
+            return magnitude * SUB_BUCKETS + subBucket;
+        }
+
+        private static long upperBoundOf(int index) {
+            int magnitude = index / SUB_BUCKETS;
+            long subBucket = index % SUB_BUCKETS;
+            if (magnitude == 0) {
+                return subBucket;
+            }
+            return ((SUB_BUCKETS + subBucket + 1) << (magnitude - 1)) - 1;
+        }
+    }
+
+    // ===================== Cache Statistics =====================
+    public static final class CacheStats {
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+
+        public void hit() {
+            hits.increment();
+        }
+
+        public void miss() {
+            misses.increment();
+        }
+
+        public long hits() {
+            return hits.sum();
+        }
+
+        public long misses() {
+            return misses.sum();
+        }
+
+        public double hitRatio() {
+            long h = hits.sum();
+            long total = h + misses.sum();
+            return total == 0 ? 0 : (double) h / total;
+        }
+
+        void reset() {
+            hits.reset();
+            misses.reset();
+        }
+    }
+
+    // ===================== JMX =====================
+    public interface MetricsMXBean {
+        Map<String, Long> getCounters();
+
+        Map<String, Double> getMeanLatenciesMillis();
+
+        Map<String, Double> getP99LatenciesMillis();
+
+        Map<String, Double> getCacheHitRatios();
+
+        String getSnapshot();
+
+        void reset();
+    }
+
+    private static final class MetricsBean implements MetricsMXBean {
+        @Override
+        public Map<String, Long> getCounters() {
+            Map<String, Long> result = new TreeMap<>();
+            COUNTERS.forEach((name, c) -> result.put(name, c.sum()));
+            return result;
+        }
+
+        @Override
+        public Map<String, Double> getMeanLatenciesMillis() {
+            Map<String, Double> result = new TreeMap<>();
+            HISTOGRAMS.forEach((name, h) -> result.put(name, h.meanNanos() / 1e6));
+            return result;
+        }
+
+        @Override
+        public Map<String, Double> getP99LatenciesMillis() {
+            Map<String, Double> result = new TreeMap<>();
+            HISTOGRAMS.forEach((name, h) -> result.put(name, h.percentileNanos(99) / 1e6));
+            return result;
+        }
+
+        @Override
+        public Map<String, Double> getCacheHitRatios() {
+            Map<String, Double> result = new TreeMap<>();
+            CACHES.forEach((name, c) -> result.put(name, c.hitRatio()));
+            return result;
+        }
+
+        @Override
+        public String getSnapshot() {
+            return dump();
+        }
+
+        @Override
+        public void reset() {
+            Metrics.reset();
+        }
+    }
+}
@@ -1,19 +1,15 @@
 package org.example.project;
 
 import java.io.*;
+import java.time.DayOfWeek;
 import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Objects;
 import java.util.stream.Collectors;
 
-import org.json.JSONObject;
-
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URL;
-
 /**
  * This class consolidates all model classes: Category, Transaction, Expense, and related interfaces
  */
@@ -63,41 +59,322 @@ public class Model {
         }
     }
 
+    // ===================== Budget Period =====================
+    public enum BudgetPeriod {
+        WEEKLY, MONTHLY, YEARLY;
+
+        /**
+         * First day of the period containing the given date
+         */
+        public LocalDate startOf(LocalDate date) {
+            return switch (this) {
+                case WEEKLY -> date.with(DayOfWeek.MONDAY);
+                case MONTHLY -> date.withDayOfMonth(1);
+                case YEARLY -> date.withDayOfYear(1);
+            };
+        }
+
+        /**
+         * First day after the period containing the given date
+         */
+        public LocalDate endOf(LocalDate date) {
+            LocalDate start = startOf(date);
+            return switch (this) {
+                case WEEKLY -> start.plusWeeks(1);
+                case MONTHLY -> start.plusMonths(1);
+                case YEARLY -> start.plusYears(1);
+            };
+        }
+    }
+
     // ===================== Budget Class =====================
     public static class Budget implements Budgetable {
+        private Category category;
+        private BudgetPeriod period;
         private double budgetLimit;
+        private double alertThreshold;
 
+        /**
+         * General budget not tied to a category or period
+         */
         public Budget(double budgetLimit) {
             this.budgetLimit = budgetLimit;
         }
 
+        /**
+         * Per-category budget for a period
+         * @param alertThreshold Fraction of the limit (e.g. 0.8) at which a warning is raised
+         */
+        public Budget(Category category, BudgetPeriod period, double budgetLimit, double alertThreshold) {
+            this.category = category;
+            this.period = period;
+            this.budgetLimit = budgetLimit;
+            this.alertThreshold = alertThreshold;
+        }
+
+        public Category getCategory() {
+            return category;
+        }
+
+        public BudgetPeriod getPeriod() {
+            return period;
+        }
+
+        public double getBudgetLimit() {
+            return budgetLimit;
+        }
+
+        public double getAlertThreshold() {
+            return alertThreshold;
+        }
+
         @Override
         public void displayBudget() {
-            System.out.println("General Budget Limit: $" + budgetLimit);
+            if (category == null) {
+                System.out.println("General Budget Limit: $" + budgetLimit);
+            } else {
+                System.out.println(period + " Budget Limit for " + category.getName() + ": $" + budgetLimit);
+            }
+        }
+    }
+
+    // ===================== Transaction Columns =====================
+    /**
+     * Transactions stored column-wise: epoch days in a long[] and amounts in a double[], 16 bytes
+     * per transaction instead of a Transaction object with its date string. The total is cached
+     * until the contents change. Dates that are not ISO formatted keep their text in a side
+     * column, allocated only once such a date is added.
+     */
+    public static final class TransactionColumns implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        // Epoch day stored for dates that are missing or not ISO formatted
+        public static final long NO_DATE = Long.MIN_VALUE;
+
+        private long[] epochDays;
+        private double[] amounts;
+        // Original text of dates stored as NO_DATE; null until the first one
+        private String[] unparsedDates;
+        private int size;
+        private transient int modCount;
+        private transient double total;
+        private transient boolean totalValid;
+
+        public TransactionColumns() {
+            this(16);
+        }
+
+        public TransactionColumns(int capacity) {
+            epochDays = new long[Math.max(1, capacity)];
+            amounts = new double[epochDays.length];
+        }
+
+        public static TransactionColumns of(Transaction[] transactions) {
+            TransactionColumns columns = new TransactionColumns(transactions.length);
+            for (Transaction transaction : transactions) {
+                columns.add(transaction.getDate(), transaction.getAmount());
+            }
+            return columns;
+        }
+
+        /**
+         * An independent copy of the transactions
+         */
+        public TransactionColumns copy() {
+            TransactionColumns copy = new TransactionColumns(size);
+            System.arraycopy(epochDays, 0, copy.epochDays, 0, size);
+            System.arraycopy(amounts, 0, copy.amounts, 0, size);
+            if (unparsedDates != null) {
+                copy.unparsedDates = Arrays.copyOf(unparsedDates, copy.epochDays.length);
+            }
+            copy.size = size;
+            return copy;
+        }
+
+        public void add(String date, double amount) {
+            long epochDay = parseEpochDay(date);
+            add(epochDay, amount);
+            if (epochDay == NO_DATE && date != null) {
+                if (unparsedDates == null) {
+                    unparsedDates = new String[epochDays.length];
+                }
+                unparsedDates[size - 1] = date;
+            }
+        }
+
+        public void add(long epochDay, double amount) {
+            if (size == amounts.length) {
+                epochDays = Arrays.copyOf(epochDays, size * 2);
+                amounts = Arrays.copyOf(amounts, size * 2);
+                if (unparsedDates != null) {
+                    unparsedDates = Arrays.copyOf(unparsedDates, size * 2);
+                }
+            }
+            if (unparsedDates != null) {
+                unparsedDates[size] = null;
+            }
+            epochDays[size] = epochDay;
+            amounts[size++] = amount;
+            modCount++;
+            if (totalValid) {
+                total += amount;
+            }
+        }
+
+        public void setAmount(int index, double amount) {
+            Objects.checkIndex(index, size);
+            amounts[index] = amount;
+            modCount++;
+            totalValid = false;
+        }
+
+        public void remove(int index) {
+            Objects.checkIndex(index, size);
+            System.arraycopy(epochDays, index + 1, epochDays, index, size - index - 1);
+            System.arraycopy(amounts, index + 1, amounts, index, size - index - 1);
+            if (unparsedDates != null) {
+                System.arraycopy(unparsedDates, index + 1, unparsedDates, index, size - index - 1);
+            }
+            size--;
+            modCount++;
+            totalValid = false;
+        }
+
+        public void clear() {
+            size = 0;
+            modCount++;
+            totalValid = false;
         }
+
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Changes on every modification, so callers can tell whether derived values are stale
+         */
+        public int modCount() {
+            return modCount;
+        }
+
+        public long epochDayAt(int index) {
+            Objects.checkIndex(index, size);
+            return epochDays[index];
+        }
+
+        /**
+         * Transaction date as ISO text. A date that did not parse is returned as it was added,
+         * and a missing one as an empty string.
+         */
+        public String dateAt(int index) {
+            long epochDay = epochDayAt(index);
+            if (epochDay != NO_DATE) {
+                return LocalDate.ofEpochDay(epochDay).toString();
+            }
+            String unparsed = unparsedDates == null ? null : unparsedDates[index];
+            return unparsed == null ? "" : unparsed;
+        }
+
+        public double amountAt(int index) {
+            Objects.checkIndex(index, size);
+            return amounts[index];
+        }
+
+        public double total() {
+            if (!totalValid) {
+                double sum = 0;
+                for (int i = 0; i < size; i++) {
+                    sum += amounts[i];
+                }
+                total = sum;
+                totalValid = true;
+            }
+            return total;
+        }
+
+        private static long parseEpochDay(String date) {
+            if (date == null) {
+                return NO_DATE;
+            }
+            try {
+                return LocalDate.parse(date).toEpochDay();
+            } catch (DateTimeParseException e) {
+                return NO_DATE;
+            }
+        }
+    }
+
+    /**
+     * Fills a TransactionColumns from storage the first time the transactions are needed
+     */
+    public interface TransactionLoader {
+        void load(TransactionColumns into) throws Exception;
     }
 
     // ===================== Expense Class =====================
     public static class Expense implements Serializable {
-        private static final long serialVersionUID = 1L;
+        private static final long serialVersionUID = 2L;
         private Category category;
-        private Transaction[] transactions;
+        private volatile TransactionColumns transactions;
+        private transient TransactionLoader loader;
+        private transient String formatted;
+        private transient int formattedAt;
         private double budgetLimit;
         private LocalDate expenseDate;
 
         public Expense(Category category, Transaction[] transactions, double budgetLimit, LocalDate expenseDate) {
+            this(category, TransactionColumns.of(transactions), budgetLimit, expenseDate);
+        }
+
+        public Expense(Category category, TransactionColumns transactions, double budgetLimit, LocalDate expenseDate) {
             this.category = category;
             this.transactions = transactions;
             this.budgetLimit = budgetLimit;
             this.expenseDate = expenseDate;
         }
 
+        /**
+         * Expense whose transactions are read through the loader on first use
+         */
+        public Expense(Category category, TransactionLoader loader, double budgetLimit, LocalDate expenseDate) {
+            this.category = category;
+            this.loader = loader;
+            this.budgetLimit = budgetLimit;
+            this.expenseDate = expenseDate;
+        }
+
         public Category getCategory() {
             return category;
         }
 
+        /**
+         * The transaction columns, loaded on first use
+         */
+        public TransactionColumns getTransactions() {
+            TransactionColumns current = transactions;
+            return current != null ? current : loadTransactions();
+        }
+
+        private synchronized TransactionColumns loadTransactions() {
+            if (transactions == null) {
+                TransactionColumns loaded = new TransactionColumns();
+                try {
+                    loader.load(loaded);
+                } catch (Exception e) {
+                    throw new IllegalStateException("Could not load transactions for " + category.getName(), e);
+                }
+                transactions = loaded;
+                loader = null;
+            }
+            return transactions;
+        }
+
+        public void addTransaction(String date, double amount) {
+            getTransactions().add(date, amount);
+        }
+
         public double calculateTotalExpenses() {
-            return Arrays.stream(transactions).mapToDouble(Transaction::getAmount).sum();
+            return getTransactions().total();
         }
 
         public LocalDate getExpenseDate() {
@@ -105,37 +382,49 @@ public class Model {
         }
 
         @Override
-        public String toString() {
-            StringBuilder sb = new StringBuilder();
-            sb.append("Category: ").append(category.getName()).append("\n");
-            sb.append("Expense Date: ").append(expenseDate).append("\n");
-            sb.append("Transactions:\n");
-            sb.append(String.format("%-15s %-10s\n", "Date", "Amount ($)"));
-            sb.append("-".repeat(25)).append("\n");
-            for (Transaction transaction : transactions) {
-                sb.append(String.format("%-15s %-10.2f\n", transaction.getDate(), transaction.getAmount()));
+        public synchronized String toString() {
+            TransactionColumns columns = getTransactions();
+            if (formatted == null || formattedAt != columns.modCount()) {
+                StringBuilder sb = new StringBuilder(128 + columns.size() * 28);
+                sb.append("Category: ").append(category.getName()).append("\n");
+                if (expenseDate != null) {
+                    sb.append("Expense Date: ").append(expenseDate).append("\n");
+                }
+                sb.append("Transactions:\n");
+                sb.append(String.format("%-15s %-10s\n", "Date", "Amount ($)"));
+                sb.append("-".repeat(25)).append("\n");
+                for (int i = 0; i < columns.size(); i++) {
+                    sb.append(String.format("%-15s %-10.2f\n", columns.dateAt(i), columns.amountAt(i)));
+                }
+                sb.append("-".repeat(25)).append("\n");
+                sb.append("Total Expenses: $").append(String.format("%.2f", columns.total())).append("\n");
+                formatted = sb.toString();
+                formattedAt = columns.modCount();
             }
-            sb.append("-".repeat(25)).append("\n");
-            sb.append("Total Expenses: $").append(String.format("%.2f", calculateTotalExpenses())).append("\n");
-            return sb.toString();
+            return formatted;
+        }
+
+        private void writeObject(ObjectOutputStream out) throws IOException {
+            getTransactions(); // Serialize the loaded columns rather than the loader
+            out.defaultWriteObject();
         }
     }
 
     // ===================== Transaction Summary Class =====================
     public static class TransactionSummary implements TransactionCalculable {
-        private Transaction[] transactions;
+        private final TransactionColumns transactions;
 
         public TransactionSummary(Transaction[] transactions) {
+            this(TransactionColumns.of(transactions));
+        }
+
+        public TransactionSummary(TransactionColumns transactions) {
             this.transactions = transactions;
         }
 
         @Override
         public double calculateTotalTransactions() {
-            double total = 0;
-            for (Transaction t : transactions) {
-                total += t.getAmount();
-            }
-            return total;
+            return transactions.total();
         }
     }
 
@@ -160,20 +449,50 @@ class DuplicateCategoryException extends Exception {
 class ApiManager {
     private static final String API_URL = "https://api.exchangerate-api.com/v4/latest/";
 
-    public static double getConversionRate(String fromCurrency, String toCurrency) throws Exception {
-        URL url = new URL(API_URL + fromCurrency);
-        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-        connection.setRequestMethod("GET");
+    // One base payload serves every currency pair until it is this old
+    private static final long SNAPSHOT_TTL_MILLIS = 10 * 60 * 1000;
 
-        BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream()));
-        StringBuilder response = new StringBuilder();
-        String line;
-        while ((line = reader.readLine()) != null) {
-            response.append(line);
+    private static volatile RateMatrix snapshot;
+
+    /**
+     * Get the cross-rate matrix for all supported currencies, refreshing it when stale
+     */
+    public static RateMatrix getRateMatrix() throws Exception {
+        RateMatrix current = snapshot;
+        if (current != null && current.getFetchedAt().toEpochMilli() + SNAPSHOT_TTL_MILLIS > System.currentTimeMillis()) {
+            Metrics.cache("rates.snapshot").hit();
+            return current;
+        }
+        Metrics.cache("rates.snapshot").miss();
+
+        try (Metrics.Span span = Metrics.span("http.exchangerate-api.latest")) {
+            try {
+                RateTable table = RateClient.shared().fetchBlocking(API_URL + Currency.code(Currency.BASE));
+                current = RateMatrix.fromBase(table);
+                snapshot = current;
+                return current;
+            } catch (Exception e) {
+                span.fail(e);
+                throw e;
+            }
+        }
+    }
+
+    public static double getConversionRate(String fromCurrency, String toCurrency) throws Exception {
+        int fromId = Currency.idOf(fromCurrency);
+        int toId = Currency.idOf(toCurrency);
+        if (fromId >= 0 && toId >= 0) {
+            return getRateMatrix().rate(fromId, toId);
         }
-        reader.close();
 
-        JSONObject jsonResponse = new JSONObject(response.toString());
-        return jsonResponse.getJSONObject("rates").getDouble(toCurrency);
+        // Currencies outside the registry still go through a direct lookup
+        try (Metrics.Span span = Metrics.span("http.exchangerate-api.latest")) {
+            try {
+                return RateClient.shared().fetchBlocking(API_URL + fromCurrency).require(toCurrency);
+            } catch (Exception e) {
+                span.fail(e);
+                throw e;
+            }
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,250 @@
+package org.example.project;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.zip.Deflater;
+
+/**
+ * Minimal PDF 1.4 writer for text-only pages in the standard Courier fonts, which every viewer
+ * has built in, so nothing is embedded. Each page is written and deflated as soon as it ends;
+ * only the object offsets and page object numbers are kept until the cross-reference table is
+ * written on close, so a document of any length takes a few kilobytes of memory.
+ */
+class PdfWriter implements Closeable {
+
+    // A4 in points
+    public static final double PAGE_WIDTH = 595;
+    public static final double PAGE_HEIGHT = 842;
+
+    // Courier glyphs are all 600/1000 em wide
+    public static final double CHAR_WIDTH_EM = 0.6;
+
+    private static final int CATALOG = 1;
+    private static final int PAGES = 2;
+    private static final int REGULAR_FONT = 3;
+    private static final int BOLD_FONT = 4;
+
+    private final CountingOutputStream out;
+    private final String title;
+    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+    private final ByteArrayOutputStream content = new ByteArrayOutputStream(16 * 1024);
+    private final byte[] deflateBuffer = new byte[16 * 1024];
+
+    // One text operator is assembled here and then copied into the content in one write
+    private byte[] lineBuffer = new byte[256];
+    private int lineLength;
+
+    // Byte offset of each object by object number; 0 is the free list head
+    private long[] offsets = new long[64];
+    private int nextObject = BOLD_FONT + 1;
+    private int[] pageObjects = new int[64];
+    private int pageCount;
+    private boolean pageOpen;
+
+    PdfWriter(OutputStream out, String title) throws IOException {
+        this.out = new CountingOutputStream(new BufferedOutputStream(out, 1 << 16));
+        this.title = title;
+        // The comment with bytes above 127 tells tools the file is binary
+        write("%PDF-1.4\n%\u00e2\u00e3\u00cf\u00d3\n");
+        writeObject(CATALOG, "<< /Type /Catalog /Pages " + PAGES + " 0 R >>");
+        writeObject(REGULAR_FONT, "<< /Type /Font /Subtype /Type1 /BaseFont /Courier /Encoding /WinAnsiEncoding >>");
+        writeObject(BOLD_FONT, "<< /Type /Font /Subtype /Type1 /BaseFont /Courier-Bold /Encoding /WinAnsiEncoding >>");
+    }
+
+    public void beginPage() {
+        if (pageOpen) {
+            throw new IllegalStateException("Page already open");
+        }
+        content.reset();
+        pageOpen = true;
+    }
+
+    /**
+     * Draw one line of text with its baseline starting at (x, y), in points from the bottom left
+     */
+    public void text(double x, double y, double size, boolean bold, String text) {
+        if (!pageOpen) {
+            throw new IllegalStateException("No page open");
+        }
+        // Called for every line of a long document, so this avoids String.format
+        lineLength = 0;
+        append(bold ? "BT /F2 " : "BT /F1 ");
+        appendNumber(size);
+        append(" Tf ");
+        appendNumber(x);
+        append(" ");
+        appendNumber(y);
+        append(" Td (");
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '(' || c == ')' || c == '\\') {
+                appendByte('\\');
+                appendByte(c);
+            } else if (c == '\u20ac') {
+                appendByte(0x80); // WinAnsi euro sign
+            } else if (c < 0x20 || (c >= 0x7f && c < 0xa0) || c > 0xff) {
+                // Control characters, and anything WinAnsi cannot show
+                appendByte(c < 0x20 ? ' ' : '?');
+            } else {
+                appendByte(c);
+            }
+        }
+        append(") Tj ET\n");
+        content.write(lineBuffer, 0, lineLength);
+    }
+
+    /**
+     * Compress the page's content and write it with its page object
+     */
+    public void endPage() throws IOException {
+        if (!pageOpen) {
+            throw new IllegalStateException("No page open");
+        }
+        pageOpen = false;
+
+        deflater.reset();
+        deflater.setInput(content.toByteArray());
+        deflater.finish();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(content.size() / 3 + 64);
+        while (!deflater.finished()) {
+            compressed.write(deflateBuffer, 0, deflater.deflate(deflateBuffer));
+        }
+
+        int contentObject = nextObject++;
+        beginObject(contentObject);
+        write("<< /Length " + compressed.size() + " /Filter /FlateDecode >>\nstream\n");
+        compressed.writeTo(out);
+        write("\nendstream\nendobj\n");
+
+        int pageObject = nextObject++;
+        writeObject(pageObject, String.format(Locale.ROOT,
+                "<< /Type /Page /Parent %d 0 R /MediaBox [0 0 %.0f %.0f] "
+                        + "/Resources << /Font << /F1 %d 0 R /F2 %d 0 R >> >> /Contents %d 0 R >>",
+                PAGES, PAGE_WIDTH, PAGE_HEIGHT, REGULAR_FONT, BOLD_FONT, contentObject));
+        if (pageCount == pageObjects.length) {
+            pageObjects = Arrays.copyOf(pageObjects, pageCount * 2);
+        }
+        pageObjects[pageCount++] = pageObject;
+    }
+
+    public int getPageCount() {
+        return pageCount;
+    }
+
+    /**
+     * Bytes written so far
+     */
+    public long size() {
+        return out.count;
+    }
+
+    /**
+     * Write the page tree, document info and cross-reference table, and close the stream
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (pageOpen) {
+                endPage();
+            }
+            StringBuilder kids = new StringBuilder();
+            for (int i = 0; i < pageCount; i++) {
+                kids.append(i > 0 ? " " : "").append(pageObjects[i]).append(" 0 R");
+            }
+            writeObject(PAGES, "<< /Type /Pages /Kids [" + kids + "] /Count " + pageCount + " >>");
+            int info = nextObject++;
+            writeObject(info, "<< /Title (" + title.replaceAll("[()\\\\]", "\\\\$0")
+                    + ") /Producer (Expense Manager) >>");
+
+            long xref = out.count;
+            write("xref\n0 " + nextObject + "\n0000000000 65535 f \n");
+            for (int object = 1; object < nextObject; object++) {
+                write(String.format(Locale.ROOT, "%010d 00000 n \n", offsets[object]));
+            }
+            write("trailer\n<< /Size " + nextObject + " /Root " + CATALOG + " 0 R /Info " + info + " 0 R >>\n"
+                    + "startxref\n" + xref + "\n%%EOF\n");
+        } finally {
+            deflater.end();
+            out.close();
+        }
+    }
+
+    private void writeObject(int object, String body) throws IOException {
+        beginObject(object);
+        write(body);
+        write("\nendobj\n");
+    }
+
+    private void beginObject(int object) throws IOException {
+        if (object >= offsets.length) {
+            offsets = Arrays.copyOf(offsets, Math.max(object + 1, offsets.length * 2));
+        }
+        offsets[object] = out.count;
+        write(object + " 0 obj\n");
+    }
+
+    private void write(String text) throws IOException {
+        out.write(text.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    private void append(String operators) {
+        for (int i = 0; i < operators.length(); i++) {
+            appendByte(operators.charAt(i));
+        }
+    }
+
+    /**
+     * A coordinate or size with two decimals
+     */
+    private void appendNumber(double value) {
+        long hundredths = Math.round(value * 100);
+        if (hundredths < 0) {
+            appendByte('-');
+            hundredths = -hundredths;
+        }
+        append(Long.toString(hundredths / 100));
+        long fraction = hundredths % 100;
+        if (fraction != 0) {
+            appendByte('.');
+            appendByte('0' + (int) (fraction / 10));
+            appendByte('0' + (int) (fraction % 10));
+        }
+    }
+
+    private void appendByte(int b) {
+        if (lineLength == lineBuffer.length) {
+            lineBuffer = Arrays.copyOf(lineBuffer, lineLength * 2);
+        }
+        lineBuffer[lineLength++] = (byte) b;
+    }
+
+    /**
+     * Tracks the byte offset that object positions are recorded at
+     */
+    private static final class CountingOutputStream extends FilterOutputStream {
+        long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package org.example.project;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shared exchange-rate HTTP client used by ApiManager and CurrencyPredictor.
+ * Keeps connections alive over HTTP/2, parses responses as they stream in, coalesces concurrent requests for the same URL
+ * into one in-flight future, retries transient failures with jittered backoff and
+ * stops calling a failing endpoint for a while through a simple circuit breaker.
+ */
+public class RateClient {
+
+    private static final RateClient SHARED = new RateClient(
+            Duration.ofSeconds(5), Duration.ofSeconds(10), 3, Duration.ofMillis(200), 5, Duration.ofSeconds(30));
+
+    private final HttpClient httpClient;
+    private final Duration requestTimeout;
+    private final int maxAttempts;
+    private final long baseBackoffMillis;
+    private final int failureThreshold;
+    private final long openMillis;
+
+    // One circuit breaker per host, so a failing endpoint does not block the others
+    private final Map<String, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
+
+    // Single-flight table: one future per URL while a request is in progress
+    private final Map<String, CompletableFuture<RateTable>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * @param connectTimeout Timeout for establishing a connection
+     * @param requestTimeout Timeout for receiving the full response
+     * @param maxAttempts Total attempts per request, including the first one
+     * @param baseBackoff Base delay for exponential backoff between attempts
+     * @param failureThreshold Consecutive failures before the circuit opens
+     * @param openDuration How long the circuit stays open before a trial request is allowed
+     */
+    public RateClient(Duration connectTimeout, Duration requestTimeout, int maxAttempts, Duration baseBackoff,
+                      int failureThreshold, Duration openDuration) {
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(connectTimeout)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+        this.requestTimeout = requestTimeout;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.baseBackoffMillis = baseBackoff.toMillis();
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openDuration.toMillis();
+    }
+
+    /**
+     * Get the client shared by all rate lookups in the application
+     */
+    public static RateClient shared() {
+        return SHARED;
+    }
+
+    /**
+     * Fetch and parse a rate document; concurrent callers for the same URL share one request
+     */
+    public CompletableFuture<RateTable> fetch(String url) {
+        CompletableFuture<RateTable> created = new CompletableFuture<>();
+        CompletableFuture<RateTable> existing = inFlight.putIfAbsent(url, created);
+        if (existing != null) {
+            Metrics.increment("http.coalesced");
+            return existing;
+        }
+
+        attempt(url, 1).whenComplete((result, error) -> {
+            inFlight.remove(url, created);
+            if (error != null) {
+                created.completeExceptionally(unwrap(error));
+            } else {
+                created.complete(result);
+            }
+        });
+        return created;
+    }
+
+    /**
+     * Blocking variant of {@link #fetch(String)} that rethrows the underlying failure
+     */
+    public RateTable fetchBlocking(String url) throws Exception {
+        try {
+            return fetch(url).get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception exception) {
+                throw exception;
+            }
+            throw e;
+        }
+    }
+
+    private CompletableFuture<RateTable> attempt(String url, int attemptNumber) {
+        URI uri = URI.create(url);
+        CircuitBreaker circuitBreaker = circuitBreakers.computeIfAbsent(uri.getHost(),
+                host -> new CircuitBreaker(failureThreshold, openMillis));
+        if (!circuitBreaker.allowRequest()) {
+            Metrics.increment("http.circuitOpen");
+            return CompletableFuture.failedFuture(
+                    new CircuitOpenException("Exchange rate service unavailable, retry later: " + url));
+        }
+
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .timeout(requestTimeout)
+                .header("Accept", "application/json")
+                .GET()
+                .build();
+
+        long start = System.nanoTime();
+        String metricName = "http." + uri.getHost();
+
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofInputStream())
+                .thenApply(response -> {
+                    try (InputStream body = response.body()) {
+                        if (response.statusCode() != 200) {
+                            throw new HttpStatusException(response.statusCode(), url);
+                        }
+                        return RateDocumentParser.parse(body);
+                    } catch (IOException e) {
+                        throw new CompletionException(e);
+                    }
+                })
+                .handle((rates, error) -> {
+                    Metrics.recordNanos(metricName, System.nanoTime() - start);
+                    if (error == null) {
+                        circuitBreaker.recordSuccess();
+                        return CompletableFuture.completedFuture(rates);
+                    }
+
+                    Throwable cause = unwrap(error);
+                    Metrics.failure(metricName, cause);
+                    circuitBreaker.recordFailure();
+
+                    if (attemptNumber >= maxAttempts || !isRetryable(cause)) {
+                        return CompletableFuture.<RateTable>failedFuture(cause);
+                    }
+
+                    Metrics.increment("http.retries");
+                    return CompletableFuture.supplyAsync(() -> null,
+                                    CompletableFuture.delayedExecutor(backoffMillis(attemptNumber), TimeUnit.MILLISECONDS))
+                            .thenCompose(ignored -> attempt(url, attemptNumber + 1));
+                })
+                .thenCompose(future -> future);
+    }
+
+    /**
+     * Full-jitter exponential backoff: a random delay in [0, base * 2^(attempt-1)]
+     */
+    private long backoffMillis(int attemptNumber) {
+        long ceiling = baseBackoffMillis << Math.min(attemptNumber - 1, 10);
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    private static boolean isRetryable(Throwable error) {
+        if (error instanceof HttpStatusException statusError) {
+            return statusError.statusCode == 429 || statusError.statusCode >= 500;
+        }
+        return error instanceof IOException && !(error instanceof CircuitOpenException);
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        while ((error instanceof CompletionException || error instanceof ExecutionException) && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error;
+    }
+
+    // ===================== Circuit Breaker =====================
+
+    /**
+     * Opens after a run of consecutive failures, then lets a single trial request through
+     * once the open period has elapsed; a success closes it again
+     */
+    private static final class CircuitBreaker {
+        private final int failureThreshold;
+        private final long openMillis;
+        private int consecutiveFailures;
+        private long openUntil;
+        private boolean trialInProgress;
+
+        CircuitBreaker(int failureThreshold, long openMillis) {
+            this.failureThreshold = failureThreshold;
+            this.openMillis = openMillis;
+        }
+
+        synchronized boolean allowRequest() {
+            if (consecutiveFailures < failureThreshold) {
+                return true;
+            }
+            if (System.currentTimeMillis() < openUntil || trialInProgress) {
+                return false;
+            }
+            trialInProgress = true;
+            return true;
+        }
+
+        synchronized void recordSuccess() {
+            consecutiveFailures = 0;
+            trialInProgress = false;
+        }
+
+        synchronized void recordFailure() {
+            consecutiveFailures++;
+            trialInProgress = false;
+            if (consecutiveFailures >= failureThreshold) {
+                openUntil = System.currentTimeMillis() + openMillis;
+            }
+        }
+    }
+
+    // ===================== Exceptions =====================
+    public static class HttpStatusException extends IOException {
+        private static final long serialVersionUID = 1L;
+        private final int statusCode;
+
+        public HttpStatusException(int statusCode, String url) {
+            super("HTTP " + statusCode + " from " + url);
+            this.statusCode = statusCode;
+        }
+
+        public int getStatusCode() {
+            return statusCode;
+        }
+    }
+
+    public static class CircuitOpenException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        public CircuitOpenException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,343 @@
+package org.example.project;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * Streaming parser for exchange-rate documents such as
+ * {"result":"success","base_code":"USD","rates":{"EUR":0.92,...}}.
+ * Reads straight from the InputStream through a small byte buffer, skips every field it
+ * does not need without building a tree, and validates the parts of the schema we rely on.
+ */
+public class RateDocumentParser {
+
+    // Interned three-letter currency codes, indexed by their packed A-Z value
+    private static final String[] CODE_TABLE = new String[26 * 26 * 26];
+
+    private final InputStream in;
+    private final byte[] buffer = new byte[8192];
+    private int position;
+    private int limit;
+
+    // Scratch space for keys and numbers, reused across tokens
+    private byte[] scratch = new byte[64];
+    private int scratchLength;
+
+    private RateDocumentParser(InputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * Parse every entry of "rates" into a RateTable
+     */
+    public static RateTable parse(InputStream in) throws IOException {
+        return new RateDocumentParser(in).parseDocument(null);
+    }
+
+    /**
+     * Parse only the requested currencies; the rest of the document is still validated
+     * @param wanted Currency codes to keep, or null to keep all of them
+     */
+    public static RateTable parse(InputStream in, Set<String> wanted) throws IOException {
+        return new RateDocumentParser(in).parseDocument(wanted);
+    }
+
+    private RateTable parseDocument(Set<String> wanted) throws IOException {
+        expect('{');
+        String base = null;
+        String result = null;
+        String errorType = null;
+        double[] pendingValues = null;
+        String[] pendingCodes = null;
+        int pendingCount = 0;
+
+        if (!consumeIf('}')) {
+            do {
+                String key = readString(false);
+                expect(':');
+                switch (key) {
+                    case "base", "base_code" -> base = readString(true);
+                    case "result" -> result = readString(false);
+                    case "error-type" -> errorType = readString(false);
+                    case "rates" -> {
+                        // The base may come after the rates, so collect them first
+                        pendingCodes = new String[64];
+                        pendingValues = new double[64];
+                        expect('{');
+                        if (!consumeIf('}')) {
+                            do {
+                                String code = readString(true);
+                                expect(':');
+                                double rate = readNumber(code);
+                                if (wanted == null || wanted.contains(code)) {
+                                    if (pendingCount == pendingCodes.length) {
+                                        pendingCodes = Arrays.copyOf(pendingCodes, pendingCount * 2);
+                                        pendingValues = Arrays.copyOf(pendingValues, pendingCount * 2);
+                                    }
+                                    pendingCodes[pendingCount] = code;
+                                    pendingValues[pendingCount++] = rate;
+                                }
+                            } while (consumeIf(','));
+                            expect('}');
+                        }
+                    }
+                    default -> skipValue();
+                }
+            } while (consumeIf(','));
+            expect('}');
+        }
+
+        if ("error".equals(result)) {
+            throw new RateFormatException("Exchange rate API returned an error: " + errorType);
+        }
+        if (pendingCodes == null) {
+            throw new RateFormatException("API response format unexpected: missing 'rates' object");
+        }
+        if (base == null) {
+            throw new RateFormatException("API response format unexpected: missing base currency");
+        }
+
+        RateTable rates = new RateTable(base, pendingCount);
+        for (int i = 0; i < pendingCount; i++) {
+            rates.put(pendingCodes[i], pendingValues[i]);
+        }
+        Metrics.increment("rates.parsed");
+        return rates;
+    }
+
+    // ===================== Tokenizer =====================
+
+    private int peek() throws IOException {
+        skipWhitespace();
+        return position < limit ? buffer[position] : -1;
+    }
+
+    private int next() throws IOException {
+        if (position >= limit && !fill()) {
+            throw new RateFormatException("Unexpected end of rate document");
+        }
+        return buffer[position++];
+    }
+
+    private boolean fill() throws IOException {
+        limit = in.read(buffer, 0, buffer.length);
+        position = 0;
+        if (limit <= 0) {
+            limit = 0;
+            return false;
+        }
+        return true;
+    }
+
+    private void skipWhitespace() throws IOException {
+        while (true) {
+            if (position >= limit && !fill()) {
+                return;
+            }
+            byte b = buffer[position];
+            if (b != ' ' && b != '\n' && b != '\r' && b != '\t') {
+                return;
+            }
+            position++;
+        }
+    }
+
+    private void expect(char c) throws IOException {
+        skipWhitespace();
+        int actual = next();
+        if (actual != c) {
+            throw new RateFormatException("Expected '" + c + "' but found '" + (char) actual + "' in rate document");
+        }
+    }
+
+    private boolean consumeIf(char c) throws IOException {
+        if (peek() == c) {
+            position++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Read a string token into the scratch buffer
+     * @param currencyCode If true, three-letter codes are returned from the intern table
+     */
+    private String readString(boolean currencyCode) throws IOException {
+        expect('"');
+        scratchLength = 0;
+        while (true) {
+            int b = next();
+            if (b == '"') {
+                break;
+            }
+            if (b == '\\') {
+                b = next();
+                if (b == 'u') {
+                    // Not expected in rate documents; keep the escape verbatim
+                    append('\\');
+                    append('u');
+                    continue;
+                }
+                b = switch (b) {
+                    case 'n' -> '\n';
+                    case 't' -> '\t';
+                    case 'r' -> '\r';
+                    case 'b' -> '\b';
+                    case 'f' -> '\f';
+                    default -> b;
+                };
+            }
+            append(b);
+        }
+        if (currencyCode && scratchLength == 3) {
+            return internCode(scratch[0], scratch[1], scratch[2]);
+        }
+        return new String(scratch, 0, scratchLength, StandardCharsets.UTF_8);
+    }
+
+    private void append(int b) {
+        if (scratchLength == scratch.length) {
+            scratch = Arrays.copyOf(scratch, scratchLength * 2);
+        }
+        scratch[scratchLength++] = (byte) b;
+    }
+
+    /**
+     * Read a positive, finite rate; plain decimals are converted without allocating a String
+     */
+    private double readNumber(String code) throws IOException {
+        skipWhitespace();
+        scratchLength = 0;
+        while (true) {
+            if (position >= limit && !fill()) {
+                break;
+            }
+            byte b = buffer[position];
+            if ((b >= '0' && b <= '9') || b == '.' || b == '-' || b == '+' || b == 'e' || b == 'E') {
+                append(b);
+                position++;
+            } else {
+                break;
+            }
+        }
+        if (scratchLength == 0) {
+            throw new RateFormatException("Rate for '" + code + "' is not a number");
+        }
+
+        double value = parseSimpleDecimal();
+        if (Double.isNaN(value)) {
+            try {
+                value = Double.parseDouble(new String(scratch, 0, scratchLength, StandardCharsets.US_ASCII));
+            } catch (NumberFormatException e) {
+                throw new RateFormatException("Rate for '" + code + "' is not a number");
+            }
+        }
+        if (!(value > 0) || Double.isInfinite(value)) {
+            throw new RateFormatException("Rate for '" + code + "' must be a positive number");
+        }
+        return value;
+    }
+
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /**
+     * Fast path for digits with an optional fraction: exact when the mantissa fits in 53 bits
+     * and the scale is at most 22, otherwise NaN to fall back to Double.parseDouble
+     */
+    private double parseSimpleDecimal() {
+        long mantissa = 0;
+        int scale = 0;
+        boolean seenDot = false;
+        int digits = 0;
+        for (int i = 0; i < scratchLength; i++) {
+            byte b = scratch[i];
+            if (b == '.' && !seenDot) {
+                seenDot = true;
+            } else if (b >= '0' && b <= '9') {
+                if (++digits > 15) {
+                    return Double.NaN;
+                }
+                mantissa = mantissa * 10 + (b - '0');
+                if (seenDot) {
+                    scale++;
+                }
+            } else {
+                return Double.NaN;
+            }
+        }
+        if (digits == 0 || scale >= POWERS_OF_TEN.length) {
+            return Double.NaN;
+        }
+        return mantissa / POWERS_OF_TEN[scale];
+    }
+
+    private void skipValue() throws IOException {
+        int c = peek();
+        switch (c) {
+            case '"' -> readString(false);
+            case '{', '[' -> {
+                int depth = 0;
+                boolean inString = false;
+                do {
+                    int b = next();
+                    if (inString) {
+                        if (b == '\\') {
+                            next();
+                        } else if (b == '"') {
+                            inString = false;
+                        }
+                    } else if (b == '"') {
+                        inString = true;
+                    } else if (b == '{' || b == '[') {
+                        depth++;
+                    } else if (b == '}' || b == ']') {
+                        depth--;
+                    }
+                } while (depth > 0);
+            }
+            default -> {
+                // Number, true, false or null
+                while (true) {
+                    if (position >= limit && !fill()) {
+                        return;
+                    }
+                    byte b = buffer[position];
+                    if (b == ',' || b == '}' || b == ']' || b == ' ' || b == '\n' || b == '\r' || b == '\t') {
+                        return;
+                    }
+                    position++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the shared instance of a three-letter uppercase code, creating it on first use
+     */
+    static String internCode(byte a, byte b, byte c) {
+        if (a < 'A' || a > 'Z' || b < 'A' || b > 'Z' || c < 'A' || c > 'Z') {
+            return new String(new byte[]{a, b, c}, StandardCharsets.US_ASCII).intern();
+        }
+        int index = ((a - 'A') * 26 + (b - 'A')) * 26 + (c - 'A');
+        String code = CODE_TABLE[index];
+        if (code == null) {
+            code = new String(new byte[]{a, b, c}, StandardCharsets.US_ASCII).intern();
+            CODE_TABLE[index] = code;
+        }
+        return code;
+    }
+
+    public static class RateFormatException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        public RateFormatException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package org.example.project;
+
+import java.time.Instant;
+
+/**
+ * Dense cross-rate matrix for every supported currency, computed from one base payload.
+ * rates[from][to] is the number of units of "to" per one unit of "from", so any-to-any
+ * conversion is a single array read.
+ */
+public class RateMatrix {
+
+    private final double[][] rates;
+    private final Instant fetchedAt;
+
+    private RateMatrix(double[][] rates, Instant fetchedAt) {
+        this.rates = rates;
+        this.fetchedAt = fetchedAt;
+    }
+
+    /**
+     * Build the matrix from a rate table quoted against any supported base currency
+     */
+    public static RateMatrix fromBase(RateTable table) throws RateDocumentParser.RateFormatException {
+        int n = Currency.count();
+        double[] perBase = new double[n];
+        for (int id = 0; id < n; id++) {
+            String code = Currency.code(id);
+            perBase[id] = code.equals(table.getBaseCurrency()) ? 1.0 : table.require(code);
+        }
+        return fromBaseRates(perBase, Instant.now());
+    }
+
+    /**
+     * Build the matrix from rates indexed by currency id, all quoted against the same base
+     */
+    public static RateMatrix fromBaseRates(double[] perBase, Instant fetchedAt) {
+        int n = Currency.count();
+        double[][] rates = new double[n][n];
+        for (int from = 0; from < n; from++) {
+            for (int to = 0; to < n; to++) {
+                rates[from][to] = from == to ? 1.0 : perBase[to] / perBase[from];
+            }
+        }
+        return new RateMatrix(rates, fetchedAt);
+    }
+
+    public Instant getFetchedAt() {
+        return fetchedAt;
+    }
+
+    /**
+     * Units of "to" per one unit of "from"
+     */
+    public double rate(int from, int to) {
+        return rates[from][to];
+    }
+
+    public double convert(double amount, int from, int to) {
+        return amount * rates[from][to];
+    }
+
+    /**
+     * Convert amounts that all share one source currency
+     * @param out Destination array, may be the same as amounts
+     */
+    public void convertAll(double[] amounts, int from, int to, double[] out) {
+        double rate = rates[from][to];
+        for (int i = 0; i < amounts.length; i++) {
+            out[i] = amounts[i] * rate;
+        }
+    }
+
+    /**
+     * Convert amounts with per-element source currencies into one target currency
+     * @param out Destination array, may be the same as amounts
+     */
+    public void convertAll(double[] amounts, int[] fromIds, int to, double[] out) {
+        // Gather the column once so the loop only reads a small contiguous array
+        double[] toColumn = new double[rates.length];
+        for (int from = 0; from < rates.length; from++) {
+            toColumn[from] = rates[from][to];
+        }
+        for (int i = 0; i < amounts.length; i++) {
+            out[i] = amounts[i] * toColumn[fromIds[i]];
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package org.example.project;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Prediction intervals for a daily exchange rate series, from tens of thousands of simulated
+ * outcomes per forecast day. BOOTSTRAP refits the linear trend to the fitted line plus
+ * residuals drawn with replacement and adds one more drawn residual to each forecast, so the
+ * band covers both the uncertainty of the fit and the day-to-day noise. MONTE_CARLO walks
+ * paths forward from the last rate with normal daily log returns of the history's mean and
+ * standard deviation.
+ *
+ * Paths are split in halves on a fork-join pool; every split also splits the SplittableRandom,
+ * so a seed gives the same bands however the work is scheduled. All outcomes go into one
+ * array allocated per run, and the leaves allocate nothing per path.
+ */
+public class RatePathSimulator {
+
+    public enum Method {
+        BOOTSTRAP,
+        MONTE_CARLO
+    }
+
+    /**
+     * Lower and upper bound per forecast day, day 1 first
+     */
+    public record Intervals(double[] lower, double[] upper, int paths) {
+    }
+
+    // Paths per fork-join leaf task
+    private static final int PATHS_PER_TASK = 1024;
+
+    private final Method method;
+    private final int paths;
+    private final ForkJoinPool pool;
+
+    public RatePathSimulator(Method method, int paths) {
+        this(method, paths, ForkJoinPool.commonPool());
+    }
+
+    public RatePathSimulator(Method method, int paths, ForkJoinPool pool) {
+        if (paths < 2) {
+            throw new IllegalArgumentException("At least 2 paths are needed, not " + paths);
+        }
+        this.method = method;
+        this.paths = paths;
+        this.pool = pool;
+    }
+
+    public Method getMethod() {
+        return method;
+    }
+
+    /**
+     * Central prediction intervals for the days after the last observation
+     * @param history Daily rates, oldest first; at least three
+     * @param horizon Days to forecast
+     * @param level Share of outcomes inside the band, for example 0.9
+     * @param seed Seed of the random streams
+     */
+    public Intervals simulate(double[] history, int horizon, double level, long seed) {
+        if (history.length < 3) {
+            throw new IllegalArgumentException("At least 3 observations are needed, not " + history.length);
+        }
+        if (level <= 0 || level >= 1) {
+            throw new IllegalArgumentException("Level must be between 0 and 1, not " + level);
+        }
+        try (Metrics.Span span = Metrics.span("forecast.simulate")) {
+            // outcomes[day * paths + path]
+            double[] outcomes = new double[horizon * paths];
+            pool.invoke(new PathTask(prepare(history), outcomes, horizon, new SplittableRandom(seed), 0, paths));
+
+            double[] lower = new double[horizon];
+            double[] upper = new double[horizon];
+            for (int day = 0; day < horizon; day++) {
+                int from = day * paths;
+                Arrays.sort(outcomes, from, from + paths);
+                lower[day] = quantile(outcomes, from, paths, (1 - level) / 2);
+                upper[day] = quantile(outcomes, from, paths, (1 + level) / 2);
+            }
+            return new Intervals(lower, upper, paths);
+        }
+    }
+
+    /**
+     * Linearly interpolated quantile of a sorted slice
+     */
+    private static double quantile(double[] sorted, int from, int count, double q) {
+        double position = q * (count - 1);
+        int below = (int) position;
+        int above = Math.min(below + 1, count - 1);
+        double fraction = position - below;
+        return sorted[from + below] * (1 - fraction) + sorted[from + above] * fraction;
+    }
+
+    /**
+     * What the paths read: the fitted line and residuals for BOOTSTRAP, the log return
+     * distribution for MONTE_CARLO. Shared read-only by all leaves.
+     */
+    private record PathModel(double[] fitted, double[] residuals, double lastLogRate, double drift,
+                             double volatility) {
+    }
+
+    private PathModel prepare(double[] history) {
+        int n = history.length;
+        if (method == Method.BOOTSTRAP) {
+            double[] x = new double[n];
+            for (int i = 0; i < n; i++) {
+                x[i] = i;
+            }
+            SimpleLinearRegression regression = new SimpleLinearRegression(x, history);
+            regression.calculate();
+            double[] fitted = new double[n];
+            double[] residuals = new double[n];
+            for (int i = 0; i < n; i++) {
+                fitted[i] = regression.predict(i);
+                residuals[i] = history[i] - fitted[i];
+            }
+            return new PathModel(fitted, residuals, 0, 0, 0);
+        }
+
+        double sum = 0;
+        double sumSquares = 0;
+        for (int i = 1; i < n; i++) {
+            double logReturn = Math.log(history[i] / history[i - 1]);
+            sum += logReturn;
+            sumSquares += logReturn * logReturn;
+        }
+        int returns = n - 1;
+        double drift = sum / returns;
+        double variance = Math.max(0, (sumSquares - returns * drift * drift) / (returns - 1));
+        return new PathModel(null, null, Math.log(history[n - 1]), drift, Math.sqrt(variance));
+    }
+
+    /**
+     * Splits the path range in halves until a leaf holds at most PATHS_PER_TASK paths, then runs them
+     */
+    private final class PathTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final PathModel model;
+        private final double[] outcomes;
+        private final int horizon;
+        private final SplittableRandom random;
+        private final int from;
+        private final int to;
+
+        PathTask(PathModel model, double[] outcomes, int horizon, SplittableRandom random, int from, int to) {
+            this.model = model;
+            this.outcomes = outcomes;
+            this.horizon = horizon;
+            this.random = random;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= PATHS_PER_TASK) {
+                for (int path = from; path < to; path++) {
+                    if (method == Method.BOOTSTRAP) {
+                        bootstrap(path);
+                    } else {
+                        walk(path);
+                    }
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            // Split before forking so each half's stream does not depend on scheduling
+            SplittableRandom right = random.split();
+            invokeAll(new PathTask(model, outcomes, horizon, random, from, middle),
+                    new PathTask(model, outcomes, horizon, right, middle, to));
+        }
+
+        private void bootstrap(int path) {
+            double[] fitted = model.fitted();
+            double[] residuals = model.residuals();
+            int n = fitted.length;
+
+            // Refit on fitted + resampled residuals; x is 0..n-1, so only the y sums change
+            double sumY = 0;
+            double sumXY = 0;
+            for (int i = 0; i < n; i++) {
+                double y = fitted[i] + residuals[random.nextInt(n)];
+                sumY += y;
+                sumXY += i * y;
+            }
+            double meanX = (n - 1) / 2.0;
+            double sumXX = (n - 1) * n * (2.0 * n - 1) / 6;
+            double slope = (sumXY - n * meanX * (sumY / n)) / (sumXX - n * meanX * meanX);
+            double intercept = sumY / n - slope * meanX;
+
+            for (int day = 0; day < horizon; day++) {
+                double predicted = intercept + slope * (n + day);
+                outcomes[day * paths + path] = predicted + residuals[random.nextInt(n)];
+            }
+        }
+
+        private void walk(int path) {
+            double logRate = model.lastLogRate();
+            for (int day = 0; day < horizon; day++) {
+                logRate += model.drift() + model.volatility() * random.nextGaussian();
+                outcomes[day * paths + path] = Math.exp(logRate);
+            }
+        }
+    }
+}
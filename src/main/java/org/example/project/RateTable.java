@@ -0,0 +1,120 @@
+package org.example.project;
+
+import java.util.Arrays;
+
+/**
+ * Primitive map from currency code to exchange rate for one base currency.
+ * Keys are interned codes kept in an open-addressed table, so lookups neither box
+ * nor allocate.
+ */
+public class RateTable {
+
+    private final String baseCurrency;
+    private String[] keys;
+    private double[] values;
+    private int size;
+
+    public RateTable(String baseCurrency) {
+        this(baseCurrency, 16);
+    }
+
+    public RateTable(String baseCurrency, int expectedSize) {
+        this.baseCurrency = baseCurrency;
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize * 2 - 1)) << 1;
+        this.keys = new String[capacity];
+        this.values = new double[capacity];
+    }
+
+    public String getBaseCurrency() {
+        return baseCurrency;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Store a rate (units of the given currency per one unit of the base currency)
+     */
+    public void put(String currency, double rate) {
+        if ((size + 1) * 2 > keys.length) {
+            resize();
+        }
+        int slot = slotOf(keys, currency);
+        if (keys[slot] == null) {
+            keys[slot] = currency;
+            size++;
+        }
+        values[slot] = rate;
+    }
+
+    public boolean contains(String currency) {
+        return keys[slotOf(keys, currency)] != null;
+    }
+
+    /**
+     * Get the rate for a currency, or NaN when it is not present
+     */
+    public double get(String currency) {
+        int slot = slotOf(keys, currency);
+        return keys[slot] == null ? Double.NaN : values[slot];
+    }
+
+    /**
+     * Get the rate for a currency, failing when the document did not contain it
+     */
+    public double require(String currency) throws RateDocumentParser.RateFormatException {
+        int slot = slotOf(keys, currency);
+        if (keys[slot] == null) {
+            throw new RateDocumentParser.RateFormatException("Currency '" + currency + "' not found in API response");
+        }
+        return values[slot];
+    }
+
+    /**
+     * Get the currency codes present in this table, sorted
+     */
+    public String[] currencies() {
+        String[] result = new String[size];
+        int i = 0;
+        for (String key : keys) {
+            if (key != null) {
+                result[i++] = key;
+            }
+        }
+        Arrays.sort(result);
+        return result;
+    }
+
+    private void resize() {
+        String[] oldKeys = keys;
+        double[] oldValues = values;
+        keys = new String[oldKeys.length * 2];
+        values = new double[oldKeys.length * 2];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                int slot = slotOf(keys, oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private static int slotOf(String[] keys, String key) {
+        int mask = keys.length - 1;
+        int slot = (key.hashCode() * 0x9E3779B9) >>> 16 & mask;
+        while (keys[slot] != null && keys[slot] != key && !keys[slot].equals(key)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("RateTable{base=").append(baseCurrency);
+        for (String currency : currencies()) {
+            sb.append(", ").append(currency).append('=').append(get(currency));
+        }
+        return sb.append('}').toString();
+    }
+}
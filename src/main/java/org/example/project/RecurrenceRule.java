@@ -0,0 +1,237 @@
+package org.example.project;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * When a recurring expense falls due. DAILY, WEEKLY and MONTHLY repeat every "interval" units
+ * counted from the start date; MONTHLY keeps the start date's day of month, clamped to the
+ * length of shorter months. CRON takes a date-only cron expression with three fields,
+ * "day-of-month month day-of-week", each supporting *, numbers, ranges, lists and /steps;
+ * day-of-month also accepts L for the last day of the month. As in cron, when both
+ * day-of-month and day-of-week are restricted a date matches if either does.
+ */
+public final class RecurrenceRule {
+
+    public enum Frequency {
+        DAILY, WEEKLY, MONTHLY, CRON
+    }
+
+    // Upper bound on the days scanned for the next CRON match, so impossible rules terminate
+    private static final int MAX_CRON_SCAN_DAYS = 366 * 8;
+
+    private final Frequency frequency;
+    private final int interval;
+    private final String cronExpression;
+
+    // Parsed CRON fields as bit masks: bit n set means value n matches
+    private final long dayOfMonthMask;
+    private final boolean lastDayOfMonth;
+    private final int monthMask;
+    private final int dayOfWeekMask;
+    private final boolean dayOfMonthRestricted;
+    private final boolean dayOfWeekRestricted;
+
+    private RecurrenceRule(Frequency frequency, int interval, String cronExpression) {
+        this.frequency = frequency;
+        this.interval = interval;
+        this.cronExpression = cronExpression;
+
+        if (frequency == Frequency.CRON) {
+            String[] fields = cronExpression.trim().split("\\s+");
+            if (fields.length != 3) {
+                throw new IllegalArgumentException(
+                        "Cron expression needs three fields (day-of-month month day-of-week): " + cronExpression);
+            }
+            // Pull L out of the day-of-month list before parsing the numeric parts
+            boolean last = false;
+            StringBuilder plainDays = new StringBuilder();
+            for (String part : fields[0].split(",")) {
+                if (part.equalsIgnoreCase("L")) {
+                    last = true;
+                } else {
+                    plainDays.append(plainDays.length() > 0 ? "," : "").append(part);
+                }
+            }
+            lastDayOfMonth = last;
+            dayOfMonthMask = plainDays.length() == 0 ? 0 : parseField(plainDays.toString(), 1, 31, "day-of-month");
+            monthMask = (int) parseField(fields[1], 1, 12, "month");
+            // Sunday may be written as 0 or 7; fold it onto 7 to match DayOfWeek.getValue()
+            long weekdays = parseField(fields[2], 0, 7, "day-of-week");
+            if ((weekdays & 1) != 0) {
+                weekdays = (weekdays & ~1L) | (1L << 7);
+            }
+            dayOfWeekMask = (int) weekdays;
+            dayOfMonthRestricted = !fields[0].equals("*");
+            dayOfWeekRestricted = !fields[2].equals("*");
+        } else {
+            dayOfMonthMask = 0;
+            lastDayOfMonth = false;
+            monthMask = 0;
+            dayOfWeekMask = 0;
+            dayOfMonthRestricted = false;
+            dayOfWeekRestricted = false;
+        }
+    }
+
+    public static RecurrenceRule daily(int interval) {
+        return new RecurrenceRule(Frequency.DAILY, requirePositive(interval), null);
+    }
+
+    public static RecurrenceRule weekly(int interval) {
+        return new RecurrenceRule(Frequency.WEEKLY, requirePositive(interval), null);
+    }
+
+    public static RecurrenceRule monthly(int interval) {
+        return new RecurrenceRule(Frequency.MONTHLY, requirePositive(interval), null);
+    }
+
+    public static RecurrenceRule cron(String expression) {
+        if (expression == null || expression.isBlank()) {
+            throw new IllegalArgumentException("Cron expression cannot be empty");
+        }
+        return new RecurrenceRule(Frequency.CRON, 1, expression.trim());
+    }
+
+    /**
+     * Rebuild a rule from its stored columns
+     */
+    public static RecurrenceRule of(Frequency frequency, int interval, String cronExpression) {
+        return switch (frequency) {
+            case DAILY -> daily(interval);
+            case WEEKLY -> weekly(interval);
+            case MONTHLY -> monthly(interval);
+            case CRON -> cron(cronExpression);
+        };
+    }
+
+    public Frequency getFrequency() {
+        return frequency;
+    }
+
+    public int getInterval() {
+        return interval;
+    }
+
+    public String getCronExpression() {
+        return cronExpression;
+    }
+
+    /**
+     * First occurrence on or after the start date
+     */
+    public LocalDate firstOccurrence(LocalDate start) {
+        return frequency == Frequency.CRON ? nextCronMatch(start) : start;
+    }
+
+    /**
+     * Occurrence following "previous", which must itself be an occurrence of this rule
+     * @param start Start date of the series, used to anchor monthly rules
+     * @return The next occurrence, or null if a cron rule never matches again
+     */
+    public LocalDate nextOccurrence(LocalDate start, LocalDate previous) {
+        return switch (frequency) {
+            case DAILY -> previous.plusDays(interval);
+            case WEEKLY -> previous.plusWeeks(interval);
+            case MONTHLY -> {
+                // Count months from the start rather than from the previous date, so a series
+                // starting on the 31st returns to the 31st after passing through shorter months
+                long months = ChronoUnit.MONTHS.between(start.withDayOfMonth(1), previous.withDayOfMonth(1));
+                yield start.plusMonths(months + interval);
+            }
+            case CRON -> nextCronMatch(previous.plusDays(1));
+        };
+    }
+
+    public String toDisplayString() {
+        return switch (frequency) {
+            case DAILY -> interval == 1 ? "Daily" : "Every " + interval + " days";
+            case WEEKLY -> interval == 1 ? "Weekly" : "Every " + interval + " weeks";
+            case MONTHLY -> interval == 1 ? "Monthly" : "Every " + interval + " months";
+            case CRON -> "Cron '" + cronExpression + "'";
+        };
+    }
+
+    private LocalDate nextCronMatch(LocalDate from) {
+        LocalDate date = from;
+        for (int scanned = 0; scanned < MAX_CRON_SCAN_DAYS; scanned++) {
+            if ((monthMask & (1 << date.getMonthValue())) == 0) {
+                // Skip the rest of a month that can never match
+                LocalDate nextMonth = date.withDayOfMonth(1).plusMonths(1);
+                scanned += (int) ChronoUnit.DAYS.between(date, nextMonth) - 1;
+                date = nextMonth;
+                continue;
+            }
+            if (matchesDay(date)) {
+                return date;
+            }
+            date = date.plusDays(1);
+        }
+        return null;
+    }
+
+    private boolean matchesDay(LocalDate date) {
+        boolean dayOfMonth = (dayOfMonthMask & (1L << date.getDayOfMonth())) != 0
+                || (lastDayOfMonth && date.getDayOfMonth() == date.lengthOfMonth());
+        boolean dayOfWeek = (dayOfWeekMask & (1 << date.getDayOfWeek().getValue())) != 0;
+        if (dayOfMonthRestricted && dayOfWeekRestricted) {
+            return dayOfMonth || dayOfWeek;
+        }
+        return dayOfMonth && dayOfWeek;
+    }
+
+    /**
+     * Parse one cron field such as "*", "1,15", "1-5" or a stepped range into a bit mask
+     */
+    private static long parseField(String field, int min, int max, String name) {
+        long mask = 0;
+        for (String part : field.split(",")) {
+            int step = 1;
+            int slash = part.indexOf('/');
+            if (slash >= 0) {
+                step = parseValue(part.substring(slash + 1), 1, max, name);
+                part = part.substring(0, slash);
+            }
+
+            int from;
+            int to;
+            if (part.equals("*")) {
+                from = min;
+                to = max;
+            } else if (part.indexOf('-') > 0) {
+                int dash = part.indexOf('-');
+                from = parseValue(part.substring(0, dash), min, max, name);
+                to = parseValue(part.substring(dash + 1), min, max, name);
+            } else {
+                from = parseValue(part, min, max, name);
+                to = slash >= 0 ? max : from;
+            }
+            if (from > to) {
+                throw new IllegalArgumentException("Invalid " + name + " range: " + part);
+            }
+            for (int value = from; value <= to; value += step) {
+                mask |= 1L << value;
+            }
+        }
+        return mask;
+    }
+
+    private static int parseValue(String text, int min, int max, String name) {
+        try {
+            int value = Integer.parseInt(text);
+            if (value < min || value > max) {
+                throw new IllegalArgumentException("Invalid " + name + " value: " + text);
+            }
+            return value;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + name + " value: " + text);
+        }
+    }
+
+    private static int requirePositive(int interval) {
+        if (interval < 1) {
+            throw new IllegalArgumentException("Interval must be at least 1");
+        }
+        return interval;
+    }
+}
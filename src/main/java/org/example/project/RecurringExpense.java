@@ -0,0 +1,27 @@
+package org.example.project;
+
+import java.time.LocalDate;
+
+/**
+ * A recurring expense rule as stored in the database. The amount is in its original currency
+ * and is converted to USD each time an occurrence is generated.
+ * @param endDate Last day an occurrence may fall on, or null for no end
+ * @param nextDate Next occurrence still to be generated, or null once the series is finished
+ */
+public record RecurringExpense(int id, int categoryId, String categoryName, double amount, String currency,
+                               String payee, String description, RecurrenceRule rule, LocalDate startDate,
+                               LocalDate endDate, LocalDate nextDate) {
+
+    public String toDisplayString() {
+        StringBuilder sb = new StringBuilder(String.format("[ID %d] %s: %.2f %s, %s from %s",
+                id, categoryName, amount, currency, rule.toDisplayString(), startDate));
+        if (endDate != null) {
+            sb.append(" to ").append(endDate);
+        }
+        if (payee != null && !payee.isEmpty()) {
+            sb.append(", Payee: ").append(payee);
+        }
+        sb.append(nextDate != null ? ", Next: " + nextDate : ", Finished");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,83 @@
+package org.example.project;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+
+/**
+ * Generates due recurring expenses once at startup and then on a fixed timer. All work runs
+ * on a single background thread, so passes never overlap.
+ */
+public class RecurringExpenseScheduler {
+
+    private final DatabaseManager dbManager;
+    private final Clock clock;
+    private final Duration period;
+    private ScheduledExecutorService executor;
+    private IntConsumer onGenerated = count -> { };
+
+    public RecurringExpenseScheduler(DatabaseManager dbManager, Duration period) {
+        this(dbManager, period, Clock.systemDefaultZone());
+    }
+
+    public RecurringExpenseScheduler(DatabaseManager dbManager, Duration period, Clock clock) {
+        this.dbManager = dbManager;
+        this.period = period;
+        this.clock = clock;
+    }
+
+    /**
+     * Called on the scheduler thread with the number of expenses a pass inserted, when non-zero
+     */
+    public void setOnGenerated(IntConsumer onGenerated) {
+        this.onGenerated = onGenerated;
+    }
+
+    /**
+     * Run a catch-up pass now and then one every period
+     */
+    public synchronized void start() {
+        if (executor != null) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "recurring-expenses");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleAtFixedRate(this::runPass, 0, period.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Run a pass as soon as possible, e.g. after a rule was added
+     */
+    public synchronized void runNow() {
+        if (executor != null) {
+            executor.execute(this::runPass);
+        }
+    }
+
+    public synchronized void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    private void runPass() {
+        // Never let an exception escape, or the executor would cancel every later run
+        try {
+            int generated = dbManager.generateRecurringExpenses(LocalDate.now(clock));
+            if (generated > 0) {
+                onGenerated.accept(generated);
+            }
+        } catch (Exception e) {
+            Metrics.failure("recurring.pass", e);
+            e.printStackTrace();
+        }
+    }
+}
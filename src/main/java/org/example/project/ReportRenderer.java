@@ -0,0 +1,543 @@
+package org.example.project;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * Renders a period's statement, a category breakdown followed by every expense grouped by
+ * category, into paginated HTML or PDF. Expenses stream from a database cursor straight onto
+ * the page being laid out, and each page is written out as soon as it is full, so memory use
+ * does not grow with the number of expenses.
+ */
+public class ReportRenderer {
+
+    public enum Format {
+        HTML("html"),
+        PDF("pdf");
+
+        private final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+
+        public String extension() {
+            return extension;
+        }
+    }
+
+    /**
+     * Called after every page with the expenses rendered so far
+     */
+    public interface Progress {
+        void update(long expensesDone, long expensesTotal, int pages);
+    }
+
+    public record Result(int pages, long expenses, long bytes, long nanos) {
+
+        public double pagesPerSecond() {
+            return nanos > 0 ? pages * 1e9 / nanos : 0;
+        }
+    }
+
+    // Lines per page, counting the page header; fits A4 at the PDF line height
+    private static final int LINES_PER_PAGE = 66;
+
+    private static final Table BREAKDOWN = new Table(
+            new String[]{"Category", "Expenses", "Total (USD)", "Share"},
+            new int[]{48, 10, 16, 8},
+            new boolean[]{false, true, true, true});
+
+    private static final Table ITEMS = new Table(
+            new String[]{"Date", "Payee", "Description", "Amount", "Cur", "USD"},
+            new int[]{10, 22, 34, 12, 4, 12},
+            new boolean[]{false, false, false, true, false, true});
+
+    /**
+     * Column layout of a table; widths are in characters, which the PDF uses as is
+     */
+    private record Table(String[] headers, int[] widths, boolean[] rightAligned) {
+    }
+
+    private enum Style {
+        TITLE,
+        HEADING,
+        TEXT
+    }
+
+    private final DatabaseManager dbManager;
+
+    public ReportRenderer(DatabaseManager dbManager) {
+        this.dbManager = dbManager;
+    }
+
+    /**
+     * Render the statement for transaction dates in [from, to)
+     * @param out Receives the document; closed when done
+     * @param progress Told about each finished page, or null
+     */
+    public Result render(String fromDate, String toDate, Format format, OutputStream out, Progress progress)
+            throws SQLException, IOException {
+        long start = System.nanoTime();
+        try (Metrics.Span span = Metrics.span("report.render." + format.extension())) {
+            PageSink sink = format == Format.PDF
+                    ? new PdfSink(out, fromDate, toDate)
+                    : new HtmlSink(out, fromDate, toDate);
+            Layout layout = new Layout(sink, fromDate, toDate, progress);
+            // Closed before the result is taken, so the size includes the document trailer
+            try (sink) {
+                try {
+                    dbManager.readPeriod(fromDate, toDate, categories -> {
+                        try {
+                            summary(layout, fromDate, toDate, categories);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }, layout::expense);
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+                layout.endTable();
+                layout.finish();
+            }
+
+            Result result = new Result(layout.page, layout.expensesDone, sink.size(), System.nanoTime() - start);
+            Metrics.add("report.pages", result.pages());
+            return result;
+        }
+    }
+
+    /**
+     * Title and category breakdown, followed by the heading of the itemized expenses if there are any
+     */
+    private static void summary(Layout layout, String fromDate, String toDate,
+                                List<DatabaseManager.CategoryTotal> categories) throws IOException {
+        long expenseCount = 0;
+        double total = 0;
+        for (DatabaseManager.CategoryTotal category : categories) {
+            expenseCount += category.count();
+            total += category.total();
+        }
+        layout.expensesTotal = expenseCount;
+
+        layout.text(Style.TITLE, "Expense Statement");
+        layout.text(Style.TEXT, String.format("Transactions from %s up to %s", fromDate, toDate));
+        layout.text(Style.TEXT, "Generated "
+                + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm")));
+        layout.blank();
+
+        layout.heading("Category Breakdown");
+        layout.beginTable(BREAKDOWN);
+        for (DatabaseManager.CategoryTotal category : categories) {
+            layout.row(category.categoryName(), String.valueOf(category.count()),
+                    money(category.total()),
+                    String.format("%.1f%%", total > 0 ? category.total() / total * 100 : 0));
+        }
+        layout.row("Total", String.valueOf(expenseCount), money(total), "");
+        layout.endTable();
+
+        if (!categories.isEmpty()) {
+            layout.blank();
+            layout.heading("Itemized Expenses");
+        }
+    }
+
+    /**
+     * Two decimals, as String.format("%.2f") would give in an English locale; rows are formatted
+     * hundreds of thousands of times, and Formatter dominated rendering time
+     */
+    private static String money(double amount) {
+        long cents = Math.round(amount * 100);
+        String sign = cents < 0 ? "-" : "";
+        cents = Math.abs(cents);
+        long fraction = cents % 100;
+        return sign + cents / 100 + (fraction < 10 ? ".0" : ".") + fraction;
+    }
+
+    /**
+     * Places lines on pages, starting a new page with the page header, and the open table's
+     * column headers, whenever the current one is full
+     */
+    private static final class Layout {
+        private final PageSink sink;
+        private final String header;
+        private final Progress progress;
+        // Known once the category totals are read
+        private long expensesTotal;
+
+        private int page;
+        private int linesOnPage = LINES_PER_PAGE;
+        private Table openTable;
+        private String currentCategory;
+        private long expensesDone;
+
+        Layout(PageSink sink, String fromDate, String toDate, Progress progress) {
+            this.sink = sink;
+            this.header = String.format("Expense Statement %s to %s", fromDate, toDate);
+            this.progress = progress;
+        }
+
+        void text(Style style, String text) throws IOException {
+            makeRoom(1);
+            sink.text(style, text);
+            linesOnPage++;
+        }
+
+        /**
+         * A heading is kept on the same page as the table header and first row under it
+         */
+        void heading(String text) throws IOException {
+            makeRoom(3);
+            text(Style.HEADING, text);
+        }
+
+        void blank() throws IOException {
+            // A blank line at the top of a page is dropped
+            if (linesOnPage > 2 && linesOnPage < LINES_PER_PAGE) {
+                sink.text(Style.TEXT, "");
+                linesOnPage++;
+            }
+        }
+
+        void beginTable(Table table) throws IOException {
+            makeRoom(2);
+            openTable = table;
+            sink.beginTable(table);
+            linesOnPage++;
+        }
+
+        void row(String... cells) throws IOException {
+            makeRoom(1);
+            sink.row(cells);
+            linesOnPage++;
+        }
+
+        void endTable() throws IOException {
+            if (openTable != null) {
+                sink.endTable();
+                openTable = null;
+            }
+        }
+
+        /**
+         * Cursor callback; expenses arrive grouped by category
+         */
+        void expense(ExpenseRecord expense) {
+            try {
+                if (!expense.categoryName().equals(currentCategory)) {
+                    endTable();
+                    if (currentCategory != null) {
+                        blank();
+                    }
+                    currentCategory = expense.categoryName();
+                    heading(currentCategory);
+                    beginTable(ITEMS);
+                }
+                String currency = expense.currency() != null ? expense.currency() : "";
+                row(expense.transactionDate(),
+                        expense.payee() != null ? expense.payee() : "",
+                        expense.description() != null ? expense.description() : "",
+                        expense.originalAmount() != null ? money(expense.originalAmount()) : "",
+                        currency,
+                        money(expense.amount()));
+                expensesDone++;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        void finish() throws IOException {
+            if (page > 0) {
+                sink.endPage();
+                reportProgress();
+            }
+        }
+
+        private void makeRoom(int lines) throws IOException {
+            if (linesOnPage + lines <= LINES_PER_PAGE) {
+                return;
+            }
+            if (page > 0) {
+                if (openTable != null) {
+                    sink.endTable();
+                }
+                sink.endPage();
+                reportProgress();
+            }
+            page++;
+            sink.beginPage(page, header);
+            linesOnPage = 2;
+            if (openTable != null) {
+                sink.beginTable(openTable);
+                linesOnPage++;
+            }
+        }
+
+        private void reportProgress() {
+            if (progress != null) {
+                progress.update(expensesDone, expensesTotal, page);
+            }
+        }
+    }
+
+    /**
+     * One output format; receives the lines the layout has placed, page by page
+     */
+    private interface PageSink extends AutoCloseable {
+
+        /**
+         * Start a page and write its header, which takes two lines
+         */
+        void beginPage(int page, String header) throws IOException;
+
+        void text(Style style, String text) throws IOException;
+
+        /**
+         * Start a table on the current page and write its column headers, which take one line
+         */
+        void beginTable(Table table) throws IOException;
+
+        void row(String[] cells) throws IOException;
+
+        void endTable() throws IOException;
+
+        void endPage() throws IOException;
+
+        /**
+         * Bytes written so far
+         */
+        long size();
+
+        @Override
+        void close() throws IOException;
+    }
+
+    /**
+     * Each page is a section that breaks to a new sheet when printed
+     */
+    private static final class HtmlSink implements PageSink {
+        private final Writer out;
+        private long size;
+        private Table table;
+
+        HtmlSink(OutputStream out, String fromDate, String toDate) throws IOException {
+            this.out = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16);
+            write("""
+                    <!DOCTYPE html>
+                    <html lang="en">
+                    <head>
+                    <meta charset="utf-8">
+                    <title>Expense Statement %s to %s</title>
+                    <style>
+                    body { font-family: sans-serif; font-size: 10pt; }
+                    .page { page-break-after: always; margin-bottom: 2em; }
+                    .page-header { color: #666; border-bottom: 1px solid #ccc; margin-bottom: 0.5em; }
+                    table { border-collapse: collapse; width: 100%%; }
+                    th, td { padding: 1px 6px; text-align: left; }
+                    th { border-bottom: 1px solid #999; }
+                    .num { text-align: right; }
+                    h1 { font-size: 14pt; } h2 { font-size: 11pt; margin: 0.6em 0 0.2em; }
+                    p { margin: 0.1em 0; }
+                    @page { size: A4; margin: 1.4cm; }
+                    @media print { body { font-size: 7.5pt; } .page { margin-bottom: 0; } }
+                    </style>
+                    </head>
+                    <body>
+                    """.formatted(escape(fromDate), escape(toDate)));
+        }
+
+        @Override
+        public void beginPage(int page, String header) throws IOException {
+            write("<section class=\"page\">\n<div class=\"page-header\">" + escape(header)
+                    + " &middot; Page " + page + "</div>\n");
+        }
+
+        @Override
+        public void text(Style style, String text) throws IOException {
+            switch (style) {
+                case TITLE -> write("<h1>" + escape(text) + "</h1>\n");
+                case HEADING -> write("<h2>" + escape(text) + "</h2>\n");
+                case TEXT -> write(text.isEmpty() ? "<p>&nbsp;</p>\n" : "<p>" + escape(text) + "</p>\n");
+            }
+        }
+
+        @Override
+        public void beginTable(Table table) throws IOException {
+            this.table = table;
+            StringBuilder sb = new StringBuilder("<table>\n<tr>");
+            for (int i = 0; i < table.headers().length; i++) {
+                sb.append(table.rightAligned()[i] ? "<th class=\"num\">" : "<th>")
+                        .append(escape(table.headers()[i])).append("</th>");
+            }
+            write(sb.append("</tr>\n").toString());
+        }
+
+        @Override
+        public void row(String[] cells) throws IOException {
+            StringBuilder sb = new StringBuilder(160).append("<tr>");
+            for (int i = 0; i < cells.length; i++) {
+                sb.append(table.rightAligned()[i] ? "<td class=\"num\">" : "<td>")
+                        .append(escape(cells[i])).append("</td>");
+            }
+            write(sb.append("</tr>\n").toString());
+        }
+
+        @Override
+        public void endTable() throws IOException {
+            write("</table>\n");
+        }
+
+        @Override
+        public void endPage() throws IOException {
+            write("</section>\n");
+        }
+
+        @Override
+        public long size() {
+            return size;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                write("</body>\n</html>\n");
+            } finally {
+                out.close();
+            }
+        }
+
+        private void write(String text) throws IOException {
+            out.write(text);
+            // Characters, which equal bytes for the ASCII that makes up almost all of a statement
+            size += text.length();
+        }
+
+        private static String escape(String text) {
+            StringBuilder sb = null;
+            for (int i = 0; i < text.length(); i++) {
+                String replacement = switch (text.charAt(i)) {
+                    case '&' -> "&amp;";
+                    case '<' -> "&lt;";
+                    case '>' -> "&gt;";
+                    case '"' -> "&quot;";
+                    default -> null;
+                };
+                if (replacement != null && sb == null) {
+                    sb = new StringBuilder(text.length() + 16).append(text, 0, i);
+                }
+                if (sb != null) {
+                    if (replacement != null) {
+                        sb.append(replacement);
+                    } else {
+                        sb.append(text.charAt(i));
+                    }
+                }
+            }
+            return sb != null ? sb.toString() : text;
+        }
+    }
+
+    /**
+     * Fixed-width lines in Courier, one line per layout line
+     */
+    private static final class PdfSink implements PageSink {
+        private static final double MARGIN = 40;
+        private static final double FONT_SIZE = 8;
+        private static final double LINE_HEIGHT = (PdfWriter.PAGE_HEIGHT - 2 * MARGIN) / LINES_PER_PAGE;
+
+        private final PdfWriter pdf;
+        private final StringBuilder line = new StringBuilder(128);
+        private Table table;
+        private int lineOnPage;
+
+        PdfSink(OutputStream out, String fromDate, String toDate) throws IOException {
+            pdf = new PdfWriter(out, String.format("Expense Statement %s to %s", fromDate, toDate));
+        }
+
+        @Override
+        public void beginPage(int page, String header) {
+            pdf.beginPage();
+            lineOnPage = 0;
+            String pageNumber = "Page " + page;
+            int width = (int) ((PdfWriter.PAGE_WIDTH - 2 * MARGIN) / (FONT_SIZE * PdfWriter.CHAR_WIDTH_EM));
+            draw(false, header + " ".repeat(Math.max(1, width - header.length() - pageNumber.length())) + pageNumber);
+            // The header line and a gap, as the layout counts it
+            lineOnPage = 2;
+        }
+
+        @Override
+        public void text(Style style, String text) {
+            if (!text.isEmpty()) {
+                draw(style != Style.TEXT, text);
+            }
+            lineOnPage++;
+        }
+
+        @Override
+        public void beginTable(Table table) {
+            this.table = table;
+            draw(true, format(table.headers()));
+            lineOnPage++;
+        }
+
+        @Override
+        public void row(String[] cells) {
+            draw(false, format(cells));
+            lineOnPage++;
+        }
+
+        @Override
+        public void endTable() {
+            // Nothing to close in a fixed-width layout
+        }
+
+        @Override
+        public void endPage() throws IOException {
+            pdf.endPage();
+        }
+
+        @Override
+        public long size() {
+            return pdf.size();
+        }
+
+        @Override
+        public void close() throws IOException {
+            pdf.close();
+        }
+
+        private void draw(boolean bold, String text) {
+            pdf.text(MARGIN, PdfWriter.PAGE_HEIGHT - MARGIN - FONT_SIZE - lineOnPage * LINE_HEIGHT,
+                    FONT_SIZE, bold, text);
+        }
+
+        /**
+         * Pad or cut each cell to its column width
+         */
+        private String format(String[] cells) {
+            line.setLength(0);
+            for (int i = 0; i < cells.length; i++) {
+                int width = table.widths()[i];
+                String cell = cells[i].length() > width ? cells[i].substring(0, width - 1) + "~" : cells[i];
+                if (i > 0) {
+                    line.append(' ');
+                }
+                if (table.rightAligned()[i]) {
+                    line.repeat(' ', width - cell.length()).append(cell);
+                } else {
+                    line.append(cell).repeat(' ', width - cell.length());
+                }
+            }
+            return line.toString();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package org.example.project;
+
+/**
+ * Ordinary least squares fit of y = a + b * x. The fit is kept as running sums, so points
+ * can be added, removed or replaced one at a time and the line refits in constant time.
+ */
+class SimpleLinearRegression {
+    private long n;
+    private double sumX;
+    private double sumY;
+    private double sumXX;
+    private double sumXY;
+    private double a; // intercept
+    private double b; // slope
+
+    public SimpleLinearRegression() {
+    }
+
+    public SimpleLinearRegression(double[] x, double[] y) {
+        for (int i = 0; i < x.length; i++) {
+            add(x[i], y[i]);
+        }
+    }
+
+    public void add(double x, double y) {
+        n++;
+        sumX += x;
+        sumY += y;
+        sumXX += x * x;
+        sumXY += x * y;
+    }
+
+    public void remove(double x, double y) {
+        n--;
+        sumX -= x;
+        sumY -= y;
+        sumXX -= x * x;
+        sumXY -= x * y;
+    }
+
+    /**
+     * Change the y value of an existing point
+     */
+    public void replace(double x, double oldY, double newY) {
+        sumY += newY - oldY;
+        sumXY += x * (newY - oldY);
+    }
+
+    public long count() {
+        return n;
+    }
+
+    public void calculate() {
+        if (n == 0) {
+            a = 0;
+            b = 0;
+            return;
+        }
+
+        // Calculate means
+        double meanX = sumX / n;
+        double meanY = sumY / n;
+
+        // Calculate slope (b) from the centred sums
+        double numerator = sumXY - n * meanX * meanY;
+        double denominator = sumXX - n * meanX * meanX;
+
+        if (denominator > 1e-12 * Math.max(1, sumXX)) {
+            b = numerator / denominator;
+        } else {
+            b = 0;
+        }
+
+        // Calculate intercept (a)
+        a = meanY - b * meanX;
+    }
+
+    public double getIntercept() {
+        return a;
+    }
+
+    public double getSlope() {
+        return b;
+    }
+
+    public double predict(double x) {
+        return a + b * x;
+    }
+}
@@ -0,0 +1,339 @@
+package org.example.project;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Per-category spending forecasts for the coming weeks and months. Each category gets a
+ * linear trend over its completed weekly and monthly totals plus, once two full seasons of
+ * history exist, an additive seasonal term per month of the year (or week of the year).
+ * Models are trained in parallel on a fork-join pool from the in-memory SpendingHistory
+ * and refit in constant time per expense as expenses are added or deleted.
+ */
+public class SpendingForecaster implements ExpenseListener {
+
+    // Categories per fork-join leaf task
+    private static final int TRAIN_BATCH = 4;
+
+    public record Forecast(String category, SpendingHistory.Granularity granularity,
+                           List<SpendingHistory.Bucket> predicted, double trendPerBucket, boolean seasonal) {
+
+        public double total() {
+            double total = 0;
+            for (SpendingHistory.Bucket bucket : predicted) {
+                total += bucket.total();
+            }
+            return total;
+        }
+
+        public String toDisplayString() {
+            String unit = granularity == SpendingHistory.Granularity.WEEK ? "week" : "month";
+            StringBuilder sb = new StringBuilder(String.format("%s: $%.2f over the next %d %ss (",
+                    category, total(), predicted.size(), unit));
+            for (int i = 0; i < predicted.size(); i++) {
+                sb.append(i > 0 ? ", " : "").append(String.format("$%.2f", predicted.get(i).total()));
+            }
+            sb.append(String.format("), trend %+.2f/%s", trendPerBucket, unit));
+            if (seasonal) {
+                sb.append(", seasonal");
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Trend and seasonal sums for one category at one granularity. Bucket i covers the
+     * i-th completed week or month from firstBucket; x = i in the regression.
+     */
+    private static final class CategoryModel {
+        final SpendingHistory.Granularity granularity;
+        final int seasonLength;
+        LocalDate firstBucket;
+        double[] values = new double[0];
+        final SimpleLinearRegression trend = new SimpleLinearRegression();
+        final double[] seasonSumX;
+        final double[] seasonSumY;
+        final int[] seasonCount;
+
+        CategoryModel(SpendingHistory.Granularity granularity) {
+            this.granularity = granularity;
+            this.seasonLength = granularity == SpendingHistory.Granularity.WEEK ? 52 : 12;
+            this.seasonSumX = new double[seasonLength];
+            this.seasonSumY = new double[seasonLength];
+            this.seasonCount = new int[seasonLength];
+        }
+
+        int size() {
+            return (int) trend.count();
+        }
+
+        int season(int index) {
+            return granularity == SpendingHistory.Granularity.MONTH
+                    ? bucketStart(index).getMonthValue() - 1
+                    : Math.min(51, (bucketStart(index).getDayOfYear() - 1) / 7);
+        }
+
+        LocalDate bucketStart(int index) {
+            return granularity == SpendingHistory.Granularity.MONTH
+                    ? firstBucket.plusMonths(index)
+                    : firstBucket.plusWeeks(index);
+        }
+
+        int indexOf(LocalDate date) {
+            LocalDate start = granularity.bucketStart(date);
+            return (int) (granularity == SpendingHistory.Granularity.MONTH
+                    ? ChronoUnit.MONTHS.between(firstBucket, start)
+                    : ChronoUnit.WEEKS.between(firstBucket, start));
+        }
+
+        void append(double value) {
+            int index = size();
+            if (index == values.length) {
+                values = Arrays.copyOf(values, Math.max(16, index * 2));
+            }
+            values[index] = value;
+            trend.add(index, value);
+            int season = season(index);
+            seasonSumX[season] += index;
+            seasonSumY[season] += value;
+            seasonCount[season]++;
+        }
+
+        void adjust(int index, double delta) {
+            trend.replace(index, values[index], values[index] + delta);
+            values[index] += delta;
+            seasonSumY[season(index)] += delta;
+        }
+
+        boolean isSeasonal() {
+            return size() >= 2 * seasonLength;
+        }
+
+        Forecast forecast(String category, int horizon) {
+            trend.calculate();
+            boolean seasonal = isSeasonal();
+            List<SpendingHistory.Bucket> predicted = new ArrayList<>(horizon);
+            for (int step = 0; step < horizon; step++) {
+                int index = size() + step;
+                double value = trend.predict(index);
+                if (seasonal) {
+                    // Mean residual of this season against the current trend line
+                    int season = season(index);
+                    if (seasonCount[season] > 0) {
+                        value += (seasonSumY[season] - trend.getIntercept() * seasonCount[season]
+                                - trend.getSlope() * seasonSumX[season]) / seasonCount[season];
+                    }
+                }
+                predicted.add(new SpendingHistory.Bucket(bucketStart(index), Math.max(0, value)));
+            }
+            return new Forecast(category, granularity, predicted, trend.getSlope(), seasonal);
+        }
+    }
+
+    private final SpendingHistory history;
+    private final Clock clock;
+    private final ForkJoinPool pool;
+
+    // Models per category, one per granularity, trained on the buckets completed before trainedOn
+    private final Map<String, Map<SpendingHistory.Granularity, CategoryModel>> models = new HashMap<>();
+    private final Set<String> staleCategories = new HashSet<>();
+    private LocalDate trainedOn;
+
+    public SpendingForecaster(SpendingHistory history) {
+        this(history, Clock.systemDefaultZone(), ForkJoinPool.commonPool());
+    }
+
+    public SpendingForecaster(SpendingHistory history, Clock clock, ForkJoinPool pool) {
+        this.history = history;
+        this.clock = clock;
+        this.pool = pool;
+    }
+
+    /**
+     * Forecast the next buckets for every category with history, sorted by category
+     * @param granularity WEEK or MONTH
+     */
+    public synchronized List<Forecast> forecastAll(SpendingHistory.Granularity granularity, int horizon) {
+        if (granularity != SpendingHistory.Granularity.WEEK && granularity != SpendingHistory.Granularity.MONTH) {
+            throw new IllegalArgumentException("Forecasts are weekly or monthly, not " + granularity);
+        }
+        try (Metrics.Span span = Metrics.span("forecast.spending")) {
+            refreshModels();
+            List<String> categories = new ArrayList<>(models.keySet());
+            categories.sort(null);
+            List<Forecast> forecasts = new ArrayList<>(categories.size());
+            for (String category : categories) {
+                forecasts.add(models.get(category).get(granularity).forecast(category, horizon));
+            }
+            return forecasts;
+        }
+    }
+
+    /**
+     * Retrain everything once a day so newly completed weeks and months are included, otherwise
+     * only categories whose history changed in a way the incremental update cannot absorb
+     */
+    private void refreshModels() {
+        LocalDate today = LocalDate.now(clock);
+        if (!today.equals(trainedOn)) {
+            train(history.categories(), today);
+            models.keySet().retainAll(history.categories());
+            trainedOn = today;
+            staleCategories.clear();
+        } else if (!staleCategories.isEmpty()) {
+            train(new ArrayList<>(staleCategories), trainedOn);
+            staleCategories.clear();
+        }
+    }
+
+    private void train(List<String> categories, LocalDate today) {
+        try (Metrics.Span span = Metrics.span("forecast.train")) {
+            if (categories.isEmpty()) {
+                return;
+            }
+            // Read the series here, one category at a time; the leaves then fit without calling
+            // the history, whose lock would otherwise run them one after another
+            Training[] trainings = new Training[categories.size()];
+            for (int i = 0; i < trainings.length; i++) {
+                trainings[i] = snapshot(categories.get(i), today);
+            }
+            pool.invoke(new TrainTask(trainings, 0, trainings.length));
+            for (Training training : trainings) {
+                if (training.models != null) {
+                    models.put(training.category, training.models);
+                } else {
+                    models.remove(training.category);
+                }
+            }
+        }
+    }
+
+    /**
+     * One category's completed weekly and monthly totals, and the models fitted to them
+     */
+    private static final class Training {
+        final String category;
+        final Map<SpendingHistory.Granularity, LocalDate> firstBuckets = new HashMap<>();
+        final Map<SpendingHistory.Granularity, List<SpendingHistory.Bucket>> buckets = new HashMap<>();
+        // Set by the leaf that fits it; null when the category has no spending
+        Map<SpendingHistory.Granularity, CategoryModel> models;
+
+        Training(String category) {
+            this.category = category;
+        }
+    }
+
+    /**
+     * Completed buckets only; the current week or month is still filling up
+     */
+    private Training snapshot(String category, LocalDate today) {
+        Training training = new Training(category);
+        // Each category's series starts at its own first expense, not the global one
+        LocalDate first = history.firstDate(category);
+        if (first == null) {
+            return training;
+        }
+        for (SpendingHistory.Granularity granularity : List.of(
+                SpendingHistory.Granularity.WEEK, SpendingHistory.Granularity.MONTH)) {
+            LocalDate firstBucket = granularity.bucketStart(first);
+            LocalDate current = granularity.bucketStart(today);
+            training.firstBuckets.put(granularity, firstBucket);
+            training.buckets.put(granularity, firstBucket.isBefore(current)
+                    ? history.series(category, granularity, firstBucket, current.minusDays(1))
+                    : List.of());
+        }
+        return training;
+    }
+
+    /**
+     * Splits the categories in halves until a leaf holds a few, then fits them
+     */
+    private static final class TrainTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Training[] trainings;
+        private final int from;
+        private final int to;
+
+        TrainTask(Training[] trainings, int from, int to) {
+            this.trainings = trainings;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= TRAIN_BATCH) {
+                for (int i = from; i < to; i++) {
+                    fit(trainings[i]);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new TrainTask(trainings, from, middle), new TrainTask(trainings, middle, to));
+        }
+
+        private static void fit(Training training) {
+            if (training.firstBuckets.isEmpty()) {
+                return;
+            }
+            Map<SpendingHistory.Granularity, CategoryModel> byGranularity = new HashMap<>();
+            for (Map.Entry<SpendingHistory.Granularity, List<SpendingHistory.Bucket>> entry : training.buckets.entrySet()) {
+                CategoryModel model = new CategoryModel(entry.getKey());
+                model.firstBucket = training.firstBuckets.get(entry.getKey());
+                for (SpendingHistory.Bucket bucket : entry.getValue()) {
+                    model.append(bucket.total());
+                }
+                byGranularity.put(entry.getKey(), model);
+            }
+            training.models = byGranularity;
+        }
+    }
+
+    @Override
+    public synchronized void expensesAdded(List<ExpenseRecord> expenses) {
+        update(expenses, 1);
+    }
+
+    @Override
+    public synchronized void expensesDeleted(List<ExpenseRecord> expenses) {
+        update(expenses, -1);
+    }
+
+    private void update(List<ExpenseRecord> expenses, int sign) {
+        if (trainedOn == null) {
+            return; // Nothing trained yet; the first forecast trains from the history
+        }
+        for (ExpenseRecord expense : expenses) {
+            LocalDate date = expense.transactionLocalDate();
+            Map<SpendingHistory.Granularity, CategoryModel> byGranularity = models.get(expense.categoryName());
+            if (date == null) {
+                continue;
+            }
+            if (byGranularity == null) {
+                staleCategories.add(expense.categoryName());
+                continue;
+            }
+            for (CategoryModel model : byGranularity.values()) {
+                int index = model.indexOf(date);
+                if (index < 0) {
+                    // Earlier than the training window; refit this category from the history
+                    staleCategories.add(expense.categoryName());
+                } else if (index < model.size()) {
+                    model.adjust(index, sign * expense.amount());
+                }
+                // Expenses in the current bucket are picked up when it completes
+            }
+        }
+    }
+}
@@ -0,0 +1,322 @@
+package org.example.project;
+
+import java.sql.SQLException;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pre-aggregated USD spend per category per day. Each category keeps its daily totals in a
+ * Fenwick tree over epoch days, so any date range sums in O(log days) and a week, month or
+ * year series is one range sum per bucket. Loaded once from per-day totals computed by the
+ * database and kept current through the expense listener.
+ */
+public class SpendingHistory implements ExpenseListener {
+
+    public enum Granularity {
+        DAY, WEEK, MONTH, YEAR;
+
+        /**
+         * First day of the bucket containing the given date
+         */
+        public LocalDate bucketStart(LocalDate date) {
+            return switch (this) {
+                case DAY -> date;
+                case WEEK -> date.with(DayOfWeek.MONDAY);
+                case MONTH -> date.withDayOfMonth(1);
+                case YEAR -> date.withDayOfYear(1);
+            };
+        }
+
+        /**
+         * First day of the bucket after the one starting on the given date
+         */
+        public LocalDate nextBucket(LocalDate bucketStart) {
+            return switch (this) {
+                case DAY -> bucketStart.plusDays(1);
+                case WEEK -> bucketStart.plusWeeks(1);
+                case MONTH -> bucketStart.plusMonths(1);
+                case YEAR -> bucketStart.plusYears(1);
+            };
+        }
+    }
+
+    public record Bucket(LocalDate start, double total) {
+    }
+
+    /**
+     * Daily totals for one series in a Fenwick tree indexed by (epoch day - firstDay)
+     */
+    private static final class DailySeries {
+        private long firstDay;
+        private double[] tree = new double[1];
+        private long firstSpendDay = Long.MAX_VALUE;
+
+        void add(long epochDay, double amount) {
+            ensureCovers(epochDay);
+            int capacity = tree.length - 1;
+            for (int i = (int) (epochDay - firstDay) + 1; i <= capacity; i += i & -i) {
+                tree[i] += amount;
+            }
+        }
+
+        /**
+         * Sum of all days before the given epoch day
+         */
+        double prefix(long epochDayExclusive) {
+            long index = Math.min(tree.length - 1, Math.max(0, epochDayExclusive - firstDay));
+            double sum = 0;
+            for (int i = (int) index; i > 0; i -= i & -i) {
+                sum += tree[i];
+            }
+            return sum;
+        }
+
+        double sum(long fromEpochDay, long toEpochDayExclusive) {
+            return prefix(toEpochDayExclusive) - prefix(fromEpochDay);
+        }
+
+        private void ensureCovers(long epochDay) {
+            int capacity = tree.length - 1;
+            if (capacity > 0 && epochDay >= firstDay && epochDay < firstDay + capacity) {
+                return;
+            }
+
+            // Grow to at least double the span, with slack on the side that overflowed
+            long newFirst = capacity == 0
+                    ? epochDay - 31
+                    : Math.min(firstDay, epochDay - Math.max(31, capacity / 2));
+            long newEnd = capacity == 0
+                    ? epochDay + 366
+                    : Math.max(firstDay + capacity, epochDay + Math.max(366, capacity / 2));
+            int newCapacity = (int) (newEnd - newFirst);
+
+            // Unwind the tree to daily values, shift them, and rebuild in linear time
+            double[] daily = new double[newCapacity + 1];
+            for (int i = capacity; i > 0; i--) {
+                int parent = i + (i & -i);
+                if (parent <= capacity) {
+                    tree[parent] -= tree[i];
+                }
+            }
+            int offset = (int) (firstDay - newFirst);
+            for (int i = 1; i <= capacity; i++) {
+                daily[i + offset] = tree[i];
+            }
+            for (int i = 1; i <= newCapacity; i++) {
+                int parent = i + (i & -i);
+                if (parent <= newCapacity) {
+                    daily[parent] += daily[i];
+                }
+            }
+            firstDay = newFirst;
+            tree = daily;
+        }
+    }
+
+    // Held for a whole load, so two never interleave; the series themselves are guarded by this
+    private final Object loadLock = new Object();
+    private Map<String, DailySeries> seriesByCategory = new HashMap<>();
+    private DailySeries totalSeries = new DailySeries();
+    private long lastExpenseDay = Long.MIN_VALUE;
+    // Highest expense id summed by load(); the listener may still deliver rows up to it
+    private int loadedThroughId;
+    // Listener events that arrive while load() reads the database; null when no load is running
+    private List<ExpenseListener.Event> pending;
+    private volatile boolean ready;
+
+    /**
+     * Rebuild the history from the per-day totals in the database. The totals are summed into
+     * new series without holding the history, so expenses can be added meanwhile; their events
+     * are queued and applied once the new series are in place.
+     */
+    public void load(DatabaseManager dbManager) throws SQLException {
+        synchronized (loadLock) {
+            try (Metrics.Span span = Metrics.span("history.load")) {
+                synchronized (this) {
+                    pending = new ArrayList<>();
+                }
+                try {
+                    while (!loadOnce(dbManager)) {
+                        Metrics.increment("history.load.retries");
+                    }
+                } finally {
+                    synchronized (this) {
+                        pending = null;
+                    }
+                }
+            }
+            ready = true;
+        }
+    }
+
+    /**
+     * Sum the totals into new series, then install them and apply the queued events. Returns
+     * false, leaving the series as they were, when a queued delete cannot be placed before or
+     * after the totals were read.
+     */
+    private boolean loadOnce(DatabaseManager dbManager) throws SQLException {
+        SpendingHistory loaded = new SpendingHistory();
+        int maxId = dbManager.readDailyTotals(total -> {
+            LocalDate date = parseDate(total.transactionDate());
+            if (date != null) {
+                loaded.add(total.categoryName(), date.toEpochDay(), total.total());
+            }
+        });
+
+        synchronized (this) {
+            // A delete of a row up to the id may have been committed before the totals were read,
+            // or after; only a fresh read can tell
+            for (ExpenseListener.Event event : pending) {
+                if (event.deleted() && event.expenses().stream()
+                        .anyMatch(expense -> expense.id() <= maxId && expense.transactionLocalDate() != null)) {
+                    pending.clear();
+                    return false;
+                }
+            }
+            seriesByCategory = loaded.seriesByCategory;
+            totalSeries = loaded.totalSeries;
+            lastExpenseDay = loaded.lastExpenseDay;
+            loadedThroughId = maxId;
+            for (ExpenseListener.Event event : pending) {
+                if (event.deleted()) {
+                    applyDeleted(event.expenses());
+                } else {
+                    applyAdded(event.expenses());
+                }
+            }
+            pending = null;
+            return true;
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Categories that have any recorded spending
+     */
+    public synchronized List<String> categories() {
+        List<String> categories = new ArrayList<>(seriesByCategory.keySet());
+        categories.sort(null);
+        return categories;
+    }
+
+    /**
+     * Earliest transaction date with spending, or null when there is none
+     */
+    public synchronized LocalDate firstDate() {
+        return firstDate(null);
+    }
+
+    /**
+     * Earliest transaction date with spending in a category, or null when there is none
+     * @param category Category name, or null for all categories
+     */
+    public synchronized LocalDate firstDate(String category) {
+        DailySeries series = category == null ? totalSeries : seriesByCategory.get(category);
+        if (series == null || series.firstSpendDay == Long.MAX_VALUE) {
+            return null;
+        }
+        return LocalDate.ofEpochDay(series.firstSpendDay);
+    }
+
+    /**
+     * Latest transaction date with spending, or null when there is none
+     */
+    public synchronized LocalDate lastDate() {
+        return lastExpenseDay == Long.MIN_VALUE ? null : LocalDate.ofEpochDay(lastExpenseDay);
+    }
+
+    /**
+     * Total spend in [from, toExclusive)
+     * @param category Category name, or null for all categories
+     */
+    public synchronized double total(String category, LocalDate from, LocalDate toExclusive) {
+        DailySeries series = category == null ? totalSeries : seriesByCategory.get(category);
+        return series == null ? 0 : series.sum(from.toEpochDay(), toExclusive.toEpochDay());
+    }
+
+    /**
+     * Spend per bucket for every bucket overlapping [from, to], each covering its whole period
+     * @param category Category name, or null for all categories
+     */
+    public synchronized List<Bucket> series(String category, Granularity granularity, LocalDate from, LocalDate to) {
+        try (Metrics.Span span = Metrics.span("history.series")) {
+            DailySeries series = category == null ? totalSeries : seriesByCategory.get(category);
+            List<Bucket> buckets = new ArrayList<>();
+            LocalDate start = granularity.bucketStart(from);
+            double previous = series == null ? 0 : series.prefix(start.toEpochDay());
+            while (!start.isAfter(to)) {
+                LocalDate next = granularity.nextBucket(start);
+                // Adjacent buckets share a boundary, so each needs only one new prefix sum
+                double current = series == null ? 0 : series.prefix(next.toEpochDay());
+                buckets.add(new Bucket(start, current - previous));
+                previous = current;
+                start = next;
+            }
+            return buckets;
+        }
+    }
+
+    @Override
+    public synchronized void expensesAdded(List<ExpenseRecord> expenses) {
+        if (pending != null) {
+            pending.add(new ExpenseListener.Event(false, expenses));
+        } else {
+            applyAdded(expenses);
+        }
+    }
+
+    @Override
+    public synchronized void expensesDeleted(List<ExpenseRecord> expenses) {
+        if (pending != null) {
+            pending.add(new ExpenseListener.Event(true, expenses));
+        } else {
+            applyDeleted(expenses);
+        }
+    }
+
+    private void applyAdded(List<ExpenseRecord> expenses) {
+        for (ExpenseRecord expense : expenses) {
+            LocalDate date = expense.transactionLocalDate();
+            // Skip rows load() already summed, e.g. an insert that raced with it
+            if (date != null && expense.id() > loadedThroughId) {
+                add(expense.categoryName(), date.toEpochDay(), expense.amount());
+            }
+        }
+    }
+
+    private void applyDeleted(List<ExpenseRecord> expenses) {
+        for (ExpenseRecord expense : expenses) {
+            LocalDate date = expense.transactionLocalDate();
+            if (date != null) {
+                add(expense.categoryName(), date.toEpochDay(), -expense.amount());
+            }
+        }
+    }
+
+    private void add(String category, long epochDay, double amount) {
+        DailySeries series = seriesByCategory.computeIfAbsent(category, k -> new DailySeries());
+        series.add(epochDay, amount);
+        totalSeries.add(epochDay, amount);
+        if (amount > 0) {
+            series.firstSpendDay = Math.min(series.firstSpendDay, epochDay);
+            totalSeries.firstSpendDay = Math.min(totalSeries.firstSpendDay, epochDay);
+            lastExpenseDay = Math.max(lastExpenseDay, epochDay);
+        }
+    }
+
+    private static LocalDate parseDate(String date) {
+        try {
+            return date == null ? null : LocalDate.parse(date);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package org.example.project;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+
+/**
+ * Merging t-digest for approximate quantiles. Values are buffered and folded into a sorted
+ * list of weighted centroids, each allowed at most 4 * n * q * (1 - q) / compression points,
+ * so centroids stay small near the tails, where accuracy matters most, and size is bounded
+ * by roughly the compression factor. Digests merge by folding one's centroids into the other.
+ */
+public final class TDigest {
+
+    private static final int SERIAL_VERSION = 1;
+
+    private final double compression;
+    private double[] means = new double[0];
+    private long[] weights = new long[0];
+    private int centroidCount;
+
+    private final double[] bufferMeans;
+    private final long[] bufferWeights;
+    private int bufferCount;
+
+    private long totalWeight;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    public TDigest(double compression) {
+        this.compression = compression;
+        int bufferSize = (int) (5 * compression);
+        this.bufferMeans = new double[bufferSize];
+        this.bufferWeights = new long[bufferSize];
+    }
+
+    public void add(double value) {
+        add(value, 1);
+    }
+
+    public void add(double value, long weight) {
+        if (Double.isNaN(value) || weight <= 0) {
+            return;
+        }
+        if (bufferCount == bufferMeans.length) {
+            compress();
+        }
+        bufferMeans[bufferCount] = value;
+        bufferWeights[bufferCount++] = weight;
+        totalWeight += weight;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Fold another digest into this one; the other digest is left unchanged in content
+     */
+    public void merge(TDigest other) {
+        other.compress();
+        for (int i = 0; i < other.centroidCount; i++) {
+            add(other.means[i], other.weights[i]);
+        }
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    public long size() {
+        return totalWeight;
+    }
+
+    public int centroidCount() {
+        compress();
+        return centroidCount;
+    }
+
+    /**
+     * Estimated value at quantile q in [0, 1], or NaN when the digest is empty
+     */
+    public double quantile(double q) {
+        compress();
+        if (centroidCount == 0) {
+            return Double.NaN;
+        }
+        if (centroidCount == 1 || q <= 0) {
+            return q <= 0 ? min : means[0];
+        }
+        if (q >= 1) {
+            return max;
+        }
+
+        // Each centroid's mass is centred on its mean; interpolate between neighbouring centres
+        double target = q * totalWeight;
+        double cumulative = weights[0] / 2.0;
+        if (target < cumulative) {
+            return min + (means[0] - min) * (target / cumulative);
+        }
+        for (int i = 0; i < centroidCount - 1; i++) {
+            double step = (weights[i] + weights[i + 1]) / 2.0;
+            if (target < cumulative + step) {
+                double fraction = (target - cumulative) / step;
+                return means[i] + fraction * (means[i + 1] - means[i]);
+            }
+            cumulative += step;
+        }
+        double tail = weights[centroidCount - 1] / 2.0;
+        double fraction = Math.min(1, (target - cumulative) / tail);
+        return means[centroidCount - 1] + fraction * (max - means[centroidCount - 1]);
+    }
+
+    /**
+     * Merge the buffer into the centroid list
+     */
+    private void compress() {
+        if (bufferCount == 0) {
+            return;
+        }
+
+        int count = centroidCount + bufferCount;
+        double[] allMeans = Arrays.copyOf(means, count);
+        long[] allWeights = Arrays.copyOf(weights, count);
+        System.arraycopy(bufferMeans, 0, allMeans, centroidCount, bufferCount);
+        System.arraycopy(bufferWeights, 0, allWeights, centroidCount, bufferCount);
+        bufferCount = 0;
+        sortByMean(allMeans, allWeights, count);
+
+        double[] newMeans = new double[Math.min(count, (int) (2 * compression) + 8)];
+        long[] newWeights = new long[newMeans.length];
+        int n = 0;
+        double currentMean = allMeans[0];
+        long currentWeight = allWeights[0];
+        long weightSoFar = 0;
+
+        for (int i = 1; i < count; i++) {
+            long merged = currentWeight + allWeights[i];
+            double q = (weightSoFar + merged / 2.0) / totalWeight;
+            double limit = 4 * totalWeight * q * (1 - q) / compression;
+            if (merged <= limit) {
+                currentMean += (allMeans[i] - currentMean) * allWeights[i] / merged;
+                currentWeight = merged;
+            } else {
+                if (n == newMeans.length) {
+                    newMeans = Arrays.copyOf(newMeans, n * 2);
+                    newWeights = Arrays.copyOf(newWeights, n * 2);
+                }
+                newMeans[n] = currentMean;
+                newWeights[n++] = currentWeight;
+                weightSoFar += currentWeight;
+                currentMean = allMeans[i];
+                currentWeight = allWeights[i];
+            }
+        }
+        if (n == newMeans.length) {
+            newMeans = Arrays.copyOf(newMeans, n + 1);
+            newWeights = Arrays.copyOf(newWeights, n + 1);
+        }
+        newMeans[n] = currentMean;
+        newWeights[n++] = currentWeight;
+
+        means = newMeans;
+        weights = newWeights;
+        centroidCount = n;
+    }
+
+    /**
+     * Sort the first count entries of the parallel arrays by mean
+     */
+    private static void sortByMean(double[] values, long[] valueWeights, int count) {
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(values[a], values[b]));
+        double[] sortedValues = new double[count];
+        long[] sortedWeights = new long[count];
+        for (int i = 0; i < count; i++) {
+            sortedValues[i] = values[order[i]];
+            sortedWeights[i] = valueWeights[order[i]];
+        }
+        System.arraycopy(sortedValues, 0, values, 0, count);
+        System.arraycopy(sortedWeights, 0, valueWeights, 0, count);
+    }
+
+    /**
+     * Compact binary form: version, compression, min, max, then (mean, weight) per centroid
+     */
+    public byte[] toBytes() {
+        compress();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(32 + centroidCount * 12);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(SERIAL_VERSION);
+            out.writeFloat((float) compression);
+            out.writeDouble(min);
+            out.writeDouble(max);
+            out.writeInt(centroidCount);
+            for (int i = 0; i < centroidCount; i++) {
+                out.writeDouble(means[i]);
+                out.writeInt((int) Math.min(Integer.MAX_VALUE, weights[i]));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static TDigest fromBytes(byte[] data) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            if (in.readByte() != SERIAL_VERSION) {
+                throw new IllegalArgumentException("Unsupported t-digest format");
+            }
+            TDigest digest = new TDigest(in.readFloat());
+            double min = in.readDouble();
+            double max = in.readDouble();
+            int count = in.readInt();
+            digest.means = new double[count];
+            digest.weights = new long[count];
+            for (int i = 0; i < count; i++) {
+                digest.means[i] = in.readDouble();
+                digest.weights[i] = in.readInt();
+                digest.totalWeight += digest.weights[i];
+            }
+            digest.centroidCount = count;
+            digest.min = min;
+            digest.max = max;
+            return digest;
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Corrupt t-digest", e);
+        }
+    }
+}
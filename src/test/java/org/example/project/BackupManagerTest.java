@@ -0,0 +1,192 @@
+package org.example.project;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Snapshots, journal replay and rotation of a ledger in a temporary directory, with a clock the
+ * test moves forward by hand. Amounts are in USD so no exchange rates are fetched.
+ */
+class BackupManagerTest {
+
+    private static final String CATEGORY = "Backup test";
+
+    @TempDir
+    Path directory;
+
+    private final ManualClock clock = new ManualClock(Instant.parse("2024-05-01T10:00:00Z"));
+    private DatabaseManager dbManager;
+    private BackupManager backups;
+
+    @BeforeEach
+    void openLedger() throws Exception {
+        dbManager = new DatabaseManager(directory.resolve("ledger.db"));
+        dbManager.addCategory(CATEGORY);
+        openBackups(BackupManager.DEFAULT_KEEP);
+    }
+
+    @AfterEach
+    void closeLedger() {
+        backups.close();
+        dbManager.close();
+    }
+
+    @Test
+    void restoreReplaysJournalUpToTheInstant() throws Exception {
+        int first = add("first");
+        Instant snapshotTaken = clock.instant();
+        backups.backup();
+
+        clock.advance(Duration.ofSeconds(10));
+        add("second");
+        Instant afterSecond = clock.instant();
+
+        clock.advance(Duration.ofSeconds(10));
+        add("third");
+        clock.advance(Duration.ofSeconds(10));
+        dbManager.deleteExpense(first);
+        Instant afterDelete = clock.instant();
+
+        BackupManager.RestoreResult atSnapshot = backups.restore(snapshotTaken, directory.resolve("r0.db"));
+        assertEquals(0, atSnapshot.replayedEntries());
+        assertEquals(Set.of("first"), descriptions(atSnapshot.file()));
+
+        BackupManager.RestoreResult midway = backups.restore(afterSecond.plusSeconds(5), directory.resolve("r1.db"));
+        assertEquals(1, midway.replayedEntries());
+        assertEquals(Set.of("first", "second"), descriptions(midway.file()));
+
+        BackupManager.RestoreResult latest = backups.restore(afterDelete, directory.resolve("r2.db"));
+        assertEquals(3, latest.replayedEntries());
+        assertEquals(Set.of("second", "third"), descriptions(latest.file()));
+    }
+
+    @Test
+    void restoreBeforeTheFirstSnapshotFails() throws Exception {
+        backups.backup();
+        assertThrows(IOException.class,
+                () -> backups.restore(clock.instant().minusSeconds(1), directory.resolve("restored.db")));
+    }
+
+    @Test
+    void rotationDeletesOldSnapshotsAndTrimsTheJournal() throws Exception {
+        backups.close();
+        openBackups(2);
+
+        backups.backup();
+        clock.advance(Duration.ofMinutes(1));
+        add("before second snapshot");
+        clock.advance(Duration.ofMinutes(1));
+        Instant secondSnapshot = clock.instant();
+        backups.backup();
+        clock.advance(Duration.ofMinutes(1));
+        add("after second snapshot");
+        clock.advance(Duration.ofMinutes(1));
+        backups.backup();
+
+        List<BackupManager.Snapshot> snapshots = backups.list();
+        assertEquals(2, snapshots.size());
+        assertEquals(secondSnapshot, snapshots.getFirst().startedAt());
+
+        List<String> journal = Files.readAllLines(journalFile(), StandardCharsets.UTF_8);
+        assertEquals(1, journal.size());
+        assertTrue(journal.getFirst().contains("after second snapshot"));
+
+        BackupManager.RestoreResult restored = backups.restore(clock.instant(), directory.resolve("restored.db"));
+        assertEquals(Set.of("before second snapshot", "after second snapshot"), descriptions(restored.file()));
+    }
+
+    @Test
+    void truncatedLastJournalLineIsSkipped() throws Exception {
+        backups.backup();
+        clock.advance(Duration.ofSeconds(10));
+        add("kept");
+        // A crash part way through an append leaves an unterminated line
+        Files.writeString(journalFile(), "{\"op\":\"add\",\"expenses\":[{\"id\":99,\"category\":\"Backup",
+                StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        clock.advance(Duration.ofSeconds(10));
+        BackupManager.RestoreResult restored = backups.restore(clock.instant(), directory.resolve("restored.db"));
+        assertEquals(1, restored.replayedEntries());
+        assertEquals(Set.of("kept"), descriptions(restored.file()));
+    }
+
+    private void openBackups(int keep) {
+        if (backups != null) {
+            dbManager.removeExpenseListener(backups);
+        }
+        backups = new BackupManager(dbManager, directory.resolve("backups"), keep, clock);
+        dbManager.addExpenseListener(backups);
+    }
+
+    private int add(String description) throws Exception {
+        String day = "2024-05-01";
+        return dbManager.addExpenses(List.of(
+                new ExpenseEntry(CATEGORY, 10, day, day, "USD", null, description)))[0];
+    }
+
+    private Path journalFile() {
+        return directory.resolve("backups").resolve("journal.jsonl");
+    }
+
+    private static Set<String> descriptions(Path database) throws Exception {
+        Set<String> descriptions = new TreeSet<>();
+        DatabaseManager restored = new DatabaseManager(database);
+        try {
+            restored.forEachExpense(expense -> descriptions.add(expense.description()));
+        } finally {
+            restored.close();
+        }
+        return descriptions;
+    }
+
+    /**
+     * A clock that only moves when told to, so journal entries and snapshots get known times
+     */
+    private static final class ManualClock extends Clock {
+
+        private Instant now;
+
+        ManualClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
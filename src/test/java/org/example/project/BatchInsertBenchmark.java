@@ -0,0 +1,82 @@
+package org.example.project;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.stream.Stream;
+
+/**
+ * Benchmark: expenses inserted per second one addExpense call per row, each validating its
+ * category and committing on its own, against addExpenses in batches. Rows are in USD, so
+ * no rates are fetched. Each path writes to its own new database in a temporary directory.
+ *
+ * <pre>
+ * BatchInsertBenchmark --rows=20000 --batch=1000 --categories=20
+ * </pre>
+ */
+public class BatchInsertBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int rows = 20_000;
+        int batch = 1_000;
+        int categoryCount = 20;
+        for (String arg : args) {
+            if (arg.startsWith("--rows=")) {
+                rows = Integer.parseInt(arg.substring("--rows=".length()));
+            } else if (arg.startsWith("--batch=")) {
+                batch = Integer.parseInt(arg.substring("--batch=".length()));
+            } else if (arg.startsWith("--categories=")) {
+                categoryCount = Integer.parseInt(arg.substring("--categories=".length()));
+            }
+        }
+
+        List<ExpenseEntry> entries = new ArrayList<>(rows);
+        SplittableRandom random = new SplittableRandom(42);
+        LocalDate start = LocalDate.of(2024, 1, 1);
+        for (int i = 0; i < rows; i++) {
+            String date = start.plusDays(random.nextInt(365)).toString();
+            entries.add(new ExpenseEntry("Category " + random.nextInt(categoryCount),
+                    Math.round(random.nextDouble(1, 500) * 100) / 100.0, date, date, "USD"));
+        }
+
+        Path directory = Files.createTempDirectory("insert-benchmark");
+        try {
+            for (int size : new int[]{1, batch}) {
+                DatabaseManager dbManager = new DatabaseManager(directory.resolve("batch-" + size + ".db"));
+                try {
+                    for (int c = 0; c < categoryCount; c++) {
+                        dbManager.addCategory("Category " + c);
+                    }
+                    long begin = System.nanoTime();
+                    for (int from = 0; from < rows; from += size) {
+                        List<ExpenseEntry> chunk = entries.subList(from, Math.min(rows, from + size));
+                        if (size == 1) {
+                            ExpenseEntry entry = chunk.getFirst();
+                            dbManager.addExpense(entry.categoryName(), entry.amount(), entry.transactionDate(),
+                                    entry.expenseDate(), entry.currency());
+                        } else {
+                            dbManager.addExpenses(chunk);
+                        }
+                    }
+                    double seconds = (System.nanoTime() - begin) / 1e9;
+                    System.out.printf(Locale.ROOT, "%-22s %,10.0f rows/s  (%,d rows in %.2f s)%n",
+                            size == 1 ? "addExpense per row" : "addExpenses, " + size + "/call",
+                            rows / seconds, rows, seconds);
+                } finally {
+                    dbManager.close();
+                }
+            }
+        } finally {
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path file : files.toList()) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(directory);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package org.example.project;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.stream.Stream;
+
+/**
+ * Benchmark: search latency percentiles for a mix of text, fuzzy and filtered queries.
+ * Uses the given ledger, or generates one of the given size in a temporary directory.
+ *
+ * <pre>
+ * ExpenseSearchBenchmark --expenses=1000000 --queries=1000 [--db=ledger.db]
+ * </pre>
+ */
+public class ExpenseSearchBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int expenses = 1_000_000;
+        int queries = 1_000;
+        Path ledger = null;
+        for (String arg : args) {
+            if (arg.startsWith("--expenses=")) {
+                expenses = Integer.parseInt(arg.substring("--expenses=".length()));
+            } else if (arg.startsWith("--queries=")) {
+                queries = Integer.parseInt(arg.substring("--queries=".length()));
+            } else if (arg.startsWith("--db=")) {
+                ledger = Path.of(arg.substring("--db=".length()));
+            }
+        }
+
+        Path directory = null;
+        if (ledger == null) {
+            directory = Files.createTempDirectory("search-benchmark");
+            ledger = directory.resolve("ledger.db");
+            new DatasetGenerator(42, 20, expenses, LocalDate.of(2020, 1, 1), 5,
+                    Runtime.getRuntime().availableProcessors()).writeSqlite(ledger);
+        }
+        ExpenseSearchIndex index = new ExpenseSearchIndex();
+        List<ExpenseRecord> rows = new ArrayList<>();
+        DatabaseManager dbManager = new DatabaseManager(ledger);
+        try {
+            long begin = System.nanoTime();
+            index.load(dbManager);
+            System.out.printf(Locale.ROOT, "Loaded %,d expenses in %.2f s%n", index.size(),
+                    (System.nanoTime() - begin) / 1e9);
+            dbManager.forEachExpense(rows::add);
+        } finally {
+            dbManager.close();
+            if (directory != null) {
+                try (Stream<Path> files = Files.list(directory)) {
+                    for (Path file : files.toList()) {
+                        Files.delete(file);
+                    }
+                }
+                Files.delete(directory);
+            }
+        }
+
+        // Queries are built from the indexed rows, so every kind finds matches
+        String[] kinds = {"word", "typo", "two words", "word + amount", "category", "category + dates",
+                "currency + dates"};
+        SplittableRandom random = new SplittableRandom(7);
+        List<List<ExpenseSearchIndex.Query>> mix = new ArrayList<>();
+        for (int k = 0; k < kinds.length; k++) {
+            List<ExpenseSearchIndex.Query> list = new ArrayList<>(queries);
+            for (int q = 0; q < queries; q++) {
+                ExpenseRecord row = rows.get(random.nextInt(rows.size()));
+                List<String> words = new ArrayList<>(ExpenseSearchIndex.tokenize(row.payee()));
+                words.addAll(ExpenseSearchIndex.tokenize(row.description()));
+                String word = words.isEmpty() ? "" : words.get(random.nextInt(words.size()));
+                String category = row.categoryName();
+                LocalDate day = row.transactionLocalDate();
+                list.add(switch (k) {
+                    case 0 -> new ExpenseSearchIndex.Query().text(word);
+                    case 1 -> new ExpenseSearchIndex.Query().text(typo(word, random));
+                    case 2 -> new ExpenseSearchIndex.Query().text(String.join(" ", words));
+                    case 3 -> new ExpenseSearchIndex.Query().text(word)
+                            .amountBetween(row.amount() / 2, row.amount() * 2);
+                    case 4 -> new ExpenseSearchIndex.Query().category(category);
+                    case 5 -> new ExpenseSearchIndex.Query().category(category).dateBetween(day.minusDays(30), day);
+                    default -> new ExpenseSearchIndex.Query().currency(row.currency())
+                            .dateBetween(day.minusDays(7), day);
+                });
+            }
+            mix.add(list);
+        }
+
+        // Warm up on the whole mix, then time every query on its own
+        for (List<ExpenseSearchIndex.Query> list : mix) {
+            for (ExpenseSearchIndex.Query query : list.subList(0, Math.min(200, list.size()))) {
+                index.search(query);
+            }
+        }
+        long[] all = new long[kinds.length * queries];
+        for (int k = 0; k < kinds.length; k++) {
+            long[] nanos = new long[queries];
+            for (int q = 0; q < queries; q++) {
+                long start = System.nanoTime();
+                index.search(mix.get(k).get(q));
+                nanos[q] = System.nanoTime() - start;
+            }
+            System.arraycopy(nanos, 0, all, k * queries, queries);
+            printLatency(kinds[k], nanos);
+        }
+        printLatency("all", all);
+    }
+
+    /**
+     * The word with two neighbouring letters swapped, or unchanged if it is too short
+     */
+    private static String typo(String word, SplittableRandom random) {
+        if (word.length() < 4) {
+            return word;
+        }
+        int i = random.nextInt(1, word.length() - 1);
+        char[] chars = word.toCharArray();
+        char c = chars[i];
+        chars[i] = chars[i + 1];
+        chars[i + 1] = c;
+        return new String(chars);
+    }
+
+    private static void printLatency(String kind, long[] nanos) {
+        Arrays.sort(nanos);
+        System.out.printf(Locale.ROOT, "%-17s p50 %7.3f ms  p99 %7.3f ms  max %7.3f ms%n", kind,
+                nanos[nanos.length / 2] / 1e6, nanos[(int) (nanos.length * 0.99)] / 1e6,
+                nanos[nanos.length - 1] / 1e6);
+    }
+}
@@ -0,0 +1,87 @@
+package org.example.project;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * HyperLogLog serialization in both the sparse and dense forms, and merging
+ */
+class HyperLogLogTest {
+
+    @Test
+    void emptySketchRoundTrips() {
+        byte[] bytes = new HyperLogLog().toBytes();
+        assertEquals(1, bytes.length);
+        assertEquals(0, HyperLogLog.fromBytes(bytes).estimate());
+    }
+
+    @Test
+    void smallSketchRoundTripsSparsely() {
+        HyperLogLog sketch = sketch("payee-", 0, 20);
+        byte[] bytes = sketch.toBytes();
+        // One format byte and two bytes per used register
+        assertTrue(bytes.length <= 1 + 2 * 20, "size " + bytes.length);
+
+        HyperLogLog copy = HyperLogLog.fromBytes(bytes);
+        assertEquals(sketch.estimate(), copy.estimate());
+        assertArrayEquals(bytes, copy.toBytes());
+        assertEquals(20, copy.estimate(), 1);
+    }
+
+    @Test
+    void largeSketchRoundTripsDensely() {
+        HyperLogLog sketch = sketch("payee-", 0, 100_000);
+        byte[] bytes = sketch.toBytes();
+        assertEquals(1 + 1024, bytes.length);
+
+        HyperLogLog copy = HyperLogLog.fromBytes(bytes);
+        assertEquals(sketch.estimate(), copy.estimate());
+        assertArrayEquals(bytes, copy.toBytes());
+        assertEquals(100_000, copy.estimate(), 10_000);
+    }
+
+    @Test
+    void rejectsUnknownFormat() {
+        assertThrows(IllegalArgumentException.class, () -> HyperLogLog.fromBytes(new byte[]{7}));
+    }
+
+    @Test
+    void mergeEqualsSketchOfTheUnion() {
+        HyperLogLog first = HyperLogLog.fromBytes(sketch("payee-", 0, 6_000).toBytes());
+        HyperLogLog second = HyperLogLog.fromBytes(sketch("payee-", 4_000, 10_000).toBytes());
+        HyperLogLog union = sketch("payee-", 0, 10_000);
+
+        first.merge(second);
+
+        assertArrayEquals(union.toBytes(), first.toBytes());
+        assertEquals(10_000, first.estimate(), 1_000);
+    }
+
+    @Test
+    void mergeWithEmptySketches() {
+        HyperLogLog empty = new HyperLogLog();
+        HyperLogLog sketch = sketch("payee-", 0, 50);
+        byte[] before = sketch.toBytes();
+
+        sketch.merge(new HyperLogLog());
+        assertArrayEquals(before, sketch.toBytes());
+
+        empty.merge(sketch);
+        assertArrayEquals(before, empty.toBytes());
+        // The merged copy does not share registers with its source
+        sketch.merge(sketch("other-", 0, 1_000));
+        assertArrayEquals(before, empty.toBytes());
+    }
+
+    private static HyperLogLog sketch(String prefix, int from, int to) {
+        HyperLogLog sketch = new HyperLogLog();
+        for (int i = from; i < to; i++) {
+            sketch.add(prefix + i);
+        }
+        return sketch;
+    }
+}
@@ -0,0 +1,194 @@
+package org.example.project;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * RateClient against a local HTTP server that answers with a scripted sequence of status codes
+ */
+class RateClientTest {
+
+    private static final String RATES = """
+            {"result":"success","base_code":"USD","rates":{"USD":1,"EUR":0.92,"RON":4.6}}
+            """;
+
+    private HttpServer server;
+    private String url;
+    private final AtomicInteger requests = new AtomicInteger();
+    // Status of each response in turn; 200 with a rate document once the script runs out
+    private final Queue<Integer> script = new ConcurrentLinkedQueue<>();
+    // Counted down before every response is sent, so a test can hold requests in flight
+    private volatile CountDownLatch release = new CountDownLatch(0);
+    private volatile CountDownLatch received = new CountDownLatch(0);
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/latest/USD", exchange -> {
+            requests.incrementAndGet();
+            received.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            Integer status = script.poll();
+            byte[] body = (status == null || status == 200 ? RATES : "{}").getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(status == null ? 200 : status, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        url = "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/latest/USD";
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    private static RateClient client(int maxAttempts, int failureThreshold, Duration openDuration) {
+        return new RateClient(Duration.ofSeconds(2), Duration.ofSeconds(5), maxAttempts, Duration.ofMillis(10),
+                failureThreshold, openDuration);
+    }
+
+    private static Throwable failure(CompletableFuture<RateTable> future) {
+        ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(10, TimeUnit.SECONDS));
+        return e.getCause();
+    }
+
+    @Test
+    void concurrentFetchesOfOneUrlShareOneRequest() throws Exception {
+        RateClient client = client(1, 5, Duration.ofSeconds(30));
+        release = new CountDownLatch(1);
+        received = new CountDownLatch(1);
+
+        List<CompletableFuture<RateTable>> futures = new ArrayList<>();
+        futures.add(client.fetch(url));
+        assertTrue(received.await(10, TimeUnit.SECONDS));
+        for (int i = 0; i < 4; i++) {
+            futures.add(client.fetch(url));
+        }
+        release.countDown();
+
+        RateTable first = futures.getFirst().get(10, TimeUnit.SECONDS);
+        for (CompletableFuture<RateTable> future : futures) {
+            assertSame(first, future.get(10, TimeUnit.SECONDS));
+        }
+        assertEquals(1, requests.get());
+        assertEquals(0.92, first.get("EUR"));
+
+        // Once the request completes, the next fetch goes to the server again
+        client.fetchBlocking(url);
+        assertEquals(2, requests.get());
+    }
+
+    @Test
+    void retriesServerErrorsAndRateLimitsThenSucceeds() throws Exception {
+        RateClient client = client(3, 5, Duration.ofSeconds(30));
+        script.addAll(List.of(503, 429));
+
+        RateTable rates = client.fetchBlocking(url);
+
+        assertEquals(4.6, rates.get("RON"));
+        assertEquals(3, requests.get());
+    }
+
+    @Test
+    void givesUpAfterMaxAttempts() {
+        RateClient client = client(3, 5, Duration.ofSeconds(30));
+        script.addAll(List.of(500, 502, 500, 200));
+
+        Throwable error = failure(client.fetch(url));
+
+        RateClient.HttpStatusException status = assertInstanceOf(RateClient.HttpStatusException.class, error);
+        assertEquals(500, status.getStatusCode());
+        assertEquals(3, requests.get());
+    }
+
+    @Test
+    void doesNotRetryClientErrors() {
+        RateClient client = client(3, 5, Duration.ofSeconds(30));
+        script.add(404);
+
+        Throwable error = failure(client.fetch(url));
+
+        assertEquals(404, assertInstanceOf(RateClient.HttpStatusException.class, error).getStatusCode());
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    void circuitOpensAfterConsecutiveFailuresAndClosesAfterSuccessfulTrial() throws Exception {
+        RateClient client = client(1, 2, Duration.ofMillis(300));
+        script.addAll(List.of(500, 500));
+
+        failure(client.fetch(url));
+        failure(client.fetch(url));
+        assertEquals(2, requests.get());
+
+        // Open: fails without calling the server
+        assertInstanceOf(RateClient.CircuitOpenException.class, failure(client.fetch(url)));
+        assertEquals(2, requests.get());
+
+        // After the open period one trial goes through, and its success closes the circuit
+        Thread.sleep(400);
+        client.fetchBlocking(url);
+        assertEquals(3, requests.get());
+        client.fetchBlocking(url);
+        assertEquals(4, requests.get());
+    }
+
+    @Test
+    void failedTrialOpensCircuitAgain() throws Exception {
+        RateClient client = client(1, 2, Duration.ofMillis(300));
+        script.addAll(List.of(500, 500, 503));
+
+        failure(client.fetch(url));
+        failure(client.fetch(url));
+        Thread.sleep(400);
+
+        assertInstanceOf(RateClient.HttpStatusException.class, failure(client.fetch(url)));
+        assertEquals(3, requests.get());
+        assertInstanceOf(RateClient.CircuitOpenException.class, failure(client.fetch(url)));
+        assertEquals(3, requests.get());
+    }
+
+    @Test
+    void openCircuitStopsRetries() {
+        // Threshold below the attempt count: the breaker opens part way through the retries
+        RateClient client = client(5, 2, Duration.ofSeconds(30));
+        script.addAll(List.of(500, 500, 500, 500, 500));
+
+        Throwable error = failure(client.fetch(url));
+
+        assertInstanceOf(RateClient.CircuitOpenException.class, error);
+        assertEquals(2, requests.get());
+    }
+}
@@ -0,0 +1,114 @@
+package org.example.project;
+
+import org.json.JSONObject;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+
+/**
+ * Benchmark: time and bytes allocated per document for the streaming parser, keeping every
+ * rate or one currency, against reading the body into a String and building a JSONObject
+ *
+ * <pre>
+ * RateDocumentParserBenchmark --currencies=160 --seconds=3
+ * </pre>
+ */
+public class RateDocumentParserBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int currencies = 160;
+        int seconds = 3;
+        for (String arg : args) {
+            if (arg.startsWith("--currencies=")) {
+                currencies = Integer.parseInt(arg.substring("--currencies=".length()));
+            } else if (arg.startsWith("--seconds=")) {
+                seconds = Integer.parseInt(arg.substring("--seconds=".length()));
+            }
+        }
+
+        // A document shaped like the rate service's, with the fields the parser skips
+        SplittableRandom random = new SplittableRandom(42);
+        StringBuilder json = new StringBuilder("{\"result\":\"success\",\"provider\":\"https://www.exchangerate-api.com\","
+                + "\"documentation\":\"https://www.exchangerate-api.com/docs/free\",\"time_last_update_unix\":1760832000,"
+                + "\"time_last_update_utc\":\"Sun, 19 Oct 2025 00:00:00 +0000\",\"base_code\":\"USD\",\"rates\":{\"USD\":1");
+        List<String> codes = new ArrayList<>(Currency.codes());
+        for (int i = 0; codes.size() < currencies; i++) {
+            String code = new String(new char[]{(char) ('A' + i / 676 % 26), (char) ('A' + i / 26 % 26), (char) ('A' + i % 26)});
+            if (!codes.contains(code)) {
+                codes.add(code);
+            }
+        }
+        for (String code : codes) {
+            if (!code.equals("USD")) {
+                json.append(",\"").append(code).append("\":").append(Math.round(random.nextDouble(0.01, 5000) * 1e4) / 1e4);
+            }
+        }
+        byte[] document = json.append("}}").toString().getBytes(StandardCharsets.UTF_8);
+
+        Map<String, Callable<Double>> parsers = new LinkedHashMap<>();
+        parsers.put("JSONObject, all rates", () -> {
+            JSONObject rates = new JSONObject(new String(document, StandardCharsets.UTF_8)).getJSONObject("rates");
+            double sum = 0;
+            for (String code : rates.keySet()) {
+                sum += rates.getDouble(code);
+            }
+            return sum;
+        });
+        parsers.put("JSONObject, one rate", () ->
+                new JSONObject(new String(document, StandardCharsets.UTF_8)).getJSONObject("rates").getDouble("EUR"));
+        parsers.put("streaming, all rates", () -> {
+            RateTable table = RateDocumentParser.parse(new ByteArrayInputStream(document));
+            double sum = 0;
+            for (String code : table.currencies()) {
+                sum += table.get(code);
+            }
+            return sum;
+        });
+        Set<String> eur = Set.of("EUR");
+        parsers.put("streaming, one rate",
+                () -> RateDocumentParser.parse(new ByteArrayInputStream(document), eur).get("EUR"));
+
+        com.sun.management.ThreadMXBean threadBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+        double sink = 0;
+        try {
+            for (Map.Entry<String, Callable<Double>> parser : parsers.entrySet()) {
+                // Warm up for a second, then count documents parsed in the measured time
+                long warmUntil = System.nanoTime() + 1_000_000_000L;
+                while (System.nanoTime() < warmUntil) {
+                    sink += parser.getValue().call();
+                }
+                long allocatedBefore = threadBean.getCurrentThreadAllocatedBytes();
+                long start = System.nanoTime();
+                long end = start + seconds * 1_000_000_000L;
+                long documents = 0;
+                long now;
+                do {
+                    for (int i = 0; i < 100; i++) {
+                        sink += parser.getValue().call();
+                    }
+                    documents += 100;
+                    now = System.nanoTime();
+                } while (now < end);
+                long allocated = threadBean.getCurrentThreadAllocatedBytes() - allocatedBefore;
+                System.out.printf(Locale.ROOT, "%-22s %8.2f us/document  %,10d bytes/document%n",
+                        parser.getKey(), (now - start) / 1e3 / documents, allocated / documents);
+            }
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+        System.out.printf(Locale.ROOT, "%d rates, %,d bytes per document (checksum %.0f)%n",
+                codes.size(), document.length, sink);
+    }
+}
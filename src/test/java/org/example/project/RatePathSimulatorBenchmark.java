@@ -0,0 +1,67 @@
+package org.example.project;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Benchmark: simulated paths per second, in total and per core, for both methods
+ *
+ * <pre>
+ * RatePathSimulatorBenchmark --paths=50000 --horizon=7 --runs=20
+ * </pre>
+ */
+public class RatePathSimulatorBenchmark {
+
+    public static void main(String[] args) {
+        int paths = 50_000;
+        int horizon = 7;
+        int runs = 20;
+        for (String arg : args) {
+            if (arg.startsWith("--paths=")) {
+                paths = Integer.parseInt(arg.substring("--paths=".length()));
+            } else if (arg.startsWith("--horizon=")) {
+                horizon = Integer.parseInt(arg.substring("--horizon=".length()));
+            } else if (arg.startsWith("--runs=")) {
+                runs = Integer.parseInt(arg.substring("--runs=".length()));
+            }
+        }
+
+        // A 30-day random walk like the one the predictor works from
+        SplittableRandom random = new SplittableRandom(42);
+        double[] history = new double[30];
+        history[0] = 4.6;
+        for (int i = 1; i < history.length; i++) {
+            history[i] = history[i - 1] * (1 + (random.nextDouble() - 0.5) * 0.005);
+        }
+
+        int cores = ForkJoinPool.commonPool().getParallelism();
+        ForkJoinPool single = new ForkJoinPool(1);
+        List<ForkJoinPool> pools = cores > 1 ? List.of(single, ForkJoinPool.commonPool()) : List.of(single);
+        try {
+            for (RatePathSimulator.Method method : RatePathSimulator.Method.values()) {
+                for (ForkJoinPool pool : pools) {
+                    RatePathSimulator simulator = new RatePathSimulator(method, paths, pool);
+                    int threads = pool.getParallelism();
+                    // Warm up, then time the runs
+                    for (int run = 0; run < 3; run++) {
+                        simulator.simulate(history, horizon, 0.9, run);
+                    }
+                    long start = System.nanoTime();
+                    for (int run = 0; run < runs; run++) {
+                        simulator.simulate(history, horizon, 0.9, run);
+                    }
+                    double seconds = (System.nanoTime() - start) / 1e9;
+                    double pathsPerSecond = (double) paths * runs / seconds;
+                    System.out.printf(Locale.ROOT, "%-11s %2d thread(s): %,12.0f paths/s  %,12.0f paths/s per core%n",
+                            method, threads, pathsPerSecond, pathsPerSecond / threads);
+                }
+            }
+            System.out.printf(Locale.ROOT, "%d paths of %d days per run, %d runs, %d cores%n",
+                    paths, horizon, runs, cores);
+        } finally {
+            single.shutdown();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package org.example.project;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Occurrence dates of cron and monthly rules
+ */
+class RecurrenceRuleTest {
+
+    @Test
+    void sundayMatchesAsZeroOrSeven() {
+        LocalDate monday = LocalDate.of(2024, 6, 3);
+        LocalDate sunday = LocalDate.of(2024, 6, 9);
+        assertEquals(sunday, RecurrenceRule.cron("* * 0").firstOccurrence(monday));
+        assertEquals(sunday, RecurrenceRule.cron("* * 7").firstOccurrence(monday));
+        assertEquals(List.of(sunday, sunday.plusWeeks(1), sunday.plusWeeks(2)),
+                occurrences(RecurrenceRule.cron("* * 0,7"), monday, 3));
+    }
+
+    @Test
+    void lastDayOfMonth() {
+        assertEquals(List.of(LocalDate.of(2024, 2, 29), LocalDate.of(2024, 3, 31), LocalDate.of(2024, 4, 30)),
+                occurrences(RecurrenceRule.cron("L * *"), LocalDate.of(2024, 2, 10), 3));
+        assertEquals(List.of(LocalDate.of(2024, 3, 15), LocalDate.of(2024, 3, 31), LocalDate.of(2024, 4, 15)),
+                occurrences(RecurrenceRule.cron("15,L * *"), LocalDate.of(2024, 3, 1), 3));
+    }
+
+    @Test
+    void dayOfMonthOrDayOfWeekWhenBothAreRestricted() {
+        // The 1st, or any Monday; 2024-06-01 is a Saturday
+        assertEquals(List.of(LocalDate.of(2024, 6, 1), LocalDate.of(2024, 6, 3), LocalDate.of(2024, 6, 10)),
+                occurrences(RecurrenceRule.cron("1 * 1"), LocalDate.of(2024, 6, 1), 3));
+    }
+
+    @Test
+    void dayOfWeekAloneWhenDayOfMonthIsUnrestricted() {
+        assertEquals(List.of(LocalDate.of(2024, 6, 3), LocalDate.of(2024, 6, 4), LocalDate.of(2024, 6, 5)),
+                occurrences(RecurrenceRule.cron("* * 1-5"), LocalDate.of(2024, 6, 1), 3));
+    }
+
+    @Test
+    void monthFieldSkipsToMatchingMonths() {
+        assertEquals(List.of(LocalDate.of(2024, 12, 25), LocalDate.of(2025, 12, 25)),
+                occurrences(RecurrenceRule.cron("25 12 *"), LocalDate.of(2024, 1, 1), 2));
+    }
+
+    @Test
+    void impossibleCronRuleHasNoOccurrence() {
+        assertNull(RecurrenceRule.cron("31 2 *").firstOccurrence(LocalDate.of(2024, 1, 1)));
+    }
+
+    @Test
+    void rejectsMalformedCronExpressions() {
+        assertThrows(IllegalArgumentException.class, () -> RecurrenceRule.cron("1 *"));
+        assertThrows(IllegalArgumentException.class, () -> RecurrenceRule.cron("32 * *"));
+        assertThrows(IllegalArgumentException.class, () -> RecurrenceRule.cron("* * 8"));
+        assertThrows(IllegalArgumentException.class, () -> RecurrenceRule.cron("5-1 * *"));
+    }
+
+    @Test
+    void monthlyClampsToShortMonthsAndReturnsToThe31st() {
+        LocalDate start = LocalDate.of(2024, 1, 31);
+        assertEquals(List.of(LocalDate.of(2024, 1, 31), LocalDate.of(2024, 2, 29), LocalDate.of(2024, 3, 31),
+                        LocalDate.of(2024, 4, 30), LocalDate.of(2024, 5, 31)),
+                occurrences(RecurrenceRule.monthly(1), start, 5));
+    }
+
+    @Test
+    void monthlyIntervalCountsFromTheStart() {
+        LocalDate start = LocalDate.of(2023, 11, 30);
+        assertEquals(List.of(LocalDate.of(2023, 11, 30), LocalDate.of(2024, 2, 29), LocalDate.of(2024, 5, 30)),
+                occurrences(RecurrenceRule.monthly(3), start, 3));
+    }
+
+    private static List<LocalDate> occurrences(RecurrenceRule rule, LocalDate start, int count) {
+        List<LocalDate> dates = new ArrayList<>();
+        LocalDate date = rule.firstOccurrence(start);
+        while (date != null && dates.size() < count) {
+            dates.add(date);
+            date = rule.nextOccurrence(start, date);
+        }
+        return dates;
+    }
+}
@@ -0,0 +1,121 @@
+package org.example.project;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * DatabaseManager.generateRecurringExpenses against a fresh ledger. Amounts are in USD so no
+ * exchange rates are fetched.
+ */
+class RecurringExpenseGenerationTest {
+
+    private static final String CATEGORY = "Recurring test";
+
+    @TempDir
+    Path directory;
+
+    private DatabaseManager dbManager;
+
+    @BeforeEach
+    void openLedger() throws Exception {
+        dbManager = new DatabaseManager(directory.resolve("ledger.db"));
+        dbManager.addCategory(CATEGORY);
+    }
+
+    @AfterEach
+    void closeLedger() {
+        dbManager.close();
+    }
+
+    @Test
+    void catchUpRunTwiceDoesNotDuplicate() throws Exception {
+        LocalDate start = LocalDate.of(2024, 1, 1);
+        LocalDate today = LocalDate.of(2024, 3, 15);
+        dbManager.addRecurringExpense(CATEGORY, 9.99, "USD", "Streaming", null,
+                RecurrenceRule.weekly(1), start, null);
+
+        int expected = (int) (ChronoUnit.WEEKS.between(start, today) + 1);
+        assertEquals(expected, dbManager.generateRecurringExpenses(today));
+        assertEquals(0, dbManager.generateRecurringExpenses(today));
+
+        List<ExpenseRecord> expenses = expenses();
+        assertEquals(expected, expenses.size());
+        assertEquals(expected, distinctDates(expenses).size());
+        assertEquals(start.plusWeeks(expected), dbManager.getRecurringExpenses().get(0).nextDate());
+
+        // A later run only adds what fell due since
+        assertEquals(1, dbManager.generateRecurringExpenses(today.plusWeeks(1)));
+        assertEquals(expected + 1, expenses().size());
+    }
+
+    @Test
+    void catchUpLongerThanOnePassIsCompleteAndIdempotent() throws Exception {
+        LocalDate start = LocalDate.of(2020, 1, 1);
+        LocalDate today = LocalDate.of(2024, 1, 1);
+        dbManager.addRecurringExpense(CATEGORY, 1.50, "USD", null, "Coffee",
+                RecurrenceRule.daily(1), start, null);
+
+        int expected = (int) (ChronoUnit.DAYS.between(start, today) + 1);
+        assertEquals(expected, dbManager.generateRecurringExpenses(today));
+        assertEquals(0, dbManager.generateRecurringExpenses(today));
+        assertEquals(expected, distinctDates(expenses()).size());
+        assertEquals(expected, expenses().size());
+    }
+
+    @Test
+    void anotherManagerOnTheSameLedgerFindsNothingLeft() throws Exception {
+        LocalDate start = LocalDate.of(2024, 1, 31);
+        LocalDate today = LocalDate.of(2024, 12, 31);
+        dbManager.addRecurringExpense(CATEGORY, 1200, "USD", "Landlord", "Rent",
+                RecurrenceRule.monthly(1), start, null);
+
+        DatabaseManager other = new DatabaseManager(directory.resolve("ledger.db"));
+        try {
+            int generated = dbManager.generateRecurringExpenses(today) + other.generateRecurringExpenses(today);
+            assertEquals(12, generated);
+        } finally {
+            other.close();
+        }
+        assertEquals(12, expenses().size());
+        assertEquals(12, distinctDates(expenses()).size());
+    }
+
+    @Test
+    void seriesEndsAtTheEndDate() throws Exception {
+        LocalDate start = LocalDate.of(2024, 1, 1);
+        LocalDate end = LocalDate.of(2024, 1, 20);
+        dbManager.addRecurringExpense(CATEGORY, 5, "USD", null, null,
+                RecurrenceRule.weekly(1), start, end);
+
+        assertEquals(3, dbManager.generateRecurringExpenses(LocalDate.of(2024, 6, 1)));
+        assertNull(dbManager.getRecurringExpenses().get(0).nextDate());
+        assertEquals(0, dbManager.generateRecurringExpenses(LocalDate.of(2024, 12, 1)));
+    }
+
+    private List<ExpenseRecord> expenses() throws Exception {
+        List<ExpenseRecord> expenses = new ArrayList<>();
+        dbManager.forEachExpense(expenses::add);
+        return expenses;
+    }
+
+    private static Set<String> distinctDates(List<ExpenseRecord> expenses) {
+        Set<String> dates = new HashSet<>();
+        for (ExpenseRecord expense : expenses) {
+            dates.add(expense.transactionDate());
+        }
+        return dates;
+    }
+}
@@ -0,0 +1,89 @@
+package org.example.project;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * TDigest serialization and merging, checked against exact quantiles of known data
+ */
+class TDigestTest {
+
+    private static final double[] QUANTILES = {0, 0.01, 0.1, 0.5, 0.9, 0.99, 1};
+
+    @Test
+    void roundTripKeepsEveryQuantile() {
+        TDigest digest = digest(new SplittableRandom(42), 20_000);
+        TDigest copy = TDigest.fromBytes(digest.toBytes());
+
+        assertEquals(digest.size(), copy.size());
+        assertEquals(digest.centroidCount(), copy.centroidCount());
+        for (double q : QUANTILES) {
+            assertEquals(digest.quantile(q), copy.quantile(q), "q=" + q);
+        }
+        assertArrayEquals(digest.toBytes(), copy.toBytes());
+    }
+
+    @Test
+    void emptyDigestRoundTrips() {
+        TDigest copy = TDigest.fromBytes(new TDigest(100).toBytes());
+        assertEquals(0, copy.size());
+        assertTrue(Double.isNaN(copy.quantile(0.5)));
+    }
+
+    @Test
+    void rejectsUnknownFormat() {
+        byte[] bytes = new TDigest(100).toBytes();
+        bytes[0] = 99;
+        assertThrows(IllegalArgumentException.class, () -> TDigest.fromBytes(bytes));
+    }
+
+    @Test
+    void mergedDigestsApproximateTheCombinedData() {
+        // 0..99999 split between two digests by parity, so neither sees the full range densely
+        TDigest even = new TDigest(100);
+        TDigest odd = new TDigest(100);
+        for (int value = 0; value < 100_000; value++) {
+            (value % 2 == 0 ? even : odd).add(value);
+        }
+
+        TDigest merged = TDigest.fromBytes(even.toBytes());
+        merged.merge(TDigest.fromBytes(odd.toBytes()));
+
+        assertEquals(100_000, merged.size());
+        assertEquals(0, merged.quantile(0));
+        assertEquals(99_999, merged.quantile(1));
+        for (double q : QUANTILES) {
+            assertEquals(q * 99_999, merged.quantile(q), 500, "q=" + q);
+        }
+        // The tails are where the digest keeps its small centroids
+        assertEquals(990, merged.quantile(0.0099), 100);
+        assertEquals(98_999, merged.quantile(0.99), 100);
+    }
+
+    @Test
+    void mergeLeavesTheOtherDigestUnchanged() {
+        TDigest digest = digest(new SplittableRandom(1), 5_000);
+        TDigest other = digest(new SplittableRandom(2), 5_000);
+        byte[] before = other.toBytes();
+
+        digest.merge(other);
+
+        assertEquals(10_000, digest.size());
+        assertArrayEquals(before, other.toBytes());
+    }
+
+    private static TDigest digest(SplittableRandom random, int count) {
+        TDigest digest = new TDigest(100);
+        for (int i = 0; i < count; i++) {
+            // Skewed like expense amounts: many small values, a long tail of large ones
+            digest.add(Math.exp(random.nextGaussian() * 1.5 + 3));
+        }
+        return digest;
+    }
+}
@@ -0,0 +1,94 @@
+package org.example.project;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Benchmark: heap retained per transaction and time per total, for a Transaction[] with its
+ * date strings against TransactionColumns, recomputed after a change and cached
+ *
+ * <pre>
+ * TransactionStorageBenchmark --transactions=1000000 --seconds=2
+ * </pre>
+ */
+public class TransactionStorageBenchmark {
+
+    public static void main(String[] args) {
+        int count = 1_000_000;
+        int seconds = 2;
+        for (String arg : args) {
+            if (arg.startsWith("--transactions=")) {
+                count = Integer.parseInt(arg.substring("--transactions=".length()));
+            } else if (arg.startsWith("--seconds=")) {
+                seconds = Integer.parseInt(arg.substring("--seconds=".length()));
+            }
+        }
+
+        // Both are filled from the same seed; every date is its own String, as when read from a
+        // result set
+        long startDay = LocalDate.of(2020, 1, 1).toEpochDay();
+        long before = usedHeap();
+        SplittableRandom random = new SplittableRandom(42);
+        Model.Transaction[] objects = new Model.Transaction[count];
+        for (int i = 0; i < count; i++) {
+            objects[i] = new Model.Transaction(LocalDate.ofEpochDay(startDay + random.nextInt(5 * 365)).toString(),
+                    Math.round(random.nextDouble(1, 500) * 100) / 100.0);
+        }
+        long objectBytes = usedHeap() - before;
+
+        before = usedHeap();
+        random = new SplittableRandom(42);
+        Model.TransactionColumns columns = new Model.TransactionColumns(count);
+        for (int i = 0; i < count; i++) {
+            columns.add(startDay + random.nextInt(5 * 365), Math.round(random.nextDouble(1, 500) * 100) / 100.0);
+        }
+        long columnBytes = usedHeap() - before;
+
+        System.out.printf(Locale.ROOT, "%-24s %6.1f bytes/transaction%n", "Transaction[]", (double) objectBytes / count);
+        System.out.printf(Locale.ROOT, "%-24s %6.1f bytes/transaction%n", "TransactionColumns", (double) columnBytes / count);
+
+        Map<String, DoubleSupplier> totals = new LinkedHashMap<>();
+        totals.put("Transaction[] stream",
+                () -> Arrays.stream(objects).mapToDouble(Model.Transaction::getAmount).sum());
+        totals.put("columns, recomputed", () -> {
+            columns.setAmount(0, columns.amountAt(0));
+            return columns.total();
+        });
+        totals.put("columns, cached", columns::total);
+
+        double sink = 0;
+        for (Map.Entry<String, DoubleSupplier> total : totals.entrySet()) {
+            // Warm up for a second, then count totals computed in the measured time
+            long warmUntil = System.nanoTime() + 1_000_000_000L;
+            while (System.nanoTime() < warmUntil) {
+                sink += total.getValue().getAsDouble();
+            }
+            long begin = System.nanoTime();
+            long end = begin + seconds * 1_000_000_000L;
+            long calls = 0;
+            long now;
+            do {
+                sink += total.getValue().getAsDouble();
+                calls++;
+                now = System.nanoTime();
+            } while (now < end);
+            double nanos = (double) (now - begin) / calls;
+            System.out.printf(Locale.ROOT, "%-24s %,14.0f ns/total  %,14.0f totals/s%n",
+                    total.getKey(), nanos, 1e9 / nanos);
+        }
+        System.out.printf(Locale.ROOT, "%,d transactions (checksum %.0f)%n", count, sink);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,473 @@
+package org.example.project;
+
+import javafx.application.Platform;
+import javafx.collections.ListChangeListener;
+import javafx.scene.Node;
+import javafx.scene.Parent;
+import javafx.scene.Scene;
+import javafx.scene.control.Button;
+import javafx.scene.control.ButtonType;
+import javafx.scene.control.ComboBox;
+import javafx.scene.control.DatePicker;
+import javafx.scene.control.DialogPane;
+import javafx.scene.control.ListView;
+import javafx.scene.control.ScrollPane;
+import javafx.scene.control.TextField;
+import javafx.scene.control.TitledPane;
+import javafx.stage.Stage;
+import javafx.stage.Window;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Headless UI performance run for ExpenseManagerApp. Generates a ledger with DatasetGenerator,
+ * launches the real application on it and drives its scenes through the scene graph the way a
+ * user would: navigation, list loading, and adding and deleting an expense. Each action is timed
+ * from firing its button to the end of the pulse that lays out the result, along with the
+ * longest CSS and layout pass of any scene in that window and the bytes the FX thread allocated.
+ * Dialogs are confirmed automatically. The medians are compared with a baseline file and the
+ * process exits with 1 if any action regressed.
+ *
+ * <pre>
+ * mvn -Pui-perf verify
+ * UiPerformanceHarness --expenses=100000 --repeat=7 --baseline=ui-perf-baseline.properties [--record]
+ * </pre>
+ * With -Dglass.platform=Monocle -Dmonocle.platform=Headless -Dprism.order=sw, as the ui-perf
+ * profile sets, no display is needed. Exchange rates are never requested: every added expense
+ * is in USD, and the rate warm-up failing offline only runs in the background.
+ */
+public class UiPerformanceHarness {
+
+    private static final String LEDGER = "ui-perf";
+
+    // Allowance on top of the tolerance factor, so near-zero baselines do not flag noise
+    private static final double SLACK_MILLIS = 5;
+    private static final double SLACK_KIB = 64;
+
+    private static final Duration ACTION_TIMEOUT = Duration.ofMinutes(1);
+    private static final Duration LAUNCH_TIMEOUT = Duration.ofMinutes(2);
+
+    /**
+     * One run of one action
+     * @param pulseNanos Longest scene pulse (CSS and layout) between firing and completion
+     * @param allocatedBytes Bytes allocated on the FX thread over the same window
+     */
+    private record Sample(long nanos, long pulseNanos, long allocatedBytes) {
+    }
+
+    /**
+     * Medians of an action's samples
+     */
+    public record Result(String action, double millis, double pulseMillis, double allocatedKiB) {
+    }
+
+    private final int repeat;
+    private final int warmup;
+    private final Duration settle;
+
+    private final com.sun.management.ThreadMXBean threadBean =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private final Map<String, List<Sample>> samples = new LinkedHashMap<>();
+
+    // Only touched on the FX thread
+    private ExpenseManagerApp app;
+    private Stage stage;
+    private long pulseStartNanos;
+    private long longestPulseNanos;
+    private final List<String> dialogTitles = new ArrayList<>();
+
+    public UiPerformanceHarness(int repeat, int warmup, Duration settle) {
+        this.repeat = repeat;
+        this.warmup = warmup;
+        this.settle = settle;
+    }
+
+    public static void main(String[] args) {
+        long seed = 42;
+        int categoryCount = 12;
+        int expenseCount = 100_000;
+        int repeat = 7;
+        int warmup = 2;
+        int settleSeconds = 5;
+        double tolerance = 1.5;
+        Path baseline = null;
+        boolean record = false;
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            String value = equals < 0 ? "" : arg.substring(equals + 1);
+            switch (equals < 0 ? arg : arg.substring(0, equals)) {
+                case "--seed" -> seed = Long.parseLong(value);
+                case "--categories" -> categoryCount = Integer.parseInt(value);
+                case "--expenses" -> expenseCount = Integer.parseInt(value.replace("_", ""));
+                case "--repeat" -> repeat = Integer.parseInt(value);
+                case "--warmup" -> warmup = Integer.parseInt(value);
+                case "--settle" -> settleSeconds = Integer.parseInt(value);
+                case "--tolerance" -> tolerance = Double.parseDouble(value);
+                case "--baseline" -> baseline = Path.of(value);
+                case "--record" -> record = true;
+                default -> {
+                    System.err.println("Unknown option: " + arg);
+                    System.exit(2);
+                }
+            }
+        }
+
+        int exitCode;
+        try {
+            generateLedger(seed, categoryCount, expenseCount);
+            List<Result> results = new UiPerformanceHarness(repeat, warmup, Duration.ofSeconds(settleSeconds)).run();
+            print(results);
+            exitCode = 0;
+            if (baseline != null) {
+                if (record || !Files.exists(baseline)) {
+                    writeBaseline(baseline, results);
+                    System.out.println("Baseline written to " + baseline);
+                } else {
+                    List<String> regressions = compare(readBaseline(baseline), results, tolerance);
+                    regressions.forEach(System.out::println);
+                    exitCode = regressions.isEmpty() ? 0 : 1;
+                }
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            exitCode = 2;
+        }
+        // Background threads of the application may still be winding down
+        System.exit(exitCode);
+    }
+
+    /**
+     * Replace the harness ledger, and the anomaly state saved for it, with a freshly generated one
+     */
+    private static void generateLedger(long seed, int categoryCount, int expenseCount) throws Exception {
+        Path file = new Ledgers().databaseFile(LEDGER);
+        for (String suffix : List.of("", "-wal", "-shm")) {
+            Files.deleteIfExists(Path.of(file + suffix));
+        }
+        Files.deleteIfExists(Path.of("anomaly-detector-" + LEDGER + ".bin"));
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        new DatasetGenerator(seed, categoryCount, expenseCount, LocalDate.of(2020, 1, 1), 5,
+                Runtime.getRuntime().availableProcessors()).writeSqlite(file);
+    }
+
+    /**
+     * Start the application, run the warm-up and measured rounds, then stop it
+     */
+    public List<Result> run() throws Exception {
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+        System.setProperty(ExpenseManagerApp.LEDGER_PROPERTY, LEDGER);
+
+        // Started here rather than through Application.launch, so a toolkit that cannot start
+        // fails this call instead of leaving the harness waiting for a window
+        CompletableFuture<Void> started = new CompletableFuture<>();
+        Platform.startup(() -> {
+            try {
+                // Track every window, including the main one, and confirm dialogs as they open
+                Window.getWindows().addListener((ListChangeListener<Window>) change -> {
+                    while (change.next()) {
+                        change.getAddedSubList().forEach(this::track);
+                    }
+                });
+                app = new ExpenseManagerApp();
+                app.init();
+                stage = new Stage();
+                app.start(stage);
+                started.complete(null);
+            } catch (Exception e) {
+                started.completeExceptionally(e);
+            }
+        });
+        started.get(LAUNCH_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+
+        // Let the first frame's background loads and the startup backup finish
+        Thread.sleep(settle.toMillis());
+
+        for (int round = 0; round < warmup + repeat; round++) {
+            runRound(round >= warmup);
+        }
+
+        onFx(() -> {
+            stage.close();
+            app.stop();
+            Platform.exit();
+            return null;
+        });
+
+        List<Result> results = new ArrayList<>();
+        for (Map.Entry<String, List<Sample>> entry : samples.entrySet()) {
+            List<Sample> runs = entry.getValue();
+            results.add(new Result(entry.getKey(),
+                    median(runs.stream().mapToLong(Sample::nanos).toArray()) / 1e6,
+                    median(runs.stream().mapToLong(Sample::pulseNanos).toArray()) / 1e6,
+                    median(runs.stream().mapToLong(Sample::allocatedBytes).toArray()) / 1024.0));
+        }
+        return results;
+    }
+
+    /**
+     * Time the pulses of a window's scenes and, if it is a dialog, confirm it
+     */
+    private void track(Window window) {
+        if (window.getScene() != null) {
+            trackPulses(window.getScene());
+        }
+        window.sceneProperty().addListener((observable, previous, scene) -> {
+            if (scene != null) {
+                trackPulses(scene);
+            }
+        });
+        if (window != stage && window.getScene() != null && window.getScene().getRoot() instanceof DialogPane pane) {
+            dialogTitles.add(window instanceof Stage dialog ? dialog.getTitle() : "");
+            // Runs inside the dialog's nested event loop, as a click on OK would
+            Platform.runLater(() -> {
+                if (pane.lookupButton(ButtonType.OK) instanceof Button ok) {
+                    ok.fire();
+                } else {
+                    window.hide();
+                }
+            });
+        }
+    }
+
+    private void trackPulses(Scene scene) {
+        if (scene.getProperties().putIfAbsent(UiPerformanceHarness.class, Boolean.TRUE) != null) {
+            return;
+        }
+        scene.addPreLayoutPulseListener(() -> pulseStartNanos = System.nanoTime());
+        scene.addPostLayoutPulseListener(() ->
+                longestPulseNanos = Math.max(longestPulseNanos, System.nanoTime() - pulseStartNanos));
+    }
+
+    /**
+     * One pass over every screen, recording the samples when measured is set
+     */
+    private void runRound(boolean measured) throws Exception {
+        step(measured, "categories.open", () -> click("Manage Categories"));
+        step(measured, "categories.back", () -> click("Back to Main Menu"));
+
+        step(measured, "expenses.open", () -> click("Manage Expenses"));
+        step(measured, "expenses.viewAll", () -> click("View All Expenses"));
+        onFx(() -> {
+            ComboBox<?> categories = find(ComboBox.class, box -> "Select Category".equals(box.getPromptText()));
+            categories.getSelectionModel().selectFirst();
+            return null;
+        });
+        step(measured, "expenses.viewByCategory", () -> click("View Expenses by Selected Category"));
+
+        onFx(() -> {
+            find(TextField.class, field -> "Amount".equals(field.getPromptText())).setText("42.50");
+            find(TextField.class, field -> "Payee (optional)".equals(field.getPromptText())).setText("UI perf");
+            find(DatePicker.class, picker -> "Transaction Date".equals(picker.getPromptText())).setValue(LocalDate.now());
+            find(DatePicker.class, picker -> "Expense Date".equals(picker.getPromptText())).setValue(LocalDate.now());
+            @SuppressWarnings("unchecked")
+            ComboBox<String> currencies = find(ComboBox.class, box -> "Select Currency".equals(box.getPromptText()));
+            currencies.setValue("USD");
+            return null;
+        });
+        step(measured, "expenses.add", () -> click("Add Expense"));
+
+        // The list is ordered by id, so the expense just added is the last row
+        onFx(() -> {
+            ListView<?> list = expenseList();
+            list.getSelectionModel().selectLast();
+            return null;
+        });
+        step(measured, "expenses.delete", () -> click("Delete Selected"));
+        step(measured, "expenses.back", () -> click("Back to Main Menu"));
+
+        step(measured, "recurring.open", () -> click("Recurring Expenses"));
+        step(measured, "recurring.back", () -> click("Back to Main Menu"));
+
+        step(measured, "reports.open", () -> click("View Reports"));
+        step(measured, "reports.back", () -> click("Back to Main Menu"));
+    }
+
+    /**
+     * Run an action on the FX thread and wait until the pulse after it has laid out the result
+     */
+    private void step(boolean measured, String action, Runnable fire) throws Exception {
+        CompletableFuture<Sample> done = new CompletableFuture<>();
+        Platform.runLater(() -> {
+            dialogTitles.clear();
+            longestPulseNanos = 0;
+            long allocatedBefore = threadBean.getCurrentThreadAllocatedBytes();
+            long started = System.nanoTime();
+            try {
+                fire.run();
+            } catch (RuntimeException e) {
+                done.completeExceptionally(e);
+                return;
+            }
+            // Queued behind whatever the handler posted, such as status messages
+            Platform.runLater(() -> {
+                Scene scene = stage.getScene();
+                Runnable[] listener = new Runnable[1];
+                listener[0] = () -> {
+                    scene.removePostLayoutPulseListener(listener[0]);
+                    done.complete(new Sample(System.nanoTime() - started, longestPulseNanos,
+                            threadBean.getCurrentThreadAllocatedBytes() - allocatedBefore));
+                };
+                scene.addPostLayoutPulseListener(listener[0]);
+                Platform.requestNextPulse();
+            });
+        });
+        Sample sample = done.get(ACTION_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+
+        List<String> failures = onFx(() -> dialogTitles.stream()
+                .filter(title -> "Error".equals(title) || "Warning".equals(title)).toList());
+        if (!failures.isEmpty()) {
+            throw new IllegalStateException(action + " showed " + failures);
+        }
+        if (measured) {
+            samples.computeIfAbsent(action, key -> new ArrayList<>()).add(sample);
+        }
+    }
+
+    private void click(String text) {
+        find(Button.class, button -> text.equals(button.getText())).fire();
+    }
+
+    /**
+     * The expense list, told apart from the split-row list by holding more rows
+     */
+    private ListView<?> expenseList() {
+        List<Node> lists = new ArrayList<>();
+        collect(stage.getScene().getRoot(), Node.class, node -> node instanceof ListView, lists);
+        return lists.stream().map(node -> (ListView<?>) node)
+                .max((a, b) -> Integer.compare(a.getItems().size(), b.getItems().size()))
+                .orElseThrow(() -> new IllegalStateException("No list on " + stage.getTitle()));
+    }
+
+    private <T extends Node> T find(Class<T> type, Predicate<T> matches) {
+        List<T> found = new ArrayList<>();
+        collect(stage.getScene().getRoot(), type, matches, found);
+        if (found.isEmpty()) {
+            throw new IllegalStateException("No " + type.getSimpleName() + " found on the current screen");
+        }
+        return found.get(0);
+    }
+
+    /**
+     * Depth-first search that also enters scroll and titled pane content, which only joins the
+     * children list once a skin exists
+     */
+    private static <T extends Node> void collect(Node node, Class<T> type, Predicate<T> matches, List<T> found) {
+        if (node == null) {
+            return;
+        }
+        if (type.isInstance(node) && matches.test(type.cast(node))) {
+            found.add(type.cast(node));
+        }
+        if (node instanceof ScrollPane scrollPane) {
+            collect(scrollPane.getContent(), type, matches, found);
+        } else if (node instanceof TitledPane titledPane) {
+            collect(titledPane.getContent(), type, matches, found);
+        } else if (node instanceof Parent parent) {
+            for (Node child : parent.getChildrenUnmodifiable()) {
+                collect(child, type, matches, found);
+            }
+        }
+    }
+
+    private static <T> T onFx(Callable<T> call) throws Exception {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Platform.runLater(() -> {
+            try {
+                result.complete(call.call());
+            } catch (Exception e) {
+                result.completeExceptionally(e);
+            }
+        });
+        return result.get(ACTION_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    private static void print(List<Result> results) {
+        System.out.printf("%-26s %10s %10s %12s%n", "action", "ms", "pulse ms", "alloc KiB");
+        for (Result result : results) {
+            System.out.printf("%-26s %10.1f %10.1f %12.0f%n",
+                    result.action(), result.millis(), result.pulseMillis(), result.allocatedKiB());
+        }
+    }
+
+    /**
+     * One line per metric that exceeds its baseline by more than the tolerance factor and slack
+     */
+    private static List<String> compare(Map<String, Result> baseline, List<Result> results, double tolerance) {
+        List<String> regressions = new ArrayList<>();
+        for (Result result : results) {
+            Result base = baseline.get(result.action());
+            if (base == null) {
+                continue;
+            }
+            check(regressions, result.action() + " time", result.millis(), base.millis(), tolerance, SLACK_MILLIS, "ms");
+            check(regressions, result.action() + " pulse", result.pulseMillis(), base.pulseMillis(), tolerance,
+                    SLACK_MILLIS, "ms");
+            check(regressions, result.action() + " allocation", result.allocatedKiB(), base.allocatedKiB(), tolerance,
+                    SLACK_KIB, "KiB");
+        }
+        return regressions;
+    }
+
+    private static void check(List<String> regressions, String metric, double value, double base, double tolerance,
+                              double slack, String unit) {
+        double limit = base * tolerance + slack;
+        if (value > limit) {
+            regressions.add(String.format("REGRESSION %s: %.1f %s, baseline %.1f %s (limit %.1f)",
+                    metric, value, unit, base, unit, limit));
+        }
+    }
+
+    private static Map<String, Result> readBaseline(Path file) throws IOException {
+        Properties properties = new Properties();
+        try (Reader in = Files.newBufferedReader(file)) {
+            properties.load(in);
+        }
+        Map<String, Result> baseline = new LinkedHashMap<>();
+        for (String key : properties.stringPropertyNames()) {
+            if (key.endsWith(".millis")) {
+                String action = key.substring(0, key.length() - ".millis".length());
+                baseline.put(action, new Result(action,
+                        Double.parseDouble(properties.getProperty(action + ".millis")),
+                        Double.parseDouble(properties.getProperty(action + ".pulseMillis", "0")),
+                        Double.parseDouble(properties.getProperty(action + ".allocatedKiB", "0"))));
+            }
+        }
+        return baseline;
+    }
+
+    private static void writeBaseline(Path file, List<Result> results) throws IOException {
+        Properties properties = new Properties();
+        for (Result result : results) {
+            properties.setProperty(result.action() + ".millis", String.format(Locale.ROOT, "%.1f", result.millis()));
+            properties.setProperty(result.action() + ".pulseMillis", String.format(Locale.ROOT, "%.1f", result.pulseMillis()));
+            properties.setProperty(result.action() + ".allocatedKiB", String.format(Locale.ROOT, "%.0f", result.allocatedKiB()));
+        }
+        try (Writer out = Files.newBufferedWriter(file)) {
+            properties.store(out, "UiPerformanceHarness medians; rerun with --record to accept new numbers");
+        }
+    }
+}